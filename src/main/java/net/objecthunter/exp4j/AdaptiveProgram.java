@@ -0,0 +1,266 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Functions;
+import net.objecthunter.exp4j.operator.Operators;
+import net.objecthunter.exp4j.tokenizer.FunctionToken;
+import net.objecthunter.exp4j.tokenizer.LiteralToken;
+import net.objecthunter.exp4j.tokenizer.LocalVariableToken;
+import net.objecthunter.exp4j.tokenizer.NumberToken;
+import net.objecthunter.exp4j.tokenizer.OperatorToken;
+import net.objecthunter.exp4j.tokenizer.Token;
+import net.objecthunter.exp4j.tokenizer.VariableToken;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Evaluation in <code>double</code> arithmetic which tracks an upper bound of the absolute error of every value.
+ * The result is only returned if every number within the error bound of the computed value rounds to the same
+ * decimal with the requested number of significant digits. Otherwise, and for operators and functions without an
+ * error model, the evaluation gives up and the expression has to be evaluated using {@link BigDecimal}.
+ */
+final class AdaptiveProgram {
+
+    private static final int OP_ADD = 0;
+    private static final int OP_SUBTRACT = 1;
+    private static final int OP_MULTIPLY = 2;
+    private static final int OP_DIVIDE = 3;
+    private static final int OP_NEGATE = 4;
+    private static final int OP_PLUS = 5;
+    private static final int OP_ABS = 6;
+    private static final int OP_SQRT = 7;
+
+    private static final Object[] OPERATIONS = {
+            Operators.getBuiltinOperator('+', 2),
+            Operators.getBuiltinOperator('-', 2),
+            Operators.getBuiltinOperator('*', 2),
+            Operators.getBuiltinOperator('/', 2),
+            Operators.getBuiltinOperator('-', 1),
+            Operators.getBuiltinOperator('+', 1),
+            Functions.getBuiltinFunction("abs"),
+            Functions.getBuiltinFunction("sqrt")
+    };
+
+    private final Token[] tokens;
+
+    private final MathContext mathContext;
+
+    /* false if the tokens contain an operation without an error model */
+    private final boolean supported;
+
+    /* the operation codes, the values and the error bounds of the numbers by token index */
+    private final int[] operations;
+
+    private final double[] numbers;
+
+    private final double[] numberErrors;
+
+    AdaptiveProgram(final Token[] tokens, final int digits) {
+        if (1 > digits || 15 < digits) {
+            throw new IllegalArgumentException("The precision of an adaptive evaluation has to be between 1 and 15 digits but was " + digits);
+        }
+        this.tokens = tokens;
+        this.mathContext = new MathContext(digits, RoundingMode.HALF_EVEN);
+        this.operations = new int[tokens.length];
+        this.numbers = new double[tokens.length];
+        this.numberErrors = new double[tokens.length];
+        var supported = true;
+        for (var i = 0; i < tokens.length; i++) {
+            final var t = tokens[i];
+            if (Token.TOKEN_NUMBER == t.getType()) {
+                final var value = ((NumberToken) t).getValue();
+                numbers[i] = value.doubleValue();
+                numberErrors[i] = 0 == new BigDecimal(numbers[i]).compareTo(value) ? 0d : roundingError(numbers[i]);
+            } else if (Token.TOKEN_OPERATOR == t.getType()) {
+                operations[i] = indexOf(((OperatorToken) t).getOperator());
+                supported &= 0 <= operations[i];
+            } else if (Token.TOKEN_FUNCTION == t.getType()) {
+                operations[i] = indexOf(((FunctionToken) t).getFunction());
+                supported &= 0 <= operations[i];
+            }
+        }
+        this.supported = supported;
+    }
+
+    /**
+     * Create the adaptive evaluation of other tokens with the same precision
+     */
+    AdaptiveProgram forTokens(final Token[] tokens) {
+        return tokens == this.tokens ? this : new AdaptiveProgram(tokens, mathContext.getPrecision());
+    }
+
+    /**
+     * Get the number of significant digits and the rounding of the results
+     */
+    MathContext getMathContext() {
+        return mathContext;
+    }
+
+    /**
+     * Evaluate the tokens in <code>double</code> arithmetic
+     *
+     * @return the result rounded to the requested precision or null if the error bound does not prove it correct
+     */
+    BigDecimal evaluate(final Map<String, BigDecimal> variables, final BigDecimal[] literals) {
+        if (!supported) {
+            return null;
+        }
+        final var values = new double[tokens.length];
+        final var errors = new double[tokens.length];
+        double[] localValues = null;
+        double[] localErrors = null;
+        var size = 0;
+        for (var i = 0; i < tokens.length; i++) {
+            final var t = tokens[i];
+            switch (t.getType()) {
+                case Token.TOKEN_NUMBER:
+                    values[size] = numbers[i];
+                    errors[size++] = numberErrors[i];
+                    break;
+                case Token.TOKEN_LITERAL:
+                    values[size] = literals[((LiteralToken) t).getIndex()].doubleValue();
+                    errors[size] = roundingError(values[size]);
+                    size++;
+                    break;
+                case Token.TOKEN_VARIABLE:
+                    final var value = variables.get(((VariableToken) t).getName());
+                    if (null == value) {
+                        return null;
+                    }
+                    values[size] = value.doubleValue();
+                    errors[size] = roundingError(values[size]);
+                    size++;
+                    break;
+                case Token.TOKEN_LOCAL:
+                    final var load = ((LocalVariableToken) t).getSlot();
+                    values[size] = localValues[load];
+                    errors[size++] = localErrors[load];
+                    break;
+                case Token.TOKEN_STORE_LOCAL:
+                    final var store = ((LocalVariableToken) t).getSlot();
+                    if (null == localValues) {
+                        localValues = new double[store + 4];
+                        localErrors = new double[store + 4];
+                    } else if (store >= localValues.length) {
+                        localValues = Arrays.copyOf(localValues, store * 2);
+                        localErrors = Arrays.copyOf(localErrors, store * 2);
+                    }
+                    localValues[store] = values[--size];
+                    localErrors[store] = errors[size];
+                    break;
+                default:
+                    final var op = operations[i];
+                    if (OP_NEGATE <= op) {
+                        if (1 > size) {
+                            return null;
+                        }
+                        final var a = size - 1;
+                        if (OP_NEGATE == op) {
+                            values[a] = -values[a];
+                        } else if (OP_ABS == op) {
+                            values[a] = Math.abs(values[a]);
+                        } else if (OP_SQRT == op) {
+                            /* the error of the square root grows without bounds near zero */
+                            final var lower = values[a] - errors[a];
+                            if (0d >= lower) {
+                                return null;
+                            }
+                            final var r = Math.sqrt(values[a]);
+                            errors[a] = Math.nextUp(errors[a] / (2d * Math.sqrt(lower)) + roundingError(r));
+                            values[a] = r;
+                        }
+                        break;
+                    }
+                    if (2 > size) {
+                        return null;
+                    }
+                    final var rightIdx = --size;
+                    final var leftIdx = size - 1;
+                    final var a = values[leftIdx];
+                    final var ea = errors[leftIdx];
+                    final var b = values[rightIdx];
+                    final var eb = errors[rightIdx];
+                    final double r;
+                    final double e;
+                    if (OP_ADD == op) {
+                        r = a + b;
+                        e = ea + eb + roundingError(r);
+                    } else if (OP_SUBTRACT == op) {
+                        r = a - b;
+                        e = ea + eb + roundingError(r);
+                    } else if (OP_MULTIPLY == op) {
+                        r = a * b;
+                        e = Math.abs(a) * eb + Math.abs(b) * ea + ea * eb + roundingError(r);
+                    } else {
+                        /* the divisor must be bounded away from zero */
+                        final var absB = Math.abs(b);
+                        if (absB <= eb) {
+                            return null;
+                        }
+                        r = a / b;
+                        e = (Math.abs(a) * eb + absB * ea) / (absB * (absB - eb)) + roundingError(r);
+                    }
+                    values[leftIdx] = r;
+                    /* round the bound up to make up for the rounding errors of its own computation */
+                    errors[leftIdx] = Math.nextUp(e * (1d + 0x1p-50));
+                    break;
+            }
+        }
+        if (1 != size || !Double.isFinite(values[0]) || !Double.isFinite(errors[0])) {
+            return null;
+        }
+        final var value = new BigDecimal(values[0]);
+        final var error = new BigDecimal(errors[0]);
+        final var lower = value.subtract(error).round(mathContext);
+        final var upper = value.add(error).round(mathContext);
+        if (0 != lower.compareTo(upper)) {
+            return null;
+        }
+        /* drop the zeros the binary fraction leaves behind, e.g. 0.300000000000 for 0.1 + 0.2 */
+        return normalize(upper);
+    }
+
+    /**
+     * Bring a rounded result into the form returned by the adaptive evaluation: without trailing zeros in the
+     * fraction and without a negative scale. Applied to the results of the exact fallback as well, so the form of
+     * the result does not depend on the path taken.
+     */
+    static BigDecimal normalize(final BigDecimal value) {
+        final var result = value.stripTrailingZeros();
+        return 0 > result.scale() ? result.setScale(0) : result;
+    }
+
+    private static int indexOf(final Object operation) {
+        for (var i = 0; i < OPERATIONS.length; i++) {
+            if (OPERATIONS[i] == operation) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The largest error of rounding a number to the given double
+     */
+    private static double roundingError(final double result) {
+        return 0.5d * Math.ulp(result);
+    }
+}
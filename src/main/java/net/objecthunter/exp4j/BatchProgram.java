@@ -0,0 +1,812 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.FastMath;
+import net.objecthunter.exp4j.function.Function;
+import net.objecthunter.exp4j.function.Functions;
+import net.objecthunter.exp4j.operator.Operator;
+import net.objecthunter.exp4j.operator.Operators;
+import net.objecthunter.exp4j.tokenizer.FunctionToken;
+import net.objecthunter.exp4j.tokenizer.LiteralToken;
+import net.objecthunter.exp4j.tokenizer.LocalVariableToken;
+import net.objecthunter.exp4j.tokenizer.NumberToken;
+import net.objecthunter.exp4j.tokenizer.OperatorToken;
+import net.objecthunter.exp4j.tokenizer.Token;
+import net.objecthunter.exp4j.tokenizer.VariableToken;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Columnar evaluation of an expression in <code>double</code> arithmetic. Every token is applied to a whole column
+ * of values at once, so the builtin operators and functions run as simple loops over arrays which the JIT can
+ * unroll and vectorize. Custom operators and functions are applied row by row to {@link BigDecimal} values.
+ * <p>
+ * The program also evaluates single rows on {@link BigDecimal} without throwing, by checking the arguments of the
+ * builtin operators and functions instead of letting them fail.
+ */
+final class BatchProgram {
+
+    private static final int CUSTOM = -1;
+
+    private static final int ADD = 0;
+    private static final int SUBTRACT = 1;
+    private static final int MULTIPLY = 2;
+    private static final int DIVIDE = 3;
+    private static final int POWER = 4;
+    private static final int MODULO = 5;
+    private static final int NEGATE = 6;
+    private static final int PLUS = 7;
+    private static final int SIN = 8;
+    private static final int COS = 9;
+    private static final int TAN = 10;
+    private static final int CSC = 11;
+    private static final int SEC = 12;
+    private static final int COT = 13;
+    private static final int SINH = 14;
+    private static final int COSH = 15;
+    private static final int TANH = 16;
+    private static final int CSCH = 17;
+    private static final int SECH = 18;
+    private static final int COTH = 19;
+    private static final int ASIN = 20;
+    private static final int ACOS = 21;
+    private static final int ATAN = 22;
+    private static final int SQRT = 23;
+    private static final int CBRT = 24;
+    private static final int ABS = 25;
+    private static final int CEIL = 26;
+    private static final int FLOOR = 27;
+    private static final int POW = 28;
+    private static final int EXP = 29;
+    private static final int EXPM1 = 30;
+    private static final int LOG10 = 31;
+    private static final int LOG2 = 32;
+    private static final int LOG = 33;
+    private static final int LOG1P = 34;
+    private static final int LOGB = 35;
+    private static final int SIGNUM = 36;
+    private static final int TO_RADIAN = 37;
+    private static final int TO_DEGREE = 38;
+
+    private static final String[] FUNCTION_NAMES = {"sin", "cos", "tan", "csc", "sec", "cot", "sinh", "cosh", "tanh",
+            "csch", "sech", "coth", "asin", "acos", "atan", "sqrt", "cbrt", "abs", "ceil", "floor", "pow", "exp",
+            "expm1", "log10", "log2", "log", "log1p", "logb", "signum", "toradian", "todegree"};
+
+    private final Token[] tokens;
+
+    /* the kernel of the operator or function by token index */
+    private final int[] kernels;
+
+    private final int maxDepth;
+
+    BatchProgram(final Token[] tokens) {
+        this.tokens = tokens;
+        this.kernels = new int[tokens.length];
+        var depth = 0;
+        var maxDepth = 1;
+        for (var i = 0; i < tokens.length; i++) {
+            final var t = tokens[i];
+            switch (t.getType()) {
+                case Token.TOKEN_OPERATOR:
+                    final var op = ((OperatorToken) t).getOperator();
+                    kernels[i] = kernelOf(op);
+                    depth -= op.getNumOperands() - 1;
+                    break;
+                case Token.TOKEN_FUNCTION:
+                    final var func = ((FunctionToken) t).getFunction();
+                    kernels[i] = kernelOf(func);
+                    depth -= func.getNumArguments() - 1;
+                    break;
+                case Token.TOKEN_STORE_LOCAL:
+                    depth--;
+                    break;
+                default:
+                    depth++;
+                    break;
+            }
+            maxDepth = Math.max(maxDepth, depth);
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Evaluate the expression for every row of the columns
+     *
+     * @param columns   the values of the variables by name, all of the same length
+     * @param variables the values of the variables without a column
+     * @param literals  the values of the literal tokens
+     * @param fastMath  true to use the approximations of {@link FastMath}
+     * @param status    the {@link EvaluationStatus} by row, null to throw if a variable is missing
+     * @return the results by row
+     */
+    double[] evaluate(final Map<String, double[]> columns, final Map<String, BigDecimal> variables,
+                      final BigDecimal[] literals, final boolean fastMath, final int[] status) {
+        var rows = -1;
+        for (final var column : columns.entrySet()) {
+            if (0 > rows) {
+                rows = column.getValue().length;
+            } else if (rows != column.getValue().length) {
+                throw new IllegalArgumentException("The column '" + column.getKey() + "' has " + column.getValue().length
+                        + " rows but the other columns have " + rows);
+            }
+        }
+        if (0 > rows) {
+            throw new IllegalArgumentException("At least one column has to be given for a batch evaluation");
+        }
+        if (null != status) {
+            if (rows != status.length) {
+                throw new IllegalArgumentException("The status array has " + status.length + " rows but the columns have " + rows);
+            }
+            Arrays.fill(status, EvaluationStatus.OK);
+        }
+        final var stack = new double[maxDepth][];
+        double[][] locals = null;
+        var size = 0;
+        for (var i = 0; i < tokens.length; i++) {
+            final var t = tokens[i];
+            switch (t.getType()) {
+                case Token.TOKEN_NUMBER:
+                    Arrays.fill(column(stack, size++, rows), ((NumberToken) t).getValue().doubleValue());
+                    break;
+                case Token.TOKEN_LITERAL:
+                    Arrays.fill(column(stack, size++, rows), literals[((LiteralToken) t).getIndex()].doubleValue());
+                    break;
+                case Token.TOKEN_VARIABLE:
+                    final var name = ((VariableToken) t).getName();
+                    final var values = columns.get(name);
+                    if (null != values) {
+                        System.arraycopy(values, 0, column(stack, size++, rows), 0, rows);
+                        break;
+                    }
+                    final var value = variables.get(name);
+                    if (null != value) {
+                        Arrays.fill(column(stack, size++, rows), value.doubleValue());
+                    } else if (null != status) {
+                        Arrays.fill(column(stack, size++, rows), Double.NaN);
+                        for (var row = 0; row < rows; row++) {
+                            status[row] |= EvaluationStatus.MISSING_VARIABLE;
+                        }
+                    } else {
+                        throw new IllegalArgumentException("No value has been set for the setVariable '" + name + "'.");
+                    }
+                    break;
+                case Token.TOKEN_LOCAL:
+                    final var local = locals[((LocalVariableToken) t).getSlot()];
+                    System.arraycopy(local, 0, column(stack, size++, rows), 0, rows);
+                    break;
+                case Token.TOKEN_STORE_LOCAL:
+                    final var slot = ((LocalVariableToken) t).getSlot();
+                    if (null == locals) {
+                        locals = new double[slot + 4][];
+                    } else if (slot >= locals.length) {
+                        locals = Arrays.copyOf(locals, slot * 2);
+                    }
+                    /* hand the column over to the local, the stack allocates a new one when needed */
+                    locals[slot] = stack[--size];
+                    stack[size] = null;
+                    break;
+                case Token.TOKEN_OPERATOR:
+                    final var op = ((OperatorToken) t).getOperator();
+                    if (size < op.getNumOperands()) {
+                        throw new IllegalArgumentException("Invalid number of operands available for '" + op.getSymbol() + "' operator");
+                    }
+                    size -= op.getNumOperands();
+                    final var right = 2 == op.getNumOperands() ? stack[size + 1] : null;
+                    if (CUSTOM == kernels[i]) {
+                        applyCustom(op, stack, size, rows, status);
+                    } else {
+                        apply(kernels[i], stack[size], right, rows, fastMath);
+                    }
+                    if (null != status) {
+                        check(kernels[i], stack[size], right, rows, status);
+                    }
+                    size++;
+                    break;
+                case Token.TOKEN_FUNCTION:
+                    final var func = ((FunctionToken) t).getFunction();
+                    if (size < func.getNumArguments()) {
+                        throw new IllegalArgumentException("Invalid number of arguments available for '" + func.getName() + "' function");
+                    }
+                    size -= func.getNumArguments();
+                    if (CUSTOM == kernels[i]) {
+                        applyCustom(func, stack, size, rows, status);
+                    } else {
+                        apply(kernels[i], stack[size], 2 == func.getNumArguments() ? stack[size + 1] : null, rows, fastMath);
+                    }
+                    if (null != status) {
+                        check(kernels[i], stack[size], null, rows, status);
+                    }
+                    size++;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (1 != size) {
+            throw new IllegalArgumentException(
+                    "Invalid number of items on the output queue. Might be caused by an invalid number of arguments for a function.");
+        }
+        final var result = stack[0];
+        if (null != status) {
+            for (var row = 0; row < rows; row++) {
+                if (EvaluationStatus.OK != status[row]) {
+                    result[row] = Double.NaN;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Evaluate the expression on {@link BigDecimal} like {@link Expression#evaluate()}, but return null instead of
+     * throwing if a variable is missing or an operator or function is not defined for its arguments. The builtin
+     * operators and functions are checked before they are applied. Exceptions are only caught for custom operators
+     * and functions and for a builtin power overflowing the scale of its result.
+     *
+     * @param variables the values of the variables
+     * @param literals  the values of the literal tokens
+     * @param mc        the precision of the operators and functions, null to use their defaults
+     * @return the value of the expression or null
+     */
+    BigDecimal evaluateOrNull(final Map<String, BigDecimal> variables, final BigDecimal[] literals, final MathContext mc) {
+        final var output = new ArrayStack();
+        BigDecimal[] locals = null;
+        /* the operands of an operator or the arguments of a function, reused for all calls */
+        BigDecimal[] args = null;
+        for (var i = 0; i < tokens.length; i++) {
+            final var t = tokens[i];
+            switch (t.getType()) {
+                case Token.TOKEN_NUMBER:
+                    output.push(((NumberToken) t).getValue());
+                    break;
+                case Token.TOKEN_LITERAL:
+                    output.push(literals[((LiteralToken) t).getIndex()]);
+                    break;
+                case Token.TOKEN_VARIABLE:
+                    final var value = variables.get(((VariableToken) t).getName());
+                    if (null == value) {
+                        return null;
+                    }
+                    output.push(value);
+                    break;
+                case Token.TOKEN_LOCAL:
+                    output.push(locals[((LocalVariableToken) t).getSlot()]);
+                    break;
+                case Token.TOKEN_STORE_LOCAL:
+                    final var slot = ((LocalVariableToken) t).getSlot();
+                    if (null == locals) {
+                        locals = new BigDecimal[slot + 4];
+                    } else if (slot >= locals.length) {
+                        locals = Arrays.copyOf(locals, slot * 2);
+                    }
+                    locals[slot] = output.pop();
+                    break;
+                case Token.TOKEN_OPERATOR:
+                    final var op = ((OperatorToken) t).getOperator();
+                    if (output.size() < op.getNumOperands()) {
+                        return null;
+                    }
+                    args = pop(output, op.getNumOperands(), args);
+                    final var result = applyOrNull(kernels[i], op, mc, args[0], args[1]);
+                    if (null == result) {
+                        return null;
+                    }
+                    output.push(result);
+                    break;
+                case Token.TOKEN_FUNCTION:
+                    final var func = ((FunctionToken) t).getFunction();
+                    if (output.size() < func.getNumArguments()) {
+                        return null;
+                    }
+                    args = pop(output, func.getNumArguments(), args);
+                    final var returned = applyOrNull(kernels[i], func, mc, args);
+                    if (null == returned) {
+                        return null;
+                    }
+                    output.push(returned);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return 1 == output.size() ? output.pop() : null;
+    }
+
+    /**
+     * Move the values on top of the stack to the start of the argument array, which is grown if it is too small
+     */
+    private static BigDecimal[] pop(final ArrayStack output, final int count, final BigDecimal[] args) {
+        final var result = null == args || args.length < count ? new BigDecimal[Math.max(3, count)] : args;
+        for (var j = count - 1; 0 <= j; j--) {
+            result[j] = output.pop();
+        }
+        return result;
+    }
+
+    /**
+     * Get the kernel of an operator or function token. The other evaluation modes use it to check the arguments of
+     * the builtin operators and functions by {@link #applyOrNull(int, Operator, MathContext, BigDecimal, BigDecimal)}
+     * and {@link #applyOrNull(int, Function, MathContext, BigDecimal[])}.
+     */
+    static int kernelOf(final Token t) {
+        if (Token.TOKEN_OPERATOR == t.getType()) {
+            return kernelOf(((OperatorToken) t).getOperator());
+        }
+        return Token.TOKEN_FUNCTION == t.getType() ? kernelOf(((FunctionToken) t).getFunction()) : CUSTOM;
+    }
+
+    /**
+     * Apply an operator if it is defined for the operands. The builtin operators are checked up front, custom
+     * operators are applied and an {@link ArithmeticException} is caught.
+     *
+     * @param kernel the kernel of the operator as returned by {@link #kernelOf(Token)}
+     * @param op     the operator
+     * @param mc     the precision of the result, null to use the default of the operator
+     * @param left   the first operand
+     * @param right  the second operand, ignored for unary operators
+     * @return the result or null if the operator would throw
+     */
+    static BigDecimal applyOrNull(final int kernel, final Operator op, final MathContext mc, final BigDecimal left,
+                                  final BigDecimal right) {
+        switch (kernel) {
+            case DIVIDE:
+            case MODULO:
+                if (0 == right.signum()) {
+                    return null;
+                }
+                return apply(op, mc, left, right);
+            case POWER:
+                if (!isPowerDefined(left, right)) {
+                    return null;
+                }
+                /* the remaining failures of a power are overflows of the scale, which are rare enough to be caught */
+                break;
+            case CUSTOM:
+                break;
+            default:
+                return apply(op, mc, left, right);
+        }
+        try {
+            return apply(op, mc, left, right);
+        } catch (final ArithmeticException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Apply an operator by its arity-specialized method
+     */
+    private static BigDecimal apply(final Operator op, final MathContext mc, final BigDecimal left, final BigDecimal right) {
+        if (1 == op.getNumOperands()) {
+            return null == mc ? op.apply1(left) : op.apply1(mc, left);
+        }
+        return null == mc ? op.apply2(left, right) : op.apply2(mc, left, right);
+    }
+
+    /**
+     * Check the operands of a power, zero can not be raised to a negative power and a negative base only to an
+     * integer power
+     */
+    private static boolean isPowerDefined(final BigDecimal base, final BigDecimal exponent) {
+        final var sign = base.signum();
+        return !(0 == sign && 0 > exponent.signum()
+                || 0 > sign && 0 != exponent.signum() && 0 < exponent.stripTrailingZeros().scale());
+    }
+
+    /**
+     * Apply a function if it is defined for the arguments. Most builtin functions compute their result as a
+     * <code>double</code>, so computing the same value here predicts whether they would throw. The builtin
+     * <code>pow</code> is checked like the <code>^</code> operator. Custom functions are applied and an
+     * {@link ArithmeticException} is caught.
+     *
+     * @param kernel the kernel of the function as returned by {@link #kernelOf(Token)}
+     * @param func   the function
+     * @param mc     the precision of the result, null to use the default of the function
+     * @param args   the arguments, at the start of the array
+     * @return the result or null if the function would throw
+     */
+    static BigDecimal applyOrNull(final int kernel, final Function func, final MathContext mc, final BigDecimal[] args) {
+        if (CUSTOM == kernel || POW == kernel) {
+            if (POW == kernel && !isPowerDefined(args[0], args[1])) {
+                return null;
+            }
+            try {
+                return Expression.applyFunction(func, mc, args, func.getNumArguments());
+            } catch (final ArithmeticException e) {
+                return null;
+            }
+        }
+        final var x = args[0].doubleValue();
+        final double result;
+        if (LOGB == kernel) {
+            result = Math.log(args[1].doubleValue()) / Math.log(x);
+        } else if (SIGNUM == kernel) {
+            result = args[0].signum();
+        } else {
+            result = exact(kernel, x);
+        }
+        if (!Double.isFinite(result)) {
+            return null;
+        }
+        return null == mc ? BigDecimal.valueOf(result) : BigDecimal.valueOf(result).round(mc);
+    }
+
+    /**
+     * Set the status of the rows whose value became infinite or NaN by applying an operator or function
+     */
+    private static void check(final int kernel, final double[] result, final double[] right, final int rows,
+                              final int[] status) {
+        for (var i = 0; i < rows; i++) {
+            if (!Double.isFinite(result[i]) && EvaluationStatus.OK == status[i]) {
+                if ((DIVIDE == kernel || MODULO == kernel) && 0d == right[i]
+                        || POWER == kernel && Double.isInfinite(result[i]) && 0d > right[i]) {
+                    status[i] = EvaluationStatus.DIVISION_BY_ZERO;
+                } else {
+                    status[i] = Double.isNaN(result[i]) ? EvaluationStatus.INVALID_ARGUMENT : EvaluationStatus.OVERFLOW;
+                }
+            }
+        }
+    }
+
+    private static double[] column(final double[][] stack, final int index, final int rows) {
+        if (null == stack[index]) {
+            stack[index] = new double[rows];
+        }
+        return stack[index];
+    }
+
+    /**
+     * Apply a builtin operator or function, the result replaces the values of the first argument
+     */
+    private static void apply(final int kernel, final double[] a, final double[] b, final int rows, final boolean fast) {
+        switch (kernel) {
+            case ADD:
+                for (var i = 0; i < rows; i++) {
+                    a[i] += b[i];
+                }
+                break;
+            case SUBTRACT:
+                for (var i = 0; i < rows; i++) {
+                    a[i] -= b[i];
+                }
+                break;
+            case MULTIPLY:
+                for (var i = 0; i < rows; i++) {
+                    a[i] *= b[i];
+                }
+                break;
+            case DIVIDE:
+                for (var i = 0; i < rows; i++) {
+                    a[i] /= b[i];
+                }
+                break;
+            case POWER:
+            case POW:
+                if (fast) {
+                    for (var i = 0; i < rows; i++) {
+                        a[i] = FastMath.pow(a[i], b[i]);
+                    }
+                } else {
+                    for (var i = 0; i < rows; i++) {
+                        a[i] = Math.pow(a[i], b[i]);
+                    }
+                }
+                break;
+            case MODULO:
+                for (var i = 0; i < rows; i++) {
+                    a[i] %= b[i];
+                }
+                break;
+            case NEGATE:
+                for (var i = 0; i < rows; i++) {
+                    a[i] = -a[i];
+                }
+                break;
+            case PLUS:
+                break;
+            case LOGB:
+                if (fast) {
+                    for (var i = 0; i < rows; i++) {
+                        a[i] = FastMath.log(b[i]) / FastMath.log(a[i]);
+                    }
+                } else {
+                    for (var i = 0; i < rows; i++) {
+                        a[i] = Math.log(b[i]) / Math.log(a[i]);
+                    }
+                }
+                break;
+            default:
+                if (fast) {
+                    applyFast(kernel, a, rows);
+                } else {
+                    applyExact(kernel, a, rows);
+                }
+                break;
+        }
+    }
+
+    private static void applyFast(final int kernel, final double[] a, final int rows) {
+        switch (kernel) {
+            case SIN:
+                for (var i = 0; i < rows; i++) {
+                    a[i] = FastMath.sin(a[i]);
+                }
+                break;
+            case COS:
+                for (var i = 0; i < rows; i++) {
+                    a[i] = FastMath.cos(a[i]);
+                }
+                break;
+            case TAN:
+                for (var i = 0; i < rows; i++) {
+                    a[i] = FastMath.tan(a[i]);
+                }
+                break;
+            case CSC:
+                for (var i = 0; i < rows; i++) {
+                    a[i] = 1d / FastMath.sin(a[i]);
+                }
+                break;
+            case SEC:
+                for (var i = 0; i < rows; i++) {
+                    a[i] = 1d / FastMath.cos(a[i]);
+                }
+                break;
+            case COT:
+                for (var i = 0; i < rows; i++) {
+                    a[i] = FastMath.cos(a[i]) / FastMath.sin(a[i]);
+                }
+                break;
+            case SINH:
+                for (var i = 0; i < rows; i++) {
+                    a[i] = FastMath.sinh(a[i]);
+                }
+                break;
+            case COSH:
+                for (var i = 0; i < rows; i++) {
+                    a[i] = FastMath.cosh(a[i]);
+                }
+                break;
+            case TANH:
+                for (var i = 0; i < rows; i++) {
+                    a[i] = FastMath.tanh(a[i]);
+                }
+                break;
+            case CSCH:
+                for (var i = 0; i < rows; i++) {
+                    a[i] = 0d == a[i] ? 0d : 1d / FastMath.sinh(a[i]);
+                }
+                break;
+            case SECH:
+                for (var i = 0; i < rows; i++) {
+                    a[i] = 1d / FastMath.cosh(a[i]);
+                }
+                break;
+            case COTH:
+                for (var i = 0; i < rows; i++) {
+                    a[i] = 1d / FastMath.tanh(a[i]);
+                }
+                break;
+            case EXP:
+                for (var i = 0; i < rows; i++) {
+                    a[i] = FastMath.exp(a[i]);
+                }
+                break;
+            case LOG:
+                for (var i = 0; i < rows; i++) {
+                    a[i] = FastMath.log(a[i]);
+                }
+                break;
+            case LOG10:
+                for (var i = 0; i < rows; i++) {
+                    a[i] = FastMath.log10(a[i]);
+                }
+                break;
+            case LOG2:
+                for (var i = 0; i < rows; i++) {
+                    a[i] = FastMath.log2(a[i]);
+                }
+                break;
+            default:
+                applyExact(kernel, a, rows);
+                break;
+        }
+    }
+
+    private static void applyExact(final int kernel, final double[] a, final int rows) {
+        for (var i = 0; i < rows; i++) {
+            a[i] = exact(kernel, a[i]);
+        }
+    }
+
+    /**
+     * The double value of the builtin function, as computed by {@link Functions}
+     */
+    private static double exact(final int kernel, final double x) {
+        switch (kernel) {
+            case SIN:
+                return Math.sin(x);
+            case COS:
+                return Math.cos(x);
+            case TAN:
+                return Math.tan(x);
+            case CSC:
+                return 1d / Math.sin(x);
+            case SEC:
+                return 1d / Math.cos(x);
+            case COT:
+                return 1d / Math.tan(x);
+            case SINH:
+                return Math.sinh(x);
+            case COSH:
+                return Math.cosh(x);
+            case TANH:
+                return Math.tanh(x);
+            case CSCH:
+                return 0d == x ? 0d : 1d / Math.sinh(x);
+            case SECH:
+                return 1d / Math.cosh(x);
+            case COTH:
+                return Math.cosh(x) / Math.sinh(x);
+            case ASIN:
+                return Math.asin(x);
+            case ACOS:
+                return Math.acos(x);
+            case ATAN:
+                return Math.atan(x);
+            case SQRT:
+                return Math.sqrt(x);
+            case CBRT:
+                return Math.cbrt(x);
+            case ABS:
+                return Math.abs(x);
+            case CEIL:
+                return Math.ceil(x);
+            case FLOOR:
+                return Math.floor(x);
+            case EXP:
+                return Math.exp(x);
+            case EXPM1:
+                return Math.expm1(x);
+            case LOG10:
+                return Math.log10(x);
+            case LOG2:
+                return Math.log(x) / Math.log(2d);
+            case LOG:
+                return Math.log(x);
+            case LOG1P:
+                return Math.log1p(x);
+            case SIGNUM:
+                return Math.signum(x);
+            case TO_RADIAN:
+                return Math.toRadians(x);
+            case TO_DEGREE:
+                return Math.toDegrees(x);
+            default:
+                throw new IllegalStateException("Unknown kernel " + kernel);
+        }
+    }
+
+    /**
+     * Apply a custom operator row by row in <code>double</code> arithmetic, rows for which it fails or which have
+     * operands that are not finite become NaN
+     */
+    private static void applyCustom(final Operator op, final double[][] stack, final int index, final int rows,
+                                    final int[] status) {
+        final var result = stack[index];
+        final var right = 2 == op.getNumOperands() ? stack[index + 1] : null;
+        for (var i = 0; i < rows; i++) {
+            if (!Double.isFinite(result[i]) || null != right && !Double.isFinite(right[i])) {
+                result[i] = Double.NaN;
+                continue;
+            }
+            try {
+                result[i] = null == right ? op.applyAsDouble(result[i]) : op.applyAsDouble(result[i], right[i]);
+            } catch (final ArithmeticException e) {
+                result[i] = Double.NaN;
+                if (null != status) {
+                    status[i] |= EvaluationStatus.FUNCTION_ERROR;
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply a custom function row by row, rows for which it fails or which have arguments that are not finite become
+     * NaN. Functions of one or two arguments are applied in <code>double</code> arithmetic, others are applied to
+     * {@link BigDecimal} values.
+     */
+    private static void applyCustom(final Function func, final double[][] stack, final int index, final int rows,
+                                    final int[] status) {
+        final var numArguments = func.getNumArguments();
+        if (0 == numArguments) {
+            /* a function without arguments pushes a new column */
+            Arrays.fill(column(stack, index, rows), func.apply().doubleValue());
+            return;
+        }
+        final var result = stack[index];
+        final var second = 2 == numArguments ? stack[index + 1] : null;
+        final var args = 2 < numArguments ? new BigDecimal[numArguments] : null;
+        for (var i = 0; i < rows; i++) {
+            try {
+                if (null != args) {
+                    result[i] = toBigDecimal(stack, index, i, args)
+                            ? Expression.applyFunction(func, null, args, numArguments).doubleValue() : Double.NaN;
+                } else if (!Double.isFinite(result[i]) || null != second && !Double.isFinite(second[i])) {
+                    result[i] = Double.NaN;
+                } else {
+                    result[i] = null == second ? func.applyAsDouble(result[i]) : func.applyAsDouble(result[i], second[i]);
+                }
+            } catch (final ArithmeticException e) {
+                result[i] = Double.NaN;
+                if (null != status) {
+                    status[i] |= EvaluationStatus.FUNCTION_ERROR;
+                }
+            }
+        }
+    }
+
+    /**
+     * Convert the arguments of a row, unless one of them is not finite
+     */
+    private static boolean toBigDecimal(final double[][] stack, final int index, final int row, final BigDecimal[] args) {
+        for (var j = 0; j < args.length; j++) {
+            final var value = stack[index + j][row];
+            if (!Double.isFinite(value)) {
+                return false;
+            }
+            args[j] = BigDecimal.valueOf(value);
+        }
+        return true;
+    }
+
+    private static int kernelOf(final Operator op) {
+        if (op == Operators.getBuiltinOperator(op.getSymbol().charAt(0), op.getNumOperands())) {
+            switch (op.getSymbol()) {
+                case "+":
+                    return 1 == op.getNumOperands() ? PLUS : ADD;
+                case "-":
+                    return 1 == op.getNumOperands() ? NEGATE : SUBTRACT;
+                case "*":
+                    return MULTIPLY;
+                case "/":
+                    return DIVIDE;
+                case "^":
+                    return POWER;
+                case "%":
+                    return MODULO;
+                default:
+                    break;
+            }
+        }
+        return CUSTOM;
+    }
+
+    private static int kernelOf(final Function func) {
+        if (func == Functions.getBuiltinFunction(func.getName())) {
+            for (var i = 0; i < FUNCTION_NAMES.length; i++) {
+                if (FUNCTION_NAMES[i].equals(func.getName())) {
+                    return SIN + i;
+                }
+            }
+        }
+        return CUSTOM;
+    }
+}
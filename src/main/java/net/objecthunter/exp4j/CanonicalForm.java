@@ -0,0 +1,344 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.operator.Operator;
+import net.objecthunter.exp4j.operator.Operators;
+import net.objecthunter.exp4j.tokenizer.FunctionToken;
+import net.objecthunter.exp4j.tokenizer.LiteralToken;
+import net.objecthunter.exp4j.tokenizer.LocalVariableToken;
+import net.objecthunter.exp4j.tokenizer.NumberToken;
+import net.objecthunter.exp4j.tokenizer.OperatorToken;
+import net.objecthunter.exp4j.tokenizer.Token;
+import net.objecthunter.exp4j.tokenizer.VariableToken;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Canonical form of a compiled expression. Whitespace, redundant parentheses and the kind of brackets are already
+ * gone in reverse polish notation, in addition the operands of the builtin addition and multiplication are put in
+ * a fixed order. Two expressions with equal canonical forms compute the same result for all variable values.
+ * <p>
+ * Functions and operators are compared by identity, so equally named custom functions of different environments
+ * do not match. Expressions containing let-bindings or inlined functions are used as they are, since moving their
+ * stores around would change the meaning of the local slots.
+ */
+final class CanonicalForm {
+
+    private static final Operator ADDITION = Operators.getBuiltinOperator('+', 2);
+
+    private static final Operator MULTIPLICATION = Operators.getBuiltinOperator('*', 2);
+
+    private final Token[] tokens;
+
+    private final long hash;
+
+    private CanonicalForm(final Token[] tokens, final long hash) {
+        this.tokens = tokens;
+        this.hash = hash;
+    }
+
+    /**
+     * Compute the canonical form of an expression in reverse polish notation
+     *
+     * @param rpn the tokens of the expression
+     * @return the canonical form
+     */
+    static CanonicalForm of(final Token[] rpn) {
+        final var n = rpn.length;
+        /* the subtree of the token at index i spans the tokens from first[i] to i */
+        final var first = new int[n];
+        final var hashes = new long[n];
+        final var swapped = new boolean[n];
+        var depth = 0;
+        for (var i = 0; i < n; i++) {
+            final var t = rpn[i];
+            final int arity;
+            switch (t.getType()) {
+                case Token.TOKEN_NUMBER:
+                case Token.TOKEN_VARIABLE:
+                case Token.TOKEN_LITERAL:
+                    arity = 0;
+                    break;
+                case Token.TOKEN_FUNCTION:
+                    arity = ((FunctionToken) t).getFunction().getNumArguments();
+                    break;
+                case Token.TOKEN_OPERATOR:
+                    arity = ((OperatorToken) t).getOperator().getNumOperands();
+                    break;
+                default:
+                    return asIs(rpn);
+            }
+            if (arity > depth) {
+                return asIs(rpn);
+            }
+            var h = hashToken(t);
+            var child = i - 1;
+            var start = i;
+            if (isCommutative(t)) {
+                final var right = child;
+                final var left = first[right] - 1;
+                swapped[i] = hashes[right] < hashes[left];
+                h = combine(combine(h, Math.min(hashes[left], hashes[right])), Math.max(hashes[left], hashes[right]));
+                start = first[left];
+            } else {
+                /* fold the children from right to left, the order is still fixed */
+                for (var k = 0; k < arity; k++) {
+                    h = combine(h, hashes[child]);
+                    start = first[child];
+                    child = start - 1;
+                }
+            }
+            first[i] = start;
+            hashes[i] = mix(h);
+            depth += 1 - arity;
+        }
+        if (1 != depth) {
+            return asIs(rpn);
+        }
+
+        /* emit the tokens in post order, pushing the children in reverse emission order */
+        final var canonical = new Token[n];
+        final var stack = new int[n];
+        var size = 0;
+        var out = 0;
+        stack[size++] = n - 1;
+        while (0 < size) {
+            final var node = stack[--size];
+            if (0 > node) {
+                canonical[out++] = rpn[-node - 1];
+                continue;
+            }
+            stack[size++] = -node - 1;
+            final var right = node - 1;
+            if (first[node] == node) {
+                continue;
+            }
+            if (swapped[node]) {
+                final var left = first[right] - 1;
+                stack[size++] = left;
+                stack[size++] = right;
+                continue;
+            }
+            /* walking back from the last child yields the children right to left */
+            var child = right;
+            while (child >= first[node]) {
+                stack[size++] = child;
+                child = first[child] - 1;
+            }
+        }
+        return new CanonicalForm(canonical, hashes[n - 1]);
+    }
+
+    /**
+     * Move the numbers of an expression into a literal pool. The literals are numbered in the order of the
+     * canonical form, so expressions of the same shape get the same tokens no matter which numbers they contain.
+     *
+     * @param rpn  the tokens of the expression
+     * @param pool receives the values of the literals in the order of their indices
+     * @return the tokens of the canonical form, referring to the numbers by literal tokens
+     */
+    static Token[] hoistLiterals(final Token[] rpn, final List<BigDecimal> pool) {
+        final var values = new ArrayList<BigDecimal>();
+        final var hoisted = new Token[rpn.length];
+        for (var i = 0; i < rpn.length; i++) {
+            if (Token.TOKEN_NUMBER == rpn[i].getType()) {
+                hoisted[i] = new LiteralToken(values.size());
+                values.add(((NumberToken) rpn[i]).getValue());
+            } else {
+                hoisted[i] = rpn[i];
+            }
+        }
+        final var canonical = of(hoisted).tokens;
+        final var renumbered = new Token[canonical.length];
+        for (var i = 0; i < canonical.length; i++) {
+            if (Token.TOKEN_LITERAL == canonical[i].getType()) {
+                renumbered[i] = new LiteralToken(pool.size());
+                pool.add(values.get(((LiteralToken) canonical[i]).getIndex()));
+            } else {
+                renumbered[i] = canonical[i];
+            }
+        }
+        return renumbered;
+    }
+
+    private static CanonicalForm asIs(final Token[] rpn) {
+        var h = 0L;
+        for (final var t : rpn) {
+            h = mix(combine(h, hashToken(t)));
+        }
+        return new CanonicalForm(rpn, h);
+    }
+
+    private static boolean isCommutative(final Token t) {
+        if (Token.TOKEN_OPERATOR != t.getType()) {
+            return false;
+        }
+        final var op = ((OperatorToken) t).getOperator();
+        return ADDITION == op || MULTIPLICATION == op;
+    }
+
+    private static long hashToken(final Token t) {
+        switch (t.getType()) {
+            case Token.TOKEN_NUMBER:
+                return ((NumberToken) t).getValue().hashCode();
+            case Token.TOKEN_VARIABLE:
+                return ((VariableToken) t).getName().hashCode() * 31L + 1;
+            case Token.TOKEN_FUNCTION:
+                final var f = ((FunctionToken) t).getFunction();
+                return (f.getName().hashCode() * 31L + f.getNumArguments()) * 31L + 2;
+            case Token.TOKEN_OPERATOR:
+                final var op = ((OperatorToken) t).getOperator();
+                return (op.getSymbol().hashCode() * 31L + op.getNumOperands()) * 31L + 3;
+            case Token.TOKEN_LOCAL:
+            case Token.TOKEN_STORE_LOCAL:
+                return (((LocalVariableToken) t).getSlot() * 31L + t.getType()) * 31L + 4;
+            case Token.TOKEN_LITERAL:
+                /* the index depends on the order of the operands, only the shape must be hashed */
+                return 5;
+            default:
+                return t.getType();
+        }
+    }
+
+    private static long combine(final long h, final long value) {
+        return h * 0x9E3779B97F4A7C15L + value;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Get the tokens of the canonical form, which evaluate to the same result as the original tokens
+     *
+     * @return the tokens in reverse polish notation
+     */
+    Token[] getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Get the structural hash, equal for all expressions having the same canonical form
+     *
+     * @return the hash
+     */
+    long getHash() {
+        return hash;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hash);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CanonicalForm)) {
+            return false;
+        }
+        final var other = (CanonicalForm) obj;
+        if (hash != other.hash || tokens.length != other.tokens.length) {
+            return false;
+        }
+        for (var i = 0; i < tokens.length; i++) {
+            if (!sameToken(tokens[i], other.tokens[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameToken(final Token a, final Token b) {
+        if (a == b) {
+            return true;
+        }
+        if (a.getType() != b.getType()) {
+            return false;
+        }
+        switch (a.getType()) {
+            case Token.TOKEN_NUMBER:
+                return ((NumberToken) a).getValue().equals(((NumberToken) b).getValue());
+            case Token.TOKEN_VARIABLE:
+                return ((VariableToken) a).getName().equals(((VariableToken) b).getName());
+            case Token.TOKEN_FUNCTION:
+                return ((FunctionToken) a).getFunction() == ((FunctionToken) b).getFunction();
+            case Token.TOKEN_OPERATOR:
+                return ((OperatorToken) a).getOperator() == ((OperatorToken) b).getOperator();
+            case Token.TOKEN_LOCAL:
+            case Token.TOKEN_STORE_LOCAL:
+                return ((LocalVariableToken) a).getSlot() == ((LocalVariableToken) b).getSlot();
+            case Token.TOKEN_LITERAL:
+                return ((LiteralToken) a).getIndex() == ((LiteralToken) b).getIndex();
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Render the canonical form as tokens in reverse polish notation separated by blanks, e.g. <code>x 2 * 1 +</code>
+     */
+    @Override
+    public String toString() {
+        final var sb = new StringBuilder(tokens.length * 3);
+        for (final var t : tokens) {
+            if (0 < sb.length()) {
+                sb.append(' ');
+            }
+            switch (t.getType()) {
+                case Token.TOKEN_NUMBER:
+                    sb.append(((NumberToken) t).getValue().toString());
+                    break;
+                case Token.TOKEN_VARIABLE:
+                    sb.append(((VariableToken) t).getName());
+                    break;
+                case Token.TOKEN_FUNCTION:
+                    final var f = ((FunctionToken) t).getFunction();
+                    sb.append(f.getName()).append('/').append(f.getNumArguments());
+                    break;
+                case Token.TOKEN_OPERATOR:
+                    final var op = ((OperatorToken) t).getOperator();
+                    sb.append(op.getSymbol());
+                    if (1 == op.getNumOperands()) {
+                        sb.append('u');
+                    }
+                    break;
+                case Token.TOKEN_LOCAL:
+                    sb.append('$').append(((LocalVariableToken) t).getSlot());
+                    break;
+                case Token.TOKEN_STORE_LOCAL:
+                    sb.append("=$").append(((LocalVariableToken) t).getSlot());
+                    break;
+                case Token.TOKEN_LITERAL:
+                    sb.append('#').append(((LiteralToken) t).getIndex());
+                    break;
+                default:
+                    sb.append('?');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,569 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Function;
+import net.objecthunter.exp4j.operator.Operator;
+import net.objecthunter.exp4j.operator.Operators;
+import net.objecthunter.exp4j.tokenizer.FunctionToken;
+import net.objecthunter.exp4j.tokenizer.LiteralToken;
+import net.objecthunter.exp4j.tokenizer.LocalVariableToken;
+import net.objecthunter.exp4j.tokenizer.NumberToken;
+import net.objecthunter.exp4j.tokenizer.OperatorToken;
+import net.objecthunter.exp4j.tokenizer.Token;
+import net.objecthunter.exp4j.tokenizer.VariableToken;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The tokens of an expression compiled to a tree of nodes which evaluate their children and apply their operator or
+ * function directly. Compared to interpreting the tokens there is no dispatch on the token type and no stack.
+ * <p>
+ * The nodes of the builtin <code>+ - *</code> and <code>^</code> operators specialize themselves on the values they
+ * observe. Addition, subtraction and multiplication switch to <code>long</code> arithmetic while their operands are
+ * small integers, and a power switches to a multiplication while its exponent is 2. A node falls back to the generic
+ * operator for good once a guard fails. The state of a node is not synchronized, since the result is the same in
+ * every state, so a stale state only costs a guard check.
+ */
+final class ClosureProgram {
+
+    /* the deepest tree which is compiled, the nodes are evaluated recursively */
+    private static final int MAX_DEPTH = 1000;
+
+    private final Node root;
+
+    /* the number of slots for the local variables */
+    private final int locals;
+
+    private ClosureProgram(final Node root, final int locals) {
+        this.root = root;
+        this.locals = locals;
+    }
+
+    /**
+     * Compile verified tokens to a tree
+     *
+     * @param tokens the tokens, verified to be balanced
+     * @return the compiled program, or null if the tree would be too deep to evaluate recursively or a value is stored
+     * in a local variable while other values are pending, which the tree can not express without changing the order
+     * of evaluation
+     */
+    static ClosureProgram compile(final Token[] tokens) {
+        final var nodes = new Node[tokens.length];
+        final var depths = new int[tokens.length];
+        var size = 0;
+        final var stores = new ArrayList<Node>(0);
+        final var slots = new ArrayList<Integer>(0);
+        var locals = 0;
+        for (final var t : tokens) {
+            switch (t.getType()) {
+                case Token.TOKEN_NUMBER:
+                    depths[size] = 0;
+                    nodes[size++] = new Constant(((NumberToken) t).getValue());
+                    break;
+                case Token.TOKEN_LITERAL:
+                    depths[size] = 0;
+                    nodes[size++] = new Literal(((LiteralToken) t).getIndex());
+                    break;
+                case Token.TOKEN_VARIABLE:
+                    depths[size] = 0;
+                    nodes[size++] = new Variable(((VariableToken) t).getName());
+                    break;
+                case Token.TOKEN_LOCAL:
+                    depths[size] = 0;
+                    nodes[size++] = new Local(((LocalVariableToken) t).getSlot());
+                    break;
+                case Token.TOKEN_STORE_LOCAL:
+                    if (1 != size) {
+                        return null;
+                    }
+                    final var slot = ((LocalVariableToken) t).getSlot();
+                    stores.add(nodes[--size]);
+                    slots.add(slot);
+                    locals = Math.max(locals, slot + 1);
+                    break;
+                case Token.TOKEN_OPERATOR:
+                    final var op = ((OperatorToken) t).getOperator();
+                    if (2 == op.getNumOperands()) {
+                        size--;
+                        nodes[size - 1] = binary(op, nodes[size - 1], nodes[size]);
+                        depths[size - 1] = Math.max(depths[size - 1], depths[size]) + 1;
+                    } else {
+                        nodes[size - 1] = new Unary(op, nodes[size - 1]);
+                        depths[size - 1]++;
+                    }
+                    if (MAX_DEPTH < depths[size - 1]) {
+                        return null;
+                    }
+                    break;
+                case Token.TOKEN_FUNCTION:
+                    final var func = ((FunctionToken) t).getFunction();
+                    final var args = Arrays.copyOfRange(nodes, size - func.getNumArguments(), size);
+                    var depth = 0;
+                    for (var i = size - args.length; i < size; i++) {
+                        depth = Math.max(depth, depths[i]);
+                    }
+                    size -= args.length;
+                    if (MAX_DEPTH < depth + 1) {
+                        return null;
+                    }
+                    depths[size] = depth + 1;
+                    nodes[size++] = call(func, args);
+                    break;
+                default:
+                    return null;
+            }
+        }
+        var root = nodes[0];
+        if (!stores.isEmpty()) {
+            root = new Sequence(stores.toArray(new Node[0]), slots.stream().mapToInt(Integer::intValue).toArray(), root);
+        }
+        return new ClosureProgram(root, locals);
+    }
+
+    private static Node binary(final Operator op, final Node left, final Node right) {
+        if (op != Operators.getBuiltinOperator(op.getSymbol().charAt(0), 2)) {
+            return new Binary(op, left, right);
+        }
+        switch (op.getSymbol()) {
+            case "+":
+            case "-":
+            case "*":
+                return new Arithmetic(op, left, right);
+            case "^":
+                return new Power(op, left, right);
+            default:
+                return new Binary(op, left, right);
+        }
+    }
+
+    private static Node call(final Function func, final Node[] args) {
+        switch (args.length) {
+            case 1:
+                return new Call1(func, args[0]);
+            case 2:
+                return new Call2(func, args[0], args[1]);
+            default:
+                return new CallN(func, args);
+        }
+    }
+
+    /**
+     * Evaluate the program
+     *
+     * @param variables the values of the variables
+     * @param literals  the values of the literal tokens
+     * @param mc        the precision of the operators and functions, null to use their defaults
+     * @return the value of the expression
+     */
+    BigDecimal evaluate(final Map<String, BigDecimal> variables, final BigDecimal[] literals, final MathContext mc) {
+        return root.evaluate(new Frame(variables, literals, 0 == locals ? null : new BigDecimal[locals], mc));
+    }
+
+    /**
+     * Describe the tree in infix notation, with the state of the specializing nodes in brackets
+     *
+     * @return the description of the tree
+     */
+    @Override
+    public String toString() {
+        return root.toString();
+    }
+
+    private static final class Frame {
+
+        final Map<String, BigDecimal> variables;
+
+        final BigDecimal[] literals;
+
+        final BigDecimal[] locals;
+
+        final MathContext mc;
+
+        Frame(final Map<String, BigDecimal> variables, final BigDecimal[] literals, final BigDecimal[] locals,
+              final MathContext mc) {
+            this.variables = variables;
+            this.literals = literals;
+            this.locals = locals;
+            this.mc = mc;
+        }
+    }
+
+    private abstract static class Node {
+
+        abstract BigDecimal evaluate(Frame frame);
+    }
+
+    private static final class Constant extends Node {
+
+        private final BigDecimal value;
+
+        Constant(final BigDecimal value) {
+            this.value = value;
+        }
+
+        @Override
+        BigDecimal evaluate(final Frame frame) {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return value.toPlainString();
+        }
+    }
+
+    private static final class Literal extends Node {
+
+        private final int index;
+
+        Literal(final int index) {
+            this.index = index;
+        }
+
+        @Override
+        BigDecimal evaluate(final Frame frame) {
+            return frame.literals[index];
+        }
+
+        @Override
+        public String toString() {
+            return "#" + index;
+        }
+    }
+
+    private static final class Variable extends Node {
+
+        private final String name;
+
+        Variable(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        BigDecimal evaluate(final Frame frame) {
+            final var value = frame.variables.get(name);
+            if (null == value) {
+                throw new IllegalArgumentException("No value has been set for the setVariable '" + name + "'.");
+            }
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static final class Local extends Node {
+
+        private final int slot;
+
+        Local(final int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        BigDecimal evaluate(final Frame frame) {
+            return frame.locals[slot];
+        }
+
+        @Override
+        public String toString() {
+            return "$" + slot;
+        }
+    }
+
+    private static final class Unary extends Node {
+
+        private final Operator op;
+
+        private final Node operand;
+
+        Unary(final Operator op, final Node operand) {
+            this.op = op;
+            this.operand = operand;
+        }
+
+        @Override
+        BigDecimal evaluate(final Frame frame) {
+            final var arg = operand.evaluate(frame);
+            return null == frame.mc ? op.apply1(arg) : op.apply1(frame.mc, arg);
+        }
+
+        @Override
+        public String toString() {
+            return op.getSymbol() + operand;
+        }
+    }
+
+    private static final class Binary extends Node {
+
+        private final Operator op;
+
+        private final Node left;
+
+        private final Node right;
+
+        Binary(final Operator op, final Node left, final Node right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        BigDecimal evaluate(final Frame frame) {
+            final var l = left.evaluate(frame);
+            final var r = right.evaluate(frame);
+            return null == frame.mc ? op.apply2(l, r) : op.apply2(frame.mc, l, r);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " " + op.getSymbol() + " " + right + ")";
+        }
+    }
+
+    private static final class Call1 extends Node {
+
+        private final Function func;
+
+        private final Node arg;
+
+        Call1(final Function func, final Node arg) {
+            this.func = func;
+            this.arg = arg;
+        }
+
+        @Override
+        BigDecimal evaluate(final Frame frame) {
+            final var a = arg.evaluate(frame);
+            return null == frame.mc ? func.apply1(a) : func.apply1(frame.mc, a);
+        }
+
+        @Override
+        public String toString() {
+            return func.getName() + "(" + arg + ")";
+        }
+    }
+
+    private static final class Call2 extends Node {
+
+        private final Function func;
+
+        private final Node arg1;
+
+        private final Node arg2;
+
+        Call2(final Function func, final Node arg1, final Node arg2) {
+            this.func = func;
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+        }
+
+        @Override
+        BigDecimal evaluate(final Frame frame) {
+            final var a = arg1.evaluate(frame);
+            final var b = arg2.evaluate(frame);
+            return null == frame.mc ? func.apply2(a, b) : func.apply2(frame.mc, a, b);
+        }
+
+        @Override
+        public String toString() {
+            return func.getName() + "(" + arg1 + ", " + arg2 + ")";
+        }
+    }
+
+    private static final class CallN extends Node {
+
+        private final Function func;
+
+        private final Node[] args;
+
+        CallN(final Function func, final Node[] args) {
+            this.func = func;
+            this.args = args;
+        }
+
+        @Override
+        BigDecimal evaluate(final Frame frame) {
+            final var values = new BigDecimal[args.length];
+            for (var i = 0; i < args.length; i++) {
+                values[i] = args[i].evaluate(frame);
+            }
+            return null == frame.mc ? func.apply(values) : func.apply(frame.mc, values);
+        }
+
+        @Override
+        public String toString() {
+            return func.getName() + Arrays.toString(args).replace('[', '(').replace(']', ')');
+        }
+    }
+
+    /**
+     * Stores the values of the let bindings in their slots before evaluating the result
+     */
+    private static final class Sequence extends Node {
+
+        private final Node[] stores;
+
+        private final int[] slots;
+
+        private final Node result;
+
+        Sequence(final Node[] stores, final int[] slots, final Node result) {
+            this.stores = stores;
+            this.slots = slots;
+            this.result = result;
+        }
+
+        @Override
+        BigDecimal evaluate(final Frame frame) {
+            for (var i = 0; i < stores.length; i++) {
+                frame.locals[slots[i]] = stores[i].evaluate(frame);
+            }
+            return result.evaluate(frame);
+        }
+
+        @Override
+        public String toString() {
+            final var sb = new StringBuilder();
+            for (var i = 0; i < stores.length; i++) {
+                sb.append('$').append(slots[i]).append(" = ").append(stores[i]).append("; ");
+            }
+            return sb.append(result).toString();
+        }
+    }
+
+    /* the states of a specializing node */
+    private static final int UNINITIALIZED = 0;
+    private static final int SPECIALIZED = 1;
+    private static final int GENERIC = 2;
+
+    private static final String[] STATES = {"uninitialized", "specialized", "generic"};
+
+    /**
+     * The builtin <code>+ - *</code> operators, specialized to <code>long</code> arithmetic while both operands are
+     * integers of less than 19 digits and the result does not overflow
+     */
+    private static final class Arithmetic extends Node {
+
+        private final Operator op;
+
+        private final char symbol;
+
+        private final Node left;
+
+        private final Node right;
+
+        private int state = UNINITIALIZED;
+
+        Arithmetic(final Operator op, final Node left, final Node right) {
+            this.op = op;
+            this.symbol = op.getSymbol().charAt(0);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        BigDecimal evaluate(final Frame frame) {
+            final var l = left.evaluate(frame);
+            final var r = right.evaluate(frame);
+            if (GENERIC != state) {
+                if (isSmallInteger(l) && isSmallInteger(r)) {
+                    final var a = l.longValue();
+                    final var b = r.longValue();
+                    final long result;
+                    final boolean overflow;
+                    if ('+' == symbol) {
+                        result = a + b;
+                        overflow = 0 > ((a ^ result) & (b ^ result));
+                    } else if ('-' == symbol) {
+                        result = a - b;
+                        overflow = 0 > ((a ^ b) & (a ^ result));
+                    } else {
+                        result = a * b;
+                        overflow = Math.multiplyHigh(a, b) != (result >> 63);
+                    }
+                    if (!overflow) {
+                        state = SPECIALIZED;
+                        final var value = BigDecimal.valueOf(result);
+                        return null == frame.mc ? value : value.round(frame.mc);
+                    }
+                }
+                state = GENERIC;
+            }
+            return null == frame.mc ? op.apply2(l, r) : op.apply2(frame.mc, l, r);
+        }
+
+        private static boolean isSmallInteger(final BigDecimal value) {
+            return 0 == value.scale() && 19 > value.precision();
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " " + symbol + "[" + STATES[state] + "] " + right + ")";
+        }
+    }
+
+    /**
+     * The builtin <code>^</code> operator, specialized to a multiplication while the exponent is 2
+     */
+    private static final class Power extends Node {
+
+        private static final BigDecimal TWO = BigDecimal.valueOf(2);
+
+        /* the largest base which the generic operator squares exactly before rounding */
+        private static final int MAX_SQUARED_DIGITS = 200;
+
+        private final Operator op;
+
+        private final Node base;
+
+        private final Node exponent;
+
+        private int state = UNINITIALIZED;
+
+        Power(final Operator op, final Node base, final Node exponent) {
+            this.op = op;
+            this.base = base;
+            this.exponent = exponent;
+        }
+
+        @Override
+        BigDecimal evaluate(final Frame frame) {
+            final var b = base.evaluate(frame);
+            final var e = exponent.evaluate(frame);
+            if (GENERIC != state) {
+                if (0 == TWO.compareTo(e) && MAX_SQUARED_DIGITS >= b.precision()) {
+                    state = SPECIALIZED;
+                    return b.multiply(b).round(null == frame.mc ? Operators.MC : frame.mc);
+                }
+                state = GENERIC;
+            }
+            return null == frame.mc ? op.apply2(b, e) : op.apply2(frame.mc, b, e);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + base + " ^[" + STATES[state] + "] " + exponent + ")";
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.tokenizer.Diagnostic;
+
+import java.util.List;
+
+/**
+ * Contains the problems found by {@link ExpressionBuilder#diagnose()} and the compiled {@link Expression} if there
+ * were none
+ */
+public class DiagnosticResult {
+
+    private final List<Diagnostic> diagnostics;
+    private final Expression expression;
+
+    /**
+     * Create a new instance
+     *
+     * @param diagnostics The list of problems found in the expression
+     * @param expression  The compiled expression or null if problems have been found
+     */
+    public DiagnosticResult(final List<Diagnostic> diagnostics, final Expression expression) {
+        this.diagnostics = diagnostics;
+        this.expression = expression;
+    }
+
+    /**
+     * Check if the expression has been compiled without problems
+     *
+     * @return true if no problems have been found, false otherwise
+     */
+    public boolean isValid() {
+        return diagnostics.isEmpty();
+    }
+
+    /**
+     * Get the problems found in the expression in the order they have been found
+     *
+     * @return The list of problems, empty if the expression is valid
+     */
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * Get the compiled expression
+     *
+     * @return The {@link Expression} or null if problems have been found
+     */
+    public Expression getExpression() {
+        return expression;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+/**
+ * The bits of the status reported for every row by {@link Expression#evaluateBatch(java.util.Map, int[])}. A row
+ * with a status other than {@link #OK} evaluates to NaN, the bits tell which problems occurred while evaluating it.
+ */
+public final class EvaluationStatus {
+
+    /** The row has been evaluated without problems */
+    public static final int OK = 0;
+
+    /** The divisor of <code>/</code> or <code>%</code> is zero, or zero is raised to a negative power */
+    public static final int DIVISION_BY_ZERO = 1;
+
+    /** An operator or function is not defined for its arguments, e.g. <code>sqrt(-1)</code>, or a value is NaN */
+    public static final int INVALID_ARGUMENT = 2;
+
+    /** A value is infinite, e.g. <code>exp(1000)</code> or <code>log(0)</code> */
+    public static final int OVERFLOW = 4;
+
+    /** A custom operator or function threw an {@link ArithmeticException} */
+    public static final int FUNCTION_ERROR = 8;
+
+    /** A variable has neither a column nor a value */
+    public static final int MISSING_VARIABLE = 16;
+
+    private EvaluationStatus() {
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Function;
+import net.objecthunter.exp4j.function.Functions;
+import net.objecthunter.exp4j.operator.Operator;
+import net.objecthunter.exp4j.operator.Operators;
+import net.objecthunter.exp4j.tokenizer.FunctionToken;
+import net.objecthunter.exp4j.tokenizer.NumberToken;
+import net.objecthunter.exp4j.tokenizer.OperatorToken;
+import net.objecthunter.exp4j.tokenizer.Token;
+import net.objecthunter.exp4j.tokenizer.VariableToken;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable expression tree which can be compiled to an {@link Expression} without formatting and parsing an
+ * expression string, e.g. <code>Expr.add(Expr.var("x"), Expr.call(sin, Expr.num(2))).build()</code>
+ */
+public final class Expr {
+
+    private static final Expr[] NO_OPERANDS = new Expr[0];
+
+    private final Token token;
+
+    private final Expr[] operands;
+
+    private Expr(final Token token, final Expr[] operands) {
+        this.token = token;
+        this.operands = operands;
+    }
+
+    /**
+     * Create a number literal
+     *
+     * @param value the value of the number
+     * @return the expression tree node
+     */
+    public static Expr num(final BigDecimal value) {
+        if (null == value) {
+            throw new IllegalArgumentException("The value of a number can not be null");
+        }
+        return new Expr(new NumberToken(value), NO_OPERANDS);
+    }
+
+    /**
+     * Create a number literal
+     *
+     * @param value the value of the number
+     * @return the expression tree node
+     */
+    public static Expr num(final double value) {
+        return new Expr(new NumberToken(value), NO_OPERANDS);
+    }
+
+    /**
+     * Create a reference to a variable
+     *
+     * @param name the name of the variable
+     * @return the expression tree node
+     */
+    public static Expr var(final String name) {
+        if (!Function.isValidFunctionName(name)) {
+            throw new IllegalArgumentException("The variable name '" + name + "' is invalid");
+        }
+        return new Expr(new VariableToken(name), NO_OPERANDS);
+    }
+
+    /**
+     * Create a call to a function
+     *
+     * @param function  the function to call
+     * @param arguments the arguments of the call
+     * @return the expression tree node
+     */
+    public static Expr call(final Function function, final Expr... arguments) {
+        if (function.getNumArguments() != arguments.length) {
+            throw new IllegalArgumentException("Invalid number of arguments for '" + function.getName() + "', expected "
+                    + function.getNumArguments() + " but got " + arguments.length);
+        }
+        return new Expr(new FunctionToken(function), arguments.clone());
+    }
+
+    /**
+     * Create an application of an operator
+     *
+     * @param operator the operator to apply
+     * @param operands the operands of the operator
+     * @return the expression tree node
+     */
+    public static Expr op(final Operator operator, final Expr... operands) {
+        if (operator.getNumOperands() != operands.length) {
+            throw new IllegalArgumentException("Invalid number of operands for '" + operator.getSymbol() + "', expected "
+                    + operator.getNumOperands() + " but got " + operands.length);
+        }
+        return new Expr(new OperatorToken(operator), operands.clone());
+    }
+
+    /**
+     * Create an addition
+     *
+     * @param left the left operand
+     * @param right the right operand
+     * @return the expression tree node
+     */
+    public static Expr add(final Expr left, final Expr right) {
+        return op(Operators.getBuiltinOperator('+', 2), left, right);
+    }
+
+    /**
+     * Create a subtraction
+     *
+     * @param left the left operand
+     * @param right the operand to subtract
+     * @return the expression tree node
+     */
+    public static Expr subtract(final Expr left, final Expr right) {
+        return op(Operators.getBuiltinOperator('-', 2), left, right);
+    }
+
+    /**
+     * Create a multiplication
+     *
+     * @param left the left operand
+     * @param right the right operand
+     * @return the expression tree node
+     */
+    public static Expr multiply(final Expr left, final Expr right) {
+        return op(Operators.getBuiltinOperator('*', 2), left, right);
+    }
+
+    /**
+     * Create a division
+     *
+     * @param left the dividend
+     * @param right the divisor
+     * @return the expression tree node
+     */
+    public static Expr divide(final Expr left, final Expr right) {
+        return op(Operators.getBuiltinOperator('/', 2), left, right);
+    }
+
+    /**
+     * Create a power
+     *
+     * @param base the base
+     * @param exponent the exponent
+     * @return the expression tree node
+     */
+    public static Expr pow(final Expr base, final Expr exponent) {
+        return op(Operators.getBuiltinOperator('^', 2), base, exponent);
+    }
+
+    /**
+     * Create a modulo operation
+     *
+     * @param left the dividend
+     * @param right the divisor
+     * @return the expression tree node
+     */
+    public static Expr mod(final Expr left, final Expr right) {
+        return op(Operators.getBuiltinOperator('%', 2), left, right);
+    }
+
+    /**
+     * Create a negation
+     *
+     * @param operand the operand to negate
+     * @return the expression tree node
+     */
+    public static Expr negate(final Expr operand) {
+        return op(Operators.getBuiltinOperator('-', 1), operand);
+    }
+
+    /**
+     * Compile the tree to an {@link Expression}
+     *
+     * @return an {@link Expression} instance which can be used to evaluate the result of the tree
+     */
+    public Expression build() {
+        final var tokens = new ArrayList<Token>();
+        final var userFunctionNames = new HashSet<String>(4);
+        final var variableNames = new HashSet<String>(4);
+        Map<String, BigDecimal> constants = null;
+
+        /* emit the tokens in post order, without recursion so deep trees do not overflow the stack */
+        final var nodes = new ArrayDeque<Expr>();
+        final var next = new ArrayDeque<Integer>();
+        nodes.push(this);
+        next.push(0);
+        while (!nodes.isEmpty()) {
+            final var node = nodes.peek();
+            final int idx = next.pop();
+            if (idx < node.operands.length) {
+                next.push(idx + 1);
+                nodes.push(node.operands[idx]);
+                next.push(0);
+                continue;
+            }
+            nodes.pop();
+            tokens.add(node.token);
+            if (Token.TOKEN_FUNCTION == node.token.getType()) {
+                final var f = ((FunctionToken) node.token).getFunction();
+                if (f != Functions.getBuiltinFunction(f.getName())) {
+                    userFunctionNames.add(f.getName());
+                }
+                if (f instanceof InlineFunction) {
+                    constants = ((InlineFunction) f).getConstants();
+                }
+            } else if (Token.TOKEN_VARIABLE == node.token.getType()) {
+                variableNames.add(((VariableToken) node.token).getName());
+            }
+        }
+
+        for (final var variableName : variableNames) {
+            if (null != Functions.getBuiltinFunction(variableName) || userFunctionNames.contains(variableName)) {
+                throw new IllegalArgumentException("A variable can not have the same name as a function [" + variableName + "]");
+            }
+        }
+        if (null == constants) {
+            return new Expression(tokens.toArray(new Token[0]), userFunctionNames).verify();
+        }
+        /* functions defined by expressions are inlined into the caller, as on the build paths of ExpressionBuilder */
+        final var program = InlineFunction.expand(tokens.toArray(new Token[0]));
+        for (final var t : program) {
+            if (Token.TOKEN_FUNCTION == t.getType()) {
+                final var f = ((FunctionToken) t).getFunction();
+                if (f != Functions.getBuiltinFunction(f.getName())) {
+                    userFunctionNames.add(f.getName());
+                }
+            }
+        }
+        return new Expression(program, userFunctionNames, constants).verify();
+    }
+}
@@ -15,12 +15,17 @@
  */
 package net.objecthunter.exp4j;
 
+import net.objecthunter.exp4j.function.Function;
 import net.objecthunter.exp4j.function.Functions;
 import net.objecthunter.exp4j.tokenizer.*;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
 import java.util.*;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 
 public class Expression {
@@ -31,7 +36,37 @@ public class Expression {
 
     private final Set<String> userFunctionNames;
 
-    private static Map<String, BigDecimal> createDefaultVariables() {
+    /* the values of the literal tokens, null if the numbers have not been hoisted */
+    private final BigDecimal[] literals;
+
+    /* the precision used by operators and functions, null to use their defaults */
+    private MathContext mathContext;
+
+    /* the fixed-point evaluation of the tokens, null to evaluate using BigDecimal */
+    private FixedPoint fixedPoint;
+
+    /* the evaluation on long values if the expression is integer-only, null otherwise */
+    private IntegerProgram integerProgram;
+
+    /* the exact evaluation on fractions, null to evaluate using BigDecimal */
+    private RationalProgram rationalProgram;
+
+    /* the evaluation in double arithmetic with error bounds, null to always evaluate using BigDecimal */
+    private AdaptiveProgram adaptiveProgram;
+
+    /* true to use the approximations of FastMath in the batch evaluation */
+    private boolean fastMath;
+
+    /* the batch and non-throwing evaluation of the tokens, created when first used */
+    private BatchProgram batchProgram;
+
+    /* the maximum depth of the stack if the tokens have been verified to be balanced, 0 if they have not */
+    private int stackDepth;
+
+    /* the counter which promotes a hot expression to a compiled program, null to always interpret */
+    private TieredExecution tieredExecution;
+
+    static Map<String, BigDecimal> createDefaultVariables() {
         final var vars = new HashMap<String, BigDecimal>(4);
         vars.put("pi", BigDecimal.valueOf(Math.PI));
         vars.put("π", BigDecimal.valueOf(Math.PI));
@@ -50,18 +85,102 @@ public class Expression {
         this.variables = new HashMap<>();
         this.variables.putAll(existing.variables);
         this.userFunctionNames = new HashSet<>(existing.userFunctionNames);
+        this.literals = existing.literals;
+        this.mathContext = existing.mathContext;
+        this.fixedPoint = existing.fixedPoint;
+        this.integerProgram = existing.integerProgram;
+        this.rationalProgram = existing.rationalProgram;
+        this.adaptiveProgram = existing.adaptiveProgram;
+        this.fastMath = existing.fastMath;
+        this.batchProgram = existing.batchProgram;
+        this.stackDepth = existing.stackDepth;
+        this.tieredExecution = existing.tieredExecution;
+    }
+
+    /**
+     * Creates a new expression for the given tokens which takes over the variables and literals of an existing one.
+     *
+     * @param tokens   the tokens of the new expression
+     * @param existing the expression whose variables should be copied
+     */
+    Expression(final Token[] tokens, final Expression existing) {
+        this.tokens = tokens;
+        this.variables = new HashMap<>(existing.variables);
+        this.userFunctionNames = existing.userFunctionNames;
+        this.literals = existing.literals;
+        this.mathContext = existing.mathContext;
+        this.fixedPoint = null == existing.fixedPoint ? null : existing.fixedPoint.forTokens(tokens);
+        this.integerProgram = null == existing.integerProgram ? null : existing.integerProgram.forTokens(tokens);
+        this.rationalProgram = null == existing.rationalProgram ? null : existing.rationalProgram.forTokens(tokens);
+        this.adaptiveProgram = null == existing.adaptiveProgram ? null : existing.adaptiveProgram.forTokens(tokens);
+        this.fastMath = existing.fastMath;
+        this.stackDepth = 0 == existing.stackDepth ? 0 : maxStackDepth(tokens);
+        this.tieredExecution = null == existing.tieredExecution ? null : existing.tieredExecution.forTokens(tokens);
+    }
+
+    /**
+     * Creates a new expression which shares the tokens and the programs derived from them with a template and takes
+     * over the variables and the evaluation settings of an existing one, see {@link #getProgramKey()}.
+     *
+     * @param template the expression whose programs should be shared
+     * @param existing the expression whose variables should be copied
+     */
+    Expression(final Expression template, final Expression existing) {
+        this.tokens = template.tokens;
+        this.variables = new HashMap<>(existing.variables);
+        this.userFunctionNames = existing.userFunctionNames;
+        this.literals = existing.literals;
+        this.mathContext = existing.mathContext;
+        this.fixedPoint = template.fixedPoint;
+        this.integerProgram = template.integerProgram;
+        this.rationalProgram = template.rationalProgram;
+        this.adaptiveProgram = template.adaptiveProgram;
+        this.fastMath = existing.fastMath;
+        this.batchProgram = template.batchProgram;
+        this.stackDepth = 0 == existing.stackDepth ? 0 : template.stackDepth;
+        this.tieredExecution = template.tieredExecution;
+    }
+
+    private Expression(final Expression existing, final BigDecimal[] literals) {
+        this.tokens = existing.tokens;
+        this.variables = new HashMap<>(existing.variables);
+        this.userFunctionNames = existing.userFunctionNames;
+        this.literals = literals;
+        this.mathContext = existing.mathContext;
+        this.fixedPoint = existing.fixedPoint;
+        this.integerProgram = existing.integerProgram;
+        this.rationalProgram = existing.rationalProgram;
+        this.adaptiveProgram = existing.adaptiveProgram;
+        this.fastMath = existing.fastMath;
+        this.batchProgram = existing.batchProgram;
+        this.stackDepth = existing.stackDepth;
+        this.tieredExecution = existing.tieredExecution;
     }
 
     Expression(final Token[] tokens) {
         this.tokens = tokens;
         this.variables = createDefaultVariables();
         this.userFunctionNames = Collections.emptySet();
+        this.literals = null;
     }
 
     Expression(final Token[] tokens, final Set<String> userFunctionNames) {
         this.tokens = tokens;
         this.variables = createDefaultVariables();
         this.userFunctionNames = userFunctionNames;
+        this.literals = null;
+    }
+
+    Expression(final Token[] tokens, final Set<String> userFunctionNames, final Map<String, BigDecimal> constants) {
+        this(tokens, null, userFunctionNames, constants);
+    }
+
+    Expression(final Token[] tokens, final BigDecimal[] literals, final Set<String> userFunctionNames,
+               final Map<String, BigDecimal> constants) {
+        this.tokens = tokens;
+        this.variables = null == constants ? createDefaultVariables() : new HashMap<>(constants);
+        this.userFunctionNames = userFunctionNames;
+        this.literals = literals;
     }
 
     public Expression setVariable(final String name, final BigDecimal value) {
@@ -82,6 +201,290 @@ public class Expression {
         return this;
     }
 
+    /**
+     * Set the precision and rounding mode used by all operators and functions when evaluating this expression. By
+     * default every operator and function uses its own precision, e.g. division rounds to
+     * {@link net.objecthunter.exp4j.operator.Operators#MC}.
+     *
+     * @param mathContext the precision and rounding mode or null to use the defaults
+     * @return the Expression instance
+     */
+    public Expression setMathContext(final MathContext mathContext) {
+        this.mathContext = mathContext;
+        return this;
+    }
+
+    /**
+     * Get the precision and rounding mode used when evaluating this expression
+     *
+     * @return the {@link MathContext} or null if operators and functions use their defaults
+     */
+    public MathContext getMathContext() {
+        return mathContext;
+    }
+
+    /**
+     * Evaluate this expression in fixed-point arithmetic rounding half up, see
+     * {@link #setFixedPoint(int, RoundingMode)}
+     *
+     * @param scale the number of decimal places
+     * @return the Expression instance
+     */
+    public Expression setFixedPoint(final int scale) {
+        return this.setFixedPoint(scale, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Evaluate this expression in fixed-point arithmetic. Numbers, variables and the result of every operation are
+     * rounded to the given number of decimal places and kept as scaled <code>long</code> values, which makes
+     * addition, subtraction and multiplication allocation free. An operation which would overflow falls back to
+     * {@link BigDecimal}, as do all other operators and functions.
+     *
+     * @param scale    the number of decimal places, between 0 and 18
+     * @param rounding the rounding mode used to round values to the scale
+     * @return the Expression instance
+     */
+    public Expression setFixedPoint(final int scale, final RoundingMode rounding) {
+        this.fixedPoint = new FixedPoint(tokens, scale, rounding);
+        return this;
+    }
+
+    /**
+     * Evaluate this expression using {@link BigDecimal} again
+     *
+     * @return the Expression instance
+     */
+    public Expression clearFixedPoint() {
+        this.fixedPoint = null;
+        return this;
+    }
+
+    /**
+     * Get the number of decimal places used in fixed-point evaluation
+     *
+     * @return the scale or -1 if this expression is evaluated using {@link BigDecimal}
+     */
+    public int getFixedPointScale() {
+        return null == fixedPoint ? -1 : fixedPoint.getScale();
+    }
+
+    /**
+     * Evaluate this expression exactly on fractions. The operators <code>+ - * /</code> and powers with integer
+     * exponents do not round, e.g. <code>1/3 + 1/3 + 1/3</code> is exactly 1. Other operators and functions are
+     * applied to the {@link BigDecimal} value of their arguments. The result is only rounded once, using the
+     * {@link MathContext} of this expression or {@link net.objecthunter.exp4j.operator.Operators#MC}.
+     *
+     * @param enabled true to evaluate on fractions, false to evaluate using {@link BigDecimal}
+     * @return the Expression instance
+     */
+    public Expression setRational(final boolean enabled) {
+        this.rationalProgram = enabled ? new RationalProgram(tokens) : null;
+        return this;
+    }
+
+    /**
+     * Check whether this expression is evaluated exactly on fractions
+     *
+     * @return true if rational evaluation is enabled
+     */
+    public boolean isRational() {
+        return null != rationalProgram;
+    }
+
+    /**
+     * Evaluate this expression in <code>double</code> arithmetic first and only fall back to the exact evaluation if
+     * the result might not be correct to the given number of significant digits. The error of every value is bounded
+     * while evaluating, and the double result is returned if every number within the bound rounds to the same
+     * decimal. Expressions using operators or functions other than <code>+ - * /</code>, <code>abs</code> and
+     * <code>sqrt</code> are always evaluated exactly. In both cases the result is rounded to the given precision
+     * and trailing zeros are removed, the integer-only evaluation is not used.
+     *
+     * @param digits the number of significant digits between 1 and 15, or 0 to disable the adaptive evaluation
+     * @return the Expression instance
+     */
+    public Expression setAdaptivePrecision(final int digits) {
+        this.adaptiveProgram = 0 == digits ? null : new AdaptiveProgram(tokens, digits);
+        return this;
+    }
+
+    /**
+     * Get the number of significant digits of the adaptive evaluation
+     *
+     * @return the number of digits or 0 if the adaptive evaluation is disabled
+     */
+    public int getAdaptivePrecision() {
+        return null == adaptiveProgram ? 0 : adaptiveProgram.getMathContext().getPrecision();
+    }
+
+    /**
+     * Use the approximations of {@link net.objecthunter.exp4j.function.FastMath} for the transcendental builtin
+     * functions in {@link #evaluateBatch(Map)}. They are faster and vectorize better than the functions of
+     * {@link Math}, with an error of a few ulp at most. {@link #evaluate()} is not affected.
+     *
+     * @param enabled true to use the fast approximations
+     * @return the Expression instance
+     */
+    public Expression setFastMath(final boolean enabled) {
+        this.fastMath = enabled;
+        return this;
+    }
+
+    /**
+     * Check whether the batch evaluation uses the fast approximations of the builtin functions
+     *
+     * @return true if fast math is enabled
+     */
+    public boolean isFastMath() {
+        return fastMath;
+    }
+
+    /**
+     * Interpret this expression until it has been evaluated the given number of times, then compile it in the
+     * background on the common {@link ForkJoinPool} and use the compiled form once it is ready. Copies of this
+     * expression share the count and the compiled form.
+     *
+     * @param threshold the number of evaluations after which the expression is compiled, or 0 to always interpret
+     * @return the Expression instance
+     */
+    public Expression setTieredCompilation(final int threshold) {
+        return this.setTieredCompilation(threshold, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Interpret this expression until it has been evaluated the given number of times, then compile it in the
+     * background and use the compiled form once it is ready. The compiled form evaluates a tree of nodes which apply
+     * their operator or function directly, it is only used for expressions verified by the builder. Copies of this
+     * expression share the count and the compiled form.
+     *
+     * @param threshold the number of evaluations after which the expression is compiled, or 0 to always interpret
+     * @param executor  the executor which compiles the expression
+     * @return the Expression instance
+     */
+    public Expression setTieredCompilation(final int threshold, final Executor executor) {
+        if (0 > threshold) {
+            throw new IllegalArgumentException("The compilation threshold can not be negative but was " + threshold);
+        }
+        if (null == executor) {
+            throw new IllegalArgumentException("The executor for the compilation can not be null");
+        }
+        this.tieredExecution = 0 == threshold ? null : new TieredExecution(tokens, threshold, executor);
+        return this;
+    }
+
+    /**
+     * Check whether this expression has been promoted to its compiled form
+     *
+     * @return true if evaluating uses the compiled form
+     */
+    public boolean isCompiled() {
+        return null != tieredExecution && tieredExecution.isCompiled();
+    }
+
+    /**
+     * Get the settings the programs derived from the tokens were created with. Expressions with the same tokens and
+     * equal keys can share these programs.
+     *
+     * @return the key, comparable by {@link Object#equals(Object)}
+     */
+    List<Object> getProgramKey() {
+        return Arrays.asList(null == fixedPoint ? null : fixedPoint.getScale(),
+                null == fixedPoint ? null : fixedPoint.getRounding(),
+                null == integerProgram ? null : integerProgram.getIntegerVariables(),
+                null != rationalProgram,
+                null == adaptiveProgram ? null : adaptiveProgram.getMathContext(),
+                null == tieredExecution ? null : tieredExecution.getThreshold(),
+                null == tieredExecution ? null : tieredExecution.getExecutor());
+    }
+
+    /**
+     * Verify once that every operator and function finds its operands on the stack and that exactly one value is
+     * left at the end. A verified expression is evaluated without checking the size of the stack for every token.
+     *
+     * @return the Expression instance
+     */
+    Expression verify() {
+        this.stackDepth = maxStackDepth(tokens);
+        return this;
+    }
+
+    /**
+     * Check whether the tokens have been verified to be balanced
+     *
+     * @return true if the evaluation does not need to check the size of the stack
+     */
+    boolean isVerified() {
+        return 0 < stackDepth;
+    }
+
+    /**
+     * Compute the maximum number of values on the stack while evaluating the tokens
+     *
+     * @param tokens the tokens in reverse polish notation
+     * @return the maximum depth of the stack, or 0 if an operator or function is short of operands or more than one
+     * value is left at the end
+     */
+    static int maxStackDepth(final Token[] tokens) {
+        var depth = 0;
+        var max = 0;
+        for (final var t : tokens) {
+            final int operands;
+            switch (t.getType()) {
+                case Token.TOKEN_NUMBER:
+                case Token.TOKEN_VARIABLE:
+                case Token.TOKEN_LOCAL:
+                case Token.TOKEN_LITERAL:
+                    depth++;
+                    break;
+                case Token.TOKEN_STORE_LOCAL:
+                    if (1 > depth) {
+                        return 0;
+                    }
+                    depth--;
+                    break;
+                case Token.TOKEN_OPERATOR:
+                    operands = ((OperatorToken) t).getOperator().getNumOperands();
+                    if (operands > depth) {
+                        return 0;
+                    }
+                    depth -= operands - 1;
+                    break;
+                case Token.TOKEN_FUNCTION:
+                    operands = ((FunctionToken) t).getFunction().getNumArguments();
+                    if (operands > depth) {
+                        return 0;
+                    }
+                    depth -= operands - 1;
+                    break;
+                default:
+                    return 0;
+            }
+            max = Math.max(max, depth);
+        }
+        return 1 == depth ? max : 0;
+    }
+
+    /**
+     * Evaluate this expression on <code>long</code> values if it is integer-only
+     *
+     * @param integerVariables the names of the variables declared as integers
+     * @return the Expression instance
+     */
+    Expression detectIntegerProgram(final Set<String> integerVariables) {
+        this.integerProgram = IntegerProgram.compile(tokens, integerVariables);
+        return this;
+    }
+
+    /**
+     * Check whether this expression is evaluated on <code>long</code> values. That is the case if it only consists of
+     * integer numbers, variables declared as integers and the operators <code>+ - * %</code>. The evaluation still
+     * falls back to {@link BigDecimal} if a variable is not set to an integer or an operation overflows.
+     *
+     * @return true if the expression is integer-only
+     */
+    public boolean isIntegerOnly() {
+        return null != integerProgram;
+    }
+
     private void checkVariableName(final String name) {
         if (this.userFunctionNames.contains(name) || null != Functions.getBuiltinFunction(name)) {
             throw new IllegalArgumentException("The variable name '" + name + "' is invalid. Since there exists a function with the same name");
@@ -95,6 +498,15 @@ public class Expression {
         return this;
     }
 
+    /**
+     * Set the variables of another expression on this one, used when an expression is replaced by one for edited
+     * tokens
+     */
+    Expression copyVariables(final Expression existing) {
+        this.variables.putAll(existing.variables);
+        return this;
+    }
+
     public Expression clearVariables() {
         this.variables.clear();
         return this;
@@ -110,6 +522,59 @@ public class Expression {
         return variables;
     }
 
+    /**
+     * Get the canonical form of this expression. Expressions which only differ in whitespace, redundant
+     * parentheses, the kind of brackets or the order of the operands of additions and multiplications have the same
+     * canonical form.
+     *
+     * @return the canonical form as tokens in reverse polish notation separated by blanks
+     */
+    public String getCanonicalForm() {
+        return CanonicalForm.of(this.tokens).toString();
+    }
+
+    /**
+     * Get a hash of the canonical form of this expression which is stable between runs
+     *
+     * @return the structural hash
+     */
+    public long getStructuralHash() {
+        return CanonicalForm.of(this.tokens).getHash();
+    }
+
+    Token[] getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Get the numbers hoisted out of this expression, see {@link ExpressionBuilder#hoistLiterals(boolean)}
+     *
+     * @return a copy of the literal pool, empty if the numbers have not been hoisted
+     */
+    public BigDecimal[] getLiterals() {
+        return null == literals ? new BigDecimal[0] : literals.clone();
+    }
+
+    /**
+     * Create an expression sharing the tokens of this one but using other values for the hoisted numbers, see
+     * {@link ExpressionBuilder#hoistLiterals(boolean)}. The variables set on this expression are copied.
+     *
+     * @param literals the values of the numbers in the order of {@link #getLiterals()}
+     * @return the new expression
+     */
+    public Expression withLiterals(final BigDecimal... literals) {
+        final var size = null == this.literals ? 0 : this.literals.length;
+        if (size != literals.length) {
+            throw new IllegalArgumentException("Expected " + size + " literals but got " + literals.length);
+        }
+        for (final var literal : literals) {
+            if (null == literal) {
+                throw new IllegalArgumentException("A literal can not be null");
+            }
+        }
+        return new Expression(this, literals.clone());
+    }
+
     public ValidationResult validate(final boolean checkVariablesSet) {
         final List<String> errors = new ArrayList<>(0);
         if (checkVariablesSet) {
@@ -135,8 +600,18 @@ public class Expression {
             switch (tok.getType()) {
                 case Token.TOKEN_NUMBER:
                 case Token.TOKEN_VARIABLE:
+                case Token.TOKEN_LOCAL:
+                case Token.TOKEN_LITERAL:
                     count++;
                     break;
+                case Token.TOKEN_STORE_LOCAL:
+                    /* a store moves one value into a local's slot and may leave the stack empty */
+                    if (1 > count) {
+                        errors.add("No value to store in '" + ((LocalVariableToken) tok).getName() + "'");
+                        return new ValidationResult(false, errors);
+                    }
+                    count--;
+                    continue;
                 case Token.TOKEN_FUNCTION:
                     final var func = ((FunctionToken) tok).getFunction();
                     final var argsNum = func.getNumArguments();
@@ -162,7 +637,9 @@ public class Expression {
                 return new ValidationResult(false, errors);
             }
         }
-        if (1 < count) {
+        if (0 == count) {
+            errors.add("The expression does not contain any operands");
+        } else if (1 < count) {
             errors.add("Too many operands");
         }
         return errors.isEmpty() ? ValidationResult.SUCCESS : new ValidationResult(false, errors);
@@ -177,11 +654,139 @@ public class Expression {
         return executor.submit(this::evaluate);
     }
 
+    /**
+     * Evaluate this expression for many rows at once in <code>double</code> arithmetic. Every operator and function is
+     * applied to a whole column of values, so the loops can be vectorized. The IEEE 754 semantics of
+     * <code>double</code> apply, e.g. a division by zero results in an infinity instead of an exception. Custom
+     * operators and functions are applied row by row and result in NaN where they throw an
+     * {@link ArithmeticException}.
+     *
+     * @param columns the values of the variables by name, all columns must have the same length. Variables without a
+     *                column use the value set by {@link #setVariable(String, BigDecimal)}
+     * @return the result for every row
+     */
+    public double[] evaluateBatch(final Map<String, double[]> columns) {
+        return this.getBatchProgram().evaluate(columns, variables, literals, fastMath, null);
+    }
+
+    /**
+     * Evaluate this expression for many rows at once like {@link #evaluateBatch(Map)}, but report problems as a
+     * status for every row instead of throwing. A row with a problem evaluates to NaN and its status is a combination
+     * of the bits in {@link EvaluationStatus}, which tell what went wrong. A missing variable is reported for every
+     * row.
+     *
+     * @param columns the values of the variables by name, all columns must have the same length
+     * @param status  receives the {@link EvaluationStatus} of every row, its length has to match the columns
+     * @return the result for every row
+     */
+    public double[] evaluateBatch(final Map<String, double[]> columns, final int[] status) {
+        if (null == status) {
+            throw new IllegalArgumentException("The status array can not be null");
+        }
+        return this.getBatchProgram().evaluate(columns, variables, literals, fastMath, status);
+    }
+
+    /**
+     * Evaluate this expression without throwing. Instead of an exception NaN is returned if a variable is not set or
+     * an operator or function is not defined for its arguments, e.g. for a division by zero or <code>cot(0)</code>.
+     * The arguments of the builtin operators and functions are checked before they are applied in every evaluation
+     * mode, so no exception is created for them. Exceptions are only caught for custom operators and functions
+     * which throw an {@link ArithmeticException}, and for a builtin <code>^</code> whose result overflows the scale
+     * of a {@link BigDecimal}, e.g. for a huge exponent. A fixed-point evaluation with
+     * {@link RoundingMode#UNNECESSARY} still throws if a value has to be rounded.
+     *
+     * @return the value of the expression as a <code>double</code>, or NaN
+     */
+    public double evaluateOrNaN() {
+        final var result = this.evaluateOrNull();
+        return null == result ? Double.NaN : result.doubleValue();
+    }
+
+    /**
+     * Evaluate like {@link #evaluate()} in the same evaluation mode, but return null where it would throw
+     */
+    private BigDecimal evaluateOrNull() {
+        final var mc = this.mathContext;
+        if (null != fixedPoint) {
+            return fixedPoint.evaluate(variables, literals, mc, true);
+        }
+        if (null != adaptiveProgram) {
+            final var result = adaptiveProgram.evaluate(variables, literals);
+            if (null != result) {
+                return result;
+            }
+            final var exact = this.evaluateExactlyOrNull(mc);
+            return null == exact ? null : AdaptiveProgram.normalize(exact.round(adaptiveProgram.getMathContext()));
+        }
+        if (null != integerProgram && null == mc) {
+            final var result = integerProgram.evaluate(variables, literals);
+            if (null != result) {
+                return result;
+            }
+        }
+        return this.evaluateExactlyOrNull(mc);
+    }
+
+    private BigDecimal evaluateExactlyOrNull(final MathContext mc) {
+        if (null != rationalProgram) {
+            return rationalProgram.evaluate(variables, literals, mc, true);
+        }
+        return this.getBatchProgram().evaluateOrNull(variables, literals, mc);
+    }
+
+    private BatchProgram getBatchProgram() {
+        if (null == batchProgram) {
+            batchProgram = new BatchProgram(tokens);
+        }
+        return batchProgram;
+    }
+
     public BigDecimal evaluate() {
+        final var mc = this.mathContext;
+        if (null != fixedPoint) {
+            return fixedPoint.evaluate(variables, literals, mc, false);
+        }
+        if (null != adaptiveProgram) {
+            final var result = adaptiveProgram.evaluate(variables, literals);
+            if (null != result) {
+                return result;
+            }
+            return AdaptiveProgram.normalize(this.evaluateExactly(mc).round(adaptiveProgram.getMathContext()));
+        }
+        if (null != integerProgram && null == mc) {
+            final var result = integerProgram.evaluate(variables, literals);
+            if (null != result) {
+                return result;
+            }
+        }
+        return this.evaluateExactly(mc);
+    }
+
+    private BigDecimal evaluateExactly(final MathContext mc) {
+        if (null != rationalProgram) {
+            return rationalProgram.evaluate(variables, literals, mc, false);
+        }
+        if (0 < stackDepth) {
+            final var program = null == tieredExecution ? null : tieredExecution.program();
+            return null == program ? this.evaluateVerified(mc) : program.evaluate(variables, literals, mc);
+        }
         final var output = new ArrayStack();
+        BigDecimal[] locals = null;
         for (final var t : tokens) {
             if (Token.TOKEN_NUMBER == t.getType()) {
                 output.push(((NumberToken) t).getValue());
+            } else if (Token.TOKEN_LITERAL == t.getType()) {
+                output.push(literals[((LiteralToken) t).getIndex()]);
+            } else if (Token.TOKEN_LOCAL == t.getType()) {
+                output.push(locals[((LocalVariableToken) t).getSlot()]);
+            } else if (Token.TOKEN_STORE_LOCAL == t.getType()) {
+                final var slot = ((LocalVariableToken) t).getSlot();
+                if (null == locals) {
+                    locals = new BigDecimal[slot + 4];
+                } else if (slot >= locals.length) {
+                    locals = Arrays.copyOf(locals, slot * 2);
+                }
+                locals[slot] = output.pop();
             } else if (Token.TOKEN_VARIABLE == t.getType()) {
                 final var name = ((VariableToken) t).getName();
                 final var value = this.variables.get(name);
@@ -198,11 +803,12 @@ public class Expression {
                     /* pop the operands and push the result of the operation */
                     final var rightArg = output.pop();
                     final var leftArg = output.pop();
-                    output.push(op.getOperator().apply(leftArg, rightArg));
+                    output.push(null == mc ? op.getOperator().apply2(leftArg, rightArg)
+                            : op.getOperator().apply2(mc, leftArg, rightArg));
                 } else if (1 == op.getOperator().getNumOperands()) {
                     /* pop the operand and push the result of the operation */
                     final var arg = output.pop();
-                    output.push(op.getOperator().apply(arg));
+                    output.push(null == mc ? op.getOperator().apply1(arg) : op.getOperator().apply1(mc, arg));
                 }
             } else if (Token.TOKEN_FUNCTION == t.getType()) {
                 final var func = (FunctionToken) t;
@@ -210,12 +816,22 @@ public class Expression {
                 if (output.size() < numArguments) {
                     throw new IllegalArgumentException("Invalid number of arguments available for '" + func.getFunction().getName() + "' function");
                 }
-                /* collect the arguments from the stack */
-                final var args = new BigDecimal[numArguments];
-                for (var j = numArguments - 1; 0 <= j; j--) {
-                    args[j] = output.pop();
+                final var function = func.getFunction();
+                if (1 == numArguments) {
+                    final var arg = output.pop();
+                    output.push(null == mc ? function.apply1(arg) : function.apply1(mc, arg));
+                } else if (2 == numArguments) {
+                    final var arg2 = output.pop();
+                    final var arg1 = output.pop();
+                    output.push(null == mc ? function.apply2(arg1, arg2) : function.apply2(mc, arg1, arg2));
+                } else {
+                    /* collect the arguments from the stack */
+                    final var args = new BigDecimal[numArguments];
+                    for (var j = numArguments - 1; 0 <= j; j--) {
+                        args[j] = output.pop();
+                    }
+                    output.push(null == mc ? function.apply(args) : function.apply(mc, args));
                 }
-                output.push(func.getFunction().apply(args));
             }
         }
         if (1 < output.size()) {
@@ -224,4 +840,86 @@ public class Expression {
         }
         return output.pop();
     }
+
+    /**
+     * Evaluate verified tokens on a plain array, every operator and function is known to find its operands
+     */
+    private BigDecimal evaluateVerified(final MathContext mc) {
+        final var stack = new BigDecimal[stackDepth];
+        var size = 0;
+        BigDecimal[] locals = null;
+        for (final var t : tokens) {
+            switch (t.getType()) {
+                case Token.TOKEN_NUMBER:
+                    stack[size++] = ((NumberToken) t).getValue();
+                    break;
+                case Token.TOKEN_LITERAL:
+                    stack[size++] = literals[((LiteralToken) t).getIndex()];
+                    break;
+                case Token.TOKEN_LOCAL:
+                    stack[size++] = locals[((LocalVariableToken) t).getSlot()];
+                    break;
+                case Token.TOKEN_STORE_LOCAL:
+                    final var slot = ((LocalVariableToken) t).getSlot();
+                    if (null == locals) {
+                        locals = new BigDecimal[slot + 4];
+                    } else if (slot >= locals.length) {
+                        locals = Arrays.copyOf(locals, slot * 2);
+                    }
+                    locals[slot] = stack[--size];
+                    break;
+                case Token.TOKEN_VARIABLE:
+                    final var name = ((VariableToken) t).getName();
+                    final var value = this.variables.get(name);
+                    if (null == value) {
+                        throw new IllegalArgumentException("No value has been set for the setVariable '" + name + "'.");
+                    }
+                    stack[size++] = value;
+                    break;
+                case Token.TOKEN_OPERATOR:
+                    final var op = ((OperatorToken) t).getOperator();
+                    if (2 == op.getNumOperands()) {
+                        final var right = stack[--size];
+                        final var left = stack[size - 1];
+                        stack[size - 1] = null == mc ? op.apply2(left, right) : op.apply2(mc, left, right);
+                    } else {
+                        final var arg = stack[size - 1];
+                        stack[size - 1] = null == mc ? op.apply1(arg) : op.apply1(mc, arg);
+                    }
+                    break;
+                case Token.TOKEN_FUNCTION:
+                    final var func = ((FunctionToken) t).getFunction();
+                    final var result = applyFunction(func, mc, stack, size);
+                    size -= func.getNumArguments();
+                    stack[size++] = result;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * Apply a function to the values at the end of the stack. Functions of up to three arguments are called by their
+     * arity-specialized methods, so no array is allocated for the arguments. Functions of more arguments get a fresh
+     * copy of them, so a function keeping or changing its array cannot corrupt the stack or a scratch array of the
+     * evaluation loops.
+     */
+    static BigDecimal applyFunction(final Function func, final MathContext mc, final BigDecimal[] stack,
+                                            final int size) {
+        switch (func.getNumArguments()) {
+            case 1:
+                return null == mc ? func.apply1(stack[size - 1]) : func.apply1(mc, stack[size - 1]);
+            case 2:
+                return null == mc ? func.apply2(stack[size - 2], stack[size - 1])
+                        : func.apply2(mc, stack[size - 2], stack[size - 1]);
+            case 3:
+                return null == mc ? func.apply3(stack[size - 3], stack[size - 2], stack[size - 1])
+                        : func.apply3(mc, stack[size - 3], stack[size - 2], stack[size - 1]);
+            default:
+                final var args = Arrays.copyOfRange(stack, size - func.getNumArguments(), size);
+                return null == mc ? func.apply(args) : func.apply(mc, args);
+        }
+    }
 }
@@ -20,8 +20,15 @@ import net.objecthunter.exp4j.function.Function;
 import net.objecthunter.exp4j.function.Functions;
 import net.objecthunter.exp4j.operator.Operator;
 import net.objecthunter.exp4j.shuntingyard.ShuntingYard;
+import net.objecthunter.exp4j.tokenizer.Diagnostic;
+import net.objecthunter.exp4j.tokenizer.Token;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Factory class for {@link Expression} instances. This class is the main API entrypoint. Users should create new {@link Expression}
@@ -31,14 +38,41 @@ public class ExpressionBuilder {
 
     private final String expression;
 
-    private final Map<String, Function> userFunctions;
+    private Map<String, Function> userFunctions;
 
-    private final Map<String, Operator> userOperators;
+    private Map<String, Operator> userOperators;
 
-    private final Set<String> variableNames;
+    private Set<String> variableNames;
+
+    private final Set<String> integerVariableNames = new HashSet<>(4);
+
+    private Map<String, BigDecimal> constants;
+
+    /* the shared environment whose maps are used until the builder is modified */
+    private ExpressionEnvironment environment;
 
     private boolean implicitMultiplication = true;
 
+    private boolean letBindings = false;
+
+    private boolean hoistLiterals = false;
+
+    private MathContext mathContext;
+
+    private boolean rational = false;
+
+    private int adaptivePrecision = 0;
+
+    private boolean fastMath = false;
+
+    private int compilationThreshold = 0;
+
+    private Executor compilationExecutor;
+
+    private int fixedPointScale = -1;
+
+    private RoundingMode fixedPointRounding = RoundingMode.HALF_UP;
+
     /**
      * Create a new ExpressionBuilder instance and initialize it with a given expression string.
      *
@@ -54,6 +88,36 @@ public class ExpressionBuilder {
         this.variableNames = new HashSet<>(4);
     }
 
+    /**
+     * Create a new ExpressionBuilder instance for an expression string using the functions, operators, variables
+     * and constants of a shared {@link ExpressionEnvironment}. Further declarations on this builder do not affect
+     * the environment.
+     *
+     * @param expression  the expression to be parsed
+     * @param environment the environment to use
+     */
+    public ExpressionBuilder(final String expression, final ExpressionEnvironment environment) {
+        if (null == expression || expression.trim().isEmpty()) {
+            throw new IllegalArgumentException("Expression can not be empty");
+        }
+        this.expression = expression;
+        this.userOperators = environment.getOperators();
+        this.userFunctions = environment.getFunctions();
+        this.variableNames = environment.getVariableNames();
+        this.constants = environment.getConstants();
+        this.mathContext = environment.getMathContext();
+        this.environment = environment;
+    }
+
+    private void detach() {
+        if (null != this.environment) {
+            this.userOperators = new HashMap<>(this.userOperators);
+            this.userFunctions = new HashMap<>(this.userFunctions);
+            this.variableNames = new HashSet<>(this.variableNames);
+            this.environment = null;
+        }
+    }
+
     /**
      * Add a {@link net.objecthunter.exp4j.function.Function} implementation available for use in the expression
      *
@@ -62,6 +126,7 @@ public class ExpressionBuilder {
      * @return the ExpressionBuilder instance
      */
     public ExpressionBuilder function(final Function function) {
+        this.detach();
         this.userFunctions.put(function.getName(), function);
         return this;
     }
@@ -73,6 +138,7 @@ public class ExpressionBuilder {
      * @return the ExpressionBuilder instance
      */
     public ExpressionBuilder functions(final Function... functions) {
+        this.detach();
         for (final var f : functions) {
             this.userFunctions.put(f.getName(), f);
         }
@@ -86,6 +152,7 @@ public class ExpressionBuilder {
      * @return the ExpressionBuilder instance
      */
     public ExpressionBuilder functions(final List<Function> functions) {
+        this.detach();
         for (final var f : functions) {
             this.userFunctions.put(f.getName(), f);
         }
@@ -99,6 +166,7 @@ public class ExpressionBuilder {
      * @return the ExpressionBuilder instance
      */
     public ExpressionBuilder variables(final Set<String> variableNames) {
+        this.detach();
         this.variableNames.addAll(variableNames);
         return this;
     }
@@ -110,6 +178,7 @@ public class ExpressionBuilder {
      * @return the ExpressionBuilder instance
      */
     public ExpressionBuilder variables(final String... variableNames) {
+        this.detach();
         Collections.addAll(this.variableNames, variableNames);
         return this;
     }
@@ -121,15 +190,173 @@ public class ExpressionBuilder {
      * @return the ExpressionBuilder instance
      */
     public ExpressionBuilder variable(final String variableName) {
+        this.detach();
         this.variableNames.add(variableName);
         return this;
     }
 
+    /**
+     * Declare variable names used in the expression which only take integer values. Expressions consisting of integer
+     * numbers, integer variables and the operators <code>+ - * %</code> are evaluated on <code>long</code> values,
+     * falling back to {@link BigDecimal} if an operation overflows or a variable is set to a non integer value.
+     *
+     * @param variableNames the integer variables used in the expression
+     * @return the ExpressionBuilder instance
+     */
+    public ExpressionBuilder integerVariables(final String... variableNames) {
+        this.detach();
+        Collections.addAll(this.variableNames, variableNames);
+        Collections.addAll(this.integerVariableNames, variableNames);
+        return this;
+    }
+
     public ExpressionBuilder implicitMultiplication(final boolean enabled) {
         this.implicitMultiplication = enabled;
         return this;
     }
 
+    /**
+     * Set the precision and rounding mode used by all operators and functions of the built expressions, e.g.
+     * {@link MathContext#DECIMAL64} for money calculations which do not need the 34 digits division uses by default
+     *
+     * @param mathContext the precision and rounding mode or null to use the defaults of the operators and functions
+     * @return the ExpressionBuilder instance
+     */
+    public ExpressionBuilder mathContext(final MathContext mathContext) {
+        this.mathContext = mathContext;
+        return this;
+    }
+
+    /**
+     * Evaluate the built expressions exactly on fractions and only round the result, see
+     * {@link Expression#setRational(boolean)}
+     *
+     * @param enabled true to evaluate on fractions
+     * @return the ExpressionBuilder instance
+     */
+    public ExpressionBuilder rational(final boolean enabled) {
+        this.rational = enabled;
+        return this;
+    }
+
+    /**
+     * Evaluate the built expressions in <code>double</code> arithmetic as long as the error bound proves the result
+     * correct to the given number of significant digits, see {@link Expression#setAdaptivePrecision(int)}
+     *
+     * @param digits the number of significant digits between 1 and 15, or 0 to always evaluate exactly
+     * @return the ExpressionBuilder instance
+     */
+    public ExpressionBuilder adaptivePrecision(final int digits) {
+        if (0 > digits || 15 < digits) {
+            throw new IllegalArgumentException("The precision of an adaptive evaluation has to be between 1 and 15 digits but was " + digits);
+        }
+        this.adaptivePrecision = digits;
+        return this;
+    }
+
+    /**
+     * Compile the built expressions in the background on the common {@link ForkJoinPool} once they have been
+     * evaluated the given number of times, see {@link Expression#setTieredCompilation(int)}
+     *
+     * @param threshold the number of evaluations after which an expression is compiled, or 0 to always interpret
+     * @return the ExpressionBuilder instance
+     */
+    public ExpressionBuilder tieredCompilation(final int threshold) {
+        return this.tieredCompilation(threshold, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compile the built expressions in the background once they have been evaluated the given number of times, see
+     * {@link Expression#setTieredCompilation(int, Executor)}
+     *
+     * @param threshold the number of evaluations after which an expression is compiled, or 0 to always interpret
+     * @param executor  the executor which compiles the expressions
+     * @return the ExpressionBuilder instance
+     */
+    public ExpressionBuilder tieredCompilation(final int threshold, final Executor executor) {
+        if (0 > threshold) {
+            throw new IllegalArgumentException("The compilation threshold can not be negative but was " + threshold);
+        }
+        if (null == executor) {
+            throw new IllegalArgumentException("The executor for the compilation can not be null");
+        }
+        this.compilationThreshold = threshold;
+        this.compilationExecutor = executor;
+        return this;
+    }
+
+    /**
+     * Use fast approximations of the transcendental builtin functions in the batch evaluation, see
+     * {@link Expression#setFastMath(boolean)}
+     *
+     * @param enabled true to use the fast approximations
+     * @return the ExpressionBuilder instance
+     */
+    public ExpressionBuilder fastMath(final boolean enabled) {
+        this.fastMath = enabled;
+        return this;
+    }
+
+    /**
+     * Evaluate the built expressions in fixed-point arithmetic rounding half up, see
+     * {@link Expression#setFixedPoint(int, RoundingMode)}
+     *
+     * @param scale the number of decimal places, between 0 and 18
+     * @return the ExpressionBuilder instance
+     */
+    public ExpressionBuilder fixedPoint(final int scale) {
+        return this.fixedPoint(scale, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Evaluate the built expressions in fixed-point arithmetic using scaled <code>long</code> values, e.g. a scale
+     * of 6 for money calculations, see {@link Expression#setFixedPoint(int, RoundingMode)}
+     *
+     * @param scale    the number of decimal places, between 0 and 18
+     * @param rounding the rounding mode used to round values to the scale
+     * @return the ExpressionBuilder instance
+     */
+    public ExpressionBuilder fixedPoint(final int scale, final RoundingMode rounding) {
+        if (0 > scale || 18 < scale) {
+            throw new IllegalArgumentException("The scale of a fixed-point evaluation has to be between 0 and 18 but was " + scale);
+        }
+        if (null == rounding) {
+            throw new IllegalArgumentException("The rounding mode can not be null");
+        }
+        this.fixedPointScale = scale;
+        this.fixedPointRounding = rounding;
+        return this;
+    }
+
+    /**
+     * Move the numbers of the expression into a literal pool of the built {@link Expression}. Expressions which only
+     * differ in their numbers, e.g. <code>x*1.05 + 3</code> and <code>2 + x*1.07</code>, then have the same tokens and
+     * share one program when interned by a {@link ProgramInterner}. The numbers can be replaced using
+     * {@link Expression#withLiterals(BigDecimal...)}.
+     *
+     * @param enabled set to true to hoist the numbers
+     * @return the ExpressionBuilder instance
+     */
+    public ExpressionBuilder hoistLiterals(final boolean enabled) {
+        this.hoistLiterals = enabled;
+        return this;
+    }
+
+    /**
+     * Allow the expression to start with local bindings separated by semicolons, e.g.
+     * <code>a = x*y + z; b = sqrt(a); a*b + log(b)</code>. Each binding is computed once when the expression is
+     * evaluated and can be referenced by name in the following statements. Since a semicolon separates statements,
+     * custom operators containing one can not be used together with let bindings. {@link #build()},
+     * {@link #buildLazy()} and {@link #diagnose()} support let bindings, {@link #buildIncremental()} rejects them.
+     *
+     * @param enabled set to true to enable let bindings
+     * @return the ExpressionBuilder instance
+     */
+    public ExpressionBuilder letBindings(final boolean enabled) {
+        this.letBindings = enabled;
+        return this;
+    }
+
     /**
      * Add an {@link net.objecthunter.exp4j.operator.Operator} which should be available for use in the expression
      *
@@ -137,12 +364,13 @@ public class ExpressionBuilder {
      * @return the ExpressionBuilder instance
      */
     public ExpressionBuilder operator(final Operator operator) {
-        this.checkOperatorSymbol(operator);
+        checkOperatorSymbol(operator);
+        this.detach();
         this.userOperators.put(operator.getSymbol(), operator);
         return this;
     }
 
-    private void checkOperatorSymbol(final Operator op) {
+    static void checkOperatorSymbol(final Operator op) {
         final var name = op.getSymbol();
         for (final var ch : name.toCharArray()) {
             if (!Operator.isAllowedOperatorChar(ch)) {
@@ -183,15 +411,120 @@ public class ExpressionBuilder {
      * @return an {@link Expression} instance which can be used to evaluate the result of the expression
      */
     public Expression build() {
-        if (expression.isEmpty()) {
-            throw new IllegalArgumentException("The expression can not be empty");
+        this.checkVariableNames();
+        final Token[] tokens;
+        if (this.letBindings && 0 <= this.expression.indexOf(';')) {
+            tokens = LetBindings.compile(this.expression, this.userFunctions, this.userOperators, this.variableNames,
+                    this.implicitMultiplication);
+        } else if (null != this.environment) {
+            tokens = ShuntingYard.convertToRPN(this.expression, this.environment.getSymbols(), this.userOperators,
+                    this.implicitMultiplication);
+        } else {
+            tokens = ShuntingYard.convertToRPN(this.expression, this.userFunctions, this.userOperators,
+                    this.variableNames, this.implicitMultiplication);
         }
+        return this.createExpression(tokens);
+    }
 
-        /* set the constants' varibale names */
-        variableNames.add("pi");
-        variableNames.add("π");
-        variableNames.add("e");
-        variableNames.add("φ");
+    /**
+     * Create the {@link Expression} for the tokens of the expression string, configured with the settings of this
+     * builder. Used by {@link #build()} and {@link #diagnose()} so both return the same expression.
+     */
+    private Expression createExpression(final Token[] tokens) {
+        return new Settings(this).createExpression(tokens);
+    }
+
+    /**
+     * Build a {@link LazyExpression} handle using the custom operators and functions set. The expression string is
+     * only converted when the handle is used for the first time.
+     *
+     * @return a {@link LazyExpression} which compiles the expression on first use
+     */
+    public LazyExpression buildLazy() {
+        return buildLazy(false);
+    }
+
+    /**
+     * Build a {@link LazyExpression} handle using the custom operators and functions set. The expression string is
+     * only converted when the handle is used for the first time.
+     *
+     * @param discardable set to true to allow the garbage collector to release the compiled form under memory
+     *                    pressure, it will be compiled again on next use
+     * @return a {@link LazyExpression} which compiles the expression on first use
+     */
+    public LazyExpression buildLazy(final boolean discardable) {
+        this.checkVariableNames();
+        return new LazyExpression(this.expression, Map.copyOf(this.userFunctions), Map.copyOf(this.userOperators),
+                Set.copyOf(this.variableNames), new Settings(this), this.implicitMultiplication, this.letBindings,
+                discardable);
+    }
+
+    /**
+     * Build an {@link IncrementalExpression} using the custom operators and functions set. Incremental expressions
+     * can be edited and re-parsed without tokenizing the whole expression string again. Let bindings are not
+     * supported, since an edit could move the boundaries of the statements.
+     *
+     * @return an {@link IncrementalExpression} for the expression string
+     */
+    public IncrementalExpression buildIncremental() {
+        if (this.letBindings) {
+            throw new IllegalArgumentException("Let bindings are not supported by incremental expressions");
+        }
+        this.checkVariableNames();
+        return new IncrementalExpression(this.expression, Map.copyOf(this.userFunctions), Map.copyOf(this.userOperators),
+                Set.copyOf(this.variableNames), new Settings(this), this.implicitMultiplication);
+    }
+
+    /**
+     * Check the expression without throwing an exception for malformed input. All problems which can be found
+     * while compiling the expression are collected together with the span of characters they refer to, so e.g.
+     * formulas entered by users can be checked in a single pass.
+     *
+     * @return a {@link DiagnosticResult} holding the problems found and the compiled expression if there were none
+     */
+    public DiagnosticResult diagnose() {
+        final var diagnostics = new ArrayList<Diagnostic>(0);
+        if (null == expression || expression.trim().isEmpty()) {
+            diagnostics.add(new Diagnostic(Diagnostic.EMPTY_EXPRESSION, 0, null == expression ? 0 : expression.length(),
+                    "Expression can not be empty"));
+            return new DiagnosticResult(diagnostics, null);
+        }
+
+        addConstants();
+        for (final var variableName : variableNames) {
+            if (null != Functions.getBuiltinFunction(variableName) || userFunctions.containsKey(variableName)) {
+                diagnostics.add(new Diagnostic(Diagnostic.NAME_CLASH, 0, expression.length(),
+                        "A variable can not have the same name as a function [" + variableName + "]"));
+            }
+        }
+        if (!diagnostics.isEmpty()) {
+            return new DiagnosticResult(diagnostics, null);
+        }
+
+        final Token[] tokens;
+        if (this.letBindings && 0 <= this.expression.indexOf(';')) {
+            tokens = LetBindings.compile(this.expression, this.userFunctions, this.userOperators, this.variableNames,
+                    this.implicitMultiplication, diagnostics);
+        } else {
+            tokens = ShuntingYard.convertToRPN(this.expression, this.userFunctions, this.userOperators,
+                    this.variableNames, this.implicitMultiplication, diagnostics);
+        }
+        if (!diagnostics.isEmpty()) {
+            return new DiagnosticResult(diagnostics, null);
+        }
+        return new DiagnosticResult(diagnostics, this.createExpression(tokens));
+    }
+
+    private void checkVariableNames() {
+        if (null == expression || expression.trim().isEmpty()) {
+            throw new IllegalArgumentException("Expression can not be empty");
+        }
+
+        if (null != this.environment) {
+            /* the environment has been checked when it was built */
+            return;
+        }
+        addConstants();
 
         /* Check if there are duplicate vars/functions */
         for (final var variableName : variableNames) {
@@ -199,9 +532,96 @@ public class ExpressionBuilder {
                 throw new IllegalArgumentException("A variable can not have the same name as a function [" + variableName + "]");
             }
         }
+    }
 
-        return new Expression(ShuntingYard.convertToRPN(this.expression, this.userFunctions, this.userOperators,
-                this.variableNames, this.implicitMultiplication), this.userFunctions.keySet());
+    private void addConstants() {
+        if (null != this.environment) {
+            /* the environment has been checked and contains the constants already */
+            return;
+        }
+        /* set the constants' varibale names */
+        variableNames.add("pi");
+        variableNames.add("π");
+        variableNames.add("e");
+        variableNames.add("φ");
     }
 
+    /**
+     * The settings of a builder which are applied to every {@link Expression} created for the compiled tokens. They
+     * are copied, so handles built by {@link #buildLazy()} and {@link #buildIncremental()} create expressions
+     * configured like {@link #build()} even if the builder is changed afterwards.
+     */
+    static final class Settings {
+
+        private final Set<String> userFunctionNames;
+
+        private final Map<String, BigDecimal> constants;
+
+        private final Set<String> integerVariableNames;
+
+        private final boolean hoistLiterals;
+
+        private final MathContext mathContext;
+
+        private final boolean rational;
+
+        private final int adaptivePrecision;
+
+        private final boolean fastMath;
+
+        private final int compilationThreshold;
+
+        private final Executor compilationExecutor;
+
+        private final int fixedPointScale;
+
+        private final RoundingMode fixedPointRounding;
+
+        Settings(final ExpressionBuilder builder) {
+            this.userFunctionNames = Set.copyOf(builder.userFunctions.keySet());
+            this.constants = builder.constants;
+            this.integerVariableNames = Set.copyOf(builder.integerVariableNames);
+            this.hoistLiterals = builder.hoistLiterals;
+            this.mathContext = builder.mathContext;
+            this.rational = builder.rational;
+            this.adaptivePrecision = builder.adaptivePrecision;
+            this.fastMath = builder.fastMath;
+            this.compilationThreshold = builder.compilationThreshold;
+            this.compilationExecutor = builder.compilationExecutor;
+            this.fixedPointScale = builder.fixedPointScale;
+            this.fixedPointRounding = builder.fixedPointRounding;
+        }
+
+        /**
+         * Create a new {@link Expression} for the tokens of an expression in reverse polish notation
+         *
+         * @param tokens the tokens as returned by the {@link ShuntingYard}
+         * @return the verified and configured expression
+         */
+        Expression createExpression(final Token[] tokens) {
+            /* functions defined by expressions are inlined into the caller */
+            final var program = this.userFunctionNames.isEmpty() ? tokens : InlineFunction.expand(tokens);
+            final Expression e;
+            if (this.hoistLiterals) {
+                final var pool = new ArrayList<BigDecimal>();
+                e = new Expression(CanonicalForm.hoistLiterals(program, pool), pool.toArray(new BigDecimal[0]),
+                        this.userFunctionNames, this.constants);
+            } else {
+                e = new Expression(program, this.userFunctionNames, this.constants);
+            }
+            e.verify();
+            e.setMathContext(this.mathContext);
+            e.detectIntegerProgram(this.integerVariableNames);
+            e.setRational(this.rational);
+            e.setAdaptivePrecision(this.adaptivePrecision);
+            e.setFastMath(this.fastMath);
+            if (0 < this.compilationThreshold) {
+                e.setTieredCompilation(this.compilationThreshold, this.compilationExecutor);
+            }
+            if (0 <= this.fixedPointScale) {
+                e.setFixedPoint(this.fixedPointScale, this.fixedPointRounding);
+            }
+            return e;
+        }
+    }
 }
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Function;
+import net.objecthunter.exp4j.function.Functions;
+import net.objecthunter.exp4j.operator.Operator;
+import net.objecthunter.exp4j.tokenizer.SymbolTable;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable set of functions, operators, variables and constants which can be shared by any number of
+ * {@link ExpressionBuilder} instances and threads. All checks are done once when the environment is built, and the
+ * names are compiled into a {@link SymbolTable}, so building an expression in an environment has no setup cost.
+ * <p>
+ * <code>new ExpressionBuilder("2 * f(x)", env).build()</code>
+ */
+public final class ExpressionEnvironment {
+
+    private final Map<String, Function> functions;
+
+    private final Map<String, Operator> operators;
+
+    private final Set<String> variableNames;
+
+    private final Map<String, BigDecimal> constants;
+
+    private final SymbolTable symbols;
+
+    private final MathContext mathContext;
+
+    private ExpressionEnvironment(final Builder builder) {
+        this.functions = Map.copyOf(builder.functions);
+        this.operators = Map.copyOf(builder.operators);
+        this.constants = Map.copyOf(builder.constants);
+        final var names = new HashSet<>(builder.variableNames);
+        names.addAll(builder.constants.keySet());
+        this.variableNames = Set.copyOf(names);
+        this.symbols = new SymbolTable(this.functions, this.variableNames);
+        this.mathContext = builder.mathContext;
+    }
+
+    /**
+     * Create a builder for a new environment
+     *
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the custom functions of this environment
+     *
+     * @return an unmodifiable map of the functions by name
+     */
+    public Map<String, Function> getFunctions() {
+        return functions;
+    }
+
+    /**
+     * Get the custom operators of this environment
+     *
+     * @return an unmodifiable map of the operators by symbol
+     */
+    public Map<String, Operator> getOperators() {
+        return operators;
+    }
+
+    /**
+     * Get the variable names declared in this environment, including the names of the constants
+     *
+     * @return an unmodifiable set of variable names
+     */
+    public Set<String> getVariableNames() {
+        return variableNames;
+    }
+
+    /**
+     * Get the constants of this environment, including the default constants pi, π, φ and e
+     *
+     * @return an unmodifiable map of the constant values by name
+     */
+    public Map<String, BigDecimal> getConstants() {
+        return constants;
+    }
+
+    /**
+     * Get the precision and rounding mode used by the expressions built in this environment
+     *
+     * @return the {@link MathContext} or null if operators and functions use their defaults
+     */
+    public MathContext getMathContext() {
+        return mathContext;
+    }
+
+    SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Builder for {@link ExpressionEnvironment} instances
+     */
+    public static final class Builder {
+
+        private final Map<String, Function> functions = new HashMap<>();
+
+        private final Map<String, Operator> operators = new HashMap<>();
+
+        private final Set<String> variableNames = new HashSet<>();
+
+        private final Map<String, BigDecimal> constants = Expression.createDefaultVariables();
+
+        private MathContext mathContext;
+
+        private Builder() {
+        }
+
+        /**
+         * Add a custom function
+         *
+         * @param function the function to add
+         * @return the Builder instance
+         */
+        public Builder function(final Function function) {
+            this.functions.put(function.getName(), function);
+            return this;
+        }
+
+        /**
+         * Add multiple custom functions
+         *
+         * @param functions the functions to add
+         * @return the Builder instance
+         */
+        public Builder functions(final Function... functions) {
+            for (final var f : functions) {
+                this.function(f);
+            }
+            return this;
+        }
+
+        /**
+         * Define a function by an expression, e.g. <code>define("f(x, y)", "x^2 + y")</code>. The body can use the
+         * parameters, the variables, constants and functions of the environment, including other defined functions
+         * as long as they do not call each other recursively. Calls are inlined when an expression is built.
+         *
+         * @param signature the name of the function followed by the parameter names in parentheses
+         * @param body      the expression computing the result of the function
+         * @return the Builder instance
+         */
+        public Builder define(final String signature, final String body) {
+            return this.function(InlineFunction.define(signature, body));
+        }
+
+        /**
+         * Add a custom operator
+         *
+         * @param operator the operator to add
+         * @return the Builder instance
+         */
+        public Builder operator(final Operator operator) {
+            ExpressionBuilder.checkOperatorSymbol(operator);
+            this.operators.put(operator.getSymbol(), operator);
+            return this;
+        }
+
+        /**
+         * Add multiple custom operators
+         *
+         * @param operators the operators to add
+         * @return the Builder instance
+         */
+        public Builder operators(final Operator... operators) {
+            for (final var o : operators) {
+                this.operator(o);
+            }
+            return this;
+        }
+
+        /**
+         * Declare variable names usable in expressions
+         *
+         * @param variableNames the variable names
+         * @return the Builder instance
+         */
+        public Builder variables(final String... variableNames) {
+            Collections.addAll(this.variableNames, variableNames);
+            return this;
+        }
+
+        /**
+         * Declare a constant which is set on every expression built in the environment. Like the default constants
+         * its value can still be overridden using {@link Expression#setVariable(String, BigDecimal)}.
+         *
+         * @param name  the name of the constant
+         * @param value the value of the constant
+         * @return the Builder instance
+         */
+        public Builder constant(final String name, final BigDecimal value) {
+            if (null == value) {
+                throw new IllegalArgumentException("The value of the constant '" + name + "' can not be null");
+            }
+            this.constants.put(name, value);
+            return this;
+        }
+
+        /**
+         * Declare a constant which is set on every expression built in the environment
+         *
+         * @param name  the name of the constant
+         * @param value the value of the constant
+         * @return the Builder instance
+         */
+        public Builder constant(final String name, final double value) {
+            return this.constant(name, BigDecimal.valueOf(value));
+        }
+
+        /**
+         * Set the precision and rounding mode used by all operators and functions of the expressions built in the
+         * environment
+         *
+         * @param mathContext the precision and rounding mode or null to use the defaults
+         * @return the Builder instance
+         */
+        public Builder mathContext(final MathContext mathContext) {
+            this.mathContext = mathContext;
+            return this;
+        }
+
+        /**
+         * Check the declarations and build the environment
+         *
+         * @return the immutable environment
+         */
+        public ExpressionEnvironment build() {
+            for (final var name : this.variableNames) {
+                this.checkName(name);
+            }
+            for (final var name : this.constants.keySet()) {
+                this.checkName(name);
+            }
+            final var names = new HashSet<>(this.variableNames);
+            names.addAll(this.constants.keySet());
+            final var inProgress = new HashSet<InlineFunction>();
+            for (final var f : this.functions.values()) {
+                if (f instanceof InlineFunction) {
+                    ((InlineFunction) f).compile(this.functions, this.operators, names, Map.copyOf(this.constants), inProgress);
+                }
+            }
+            return new ExpressionEnvironment(this);
+        }
+
+        private void checkName(final String name) {
+            if (null != Functions.getBuiltinFunction(name) || this.functions.containsKey(name)) {
+                throw new IllegalArgumentException("A variable can not have the same name as a function [" + name + "]");
+            }
+        }
+    }
+}
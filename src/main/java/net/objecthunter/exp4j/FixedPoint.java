@@ -0,0 +1,345 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.operator.Operator;
+import net.objecthunter.exp4j.operator.Operators;
+import net.objecthunter.exp4j.tokenizer.FunctionToken;
+import net.objecthunter.exp4j.tokenizer.LiteralToken;
+import net.objecthunter.exp4j.tokenizer.LocalVariableToken;
+import net.objecthunter.exp4j.tokenizer.NumberToken;
+import net.objecthunter.exp4j.tokenizer.OperatorToken;
+import net.objecthunter.exp4j.tokenizer.Token;
+import net.objecthunter.exp4j.tokenizer.VariableToken;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.EmptyStackException;
+import java.util.Map;
+
+/**
+ * Fixed-point evaluation of an expression. Every value is rounded to a fixed number of decimal places and kept as a
+ * <code>long</code> scaled by <code>10^scale</code>, so addition, subtraction, negation and multiplication of
+ * the builtin operators do not allocate. Operations which would overflow a <code>long</code>, all other operators
+ * and all functions are computed using {@link BigDecimal} and their result is rounded to the scale again.
+ */
+final class FixedPoint {
+
+    private static final Operator ADDITION = Operators.getBuiltinOperator('+', 2);
+
+    private static final Operator SUBTRACTION = Operators.getBuiltinOperator('-', 2);
+
+    private static final Operator MULTIPLICATION = Operators.getBuiltinOperator('*', 2);
+
+    private static final Operator NEGATION = Operators.getBuiltinOperator('-', 1);
+
+    private static final Operator UNARY_PLUS = Operators.getBuiltinOperator('+', 1);
+
+    private final int scale;
+
+    private final long factor;
+
+    private final RoundingMode rounding;
+
+    private final Token[] tokens;
+
+    /* the scaled values of the number tokens by token index, numbers which do not fit are kept in bigNumbers */
+    private final long[] numbers;
+
+    private final BigDecimal[] bigNumbers;
+
+    /* the kernels of the operators and functions by token index, used to check their arguments */
+    private final int[] kernels;
+
+    FixedPoint(final Token[] tokens, final int scale, final RoundingMode rounding) {
+        if (0 > scale || 18 < scale) {
+            throw new IllegalArgumentException("The scale of a fixed-point evaluation has to be between 0 and 18 but was " + scale);
+        }
+        if (null == rounding) {
+            throw new IllegalArgumentException("The rounding mode can not be null");
+        }
+        this.scale = scale;
+        this.factor = pow10(scale);
+        this.rounding = rounding;
+        this.tokens = tokens;
+        this.numbers = new long[tokens.length];
+        this.bigNumbers = new BigDecimal[tokens.length];
+        this.kernels = new int[tokens.length];
+        for (var i = 0; i < tokens.length; i++) {
+            kernels[i] = BatchProgram.kernelOf(tokens[i]);
+            if (Token.TOKEN_NUMBER == tokens[i].getType()) {
+                final var value = ((NumberToken) tokens[i]).getValue().setScale(scale, rounding);
+                if (fits(value)) {
+                    numbers[i] = value.unscaledValue().longValue();
+                } else {
+                    bigNumbers[i] = value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Create a fixed-point evaluation with the same scale and rounding for other tokens
+     */
+    FixedPoint forTokens(final Token[] tokens) {
+        return tokens == this.tokens ? this : new FixedPoint(tokens, scale, rounding);
+    }
+
+    int getScale() {
+        return scale;
+    }
+
+    RoundingMode getRounding() {
+        return rounding;
+    }
+
+    /**
+     * Evaluate the tokens in fixed-point arithmetic
+     *
+     * @param variables the values of the variables
+     * @param literals  the values of the literal tokens
+     * @param mc        the precision of the operations computed using {@link BigDecimal}, null for their defaults
+     * @param orNull    true to return null instead of throwing if a variable is missing or an operator or function
+     *                  is not defined for its arguments, which are checked before they are applied
+     * @return the result rounded to the scale
+     */
+    BigDecimal evaluate(final Map<String, BigDecimal> variables, final BigDecimal[] literals, final MathContext mc,
+                        final boolean orNull) {
+        /* a value on the stack is either a scaled long or, if big[i] is set, a BigDecimal */
+        final var values = new long[tokens.length];
+        final var big = new BigDecimal[tokens.length];
+        long[] localValues = null;
+        BigDecimal[] localBig = null;
+        /* the arguments of a function call, reused for all calls */
+        BigDecimal[] args = null;
+        var size = 0;
+        for (var i = 0; i < tokens.length; i++) {
+            final var t = tokens[i];
+            switch (t.getType()) {
+                case Token.TOKEN_NUMBER:
+                    values[size] = numbers[i];
+                    big[size++] = bigNumbers[i];
+                    break;
+                case Token.TOKEN_LITERAL:
+                    this.set(values, big, size++, literals[((LiteralToken) t).getIndex()]);
+                    break;
+                case Token.TOKEN_VARIABLE:
+                    final var name = ((VariableToken) t).getName();
+                    final var value = variables.get(name);
+                    if (null == value) {
+                        if (orNull) {
+                            return null;
+                        }
+                        throw new IllegalArgumentException("No value has been set for the setVariable '" + name + "'.");
+                    }
+                    this.set(values, big, size++, value);
+                    break;
+                case Token.TOKEN_LOCAL:
+                    final var load = ((LocalVariableToken) t).getSlot();
+                    values[size] = localValues[load];
+                    big[size++] = localBig[load];
+                    break;
+                case Token.TOKEN_STORE_LOCAL:
+                    final var store = ((LocalVariableToken) t).getSlot();
+                    if (null == localValues || store >= localValues.length) {
+                        final var capacity = store + 8;
+                        localValues = null == localValues ? new long[capacity] : Arrays.copyOf(localValues, capacity);
+                        localBig = null == localBig ? new BigDecimal[capacity] : Arrays.copyOf(localBig, capacity);
+                    }
+                    localValues[store] = values[--size];
+                    localBig[store] = big[size];
+                    big[size] = null;
+                    break;
+                case Token.TOKEN_OPERATOR:
+                    final var op = ((OperatorToken) t).getOperator();
+                    if (size < op.getNumOperands()) {
+                        if (orNull) {
+                            return null;
+                        }
+                        throw new IllegalArgumentException("Invalid number of operands available for '" + op.getSymbol() + "' operator");
+                    }
+                    if (2 == op.getNumOperands()) {
+                        final var r = --size;
+                        final var l = size - 1;
+                        if (null == big[l] && null == big[r] && this.applyExact(op, values, l, values[l], values[r])) {
+                            break;
+                        }
+                        final var left = this.toBigDecimal(values, big, l);
+                        final var right = this.toBigDecimal(values, big, r);
+                        big[r] = null;
+                        final var result = orNull ? BatchProgram.applyOrNull(kernels[i], op, mc, left, right)
+                                : null == mc ? op.apply2(left, right) : op.apply2(mc, left, right);
+                        if (null == result) {
+                            return null;
+                        }
+                        this.set(values, big, l, result);
+                    } else if (1 == op.getNumOperands()) {
+                        final var a = size - 1;
+                        if (null == big[a] && UNARY_PLUS == op) {
+                            break;
+                        }
+                        if (null == big[a] && NEGATION == op && Long.MIN_VALUE != values[a]) {
+                            values[a] = -values[a];
+                            break;
+                        }
+                        final var arg = this.toBigDecimal(values, big, a);
+                        final var result = orNull ? BatchProgram.applyOrNull(kernels[i], op, mc, arg, null)
+                                : null == mc ? op.apply1(arg) : op.apply1(mc, arg);
+                        if (null == result) {
+                            return null;
+                        }
+                        this.set(values, big, a, result);
+                    }
+                    break;
+                case Token.TOKEN_FUNCTION:
+                    final var func = ((FunctionToken) t).getFunction();
+                    final var numArguments = func.getNumArguments();
+                    if (size < numArguments) {
+                        if (orNull) {
+                            return null;
+                        }
+                        throw new IllegalArgumentException("Invalid number of arguments available for '" + func.getName() + "' function");
+                    }
+                    if (null == args || args.length < numArguments) {
+                        args = new BigDecimal[Math.max(3, numArguments)];
+                    }
+                    for (var j = numArguments - 1; 0 <= j; j--) {
+                        args[j] = this.toBigDecimal(values, big, --size);
+                        big[size] = null;
+                    }
+                    final var returned = orNull ? BatchProgram.applyOrNull(kernels[i], func, mc, args)
+                            : Expression.applyFunction(func, mc, args, numArguments);
+                    if (null == returned) {
+                        return null;
+                    }
+                    this.set(values, big, size++, returned);
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (orNull && 1 != size) {
+            return null;
+        }
+        if (1 < size) {
+            throw new IllegalArgumentException(
+                    "Invalid number of items on the output queue. Might be caused by an invalid number of arguments for a function.");
+        }
+        if (0 == size) {
+            throw new EmptyStackException();
+        }
+        return this.toBigDecimal(values, big, 0);
+    }
+
+    /**
+     * Try to apply a builtin operator on scaled longs
+     *
+     * @return false if the operator is not supported or the result would overflow
+     */
+    private boolean applyExact(final Operator op, final long[] values, final int target, final long a, final long b) {
+        if (ADDITION == op) {
+            final var sum = a + b;
+            if (0 > ((a ^ sum) & (b ^ sum))) {
+                return false;
+            }
+            values[target] = sum;
+            return true;
+        } else if (SUBTRACTION == op) {
+            final var difference = a - b;
+            if (0 > ((a ^ b) & (a ^ difference))) {
+                return false;
+            }
+            values[target] = difference;
+            return true;
+        } else if (MULTIPLICATION == op) {
+            final var low = a * b;
+            if (Math.multiplyHigh(a, b) != (low >> 63)) {
+                return false;
+            }
+            values[target] = divide(low, factor, rounding);
+            return true;
+        }
+        return false;
+    }
+
+    private void set(final long[] values, final BigDecimal[] big, final int index, final BigDecimal value) {
+        final var scaled = value.setScale(scale, rounding);
+        if (fits(scaled)) {
+            values[index] = scaled.unscaledValue().longValue();
+            big[index] = null;
+        } else {
+            big[index] = scaled;
+        }
+    }
+
+    private BigDecimal toBigDecimal(final long[] values, final BigDecimal[] big, final int index) {
+        return null == big[index] ? BigDecimal.valueOf(values[index], scale) : big[index];
+    }
+
+    private static boolean fits(final BigDecimal scaled) {
+        return 64 > scaled.unscaledValue().bitLength();
+    }
+
+    private static long pow10(final int exponent) {
+        var result = 1L;
+        for (var i = 0; i < exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+
+    /**
+     * Divide two longs rounding the quotient like {@link BigDecimal#setScale(int, RoundingMode)} does
+     */
+    static long divide(final long dividend, final long divisor, final RoundingMode rounding) {
+        final var quotient = dividend / divisor;
+        final var remainder = dividend % divisor;
+        if (0 == remainder) {
+            return quotient;
+        }
+        final var sign = 0 > dividend ? -1 : 1;
+        final var twice = Math.abs(remainder) * 2;
+        final boolean away;
+        switch (rounding) {
+            case UP:
+                away = true;
+                break;
+            case DOWN:
+                away = false;
+                break;
+            case CEILING:
+                away = 0 < sign;
+                break;
+            case FLOOR:
+                away = 0 > sign;
+                break;
+            case HALF_UP:
+                away = twice >= divisor;
+                break;
+            case HALF_DOWN:
+                away = twice > divisor;
+                break;
+            case HALF_EVEN:
+                away = twice > divisor || (twice == divisor && 0 != (quotient & 1));
+                break;
+            default:
+                throw new ArithmeticException("Rounding necessary");
+        }
+        return away ? quotient + sign : quotient;
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Function;
+import net.objecthunter.exp4j.operator.Operator;
+import net.objecthunter.exp4j.shuntingyard.ShuntingYard;
+import net.objecthunter.exp4j.tokenizer.OperatorToken;
+import net.objecthunter.exp4j.tokenizer.Token;
+import net.objecthunter.exp4j.tokenizer.Tokenizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An expression which keeps its tokens together with their positions in the expression string, so that it can be
+ * re-parsed cheaply after an edit. Tokens in front of and behind an edit are reused and only the edited region is
+ * tokenized again. Instances are immutable, {@link #edit(int, int, String)} returns a new instance.
+ */
+public class IncrementalExpression {
+
+    private final String text;
+
+    private final Map<String, Function> userFunctions;
+
+    private final Map<String, Operator> userOperators;
+
+    private final Set<String> variableNames;
+
+    private final boolean implicitMultiplication;
+
+    private final ExpressionBuilder.Settings settings;
+
+    private final Token[] tokens;
+
+    private final int[] starts;
+
+    private final int[] ends;
+
+    private final int reusedTokens;
+
+    private final Expression expression;
+
+    IncrementalExpression(final String text, final Map<String, Function> userFunctions,
+                          final Map<String, Operator> userOperators, final Set<String> variableNames,
+                          final ExpressionBuilder.Settings settings, final boolean implicitMultiplication) {
+        this.text = text;
+        this.userFunctions = userFunctions;
+        this.userOperators = userOperators;
+        this.variableNames = variableNames;
+        this.implicitMultiplication = implicitMultiplication;
+        this.settings = settings;
+
+        final var run = new TokenRun(16);
+        final var tokenizer = new Tokenizer(text, userFunctions, userOperators, variableNames, implicitMultiplication,
+                0, null);
+        while (tokenizer.hasNext()) {
+            final var start = tokenizer.getPosition();
+            final var token = tokenizer.nextToken();
+            run.add(token, start, tokenizer.getPosition());
+        }
+        this.tokens = run.tokens.toArray(new Token[0]);
+        this.starts = Arrays.copyOf(run.starts, run.size());
+        this.ends = Arrays.copyOf(run.ends, run.size());
+        this.reusedTokens = 0;
+        this.expression = settings.createExpression(toRPN(run));
+    }
+
+    private IncrementalExpression(final IncrementalExpression previous, final String text, final TokenRun run,
+                                  final int reusedTokens) {
+        this.text = text;
+        this.userFunctions = previous.userFunctions;
+        this.userOperators = previous.userOperators;
+        this.variableNames = previous.variableNames;
+        this.implicitMultiplication = previous.implicitMultiplication;
+        this.settings = previous.settings;
+        this.tokens = run.tokens.toArray(new Token[0]);
+        this.starts = Arrays.copyOf(run.starts, run.size());
+        this.ends = Arrays.copyOf(run.ends, run.size());
+        this.reusedTokens = reusedTokens;
+        this.expression = settings.createExpression(toRPN(run)).copyVariables(previous.expression);
+    }
+
+    /**
+     * Apply an edit to the expression string and re-parse the affected region
+     *
+     * @param offset        the position in the expression string at which the edit starts
+     * @param removedLength the number of characters removed at the given offset
+     * @param inserted      the text inserted at the given offset
+     * @return a new instance for the edited expression string, the variables set on the current {@link Expression}
+     * are carried over
+     */
+    public IncrementalExpression edit(final int offset, final int removedLength, final String inserted) {
+        if (0 > offset || 0 > removedLength || offset + removedLength > text.length()) {
+            throw new IllegalArgumentException("The edit [" + offset + ", " + (offset + removedLength)
+                    + "] is out of bounds for an expression of length " + text.length());
+        }
+        final var editedText = text.substring(0, offset) + inserted + text.substring(offset + removedLength);
+        if (editedText.trim().isEmpty()) {
+            throw new IllegalArgumentException("Expression can not be empty");
+        }
+        final var delta = inserted.length() - removedLength;
+
+        /* tokens which have not looked at any of the edited characters can be kept as they are */
+        var prefix = 0;
+        while (prefix < tokens.length && scanEnd(prefix) <= offset) {
+            prefix++;
+        }
+        final var run = new TokenRun(tokens.length + inserted.length());
+        for (var i = 0; i < prefix; i++) {
+            run.add(tokens[i], starts[i], ends[i]);
+        }
+
+        /* tokenize until the tokenizer is in the same state at the same position as before the edit */
+        var suffix = tokens.length;
+        final var tokenizer = new Tokenizer(editedText, userFunctions, userOperators, variableNames,
+                implicitMultiplication, 0 == prefix ? 0 : ends[prefix - 1], 0 == prefix ? null : tokens[prefix - 1]);
+        while (tokenizer.hasNext()) {
+            final var start = tokenizer.getPosition();
+            final var token = tokenizer.nextToken();
+            final var end = tokenizer.getPosition();
+            run.add(token, start, end);
+            final var resumeAt = resumeIndex(end - delta, offset + removedLength, token);
+            if (-1 != resumeAt) {
+                suffix = resumeAt;
+                break;
+            }
+        }
+        for (var i = suffix; i < tokens.length; i++) {
+            run.add(tokens[i], starts[i] + delta, ends[i] + delta);
+        }
+        return new IncrementalExpression(this, editedText, run, prefix + tokens.length - suffix);
+    }
+
+    /**
+     * Get the current expression string
+     *
+     * @return the expression string
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Get the {@link Expression} for the current expression string, configured like one returned by
+     * {@link ExpressionBuilder#build()}
+     *
+     * @return the expression
+     */
+    public Expression getExpression() {
+        return expression;
+    }
+
+    /**
+     * Validate the current expression
+     *
+     * @return the {@link ValidationResult} of the current {@link Expression}
+     * @see Expression#validate()
+     */
+    public ValidationResult validate() {
+        return expression.validate();
+    }
+
+    /**
+     * Get the number of tokens which have been taken over from the previous instance without tokenizing them again
+     *
+     * @return the number of reused tokens
+     */
+    public int getReusedTokens() {
+        return reusedTokens;
+    }
+
+    /**
+     * Convert the tokens to reverse polish notation and inline the functions defined by expressions
+     */
+    private static Token[] toRPN(final TokenRun run) {
+        return InlineFunction.expand(ShuntingYard.convertToRPN(run.tokens));
+    }
+
+    /**
+     * Get the position behind the last character the tokenizer had to look at for the token with the given index
+     */
+    private int scanEnd(final int index) {
+        var pos = ends[index];
+        switch (tokens[index].getType()) {
+            case Token.TOKEN_PARENTHESES_OPEN:
+            case Token.TOKEN_PARENTHESES_CLOSE:
+            case Token.TOKEN_SEPARATOR:
+                return pos;
+            case Token.TOKEN_NUMBER:
+                /* the tokenizer looks one character ahead and may roll back a trailing exponent char */
+                return pos + 2;
+            case Token.TOKEN_VARIABLE:
+            case Token.TOKEN_FUNCTION:
+                while (pos < text.length() && Tokenizer.isVariableOrFunctionCharacter(text.charAt(pos))) {
+                    pos++;
+                }
+                return pos + 1;
+            default:
+                while (pos < text.length() && Operator.isAllowedOperatorChar(text.charAt(pos))) {
+                    pos++;
+                }
+                return pos + 1;
+        }
+    }
+
+    /**
+     * Find the index of the old token at the given position, if the tokens from there on can be reused
+     */
+    private int resumeIndex(final int oldPosition, final int editEnd, final Token lastToken) {
+        if (oldPosition < editEnd) {
+            return -1;
+        }
+        var index = Arrays.binarySearch(starts, oldPosition);
+        if (0 > index) {
+            return -1;
+        }
+        /* there might be a zero width implicit multiplication token at the same position */
+        while (0 < index && starts[index - 1] == oldPosition) {
+            index--;
+        }
+        if (0 == index || !isSameState(tokens[index - 1], lastToken)) {
+            return -1;
+        }
+        return index;
+    }
+
+    /**
+     * The tokenizer only looks at the type of the last token and the operator of an operator token
+     */
+    private static boolean isSameState(final Token previous, final Token current) {
+        if (previous.getType() != current.getType()) {
+            return false;
+        }
+        return Token.TOKEN_OPERATOR != current.getType()
+                || ((OperatorToken) previous).getOperator() == ((OperatorToken) current).getOperator();
+    }
+
+    private static final class TokenRun {
+
+        private final List<Token> tokens;
+
+        private int[] starts;
+
+        private int[] ends;
+
+        private TokenRun(final int initialCapacity) {
+            this.tokens = new ArrayList<>(initialCapacity);
+            this.starts = new int[initialCapacity];
+            this.ends = new int[initialCapacity];
+        }
+
+        private void add(final Token token, final int start, final int end) {
+            final var idx = tokens.size();
+            if (idx == starts.length) {
+                starts = Arrays.copyOf(starts, (int) (idx * 1.5) + 1);
+                ends = Arrays.copyOf(ends, starts.length);
+            }
+            tokens.add(token);
+            starts[idx] = start;
+            ends[idx] = end;
+        }
+
+        private int size() {
+            return tokens.size();
+        }
+    }
+}
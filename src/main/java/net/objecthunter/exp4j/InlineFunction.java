@@ -0,0 +1,223 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Function;
+import net.objecthunter.exp4j.function.Functions;
+import net.objecthunter.exp4j.operator.Operator;
+import net.objecthunter.exp4j.shuntingyard.ShuntingYard;
+import net.objecthunter.exp4j.tokenizer.FunctionToken;
+import net.objecthunter.exp4j.tokenizer.LocalVariableToken;
+import net.objecthunter.exp4j.tokenizer.NumberToken;
+import net.objecthunter.exp4j.tokenizer.Token;
+import net.objecthunter.exp4j.tokenizer.VariableToken;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A function defined by an expression, e.g. <code>f(x,y) = x^2 + y</code>. Calls are replaced by the body of the
+ * function when an expression is built: the arguments are stored in local slots and the body loads them from there,
+ * so no nested expression has to be evaluated per call.
+ * <p>
+ * The body is compiled with the parameters in the slots <code>0..n-1</code>, calls to other inline functions in
+ * the body are expanded using the slots from <code>n</code> on. At a call site all slots are shifted by the first
+ * slot which is not in use by the caller.
+ */
+final class InlineFunction extends Function {
+
+    private final String[] parameters;
+
+    private final String body;
+
+    private Token[] tokens;
+
+    private Map<String, BigDecimal> constants;
+
+    /* the first variable of the body which is neither a parameter nor a constant, null if there is none */
+    private String freeVariable;
+
+    InlineFunction(final String name, final String[] parameters, final String body) {
+        super(name, parameters.length);
+        this.parameters = parameters;
+        this.body = body;
+    }
+
+    /**
+     * Parse a definition like <code>f(x, y)</code> and the body of the function
+     */
+    static InlineFunction define(final String signature, final String body) {
+        final var open = signature.indexOf('(');
+        if (0 > open || !signature.trim().endsWith(")")) {
+            throw new IllegalArgumentException("Expected a signature like 'f(x, y)' but got '" + signature + "'");
+        }
+        final var name = signature.substring(0, open).trim();
+        final var list = signature.substring(open + 1, signature.lastIndexOf(')')).trim();
+        final var parameters = list.isEmpty() ? new String[0] : list.split(",");
+        final var unique = new HashSet<String>();
+        for (var i = 0; i < parameters.length; i++) {
+            parameters[i] = parameters[i].trim();
+            if (!Function.isValidFunctionName(parameters[i]) || null != Functions.getBuiltinFunction(parameters[i])) {
+                throw new IllegalArgumentException("The parameter name '" + parameters[i] + "' of '" + name + "' is invalid");
+            }
+            if (!unique.add(parameters[i])) {
+                throw new IllegalArgumentException("Duplicate parameter '" + parameters[i] + "' in '" + signature + "'");
+            }
+        }
+        if (null == body || body.trim().isEmpty()) {
+            throw new IllegalArgumentException("The body of '" + name + "' can not be empty");
+        }
+        return new InlineFunction(name, parameters, body);
+    }
+
+    /**
+     * Compile the body of the function and of all inline functions it calls
+     *
+     * @param inProgress the functions currently being compiled, used to detect recursion
+     */
+    void compile(final Map<String, Function> functions, final Map<String, Operator> operators,
+                 final Set<String> variableNames, final Map<String, BigDecimal> constants,
+                 final Set<InlineFunction> inProgress) {
+        if (null != this.tokens) {
+            return;
+        }
+        if (!inProgress.add(this)) {
+            throw new IllegalArgumentException("The function '" + getName() + "' is defined recursively");
+        }
+        for (final var p : parameters) {
+            if (functions.containsKey(p)) {
+                throw new IllegalArgumentException("The parameter name '" + p + "' of '" + getName() + "' is invalid");
+            }
+        }
+        final var names = new HashSet<>(variableNames);
+        Collections.addAll(names, parameters);
+        final var rpn = ShuntingYard.convertToRPN(body, functions, operators, names, true);
+        final var loads = Arrays.asList(parameters);
+        for (var i = 0; i < rpn.length; i++) {
+            final var t = rpn[i];
+            if (Token.TOKEN_VARIABLE == t.getType()) {
+                final var slot = loads.indexOf(((VariableToken) t).getName());
+                if (0 <= slot) {
+                    rpn[i] = new LocalVariableToken(parameters[slot], slot, false);
+                } else if (null == freeVariable && !constants.containsKey(((VariableToken) t).getName())) {
+                    freeVariable = ((VariableToken) t).getName();
+                }
+            } else if (Token.TOKEN_FUNCTION == t.getType()
+                    && ((FunctionToken) t).getFunction() instanceof InlineFunction) {
+                final var callee = (InlineFunction) ((FunctionToken) t).getFunction();
+                callee.compile(functions, operators, variableNames, constants, inProgress);
+                if (null == freeVariable) {
+                    freeVariable = callee.freeVariable;
+                }
+            }
+        }
+        this.tokens = expand(rpn, parameters.length);
+        this.constants = constants;
+        inProgress.remove(this);
+    }
+
+    /**
+     * Get the constants of the environment the function was compiled in, null if it has not been compiled
+     */
+    Map<String, BigDecimal> getConstants() {
+        return constants;
+    }
+
+    /**
+     * Replace all calls to inline functions in an expression by their bodies
+     *
+     * @param tokens the tokens of the expression in reverse polish notation
+     * @return the expanded tokens or the given array if it does not contain calls to inline functions
+     */
+    static Token[] expand(final Token[] tokens) {
+        var base = 0;
+        for (final var t : tokens) {
+            if (Token.TOKEN_STORE_LOCAL == t.getType()) {
+                base = Math.max(base, ((LocalVariableToken) t).getSlot() + 1);
+            }
+        }
+        return expand(tokens, base);
+    }
+
+    private static Token[] expand(final Token[] tokens, final int base) {
+        List<Token> output = null;
+        for (var i = 0; i < tokens.length; i++) {
+            final var t = tokens[i];
+            if (Token.TOKEN_FUNCTION == t.getType() && ((FunctionToken) t).getFunction() instanceof InlineFunction) {
+                if (null == output) {
+                    output = new ArrayList<>(tokens.length * 2);
+                    output.addAll(Arrays.asList(tokens).subList(0, i));
+                }
+                ((InlineFunction) ((FunctionToken) t).getFunction()).emit(output, base);
+            } else if (null != output) {
+                output.add(t);
+            }
+        }
+        return null == output ? tokens : output.toArray(new Token[0]);
+    }
+
+    private void emit(final List<Token> output, final int base) {
+        /* the arguments are on the stack, the last one on top */
+        for (var i = parameters.length - 1; 0 <= i; i--) {
+            output.add(new LocalVariableToken(parameters[i], base + i, true));
+        }
+        for (final var t : tokens) {
+            if (Token.TOKEN_LOCAL == t.getType() || Token.TOKEN_STORE_LOCAL == t.getType()) {
+                final var local = (LocalVariableToken) t;
+                output.add(new LocalVariableToken(local.getName(), local.getSlot() + base,
+                        Token.TOKEN_STORE_LOCAL == t.getType()));
+            } else {
+                output.add(t);
+            }
+        }
+    }
+
+    /**
+     * Evaluate the body for calls which have not been inlined, e.g. when the function is called directly. All build
+     * paths of {@link ExpressionBuilder} inline the calls, so this is not used when evaluating expressions. Only the
+     * constants of the environment are available to the body in this case, so bodies using variables are rejected.
+     */
+    @Override
+    public BigDecimal apply(final BigDecimal... args) {
+        return apply((MathContext) null, args);
+    }
+
+    @Override
+    public BigDecimal apply(final MathContext mc, final BigDecimal... args) {
+        if (null == tokens) {
+            throw new IllegalStateException("The function '" + getName() + "' has not been compiled");
+        }
+        if (null != freeVariable) {
+            throw new IllegalStateException("The function '" + getName() + "' uses the variable '" + freeVariable
+                    + "' and can only be called from an expression");
+        }
+        final var call = new ArrayList<Token>(args.length * 2 + tokens.length);
+        for (final var arg : args) {
+            call.add(new NumberToken(arg));
+        }
+        emit(call, 0);
+        return new Expression(call.toArray(new Token[0]), Collections.emptySet(), constants)
+                .setMathContext(mc)
+                .evaluate();
+    }
+}
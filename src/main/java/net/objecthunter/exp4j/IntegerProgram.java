@@ -0,0 +1,231 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.operator.Operator;
+import net.objecthunter.exp4j.operator.Operators;
+import net.objecthunter.exp4j.tokenizer.LiteralToken;
+import net.objecthunter.exp4j.tokenizer.LocalVariableToken;
+import net.objecthunter.exp4j.tokenizer.NumberToken;
+import net.objecthunter.exp4j.tokenizer.OperatorToken;
+import net.objecthunter.exp4j.tokenizer.Token;
+import net.objecthunter.exp4j.tokenizer.VariableToken;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evaluation of integer-only expressions on <code>long</code> values. An expression is integer-only if it consists
+ * of integer numbers, variables declared as integers, let-bindings and the builtin operators <code>+ - * %</code>.
+ * The evaluation gives up and returns null if a value is not an integer with a scale of 0 at runtime, an operation
+ * overflows or a remainder is divided by zero, in which case the expression has to be evaluated using
+ * {@link BigDecimal}. Values like <code>1.0</code> are not integers here, since the result would lose their scale.
+ */
+final class IntegerProgram {
+
+    private static final int OP_ADD = 0;
+    private static final int OP_SUBTRACT = 1;
+    private static final int OP_MULTIPLY = 2;
+    private static final int OP_REMAINDER = 3;
+    private static final int OP_NEGATE = 4;
+    private static final int OP_PLUS = 5;
+
+    private static final Operator[] OPERATORS = {
+            Operators.getBuiltinOperator('+', 2),
+            Operators.getBuiltinOperator('-', 2),
+            Operators.getBuiltinOperator('*', 2),
+            Operators.getBuiltinOperator('%', 2),
+            Operators.getBuiltinOperator('-', 1),
+            Operators.getBuiltinOperator('+', 1)
+    };
+
+    private final Token[] tokens;
+
+    private final Set<String> integerVariables;
+
+    /* the values of the number tokens and the operator codes by token index */
+    private final long[] numbers;
+
+    private final int[] operators;
+
+    private IntegerProgram(final Token[] tokens, final Set<String> integerVariables, final long[] numbers,
+                           final int[] operators) {
+        this.tokens = tokens;
+        this.integerVariables = integerVariables;
+        this.numbers = numbers;
+        this.operators = operators;
+    }
+
+    /**
+     * Check whether the tokens are integer-only and create the program evaluating them
+     *
+     * @param tokens           the tokens in reverse polish notation
+     * @param integerVariables the names of the variables declared as integers
+     * @return the program or null if the tokens are not integer-only
+     */
+    static IntegerProgram compile(final Token[] tokens, final Set<String> integerVariables) {
+        final var numbers = new long[tokens.length];
+        final var operators = new int[tokens.length];
+        for (var i = 0; i < tokens.length; i++) {
+            final var t = tokens[i];
+            switch (t.getType()) {
+                case Token.TOKEN_NUMBER:
+                    final var value = ((NumberToken) t).getValue();
+                    if (!isLong(value)) {
+                        return null;
+                    }
+                    numbers[i] = value.longValue();
+                    break;
+                case Token.TOKEN_VARIABLE:
+                    if (!integerVariables.contains(((VariableToken) t).getName())) {
+                        return null;
+                    }
+                    break;
+                case Token.TOKEN_OPERATOR:
+                    operators[i] = indexOf(((OperatorToken) t).getOperator());
+                    if (0 > operators[i]) {
+                        return null;
+                    }
+                    break;
+                case Token.TOKEN_LITERAL:
+                case Token.TOKEN_LOCAL:
+                case Token.TOKEN_STORE_LOCAL:
+                    break;
+                default:
+                    return null;
+            }
+        }
+        return new IntegerProgram(tokens, integerVariables, numbers, operators);
+    }
+
+    /**
+     * Create the program for other tokens using the same integer variables
+     *
+     * @return the program or null if the tokens are not integer-only
+     */
+    IntegerProgram forTokens(final Token[] tokens) {
+        return tokens == this.tokens ? this : compile(tokens, integerVariables);
+    }
+
+    Set<String> getIntegerVariables() {
+        return integerVariables;
+    }
+
+    /**
+     * Evaluate the program
+     *
+     * @return the result or null if the expression has to be evaluated using {@link BigDecimal}
+     */
+    BigDecimal evaluate(final Map<String, BigDecimal> variables, final BigDecimal[] literals) {
+        final var stack = new long[tokens.length];
+        long[] locals = null;
+        var size = 0;
+        for (var i = 0; i < tokens.length; i++) {
+            final var t = tokens[i];
+            switch (t.getType()) {
+                case Token.TOKEN_NUMBER:
+                    stack[size++] = numbers[i];
+                    break;
+                case Token.TOKEN_LITERAL:
+                    final var literal = literals[((LiteralToken) t).getIndex()];
+                    if (!isLong(literal)) {
+                        return null;
+                    }
+                    stack[size++] = literal.longValue();
+                    break;
+                case Token.TOKEN_VARIABLE:
+                    final var value = variables.get(((VariableToken) t).getName());
+                    if (null == value || !isLong(value)) {
+                        return null;
+                    }
+                    stack[size++] = value.longValue();
+                    break;
+                case Token.TOKEN_LOCAL:
+                    stack[size++] = locals[((LocalVariableToken) t).getSlot()];
+                    break;
+                case Token.TOKEN_STORE_LOCAL:
+                    final var slot = ((LocalVariableToken) t).getSlot();
+                    if (null == locals) {
+                        locals = new long[slot + 4];
+                    } else if (slot >= locals.length) {
+                        locals = Arrays.copyOf(locals, slot * 2);
+                    }
+                    locals[slot] = stack[--size];
+                    break;
+                default:
+                    final var op = operators[i];
+                    if (OP_NEGATE <= op) {
+                        if (1 > size) {
+                            return null;
+                        }
+                        if (OP_NEGATE == op) {
+                            if (Long.MIN_VALUE == stack[size - 1]) {
+                                return null;
+                            }
+                            stack[size - 1] = -stack[size - 1];
+                        }
+                        break;
+                    }
+                    if (2 > size) {
+                        return null;
+                    }
+                    final var b = stack[--size];
+                    final var a = stack[size - 1];
+                    final long result;
+                    if (OP_ADD == op) {
+                        result = a + b;
+                        if (0 > ((a ^ result) & (b ^ result))) {
+                            return null;
+                        }
+                    } else if (OP_SUBTRACT == op) {
+                        result = a - b;
+                        if (0 > ((a ^ b) & (a ^ result))) {
+                            return null;
+                        }
+                    } else if (OP_MULTIPLY == op) {
+                        result = a * b;
+                        if (Math.multiplyHigh(a, b) != (result >> 63)) {
+                            return null;
+                        }
+                    } else {
+                        if (0 == b) {
+                            return null;
+                        }
+                        result = a % b;
+                    }
+                    stack[size - 1] = result;
+                    break;
+            }
+        }
+        return 1 == size ? BigDecimal.valueOf(stack[0]) : null;
+    }
+
+    private static int indexOf(final Operator operator) {
+        for (var i = 0; i < OPERATORS.length; i++) {
+            if (OPERATORS[i] == operator) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /* only values without a fractional scale, so the result has the same scale as the BigDecimal evaluation */
+    private static boolean isLong(final BigDecimal value) {
+        return 0 == value.scale() && (19 > value.precision() || 64 > value.unscaledValue().bitLength());
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Function;
+import net.objecthunter.exp4j.operator.Operator;
+import net.objecthunter.exp4j.shuntingyard.ShuntingYard;
+import net.objecthunter.exp4j.tokenizer.Token;
+
+import java.lang.ref.SoftReference;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A handle to an expression which is only converted to reverse polish notation when it is used for the first time.
+ * Until then only the expression string and the configuration of the {@link ExpressionBuilder} are kept. Instances
+ * are safe for use by multiple threads, each call to {@link #getExpression()} returns a new {@link Expression} which
+ * shares the compiled tokens with all other expressions created by this handle.
+ */
+public class LazyExpression {
+
+    private final String expression;
+
+    private final Map<String, Function> userFunctions;
+
+    private final Map<String, Operator> userOperators;
+
+    private final Set<String> variableNames;
+
+    private final ExpressionBuilder.Settings settings;
+
+    private final boolean implicitMultiplication;
+
+    private final boolean letBindings;
+
+    private final boolean discardable;
+
+    private volatile Token[] tokens;
+
+    private volatile SoftReference<Token[]> softTokens;
+
+    LazyExpression(final String expression, final Map<String, Function> userFunctions,
+                   final Map<String, Operator> userOperators, final Set<String> variableNames,
+                   final ExpressionBuilder.Settings settings, final boolean implicitMultiplication,
+                   final boolean letBindings, final boolean discardable) {
+        this.expression = expression;
+        this.userFunctions = userFunctions;
+        this.userOperators = userOperators;
+        this.variableNames = variableNames;
+        this.settings = settings;
+        this.implicitMultiplication = implicitMultiplication;
+        this.letBindings = letBindings;
+        this.discardable = discardable;
+    }
+
+    /**
+     * Get the expression string this handle has been created with
+     *
+     * @return the expression string
+     */
+    public String getSource() {
+        return expression;
+    }
+
+    /**
+     * Check if the expression is currently held in its compiled form. For discardable handles the compiled form
+     * might be released by the garbage collector at any time, in which case it will be compiled again on next use.
+     *
+     * @return true if the compiled form is available, false otherwise
+     */
+    public boolean isCompiled() {
+        return null != this.compiled();
+    }
+
+    /**
+     * Check if the compiled form of this handle may be discarded under memory pressure
+     *
+     * @return true if the compiled form is only softly reachable, false otherwise
+     */
+    public boolean isDiscardable() {
+        return discardable;
+    }
+
+    /**
+     * Create a new {@link Expression} for this handle, compiling the expression string if necessary. The expression
+     * is configured like one returned by {@link ExpressionBuilder#build()}.
+     *
+     * @return a new {@link Expression} instance with its own set of variables
+     */
+    public Expression getExpression() {
+        return this.settings.createExpression(this.compile());
+    }
+
+    /**
+     * Evaluate the expression using the given variable values
+     *
+     * @param variables the values of the variables used in the expression
+     * @return the result of the evaluation
+     */
+    public BigDecimal evaluate(final Map<String, BigDecimal> variables) {
+        return this.getExpression()
+                .setVariables(variables)
+                .evaluate();
+    }
+
+    /**
+     * Release the compiled form of a discardable handle as the garbage collector would under memory pressure
+     */
+    void discard() {
+        final var ref = this.softTokens;
+        if (null != ref) {
+            ref.clear();
+        }
+    }
+
+    private Token[] compiled() {
+        if (this.discardable) {
+            final var ref = this.softTokens;
+            return null == ref ? null : ref.get();
+        }
+        return this.tokens;
+    }
+
+    private Token[] compile() {
+        var compiled = this.compiled();
+        if (null == compiled) {
+            synchronized (this) {
+                compiled = this.compiled();
+                if (null == compiled) {
+                    if (this.letBindings && 0 <= this.expression.indexOf(';')) {
+                        compiled = LetBindings.compile(this.expression, this.userFunctions, this.userOperators,
+                                this.variableNames, this.implicitMultiplication);
+                    } else {
+                        compiled = ShuntingYard.convertToRPN(this.expression, this.userFunctions,
+                                this.userOperators, this.variableNames, this.implicitMultiplication);
+                    }
+                    /* functions defined by expressions are inlined like in ExpressionBuilder.build() */
+                    compiled = InlineFunction.expand(compiled);
+                    if (this.discardable) {
+                        this.softTokens = new SoftReference<>(compiled);
+                    } else {
+                        this.tokens = compiled;
+                    }
+                }
+            }
+        }
+        return compiled;
+    }
+}
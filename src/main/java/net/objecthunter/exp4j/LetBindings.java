@@ -0,0 +1,163 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Function;
+import net.objecthunter.exp4j.function.Functions;
+import net.objecthunter.exp4j.operator.Operator;
+import net.objecthunter.exp4j.shuntingyard.ShuntingYard;
+import net.objecthunter.exp4j.tokenizer.Diagnostic;
+import net.objecthunter.exp4j.tokenizer.LocalVariableToken;
+import net.objecthunter.exp4j.tokenizer.Token;
+import net.objecthunter.exp4j.tokenizer.VariableToken;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiles expressions consisting of let-bindings followed by a result expression, e.g.
+ * <code>a = x*y + z; b = sqrt(a); a*b + log(b)</code>, into a single token array. Every binding is evaluated once,
+ * its value is kept in a numbered slot and loaded wherever the name is referenced later on.
+ */
+final class LetBindings {
+
+    private LetBindings() {
+    }
+
+    static Token[] compile(final String expression, final Map<String, Function> userFunctions,
+                           final Map<String, Operator> userOperators, final Set<String> variableNames,
+                           final boolean implicitMultiplication) {
+        return compile(expression, userFunctions, userOperators, variableNames, implicitMultiplication, null);
+    }
+
+    /**
+     * Compile the let-bindings and the result expression. If a list of diagnostics is given, problems are added to
+     * the list with their span in the whole expression string instead of being thrown, and the returned tokens can
+     * only be evaluated if no problem has been added.
+     */
+    static Token[] compile(final String expression, final Map<String, Function> userFunctions,
+                           final Map<String, Operator> userOperators, final Set<String> variableNames,
+                           final boolean implicitMultiplication, final List<Diagnostic> diagnostics) {
+        for (final var symbol : userOperators.keySet()) {
+            if (0 <= symbol.indexOf(';')) {
+                report(diagnostics, Diagnostic.NAME_CLASH, 0, expression.length(),
+                        "The operator '" + symbol + "' can not be used together with let bindings");
+            }
+        }
+
+        final var offsets = new ArrayList<Integer>();
+        final var statements = split(expression, offsets);
+        final var names = new HashSet<>(variableNames);
+        final var slots = new HashMap<String, Integer>();
+        final var loads = new ArrayList<Token>();
+        final var output = new ArrayList<Token>();
+        for (var i = 0; i < statements.size(); i++) {
+            var statement = statements.get(i);
+            var offset = offsets.get(i);
+            String local = null;
+            if (i < statements.size() - 1) {
+                final var eq = statement.indexOf('=');
+                local = 0 > eq ? "" : statement.substring(0, eq).trim();
+                if (!Function.isValidFunctionName(local)) {
+                    report(diagnostics, Diagnostic.INVALID_BINDING, offset, offset + statement.length(),
+                            "Expected a binding 'name = expression' but got '" + statement.trim() + "'");
+                    continue;
+                }
+                if (variableNames.contains(local) || userFunctions.containsKey(local) || null != Functions.getBuiltinFunction(local)) {
+                    report(diagnostics, Diagnostic.NAME_CLASH, offset, offset + eq,
+                            "The local variable '" + local + "' can not have the same name as a variable or function");
+                }
+                statement = statement.substring(eq + 1);
+                offset += eq + 1;
+            }
+            if (statement.trim().isEmpty()) {
+                report(diagnostics, Diagnostic.EMPTY_EXPRESSION, offset, offset + statement.length(),
+                        "Empty statement in '" + expression + "'");
+            } else if (null == diagnostics) {
+                addTokens(output, ShuntingYard.convertToRPN(statement, userFunctions, userOperators, names,
+                        implicitMultiplication), slots, loads);
+            } else {
+                final var problems = new ArrayList<Diagnostic>(0);
+                addTokens(output, ShuntingYard.convertToRPN(statement, userFunctions, userOperators, names,
+                        implicitMultiplication, problems), slots, loads);
+                for (final var d : problems) {
+                    diagnostics.add(new Diagnostic(d.getCode(), offset + d.getStart(), offset + d.getEnd(), d.getMessage()));
+                }
+            }
+
+            if (null != local) {
+                /* a binding which reuses a name gets a new slot, so earlier references keep their value */
+                final int slot = loads.size();
+                loads.add(new LocalVariableToken(local, slot, false));
+                output.add(new LocalVariableToken(local, slot, true));
+                slots.put(local, slot);
+                names.add(local);
+            }
+        }
+        return output.toArray(new Token[0]);
+    }
+
+    private static void addTokens(final List<Token> output, final Token[] tokens, final Map<String, Integer> slots,
+                                  final List<Token> loads) {
+        for (final var token : tokens) {
+            final var slot = Token.TOKEN_VARIABLE == token.getType() ? slots.get(((VariableToken) token).getName()) : null;
+            output.add(null == slot ? token : loads.get(slot));
+        }
+    }
+
+    /**
+     * Throw the problem, or add it to the diagnostics if given
+     */
+    private static void report(final List<Diagnostic> diagnostics, final int code, final int start, final int end,
+                               final String message) {
+        if (null == diagnostics) {
+            throw new IllegalArgumentException(message);
+        }
+        diagnostics.add(new Diagnostic(code, start, end, message));
+    }
+
+    /**
+     * Split the expression at semicolons outside of parentheses, ignoring a trailing semicolon. The position of each
+     * statement in the expression is added to the offsets.
+     */
+    private static List<String> split(final String expression, final List<Integer> offsets) {
+        final var statements = new ArrayList<String>();
+        var depth = 0;
+        var start = 0;
+        for (var i = 0; i < expression.length(); i++) {
+            final var ch = expression.charAt(i);
+            if ('(' == ch || '[' == ch || '{' == ch) {
+                depth++;
+            } else if (')' == ch || ']' == ch || '}' == ch) {
+                depth--;
+            } else if (';' == ch && 0 == depth) {
+                statements.add(expression.substring(start, i));
+                offsets.add(start);
+                start = i + 1;
+            }
+        }
+        final var last = expression.substring(start);
+        if (statements.isEmpty() || !last.trim().isEmpty()) {
+            statements.add(last);
+            offsets.add(start);
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Function;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Tabulation of a function of one variable over a fixed domain. The function is sampled at equally spaced points and
+ * interpolated in between, so a lookup is an index computation and a few multiply-adds. The number of points is
+ * doubled until the interpolation error, measured halfway between the points, is within the requested tolerance.
+ */
+public final class LookupTable {
+
+    /** Interpolate linearly between the two neighbouring points */
+    public static final int LINEAR = 1;
+
+    /** Interpolate with the cubic polynomial through the four neighbouring points */
+    public static final int CUBIC = 3;
+
+    private static final int MIN_INTERVALS = 16;
+
+    private static final int MAX_INTERVALS = 1 << 22;
+
+    private final double min;
+
+    private final double max;
+
+    private final int interpolation;
+
+    /* the number of intervals divided by the width of the domain */
+    private final double scale;
+
+    private final double[] values;
+
+    private LookupTable(final double min, final double max, final int interpolation, final double[] values) {
+        this.min = min;
+        this.max = max;
+        this.interpolation = interpolation;
+        this.scale = (values.length - 1) / (max - min);
+        this.values = values;
+    }
+
+    /**
+     * Tabulate an expression of one variable. All other variables of the expression have to be set.
+     *
+     * @param expression    the expression to tabulate
+     * @param variable      the name of the variable the table is indexed with
+     * @param min           the lower bound of the domain
+     * @param max           the upper bound of the domain
+     * @param tolerance     the maximum absolute error of the interpolation
+     * @param interpolation {@link #LINEAR} or {@link #CUBIC}
+     * @return the lookup table
+     */
+    public static LookupTable tabulate(final Expression expression, final String variable, final double min,
+                                       final double max, final double tolerance, final int interpolation) {
+        final var e = new Expression(expression);
+        return tabulate(x -> e.setVariable(variable, x).evaluate().doubleValue(), min, max, tolerance, interpolation);
+    }
+
+    /**
+     * Tabulate a function of one argument
+     *
+     * @param function      the function to tabulate
+     * @param min           the lower bound of the domain
+     * @param max           the upper bound of the domain
+     * @param tolerance     the maximum absolute error of the interpolation
+     * @param interpolation {@link #LINEAR} or {@link #CUBIC}
+     * @return the lookup table
+     */
+    public static LookupTable tabulate(final Function function, final double min, final double max,
+                                       final double tolerance, final int interpolation) {
+        if (1 != function.getNumArguments()) {
+            throw new IllegalArgumentException("Only functions of one argument can be tabulated but '"
+                    + function.getName() + "' has " + function.getNumArguments());
+        }
+        return tabulate(function::applyAsDouble, min, max, tolerance, interpolation);
+    }
+
+    /**
+     * Tabulate a function of one argument
+     *
+     * @param function      the function to tabulate
+     * @param min           the lower bound of the domain
+     * @param max           the upper bound of the domain
+     * @param tolerance     the maximum absolute error of the interpolation
+     * @param interpolation {@link #LINEAR} or {@link #CUBIC}
+     * @return the lookup table
+     */
+    public static LookupTable tabulate(final DoubleUnaryOperator function, final double min, final double max,
+                                       final double tolerance, final int interpolation) {
+        if (!(min < max) || Double.isInfinite(max - min)) {
+            throw new IllegalArgumentException("Invalid domain [" + min + ", " + max + "] for a lookup table");
+        }
+        if (!(0d < tolerance)) {
+            throw new IllegalArgumentException("The tolerance of a lookup table has to be positive but was " + tolerance);
+        }
+        if (LINEAR != interpolation && CUBIC != interpolation) {
+            throw new IllegalArgumentException("Unknown interpolation " + interpolation);
+        }
+        var values = sample(function, min, max, MIN_INTERVALS);
+        while (true) {
+            final var table = new LookupTable(min, max, interpolation, values);
+            final var intervals = values.length - 1;
+            final var step = (max - min) / intervals;
+
+            /* the points halfway between the points of the table are those of the next table */
+            final var next = new double[2 * intervals + 1];
+            var error = 0d;
+            for (var i = 0; i < intervals; i++) {
+                final var x = min + (i + 0.5d) * step;
+                final var y = function.applyAsDouble(x);
+                error = Math.max(error, Math.abs(y - table.valueAt(x)));
+                next[2 * i] = values[i];
+                next[2 * i + 1] = y;
+            }
+            next[2 * intervals] = values[intervals];
+            if (!Double.isFinite(error)) {
+                throw new IllegalArgumentException("The function is not finite on the domain [" + min + ", " + max + "]");
+            }
+            if (error <= tolerance) {
+                return table;
+            }
+            if (2 * intervals > MAX_INTERVALS) {
+                throw new IllegalArgumentException("The tolerance " + tolerance + " can not be met with a table of "
+                        + MAX_INTERVALS + " intervals, the error is " + error);
+            }
+            values = next;
+        }
+    }
+
+    private static double[] sample(final DoubleUnaryOperator function, final double min, final double max,
+                                   final int intervals) {
+        final var values = new double[intervals + 1];
+        final var step = (max - min) / intervals;
+        for (var i = 0; i < intervals; i++) {
+            values[i] = function.applyAsDouble(min + i * step);
+        }
+        values[intervals] = function.applyAsDouble(max);
+        return values;
+    }
+
+    /**
+     * Look up the interpolated value of the function
+     *
+     * @param x the argument, within the domain of the table
+     * @return the interpolated value
+     */
+    public double valueAt(final double x) {
+        if (!(min <= x && x <= max)) {
+            throw new IllegalArgumentException("The argument " + x + " is outside of the domain [" + min + ", " + max + "]");
+        }
+        final var last = values.length - 1;
+        final var position = (x - min) * scale;
+        final var i = Math.min((int) position, last - 1);
+        final var t = position - i;
+        if (LINEAR == interpolation) {
+            return values[i] + t * (values[i + 1] - values[i]);
+        }
+        /* the cubic through the points i-1 .. i+2, shifted inwards at the bounds of the table */
+        final var j = Math.max(1, Math.min(i, last - 2));
+        final var u = t + (i - j);
+        final var p0 = values[j - 1];
+        final var p1 = values[j];
+        final var p2 = values[j + 1];
+        final var p3 = values[j + 2];
+        /* Newton form of the interpolating polynomial at the nodes -1, 0, 1, 2 */
+        final var d1 = p1 - p0;
+        final var d2 = (p2 - 2 * p1 + p0) * 0.5d;
+        final var d3 = (p3 - 3 * p2 + 3 * p1 - p0) / 6d;
+        return p0 + (u + 1) * (d1 + u * (d2 + (u - 1) * d3));
+    }
+
+    /**
+     * Get the number of points the function has been sampled at
+     *
+     * @return the size of the table
+     */
+    public int getSize() {
+        return values.length;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public int getInterpolation() {
+        return interpolation;
+    }
+
+    /**
+     * Create a function which looks up its value in this table, so it can be used in place of the tabulated
+     * function or expression
+     *
+     * @param name the name of the function
+     * @return the function
+     */
+    public Function asFunction(final String name) {
+        return Function.ofDouble(name, this::valueAt);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.tokenizer.Token;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry which lets all expressions with the same canonical form share a single compiled program, see
+ * {@link Expression#getCanonicalForm()}. The fixed-point, integer, rational, adaptive and tiered programs derived
+ * from the tokens are shared as well, once per combination of the settings they were created with. Instances are
+ * safe for use by multiple threads.
+ */
+public class ProgramInterner {
+
+    private final ConcurrentHashMap<CanonicalForm, Program> programs = new ConcurrentHashMap<>();
+
+    /**
+     * Get an expression using the shared program for the canonical form of the given expression. The returned
+     * expression has its own variables, initialized with the values set on the given expression.
+     *
+     * @param expression the expression to intern
+     * @return the given expression if it already uses the shared program, a new expression otherwise
+     */
+    public Expression intern(final Expression expression) {
+        final var form = CanonicalForm.of(expression.getTokens());
+        final var program = programs.computeIfAbsent(form, Program::new);
+        if (program.tokens == expression.getTokens()) {
+            return expression;
+        }
+        /* the first expression with a combination of settings derives the programs, all others share them */
+        final var template = program.templates.computeIfAbsent(expression.getProgramKey(),
+                key -> new Expression(program.tokens, expression));
+        return new Expression(template, expression);
+    }
+
+    /**
+     * Get the number of distinct programs registered
+     *
+     * @return the number of programs
+     */
+    public int size() {
+        return programs.size();
+    }
+
+    /**
+     * Remove all registered programs
+     */
+    public void clear() {
+        programs.clear();
+    }
+
+    private static final class Program {
+
+        private final Token[] tokens;
+
+        /* expressions holding the derived programs by the key of their settings, never handed out */
+        private final ConcurrentHashMap<List<Object>, Expression> templates = new ConcurrentHashMap<>();
+
+        private Program(final CanonicalForm form) {
+            this.tokens = form.getTokens();
+        }
+    }
+}
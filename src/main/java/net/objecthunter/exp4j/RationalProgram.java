@@ -0,0 +1,455 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.operator.Operator;
+import net.objecthunter.exp4j.operator.Operators;
+import net.objecthunter.exp4j.tokenizer.FunctionToken;
+import net.objecthunter.exp4j.tokenizer.LiteralToken;
+import net.objecthunter.exp4j.tokenizer.LocalVariableToken;
+import net.objecthunter.exp4j.tokenizer.NumberToken;
+import net.objecthunter.exp4j.tokenizer.OperatorToken;
+import net.objecthunter.exp4j.tokenizer.Token;
+import net.objecthunter.exp4j.tokenizer.VariableToken;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.EmptyStackException;
+import java.util.Map;
+
+/**
+ * Exact evaluation of an expression on fractions. Numerator and denominator are kept as <code>long</code> values
+ * and only switch to {@link BigInteger} if an operation overflows. Fractions are not reduced after every operation
+ * but only when they are converted to {@link BigInteger} or to the final {@link BigDecimal} result. The builtin
+ * operators <code>+ - * /</code> and powers with integer exponents are exact, all other operators and functions are
+ * applied to the {@link BigDecimal} value of their arguments.
+ */
+final class RationalProgram {
+
+    private static final Operator ADDITION = Operators.getBuiltinOperator('+', 2);
+
+    private static final Operator SUBTRACTION = Operators.getBuiltinOperator('-', 2);
+
+    private static final Operator MULTIPLICATION = Operators.getBuiltinOperator('*', 2);
+
+    private static final Operator DIVISION = Operators.getBuiltinOperator('/', 2);
+
+    private static final Operator POWER = Operators.getBuiltinOperator('^', 2);
+
+    private static final Operator NEGATION = Operators.getBuiltinOperator('-', 1);
+
+    private static final Operator UNARY_PLUS = Operators.getBuiltinOperator('+', 1);
+
+    /* the largest exponent which is evaluated exactly */
+    private static final int MAX_EXPONENT = 999;
+
+    private final Token[] tokens;
+
+    /* the fractions of the number tokens by token index */
+    private final Fractions numbers;
+
+    /* the kernels of the operators and functions by token index, used to check their arguments */
+    private final int[] kernels;
+
+    RationalProgram(final Token[] tokens) {
+        this.tokens = tokens;
+        this.numbers = new Fractions(tokens.length);
+        this.kernels = new int[tokens.length];
+        for (var i = 0; i < tokens.length; i++) {
+            kernels[i] = BatchProgram.kernelOf(tokens[i]);
+            if (Token.TOKEN_NUMBER == tokens[i].getType()) {
+                numbers.set(i, ((NumberToken) tokens[i]).getValue());
+            }
+        }
+    }
+
+    /**
+     * Create the rational evaluation of other tokens
+     */
+    RationalProgram forTokens(final Token[] tokens) {
+        return tokens == this.tokens ? this : new RationalProgram(tokens);
+    }
+
+    /**
+     * Evaluate the tokens on fractions
+     *
+     * @param variables the values of the variables
+     * @param literals  the values of the literal tokens
+     * @param mc        the precision of the result and of the operations computed using {@link BigDecimal}, null
+     *                  for their defaults
+     * @param orNull    true to return null instead of throwing if a variable is missing or an operator or function
+     *                  is not defined for its arguments, which are checked before they are applied
+     * @return the result
+     */
+    BigDecimal evaluate(final Map<String, BigDecimal> variables, final BigDecimal[] literals, final MathContext mc,
+                        final boolean orNull) {
+        final var stack = new Fractions(tokens.length);
+        Fractions locals = null;
+        /* the arguments of a function call, reused for all calls */
+        BigDecimal[] args = null;
+        var size = 0;
+        for (var i = 0; i < tokens.length; i++) {
+            final var t = tokens[i];
+            switch (t.getType()) {
+                case Token.TOKEN_NUMBER:
+                    stack.copy(size++, numbers, i);
+                    break;
+                case Token.TOKEN_LITERAL:
+                    stack.set(size++, literals[((LiteralToken) t).getIndex()]);
+                    break;
+                case Token.TOKEN_VARIABLE:
+                    final var name = ((VariableToken) t).getName();
+                    final var value = variables.get(name);
+                    if (null == value) {
+                        if (orNull) {
+                            return null;
+                        }
+                        throw new IllegalArgumentException("No value has been set for the setVariable '" + name + "'.");
+                    }
+                    stack.set(size++, value);
+                    break;
+                case Token.TOKEN_LOCAL:
+                    stack.copy(size++, locals, ((LocalVariableToken) t).getSlot());
+                    break;
+                case Token.TOKEN_STORE_LOCAL:
+                    final var slot = ((LocalVariableToken) t).getSlot();
+                    if (null == locals) {
+                        locals = new Fractions(slot + 4);
+                    } else {
+                        locals.ensureCapacity(slot + 1);
+                    }
+                    locals.copy(slot, stack, --size);
+                    break;
+                case Token.TOKEN_OPERATOR:
+                    final var op = ((OperatorToken) t).getOperator();
+                    if (size < op.getNumOperands()) {
+                        if (orNull) {
+                            return null;
+                        }
+                        throw new IllegalArgumentException("Invalid number of operands available for '" + op.getSymbol() + "' operator");
+                    }
+                    if (2 == op.getNumOperands()) {
+                        final var r = --size;
+                        final var l = size - 1;
+                        if (ADDITION == op) {
+                            stack.add(l, r, false);
+                        } else if (SUBTRACTION == op) {
+                            stack.add(l, r, true);
+                        } else if (MULTIPLICATION == op) {
+                            stack.multiply(l, r, false);
+                        } else if (DIVISION == op) {
+                            if (orNull && stack.isZero(r)) {
+                                return null;
+                            }
+                            stack.multiply(l, r, true);
+                        } else if (POWER != op || !stack.pow(l, r)) {
+                            final var left = stack.toBigDecimal(l, mc);
+                            final var right = stack.toBigDecimal(r, mc);
+                            final var result = orNull ? BatchProgram.applyOrNull(kernels[i], op, mc, left, right)
+                                    : null == mc ? op.apply2(left, right) : op.apply2(mc, left, right);
+                            if (null == result) {
+                                return null;
+                            }
+                            stack.set(l, result);
+                        }
+                    } else if (1 == op.getNumOperands()) {
+                        final var a = size - 1;
+                        if (NEGATION == op) {
+                            stack.negate(a);
+                        } else if (UNARY_PLUS != op) {
+                            final var arg = stack.toBigDecimal(a, mc);
+                            final var result = orNull ? BatchProgram.applyOrNull(kernels[i], op, mc, arg, null)
+                                    : null == mc ? op.apply1(arg) : op.apply1(mc, arg);
+                            if (null == result) {
+                                return null;
+                            }
+                            stack.set(a, result);
+                        }
+                    }
+                    break;
+                case Token.TOKEN_FUNCTION:
+                    final var func = ((FunctionToken) t).getFunction();
+                    final var numArguments = func.getNumArguments();
+                    if (size < numArguments) {
+                        if (orNull) {
+                            return null;
+                        }
+                        throw new IllegalArgumentException("Invalid number of arguments available for '" + func.getName() + "' function");
+                    }
+                    if (null == args || args.length < numArguments) {
+                        args = new BigDecimal[Math.max(3, numArguments)];
+                    }
+                    for (var j = numArguments - 1; 0 <= j; j--) {
+                        args[j] = stack.toBigDecimal(--size, mc);
+                    }
+                    final var returned = orNull ? BatchProgram.applyOrNull(kernels[i], func, mc, args)
+                            : Expression.applyFunction(func, mc, args, numArguments);
+                    if (null == returned) {
+                        return null;
+                    }
+                    stack.set(size++, returned);
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (orNull && 1 != size) {
+            return null;
+        }
+        if (1 < size) {
+            throw new IllegalArgumentException(
+                    "Invalid number of items on the output queue. Might be caused by an invalid number of arguments for a function.");
+        }
+        if (0 == size) {
+            throw new EmptyStackException();
+        }
+        return stack.toBigDecimal(0, mc);
+    }
+
+    /**
+     * Fractions stored in parallel arrays, a fraction is held in <code>bigNum</code> and <code>bigDen</code> if it
+     * does not fit into <code>num</code> and <code>den</code>. The denominator is always positive.
+     */
+    private static final class Fractions {
+
+        private long[] num;
+
+        private long[] den;
+
+        private BigInteger[] bigNum;
+
+        private BigInteger[] bigDen;
+
+        Fractions(final int capacity) {
+            this.num = new long[capacity];
+            this.den = new long[capacity];
+            this.bigNum = new BigInteger[capacity];
+            this.bigDen = new BigInteger[capacity];
+        }
+
+        void ensureCapacity(final int capacity) {
+            if (capacity > num.length) {
+                final var length = Math.max(capacity, num.length * 2);
+                num = Arrays.copyOf(num, length);
+                den = Arrays.copyOf(den, length);
+                bigNum = Arrays.copyOf(bigNum, length);
+                bigDen = Arrays.copyOf(bigDen, length);
+            }
+        }
+
+        void copy(final int i, final Fractions from, final int j) {
+            num[i] = from.num[j];
+            den[i] = from.den[j];
+            bigNum[i] = from.bigNum[j];
+            bigDen[i] = from.bigDen[j];
+        }
+
+        void set(final int i, final long numerator, final long denominator) {
+            num[i] = numerator;
+            den[i] = denominator;
+            bigNum[i] = null;
+            bigDen[i] = null;
+        }
+
+        /**
+         * Store a fraction reduced to lowest terms, as <code>long</code> values if it fits
+         */
+        void set(final int i, BigInteger numerator, BigInteger denominator) {
+            if (0 > denominator.signum()) {
+                numerator = numerator.negate();
+                denominator = denominator.negate();
+            }
+            final var gcd = numerator.gcd(denominator);
+            if (!BigInteger.ONE.equals(gcd) && 0 != gcd.signum()) {
+                numerator = numerator.divide(gcd);
+                denominator = denominator.divide(gcd);
+            }
+            if (64 > numerator.bitLength() && 64 > denominator.bitLength()) {
+                this.set(i, numerator.longValue(), denominator.longValue());
+            } else {
+                bigNum[i] = numerator;
+                bigDen[i] = denominator;
+            }
+        }
+
+        void set(final int i, final BigDecimal value) {
+            final var scale = value.scale();
+            if (0 == scale && 19 > value.precision()) {
+                this.set(i, value.longValue(), 1L);
+            } else if (0 < scale && 19 > value.precision() && 19 > scale) {
+                this.set(i, value.unscaledValue().longValue(), pow10(scale));
+            } else if (0 < scale) {
+                this.set(i, value.unscaledValue(), BigInteger.TEN.pow(scale));
+            } else {
+                this.set(i, value.toBigIntegerExact(), BigInteger.ONE);
+            }
+        }
+
+        boolean isZero(final int i) {
+            return isBig(i) ? 0 == bigNum[i].signum() : 0 == num[i];
+        }
+
+        private boolean isBig(final int i) {
+            return null != bigNum[i];
+        }
+
+        private BigInteger numerator(final int i) {
+            return isBig(i) ? bigNum[i] : BigInteger.valueOf(num[i]);
+        }
+
+        private BigInteger denominator(final int i) {
+            return isBig(i) ? bigDen[i] : BigInteger.valueOf(den[i]);
+        }
+
+        /**
+         * Add or subtract the fraction at r to the one at l
+         */
+        void add(final int l, final int r, final boolean subtract) {
+            if (!isBig(l) && !isBig(r) && (!subtract || Long.MIN_VALUE != num[r])) {
+                final var a = num[l];
+                final var b = den[l];
+                final var c = subtract ? -num[r] : num[r];
+                final var d = den[r];
+                if (b == d) {
+                    final var sum = a + c;
+                    if (0 <= ((a ^ sum) & (c ^ sum))) {
+                        this.set(l, sum, b);
+                        return;
+                    }
+                } else {
+                    final var ad = a * d;
+                    final var cb = c * b;
+                    final var bd = b * d;
+                    final var sum = ad + cb;
+                    if (Math.multiplyHigh(a, d) == (ad >> 63) && Math.multiplyHigh(c, b) == (cb >> 63)
+                            && Math.multiplyHigh(b, d) == (bd >> 63) && 0 <= ((ad ^ sum) & (cb ^ sum))) {
+                        this.set(l, sum, bd);
+                        return;
+                    }
+                }
+            }
+            final var b = denominator(l);
+            final var d = denominator(r);
+            final var ad = numerator(l).multiply(d);
+            final var cb = numerator(r).multiply(b);
+            this.set(l, subtract ? ad.subtract(cb) : ad.add(cb), b.multiply(d));
+        }
+
+        /**
+         * Multiply or divide the fraction at l by the one at r
+         */
+        void multiply(final int l, final int r, final boolean divide) {
+            if (divide && isZero(r)) {
+                throw new ArithmeticException("Division by zero!");
+            }
+            if (!isBig(l) && !isBig(r)) {
+                final var a = num[l];
+                final var b = den[l];
+                var c = divide ? den[r] : num[r];
+                var d = divide ? num[r] : den[r];
+                if (0 > d && Long.MIN_VALUE != c && Long.MIN_VALUE != d) {
+                    c = -c;
+                    d = -d;
+                }
+                final var ac = a * c;
+                final var bd = b * d;
+                if (0 < d && Math.multiplyHigh(a, c) == (ac >> 63) && Math.multiplyHigh(b, d) == (bd >> 63)) {
+                    this.set(l, ac, bd);
+                    return;
+                }
+            }
+            final var c = divide ? denominator(r) : numerator(r);
+            final var d = divide ? numerator(r) : denominator(r);
+            this.set(l, numerator(l).multiply(c), denominator(l).multiply(d));
+        }
+
+        /**
+         * Raise the fraction at l to the power of the one at r
+         *
+         * @return false if the exponent is not a small integer and the power can not be computed exactly
+         */
+        boolean pow(final int l, final int r) {
+            this.reduce(r);
+            if (isBig(r) || 1L != den[r] || MAX_EXPONENT < Math.abs(num[r])) {
+                return false;
+            }
+            final var exponent = (int) num[r];
+            final var n = numerator(l);
+            final var d = denominator(l);
+            if (0 <= exponent) {
+                this.set(l, n.pow(exponent), d.pow(exponent));
+            } else if (0 != n.signum()) {
+                this.set(l, d.pow(-exponent), n.pow(-exponent));
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        void negate(final int i) {
+            if (isBig(i)) {
+                this.set(i, bigNum[i].negate(), bigDen[i]);
+            } else if (Long.MIN_VALUE == num[i]) {
+                this.set(i, BigInteger.valueOf(num[i]).negate(), BigInteger.valueOf(den[i]));
+            } else {
+                num[i] = -num[i];
+            }
+        }
+
+        private void reduce(final int i) {
+            if (!isBig(i) && 1L != den[i]) {
+                final var gcd = gcd(Math.abs(num[i]), den[i]);
+                if (1L < gcd) {
+                    num[i] /= gcd;
+                    den[i] /= gcd;
+                }
+            }
+        }
+
+        BigDecimal toBigDecimal(final int i, final MathContext mc) {
+            this.reduce(i);
+            if (!isBig(i) && 1L == den[i]) {
+                return BigDecimal.valueOf(num[i]);
+            }
+            final var numerator = new BigDecimal(numerator(i));
+            final var denominator = new BigDecimal(denominator(i));
+            return numerator.divide(denominator, null == mc ? Operators.MC : mc);
+        }
+
+        private static long gcd(long a, long b) {
+            /* Long.MIN_VALUE has no positive counterpart, its absolute value is only divisible by powers of two */
+            if (0 > a) {
+                return Long.lowestOneBit(b);
+            }
+            while (0 != b) {
+                final var t = a % b;
+                a = b;
+                b = t;
+            }
+            return a;
+        }
+
+        private static long pow10(final int exponent) {
+            var result = 1L;
+            for (var i = 0; i < exponent; i++) {
+                result *= 10;
+            }
+            return result;
+        }
+    }
+}
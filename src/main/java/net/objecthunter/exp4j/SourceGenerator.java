@@ -0,0 +1,281 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Function;
+import net.objecthunter.exp4j.function.Functions;
+import net.objecthunter.exp4j.operator.Operator;
+import net.objecthunter.exp4j.operator.Operators;
+import net.objecthunter.exp4j.tokenizer.FunctionToken;
+import net.objecthunter.exp4j.tokenizer.LocalVariableToken;
+import net.objecthunter.exp4j.tokenizer.NumberToken;
+import net.objecthunter.exp4j.tokenizer.OperatorToken;
+import net.objecthunter.exp4j.tokenizer.Token;
+import net.objecthunter.exp4j.tokenizer.VariableToken;
+
+import javax.lang.model.SourceVersion;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates the Java source of a class which evaluates a fixed formula, so the formula is neither parsed nor
+ * interpreted at runtime. The formula is compiled by the same tokenizer and shunting yard as
+ * {@link ExpressionBuilder#build()}, and every token becomes one statement of a static <code>evaluate</code> method
+ * with the variables of the formula as parameters. The generated class extends {@link Function}, so it can be
+ * registered with an {@link ExpressionBuilder} as well, and computes the same values as
+ * {@link Expression#evaluate()} without a math context.
+ * <p>
+ * Only builtin functions and operators can be used, since custom ones do not exist when the source is compiled.
+ * Let bindings are supported, the variables <code>pi</code>, <code>e</code> and <code>φ</code> are inlined as
+ * constants.
+ */
+public final class SourceGenerator {
+
+    private static final Operator ADDITION = Operators.getBuiltinOperator('+', 2);
+
+    private static final Operator SUBTRACTION = Operators.getBuiltinOperator('-', 2);
+
+    private static final Operator MULTIPLICATION = Operators.getBuiltinOperator('*', 2);
+
+    private final String name;
+
+    private final List<String> parameters;
+
+    private final String formula;
+
+    private final StringBuilder fields = new StringBuilder();
+
+    private final StringBuilder body = new StringBuilder();
+
+    private final Map<String, String> constants = new HashMap<>();
+
+    private final Map<Object, String> builtins = new IdentityHashMap<>();
+
+    private SourceGenerator(final String name, final List<String> parameters, final String formula) {
+        this.name = name;
+        this.parameters = parameters;
+        this.formula = formula;
+    }
+
+    /**
+     * Generate the source of a class evaluating a formula
+     *
+     * @param className  the fully qualified name of the class to generate
+     * @param name       the name of the generated function
+     * @param parameters the variables of the formula, in the order of the parameters of the function
+     * @param formula    the formula, optionally starting with let bindings
+     * @return the source of the class
+     */
+    public static String generate(final String className, final String name, final List<String> parameters,
+                                  final String formula) {
+        if (!SourceVersion.isName(className)) {
+            throw new IllegalArgumentException("The class name '" + className + "' is invalid");
+        }
+        if (!Function.isValidFunctionName(name)) {
+            throw new IllegalArgumentException("The function name '" + name + "' is invalid");
+        }
+        if (new HashSet<>(parameters).size() != parameters.size()) {
+            throw new IllegalArgumentException("The parameters of '" + name + "' are not unique " + parameters);
+        }
+        final var expression = new ExpressionBuilder(formula)
+                .variables(new HashSet<>(parameters))
+                .letBindings(true)
+                .build();
+        return new SourceGenerator(name, parameters, formula).emit(className, expression.getTokens());
+    }
+
+    private String emit(final String className, final Token[] tokens) {
+        final var stack = new String[tokens.length];
+        final var locals = new HashSet<Integer>();
+        var size = 0;
+        var count = 0;
+        for (final var t : tokens) {
+            switch (t.getType()) {
+                case Token.TOKEN_NUMBER:
+                    stack[size++] = constant(((NumberToken) t).getValue());
+                    break;
+                case Token.TOKEN_VARIABLE:
+                    stack[size++] = variable(((VariableToken) t).getName());
+                    break;
+                case Token.TOKEN_LOCAL:
+                    stack[size++] = "L$" + ((LocalVariableToken) t).getSlot();
+                    break;
+                case Token.TOKEN_STORE_LOCAL:
+                    final var slot = ((LocalVariableToken) t).getSlot();
+                    body.append("        ").append(locals.add(slot) ? "BigDecimal " : "")
+                            .append("L$").append(slot).append(" = ").append(stack[--size]).append(";\n");
+                    break;
+                case Token.TOKEN_OPERATOR:
+                    final var op = ((OperatorToken) t).getOperator();
+                    final String value;
+                    if (2 == op.getNumOperands()) {
+                        size--;
+                        value = binary(op, stack[size - 1], stack[size]);
+                    } else {
+                        value = builtin(op) + ".apply1(" + stack[size - 1] + ")";
+                    }
+                    stack[size - 1] = statement(count++, value);
+                    break;
+                case Token.TOKEN_FUNCTION:
+                    final var func = ((FunctionToken) t).getFunction();
+                    final var n = func.getNumArguments();
+                    final var call = new StringBuilder(builtin(func))
+                            .append(0 < n && 3 >= n ? ".apply" + n + "(" : ".apply(");
+                    for (var i = size - n; i < size; i++) {
+                        call.append(i > size - n ? ", " : "").append(stack[i]);
+                    }
+                    size -= n;
+                    stack[size] = statement(count++, call.append(')').toString());
+                    size++;
+                    break;
+                default:
+                    throw new IllegalArgumentException("The formula of '" + name + "' can not be compiled to Java");
+            }
+        }
+        return source(className, stack[0]);
+    }
+
+    private String statement(final int index, final String value) {
+        body.append("        final BigDecimal $").append(index).append(" = ").append(value).append(";\n");
+        return "$" + index;
+    }
+
+    private String binary(final Operator op, final String left, final String right) {
+        /* the builtin addition, subtraction and multiplication are exact */
+        if (ADDITION == op) {
+            return left + ".add(" + right + ")";
+        } else if (SUBTRACTION == op) {
+            return left + ".subtract(" + right + ")";
+        } else if (MULTIPLICATION == op) {
+            return left + ".multiply(" + right + ")";
+        }
+        return builtin(op) + ".apply2(" + left + ", " + right + ")";
+    }
+
+    private String variable(final String variable) {
+        if (parameters.contains(variable)) {
+            return identifier(variable);
+        }
+        final var value = Expression.createDefaultVariables().get(variable);
+        if (null == value) {
+            throw new IllegalArgumentException("The variable '" + variable + "' is not a parameter of '" + name + "'");
+        }
+        return constant(value);
+    }
+
+    private String constant(final BigDecimal value) {
+        final var literal = value.toString();
+        return constants.computeIfAbsent(literal, l -> {
+            final var field = "C$" + constants.size();
+            fields.append("    private static final BigDecimal ").append(field)
+                    .append(" = new BigDecimal(\"").append(l).append("\");\n");
+            return field;
+        });
+    }
+
+    private String builtin(final Operator op) {
+        if (op != Operators.getBuiltinOperator(op.getSymbol().charAt(0), op.getNumOperands())) {
+            throw new IllegalArgumentException("The custom operator '" + op.getSymbol() + "' can not be compiled to Java");
+        }
+        return builtins.computeIfAbsent(op, o -> {
+            final var field = "O$" + builtins.size();
+            fields.append("    private static final Operator ").append(field)
+                    .append(" = Operators.getBuiltinOperator(").append(charLiteral(op.getSymbol().charAt(0)))
+                    .append(", ").append(op.getNumOperands()).append(");\n");
+            return field;
+        });
+    }
+
+    private String builtin(final Function func) {
+        if (func != Functions.getBuiltinFunction(func.getName())) {
+            throw new IllegalArgumentException("The custom function '" + func.getName() + "' can not be compiled to Java");
+        }
+        return builtins.computeIfAbsent(func, f -> {
+            final var field = "F$" + builtins.size();
+            fields.append("    private static final Function ").append(field)
+                    .append(" = Functions.getBuiltinFunction(\"").append(func.getName()).append("\");\n");
+            return field;
+        });
+    }
+
+    private String source(final String className, final String result) {
+        final var dot = className.lastIndexOf('.');
+        final var simpleName = className.substring(dot + 1);
+        final var sb = new StringBuilder();
+        if (0 < dot) {
+            sb.append("package ").append(className, 0, dot).append(";\n\n");
+        }
+        sb.append("import java.math.BigDecimal;\n")
+                .append("import javax.annotation.processing.Generated;\n")
+                .append("import net.objecthunter.exp4j.function.Function;\n")
+                .append("import net.objecthunter.exp4j.function.Functions;\n")
+                .append("import net.objecthunter.exp4j.operator.Operator;\n")
+                .append("import net.objecthunter.exp4j.operator.Operators;\n\n");
+        sb.append("/**\n * <code>").append(escape(name + "(" + String.join(", ", parameters) + ")").replace("*/", "*&#47;")).append(" = ")
+                .append(escape(formula).replace("*/", "*&#47;")).append("</code>\n */\n");
+        sb.append("@Generated(\"").append(SourceGenerator.class.getName()).append("\")\n");
+        sb.append("public final class ").append(simpleName).append(" extends Function {\n\n");
+        sb.append("    public static final ").append(simpleName).append(" INSTANCE = new ").append(simpleName)
+                .append("();\n\n");
+        if (0 < fields.length()) {
+            sb.append(fields).append('\n');
+        }
+        sb.append("    private ").append(simpleName).append("() {\n")
+                .append("        super(\"").append(escape(name)).append("\", ").append(parameters.size()).append(");\n")
+                .append("    }\n\n");
+        sb.append("    public static BigDecimal evaluate(");
+        for (var i = 0; i < parameters.size(); i++) {
+            sb.append(0 < i ? ", " : "").append("final BigDecimal ").append(identifier(parameters.get(i)));
+        }
+        sb.append(") {\n").append(body).append("        return ").append(result).append(";\n    }\n\n");
+        sb.append("    @Override\n    public BigDecimal apply(final BigDecimal... args) {\n        return evaluate(");
+        for (var i = 0; i < parameters.size(); i++) {
+            sb.append(0 < i ? ", " : "").append("args[").append(i).append(']');
+        }
+        sb.append(");\n    }\n}\n");
+        return sb.toString();
+    }
+
+    /* variable names which are Java keywords get a trailing dollar sign, which a variable name can not contain */
+    private static String identifier(final String variable) {
+        return SourceVersion.isKeyword(variable) ? variable + "$" : escape(variable);
+    }
+
+    private static String charLiteral(final char c) {
+        return "'" + escape(String.valueOf(c)) + "'";
+    }
+
+    /* non ASCII characters are written as unicode escapes, so the source does not depend on the file encoding */
+    private static String escape(final String s) {
+        final var sb = new StringBuilder(s.length());
+        for (var i = 0; i < s.length(); i++) {
+            final var c = s.charAt(i);
+            if (128 <= c) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else if ('\\' == c || '"' == c || '\'' == c) {
+                sb.append('\\').append(c);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.tokenizer.Token;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the evaluations of an expression and compiles its tokens to a {@link ClosureProgram} in the background once
+ * the count reaches a threshold. The expression is interpreted until the compiled program is swapped in, which
+ * happens by a single volatile write so every thread either sees no program or a complete one.
+ */
+final class TieredExecution {
+
+    private final Token[] tokens;
+
+    private final int threshold;
+
+    private final Executor executor;
+
+    private final AtomicInteger invocations = new AtomicInteger();
+
+    /* the compiled program, null while the tokens are interpreted */
+    private volatile ClosureProgram program;
+
+    /* true if the tokens can not be compiled and are always interpreted */
+    private volatile boolean interpretOnly;
+
+    TieredExecution(final Token[] tokens, final int threshold, final Executor executor) {
+        this.tokens = tokens;
+        this.threshold = threshold;
+        this.executor = executor;
+    }
+
+    /**
+     * Create the tiered execution of other tokens with the same threshold and executor
+     *
+     * @param tokens the tokens
+     * @return the new instance, starting to count from zero
+     */
+    TieredExecution forTokens(final Token[] tokens) {
+        return new TieredExecution(tokens, threshold, executor);
+    }
+
+    int getThreshold() {
+        return threshold;
+    }
+
+    Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Count an evaluation and get the compiled program if it is available
+     *
+     * @return the compiled program or null if the tokens have to be interpreted
+     */
+    ClosureProgram program() {
+        final var compiled = this.program;
+        if (null != compiled || interpretOnly) {
+            return compiled;
+        }
+        if (threshold == invocations.incrementAndGet()) {
+            try {
+                executor.execute(this::compile);
+            } catch (final RejectedExecutionException e) {
+                /* count again and retry later */
+                invocations.set(0);
+            }
+        }
+        return null;
+    }
+
+    private void compile() {
+        final var compiled = ClosureProgram.compile(tokens);
+        if (null == compiled) {
+            interpretOnly = true;
+        } else {
+            program = compiled;
+        }
+    }
+
+    boolean isCompiled() {
+        return null != program;
+    }
+}
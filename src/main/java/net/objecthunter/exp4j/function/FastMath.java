@@ -0,0 +1,344 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j.function;
+
+/**
+ * Polynomial approximations of transcendental functions in <code>double</code> arithmetic. The approximations only
+ * use arithmetic, bit manipulation and conditional selection without table lookups, so loops applying them to
+ * the values of an array are straight-line code which the JIT can unroll and vectorize. The error bounds are given
+ * in units in the last place (ulp) of the result of the corresponding {@link Math} method and are verified by the
+ * test suite.
+ */
+public final class FastMath {
+
+    /* ln(2) split into a high part with trailing zeros, so k * LN2_HI is exact, and the remainder */
+    private static final double LN2_HI = 0x1.62e42feep-1;
+    private static final double LN2_LO = 0x1.a39ef35793c76p-33;
+    private static final double INV_LN2 = 0x1.71547652b82fep0;
+    private static final double INV_LN10 = 0x1.bcb7b1526e50ep-2;
+
+    /* pi/2 split into three parts with trailing zeros, so k * part is exact for |k| < 2^20 */
+    private static final double PIO2_1 = 0x1.921fb544p0;
+    private static final double PIO2_2 = 0x1.0b4611a6p-34;
+    private static final double PIO2_3 = 0x1.3198a2ep-69;
+    private static final double PIO2_3T = 0x1.b839a252049c1p-104;
+    private static final double TWO_OVER_PI = 0x1.45f306dc9c883p-1;
+
+    /* the largest argument of the trigonometric functions whose reduction is exact */
+    private static final double TRIG_LIMIT = 0x1p20;
+
+    private static final double SQRT_HALF = 0x1.6a09e667f3bcdp-1;
+
+    private FastMath() {
+    }
+
+    /**
+     * Compute e raised to the power of x with an error of at most 1 ulp
+     *
+     * @param x the exponent
+     * @return the value e<sup>x</sup>
+     */
+    public static double exp(final double x) {
+        /* beyond these bounds the result overflows or underflows anyway */
+        final var clamped = Math.max(Math.min(x, 709.8d), -745.2d);
+        final var k = Math.rint(clamped * INV_LN2);
+        final var r = (clamped - k * LN2_HI) - k * LN2_LO;
+        final var p = expPolynomial(r);
+        /* scale in two steps so neither factor leaves the range of normal numbers */
+        final var n = (int) k;
+        final var n1 = n >> 1;
+        return p * twoPow(n1) * twoPow(n - n1);
+    }
+
+    /**
+     * Compute the natural logarithm with an error of at most 1 ulp
+     *
+     * @param x the argument
+     * @return the value ln(x)
+     */
+    public static double log(final double x) {
+        /* subnormal numbers are scaled to normal ones first */
+        final var subnormal = x < Double.MIN_NORMAL;
+        final var y = subnormal ? x * 0x1p54 : x;
+        final var bits = Double.doubleToRawLongBits(y);
+        var e = (int) ((bits >>> 52) & 0x7ff) - 1023;
+        var m = Double.longBitsToDouble((bits & 0x000fffffffffffffL) | 0x3ff0000000000000L);
+        /* move the mantissa to [sqrt(1/2), sqrt(2)) */
+        final var high = m > 2 * SQRT_HALF;
+        m = high ? 0.5d * m : m;
+        e = high ? e + 1 : e;
+        e = subnormal ? e - 54 : e;
+        final var f = m - 1d;
+        final var result = e * LN2_HI + (e * LN2_LO + log1pSeries(f));
+        /* the series is not defined for zero, negative numbers, infinity and NaN */
+        if (y > 0d && y < Double.POSITIVE_INFINITY) {
+            return result;
+        }
+        return 0d == x ? Double.NEGATIVE_INFINITY : x > 0d ? x : Double.NaN;
+    }
+
+    /**
+     * Compute the logarithm to base 10 with an error of at most 2 ulp
+     *
+     * @param x the argument
+     * @return the value log<sub>10</sub>(x)
+     */
+    public static double log10(final double x) {
+        return log(x) * INV_LN10;
+    }
+
+    /**
+     * Compute the logarithm to base 2 with an error of at most 2 ulp
+     *
+     * @param x the argument
+     * @return the value log<sub>2</sub>(x)
+     */
+    public static double log2(final double x) {
+        return log(x) * INV_LN2;
+    }
+
+    /**
+     * Compute x raised to the power of y as <code>exp(y * log(x))</code>. The error is at most
+     * <code>1 + 3 * |y * log(x)|</code> ulp since the rounding error of the product is amplified by the exponential.
+     * Zero, infinite and NaN arguments are passed on to {@link Math#pow(double, double)}.
+     *
+     * @param x the base
+     * @param y the exponent
+     * @return the value x<sup>y</sup>
+     */
+    public static double pow(final double x, final double y) {
+        if (0d == y) {
+            return 1d;
+        }
+        final var ax = Math.abs(x);
+        final var result = exp(y * log(ax));
+        /* a negative base only has a real power for integer exponents, odd ones keep the sign */
+        final var integer = Math.rint(y) == y;
+        final var odd = integer && Math.abs(y) < 0x1p53 && 0 != ((long) y & 1L);
+        if (x > 0d || (x < 0d && integer)) {
+            return x < 0d && odd ? -result : result;
+        }
+        return Math.pow(x, y);
+    }
+
+    /**
+     * Compute the sine with an error of at most 1 ulp for |x| &lt; 1000 and 2 ulp for |x| &lt; 2<sup>20</sup>,
+     * larger arguments are passed on to {@link Math#sin(double)}
+     *
+     * @param x the angle in radians
+     * @return the value sin(x)
+     */
+    public static double sin(final double x) {
+        return sinQuadrant(x, 0);
+    }
+
+    /**
+     * Compute the cosine with an error of at most 1 ulp for |x| &lt; 1000 and 2 ulp for |x| &lt; 2<sup>20</sup>,
+     * larger arguments are passed on to {@link Math#cos(double)}
+     *
+     * @param x the angle in radians
+     * @return the value cos(x)
+     */
+    public static double cos(final double x) {
+        return sinQuadrant(x, 1);
+    }
+
+    /**
+     * Compute the tangent as the quotient of sine and cosine with an error of at most 4 ulp for
+     * |x| &lt; 2<sup>20</sup>
+     *
+     * @param x the angle in radians
+     * @return the value tan(x)
+     */
+    public static double tan(final double x) {
+        return sin(x) / cos(x);
+    }
+
+    /**
+     * Compute the hyperbolic sine with an error of at most 2 ulp
+     *
+     * @param x the argument
+     * @return the value sinh(x)
+     */
+    public static double sinh(final double x) {
+        final var ax = Math.abs(x);
+        /* near zero the difference of the exponentials cancels, so the series is used */
+        final var small = sinhSeries(ax);
+        final var e = exp(ax);
+        final var large = 0.5d * e - 0.5d / e;
+        /* close to overflow e^|x| / 2 is computed as the product of two halves */
+        final var h = exp(0.5d * ax);
+        final var huge = (0.5d * h) * h;
+        return Math.copySign(ax < 1d ? small : ax < 709d ? large : huge, x);
+    }
+
+    /**
+     * Compute the hyperbolic cosine with an error of at most 2 ulp
+     *
+     * @param x the argument
+     * @return the value cosh(x)
+     */
+    public static double cosh(final double x) {
+        final var ax = Math.abs(x);
+        final var e = exp(ax);
+        final var h = exp(0.5d * ax);
+        return ax < 709d ? 0.5d * e + 0.5d / e : (0.5d * h) * h;
+    }
+
+    /**
+     * Compute the hyperbolic tangent with an error of at most 4 ulp
+     *
+     * @param x the argument
+     * @return the value tanh(x)
+     */
+    public static double tanh(final double x) {
+        final var ax = Math.abs(x);
+        final var small = sinhSeries(ax) / coshSeries(ax);
+        final var large = 1d - 2d / (exp(2d * Math.min(ax, 20d)) + 1d);
+        return Math.copySign(ax < 1d ? small : large, x);
+    }
+
+    /**
+     * Evaluate sin(x + q * pi / 2)
+     */
+    private static double sinQuadrant(final double x, final int q) {
+        if (!(Math.abs(x) < TRIG_LIMIT)) {
+            return 0 == q ? Math.sin(x) : Math.cos(x);
+        }
+        final var k = Math.rint(x * TWO_OVER_PI);
+        final var r = ((x - k * PIO2_1) - k * PIO2_2) - (k * PIO2_3 + k * PIO2_3T);
+        final var quadrant = ((int) k + q) & 3;
+        final var z = r * r;
+        final var s = r + r * z * sinPolynomial(z);
+        /* 1 - z/2 is rounded first and its rounding error is added back with the small terms, as in fdlibm */
+        final var hz = 0.5d * z;
+        final var w = 1d - hz;
+        final var c = w + (((1d - w) - hz) + z * z * cosPolynomial(z));
+        final var v = 0 == (quadrant & 1) ? s : c;
+        return 2 > quadrant ? v : -v;
+    }
+
+    /**
+     * The Taylor series of e^r for |r| &lt;= ln(2)/2 up to the term of degree 13, the remainder is below 2^-57
+     */
+    private static double expPolynomial(final double r) {
+        final var p = 1d / 6227020800d;
+        var q = p * r + 1d / 479001600d;
+        q = q * r + 1d / 39916800d;
+        q = q * r + 1d / 3628800d;
+        q = q * r + 1d / 362880d;
+        q = q * r + 1d / 40320d;
+        q = q * r + 1d / 5040d;
+        q = q * r + 1d / 720d;
+        q = q * r + 1d / 120d;
+        q = q * r + 1d / 24d;
+        q = q * r + 1d / 6d;
+        q = q * r + 0.5d;
+        /* add the leading terms last to keep their rounding error small */
+        return 1d + (r + r * r * q);
+    }
+
+    /**
+     * ln(1 + f) for f in [sqrt(1/2) - 1, sqrt(2) - 1) using 2 * atanh(s) with s = f / (2 + f)
+     */
+    private static double log1pSeries(final double f) {
+        final var s = f / (2d + f);
+        final var z = s * s;
+        var p = 1d / 23d;
+        p = p * z + 1d / 21d;
+        p = p * z + 1d / 19d;
+        p = p * z + 1d / 17d;
+        p = p * z + 1d / 15d;
+        p = p * z + 1d / 13d;
+        p = p * z + 1d / 11d;
+        p = p * z + 1d / 9d;
+        p = p * z + 1d / 7d;
+        p = p * z + 1d / 5d;
+        p = p * z + 1d / 3d;
+        /* 2s = f - s*f, rearranged so the large terms are added last as in fdlibm */
+        final var hfsq = 0.5d * f * f;
+        return f - (hfsq - s * (hfsq + 2d * z * p));
+    }
+
+    /**
+     * (sin(r) - r) / r^3 as a polynomial in z = r^2, for |r| &lt;= pi/4
+     */
+    private static double sinPolynomial(final double z) {
+        var p = -1d / 1307674368000d;
+        p = p * z + 1d / 6227020800d;
+        p = p * z - 1d / 39916800d;
+        p = p * z + 1d / 362880d;
+        p = p * z - 1d / 5040d;
+        p = p * z + 1d / 120d;
+        return p * z - 1d / 6d;
+    }
+
+    /**
+     * (cos(r) - 1 + r^2 / 2) / r^4 as a polynomial in z = r^2, for |r| &lt;= pi/4
+     */
+    private static double cosPolynomial(final double z) {
+        var p = 1d / 20922789888000d;
+        p = p * z - 1d / 87178291200d;
+        p = p * z + 1d / 479001600d;
+        p = p * z - 1d / 3628800d;
+        p = p * z + 1d / 40320d;
+        p = p * z - 1d / 720d;
+        return p * z + 1d / 24d;
+    }
+
+    /**
+     * The Taylor series of sinh(x) for |x| &lt; 1 up to the term of degree 21
+     */
+    private static double sinhSeries(final double x) {
+        final var z = x * x;
+        var p = 1d / 51090942171709440000d;
+        p = p * z + 1d / 121645100408832000d;
+        p = p * z + 1d / 355687428096000d;
+        p = p * z + 1d / 1307674368000d;
+        p = p * z + 1d / 6227020800d;
+        p = p * z + 1d / 39916800d;
+        p = p * z + 1d / 362880d;
+        p = p * z + 1d / 5040d;
+        p = p * z + 1d / 120d;
+        p = p * z + 1d / 6d;
+        return x + x * z * p;
+    }
+
+    /**
+     * The Taylor series of cosh(x) for |x| &lt; 1 up to the term of degree 20
+     */
+    private static double coshSeries(final double x) {
+        final var z = x * x;
+        var p = 1d / 2432902008176640000d;
+        p = p * z + 1d / 6402373705728000d;
+        p = p * z + 1d / 20922789888000d;
+        p = p * z + 1d / 87178291200d;
+        p = p * z + 1d / 479001600d;
+        p = p * z + 1d / 3628800d;
+        p = p * z + 1d / 40320d;
+        p = p * z + 1d / 720d;
+        p = p * z + 1d / 24d;
+        p = p * z + 0.5d;
+        return 1d + z * p;
+    }
+
+    /**
+     * 2 raised to the power of n for n in [-1022, 1023]
+     */
+    private static double twoPow(final int n) {
+        return Double.longBitsToDouble((long) (n + 1023) << 52);
+    }
+}
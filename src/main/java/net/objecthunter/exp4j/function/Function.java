@@ -17,6 +17,9 @@
 package net.objecthunter.exp4j.function;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
 
 /**
  * A class representing a Function which can be used in an expression
@@ -55,6 +58,83 @@ public abstract class Function {
         this(name, 1);
     }
 
+    /**
+     * Create a function of one argument which computes its value in <code>double</code> arithmetic. The batch
+     * evaluation calls the function directly, the {@link BigDecimal} evaluation converts the argument and the result.
+     *
+     * @param name     the name of the function
+     * @param function the implementation of the function
+     * @return the function
+     */
+    public static Function ofDouble(final String name, final DoubleUnaryOperator function) {
+        if (null == function) {
+            throw new IllegalArgumentException("The implementation of the function '" + name + "' can not be null");
+        }
+        return new Function(name, 1) {
+            @Override
+            public BigDecimal apply(final BigDecimal... args) {
+                return apply1(args[0]);
+            }
+
+            @Override
+            public BigDecimal apply1(final BigDecimal arg) {
+                return toBigDecimal(name, function.applyAsDouble(arg.doubleValue()));
+            }
+
+            @Override
+            public BigDecimal apply1(final MathContext mc, final BigDecimal arg) {
+                return apply1(arg).round(mc);
+            }
+
+            @Override
+            public double applyAsDouble(final double arg) {
+                return function.applyAsDouble(arg);
+            }
+        };
+    }
+
+    /**
+     * Create a function of two arguments which computes its value in <code>double</code> arithmetic. The batch
+     * evaluation calls the function directly, the {@link BigDecimal} evaluation converts the arguments and the result.
+     *
+     * @param name     the name of the function
+     * @param function the implementation of the function
+     * @return the function
+     */
+    public static Function ofDouble2(final String name, final DoubleBinaryOperator function) {
+        if (null == function) {
+            throw new IllegalArgumentException("The implementation of the function '" + name + "' can not be null");
+        }
+        return new Function(name, 2) {
+            @Override
+            public BigDecimal apply(final BigDecimal... args) {
+                return apply2(args[0], args[1]);
+            }
+
+            @Override
+            public BigDecimal apply2(final BigDecimal arg1, final BigDecimal arg2) {
+                return toBigDecimal(name, function.applyAsDouble(arg1.doubleValue(), arg2.doubleValue()));
+            }
+
+            @Override
+            public BigDecimal apply2(final MathContext mc, final BigDecimal arg1, final BigDecimal arg2) {
+                return apply2(arg1, arg2).round(mc);
+            }
+
+            @Override
+            public double applyAsDouble(final double arg1, final double arg2) {
+                return function.applyAsDouble(arg1, arg2);
+            }
+        };
+    }
+
+    private static BigDecimal toBigDecimal(final String name, final double value) {
+        if (!Double.isFinite(value)) {
+            throw new ArithmeticException("The function '" + name + "' is not defined for its arguments");
+        }
+        return BigDecimal.valueOf(value);
+    }
+
     /**
      * Get the name of the Function
      *
@@ -81,6 +161,123 @@ public abstract class Function {
      */
     public abstract BigDecimal apply(BigDecimal... args);
 
+    /**
+     * Calculate the function value using a given precision and rounding mode. The default implementation rounds
+     * the result of {@link #apply(BigDecimal...)}, functions which can compute with the given precision directly
+     * should override this method.
+     *
+     * @param mc   the precision and rounding mode to use
+     * @param args the set of arguments used for calculating the function
+     * @return the result of the function evaluation
+     */
+    public BigDecimal apply(final MathContext mc, final BigDecimal... args) {
+        return apply(args).round(mc);
+    }
+
+    /**
+     * Calculate the value of a function of one argument. The default implementation calls
+     * {@link #apply(BigDecimal...)}, functions can override it so evaluating an expression does not allocate an array
+     * for the argument.
+     *
+     * @param arg the argument
+     * @return the result of the function evaluation
+     */
+    public BigDecimal apply1(final BigDecimal arg) {
+        return apply(arg);
+    }
+
+    /**
+     * Calculate the value of a function of one argument using a given precision and rounding mode. The default
+     * implementation calls {@link #apply(MathContext, BigDecimal...)}.
+     *
+     * @param mc  the precision and rounding mode to use
+     * @param arg the argument
+     * @return the result of the function evaluation
+     */
+    public BigDecimal apply1(final MathContext mc, final BigDecimal arg) {
+        return apply(mc, arg);
+    }
+
+    /**
+     * Calculate the value of a function of two arguments. The default implementation calls
+     * {@link #apply(BigDecimal...)}, functions can override it so evaluating an expression does not allocate an array
+     * for the arguments.
+     *
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     * @return the result of the function evaluation
+     */
+    public BigDecimal apply2(final BigDecimal arg1, final BigDecimal arg2) {
+        return apply(arg1, arg2);
+    }
+
+    /**
+     * Calculate the value of a function of two arguments using a given precision and rounding mode. The default
+     * implementation calls {@link #apply(MathContext, BigDecimal...)}.
+     *
+     * @param mc   the precision and rounding mode to use
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     * @return the result of the function evaluation
+     */
+    public BigDecimal apply2(final MathContext mc, final BigDecimal arg1, final BigDecimal arg2) {
+        return apply(mc, arg1, arg2);
+    }
+
+    /**
+     * Calculate the value of a function of three arguments. The default implementation calls
+     * {@link #apply(BigDecimal...)}, functions can override it so evaluating an expression does not allocate an array
+     * for the arguments.
+     *
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     * @param arg3 the third argument
+     * @return the result of the function evaluation
+     */
+    public BigDecimal apply3(final BigDecimal arg1, final BigDecimal arg2, final BigDecimal arg3) {
+        return apply(arg1, arg2, arg3);
+    }
+
+    /**
+     * Calculate the value of a function of three arguments using a given precision and rounding mode. The default
+     * implementation calls {@link #apply(MathContext, BigDecimal...)}.
+     *
+     * @param mc   the precision and rounding mode to use
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     * @param arg3 the third argument
+     * @return the result of the function evaluation
+     */
+    public BigDecimal apply3(final MathContext mc, final BigDecimal arg1, final BigDecimal arg2, final BigDecimal arg3) {
+        return apply(mc, arg1, arg2, arg3);
+    }
+
+    /**
+     * Calculate the value of a function of one argument in <code>double</code> arithmetic, as used by the batch
+     * evaluation. The default implementation converts the argument to a {@link BigDecimal} and calls
+     * {@link #apply1(BigDecimal)}, functions created by {@link #ofDouble(String, DoubleUnaryOperator)} do not convert.
+     *
+     * @param arg the argument
+     * @return the result of the function evaluation
+     */
+    public double applyAsDouble(final double arg) {
+        return apply1(BigDecimal.valueOf(arg)).doubleValue();
+    }
+
+    /**
+     * Calculate the value of a function of two arguments in <code>double</code> arithmetic, as used by the batch
+     * evaluation. The default implementation converts the arguments to {@link BigDecimal} and calls
+     * {@link #apply2(BigDecimal, BigDecimal)}, functions created by
+     * {@link #ofDouble2(String, DoubleBinaryOperator)} do not convert.
+     *
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     * @return the result of the function evaluation
+     */
+    public double applyAsDouble(final double arg1, final double arg2) {
+        return apply2(BigDecimal.valueOf(arg1), BigDecimal.valueOf(arg2)).doubleValue();
+    }
+
     /**
      * Get the set of characters which are allowed for use in Function names.
      *
@@ -15,7 +15,12 @@
  */
 package net.objecthunter.exp4j.function;
 
+import net.objecthunter.exp4j.operator.Operator;
+import net.objecthunter.exp4j.operator.Operators;
+
 import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.List;
 
 /**
  * Class representing the builtin functions available for use in expressions
@@ -54,212 +59,292 @@ public class Functions {
     private static final int INDEX_TO_RADIAN = 29;
     private static final int INDEX_TO_DEGREE = 30;
 
+    private static final Operator POWER = Operators.getBuiltinOperator('^', 2);
+
     private static final Function[] BUILT_IN_FUNCTIONS = new Function[31];
 
+    private static final int MAX_NAME_LENGTH;
+
     static {
-        BUILT_IN_FUNCTIONS[INDEX_SIN] = new Function("sin") {
+        BUILT_IN_FUNCTIONS[INDEX_SIN] = new UnaryFunction("sin") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.sin(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.sin(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_COS] = new Function("cos") {
+        BUILT_IN_FUNCTIONS[INDEX_COS] = new UnaryFunction("cos") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.cos(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.cos(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_TAN] = new Function("tan") {
+        BUILT_IN_FUNCTIONS[INDEX_TAN] = new UnaryFunction("tan") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.tan(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.tan(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_COT] = new Function("cot") {
+        BUILT_IN_FUNCTIONS[INDEX_COT] = new UnaryFunction("cot") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                final var tan = Math.tan(args[0].doubleValue());
+            public BigDecimal apply1(final BigDecimal arg) {
+                final var tan = Math.tan(arg.doubleValue());
                 if (0d == tan) {
                     throw new ArithmeticException("Division by zero in cotangent!");
                 }
                 return BigDecimal.valueOf(1d / tan);
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_LOG] = new Function("log") {
+        BUILT_IN_FUNCTIONS[INDEX_LOG] = new UnaryFunction("log") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.log(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.log(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_LOG2] = new Function("log2") {
+        BUILT_IN_FUNCTIONS[INDEX_LOG2] = new UnaryFunction("log2") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.log(args[0].doubleValue()) / Math.log(2d));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.log(arg.doubleValue()) / Math.log(2d));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_LOG10] = new Function("log10") {
+        BUILT_IN_FUNCTIONS[INDEX_LOG10] = new UnaryFunction("log10") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.log10(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.log10(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_LOG1P] = new Function("log1p") {
+        BUILT_IN_FUNCTIONS[INDEX_LOG1P] = new UnaryFunction("log1p") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.log1p(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.log1p(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_ABS] = new Function("abs") {
+        BUILT_IN_FUNCTIONS[INDEX_ABS] = new UnaryFunction("abs") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.abs(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.abs(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_ACOS] = new Function("acos") {
+        BUILT_IN_FUNCTIONS[INDEX_ACOS] = new UnaryFunction("acos") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.acos(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.acos(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_ASIN] = new Function("asin") {
+        BUILT_IN_FUNCTIONS[INDEX_ASIN] = new UnaryFunction("asin") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.asin(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.asin(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_ATAN] = new Function("atan") {
+        BUILT_IN_FUNCTIONS[INDEX_ATAN] = new UnaryFunction("atan") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.atan(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.atan(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_CBRT] = new Function("cbrt") {
+        BUILT_IN_FUNCTIONS[INDEX_CBRT] = new UnaryFunction("cbrt") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.cbrt(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.cbrt(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_FLOOR] = new Function("floor") {
+        BUILT_IN_FUNCTIONS[INDEX_FLOOR] = new UnaryFunction("floor") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.floor(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.floor(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_SINH] = new Function("sinh") {
+        BUILT_IN_FUNCTIONS[INDEX_SINH] = new UnaryFunction("sinh") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.sinh(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.sinh(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_SQRT] = new Function("sqrt") {
+        BUILT_IN_FUNCTIONS[INDEX_SQRT] = new UnaryFunction("sqrt") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.sqrt(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.sqrt(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_TANH] = new Function("tanh") {
+        BUILT_IN_FUNCTIONS[INDEX_TANH] = new UnaryFunction("tanh") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.tanh(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.tanh(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_COSH] = new Function("cosh") {
+        BUILT_IN_FUNCTIONS[INDEX_COSH] = new UnaryFunction("cosh") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.cosh(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.cosh(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_CEIL] = new Function("ceil") {
+        BUILT_IN_FUNCTIONS[INDEX_CEIL] = new UnaryFunction("ceil") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.ceil(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.ceil(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_POW] = new Function("pow", 2) {
+        /* pow(x, y) is computed by the ^ operator, so both give the same result */
+        BUILT_IN_FUNCTIONS[INDEX_POW] = new BinaryFunction("pow") {
+            @Override
+            public BigDecimal apply2(final BigDecimal arg1, final BigDecimal arg2) {
+                return POWER.apply2(arg1, arg2);
+            }
+
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.pow(args[0].doubleValue(), args[1].doubleValue()));
+            public BigDecimal apply2(final MathContext mc, final BigDecimal arg1, final BigDecimal arg2) {
+                return POWER.apply2(mc, arg1, arg2);
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_EXP] = new Function("exp", 1) {
+        BUILT_IN_FUNCTIONS[INDEX_EXP] = new UnaryFunction("exp") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.exp(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.exp(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_EXPM1] = new Function("expm1", 1) {
+        BUILT_IN_FUNCTIONS[INDEX_EXPM1] = new UnaryFunction("expm1") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.expm1(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.expm1(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_SGN] = new Function("signum", 1) {
+        BUILT_IN_FUNCTIONS[INDEX_SGN] = new UnaryFunction("signum") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf((double) args[0].signum());
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf((double) arg.signum());
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_CSC] = new Function("csc") {
+        BUILT_IN_FUNCTIONS[INDEX_CSC] = new UnaryFunction("csc") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                final var sin = Math.sin(args[0].doubleValue());
+            public BigDecimal apply1(final BigDecimal arg) {
+                final var sin = Math.sin(arg.doubleValue());
                 if (0d == sin) {
                     throw new ArithmeticException("Division by zero in cosecant!");
                 }
                 return BigDecimal.valueOf(1d / sin);
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_SEC] = new Function("sec") {
+        BUILT_IN_FUNCTIONS[INDEX_SEC] = new UnaryFunction("sec") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                final var cos = Math.cos(args[0].doubleValue());
+            public BigDecimal apply1(final BigDecimal arg) {
+                final var cos = Math.cos(arg.doubleValue());
                 if (0d == cos) {
                     throw new ArithmeticException("Division by zero in secant!");
                 }
                 return BigDecimal.valueOf(1d / cos);
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_CSCH] = new Function("csch") {
+        BUILT_IN_FUNCTIONS[INDEX_CSCH] = new UnaryFunction("csch") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
+            public BigDecimal apply1(final BigDecimal arg) {
                 //this would throw an ArithmeticException later as sinh(0) = 0
-                if (0 == BigDecimal.ZERO.compareTo(args[0])) {
+                if (0 == BigDecimal.ZERO.compareTo(arg)) {
                     return BigDecimal.ZERO;
                 }
 
-                return BigDecimal.valueOf(1d / Math.sinh(args[0].doubleValue()));
+                return BigDecimal.valueOf(1d / Math.sinh(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_SECH] = new Function("sech") {
+        BUILT_IN_FUNCTIONS[INDEX_SECH] = new UnaryFunction("sech") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(1d / Math.cosh(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(1d / Math.cosh(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_COTH] = new Function("coth") {
+        BUILT_IN_FUNCTIONS[INDEX_COTH] = new UnaryFunction("coth") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.cosh(args[0].doubleValue()) / Math.sinh(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.cosh(arg.doubleValue()) / Math.sinh(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_LOGB] = new Function("logb", 2) {
+        BUILT_IN_FUNCTIONS[INDEX_LOGB] = new BinaryFunction("logb") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.log(args[1].doubleValue()) / Math.log(args[0].doubleValue()));
+            public BigDecimal apply2(final BigDecimal arg1, final BigDecimal arg2) {
+                return BigDecimal.valueOf(Math.log(arg2.doubleValue()) / Math.log(arg1.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_TO_RADIAN] = new Function("toradian") {
+        BUILT_IN_FUNCTIONS[INDEX_TO_RADIAN] = new UnaryFunction("toradian") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.toRadians(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.toRadians(arg.doubleValue()));
             }
         };
-        BUILT_IN_FUNCTIONS[INDEX_TO_DEGREE] = new Function("todegree") {
+        BUILT_IN_FUNCTIONS[INDEX_TO_DEGREE] = new UnaryFunction("todegree") {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.toDegrees(args[0].doubleValue()));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return BigDecimal.valueOf(Math.toDegrees(arg.doubleValue()));
             }
         };
+
+        var max = 0;
+        for (final var f : BUILT_IN_FUNCTIONS) {
+            max = Math.max(max, f.getName().length());
+        }
+        MAX_NAME_LENGTH = max;
+    }
+
+    /**
+     * A builtin function of one argument, the varargs methods delegate to the arity-specialized ones
+     */
+    private abstract static class UnaryFunction extends Function {
+
+        UnaryFunction(final String name) {
+            super(name, 1);
+        }
+
+        @Override
+        public BigDecimal apply(final BigDecimal... args) {
+            return apply1(args[0]);
+        }
+
+        @Override
+        public abstract BigDecimal apply1(BigDecimal arg);
+
+        @Override
+        public BigDecimal apply1(final MathContext mc, final BigDecimal arg) {
+            return apply1(arg).round(mc);
+        }
+    }
+
+    /**
+     * A builtin function of two arguments, the varargs methods delegate to the arity-specialized ones
+     */
+    private abstract static class BinaryFunction extends Function {
+
+        BinaryFunction(final String name) {
+            super(name, 2);
+        }
+
+        @Override
+        public BigDecimal apply(final BigDecimal... args) {
+            return apply2(args[0], args[1]);
+        }
+
+        @Override
+        public abstract BigDecimal apply2(BigDecimal arg1, BigDecimal arg2);
+
+        @Override
+        public BigDecimal apply2(final MathContext mc, final BigDecimal arg1, final BigDecimal arg2) {
+            return apply2(arg1, arg2).round(mc);
+        }
+    }
+
+    /**
+     * Get the length of the longest builtin function name
+     *
+     * @return the number of characters of the longest name
+     */
+    public static int getMaxBuiltinFunctionNameLength() {
+        return MAX_NAME_LENGTH;
+    }
+
+    /**
+     * Get all builtin functions
+     *
+     * @return an unmodifiable list of the builtin functions
+     */
+    public static List<Function> getBuiltinFunctions() {
+        return List.of(BUILT_IN_FUNCTIONS);
     }
 
     /**
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j.operator;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Powers, logarithms and exponentials computed in {@link BigDecimal} arithmetic to a given precision
+ */
+final class BigDecimalMath {
+
+    /* the additional digits used for intermediate results */
+    private static final int GUARD_DIGITS = 10;
+
+    /* the largest number of digits of a power which is computed without rounding */
+    private static final int EXACT_POWER_DIGITS = 400;
+
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+
+    /* the additional bits of fixed point results, errors which grow with the arguments are covered separately */
+    private static final int GUARD_BITS = 16;
+
+    private static final double BITS_PER_DIGIT = Math.log(10) / Math.log(2);
+
+    /* powers of ten beyond this can not be represented by the scale of a BigDecimal */
+    private static final long MAX_DECIMAL_EXPONENT = 999_999_999L;
+
+    /* ln(2) and ln(10), replaced by more precise values when needed */
+    private static volatile Constants constants = new Constants(256);
+
+    private BigDecimalMath() {
+    }
+
+    /**
+     * Raise a number to a power. Integer exponents use {@link BigDecimal#pow(int, MathContext)}, which multiplies
+     * by repeated squaring, and halves use the square root of the base. All other exponents are computed as
+     * <code>exp(exponent * ln(base))</code> in binary fixed point arithmetic on {@link BigInteger}, which avoids
+     * rounding every intermediate result to a {@link MathContext}.
+     *
+     * @param base     the base
+     * @param exponent the exponent
+     * @param mc       the precision of the result
+     * @return the power rounded to the precision
+     */
+    static BigDecimal pow(final BigDecimal base, final BigDecimal exponent, final MathContext mc) {
+        if (0 == exponent.signum()) {
+            return BigDecimal.ONE;
+        }
+        final var n = toInt(exponent);
+        if (Integer.MIN_VALUE != n) {
+            if (0 == base.signum() && 0 > n) {
+                throw new ArithmeticException("Division by zero!");
+            }
+            /* small powers are computed exactly and rounded once, which is faster than rounding every product */
+            if (EXACT_POWER_DIGITS >= (long) base.precision() * Math.abs(n)) {
+                final var power = base.pow(Math.abs(n));
+                return 0 < n ? power.round(mc) : BigDecimal.ONE.divide(power, 0 == mc.getPrecision() ? Operators.MC : mc);
+            }
+            return base.pow(n, mc);
+        }
+        if (0 == base.signum()) {
+            if (0 > exponent.signum()) {
+                throw new ArithmeticException("Division by zero!");
+            }
+            return BigDecimal.ZERO;
+        }
+        if (0 > base.signum()) {
+            throw new ArithmeticException("A negative base can not be raised to the non integer power " + exponent);
+        }
+        final var context = 0 == mc.getPrecision() ? Operators.MC : mc;
+        final var halves = toInt(exponent.multiply(TWO));
+        if (Integer.MIN_VALUE != halves) {
+            final var wc = new MathContext(context.getPrecision() + GUARD_DIGITS + digits(halves), RoundingMode.HALF_EVEN);
+            final var root = sqrt(base, wc);
+            return (1 == halves ? root : root.pow(halves, wc)).round(context);
+        }
+        /* the absolute error of ln(base) is multiplied by the exponent and becomes the relative error of the result */
+        final var integerDigits = Math.max(0, exponent.precision() - exponent.scale());
+        final var bits = bits(context.getPrecision()) + (int) Math.ceil(integerDigits * BITS_PER_DIGIT);
+        return exp(exponent.multiply(new BigDecimal(lnFixed(base, bits))).toBigInteger(), bits, context);
+    }
+
+    /**
+     * Compute the natural logarithm
+     *
+     * @param x  a positive number
+     * @param mc the precision of the result
+     * @return the logarithm rounded to the precision
+     */
+    static BigDecimal ln(final BigDecimal x, final MathContext mc) {
+        if (0 >= x.signum()) {
+            throw new ArithmeticException("The logarithm is only defined for positive numbers");
+        }
+        if (0 == x.compareTo(BigDecimal.ONE)) {
+            return BigDecimal.ZERO;
+        }
+        /* the logarithm is computed to a number of fraction bits, more are needed if it is small */
+        final var significant = bits(mc.getPrecision());
+        var bits = significant;
+        var z = lnFixed(x, bits);
+        while (z.bitLength() < significant) {
+            bits += significant - z.bitLength();
+            z = lnFixed(x, bits);
+        }
+        return toDecimal(z, bits, mc);
+    }
+
+    /**
+     * Compute the exponential function
+     *
+     * @param x  the exponent
+     * @param mc the precision of the result
+     * @return e to the power of x rounded to the precision
+     */
+    static BigDecimal exp(final BigDecimal x, final MathContext mc) {
+        if (0 == x.signum()) {
+            return BigDecimal.ONE;
+        }
+        final var bits = bits(mc.getPrecision());
+        return exp(x.multiply(new BigDecimal(BigInteger.ONE.shiftLeft(bits))).toBigInteger(), bits, mc);
+    }
+
+    /**
+     * Compute the square root of a positive number. Its digits are shifted to an integer with twice the digits of the
+     * working precision, whose root is found by Newton's method starting with the <code>double</code> square root.
+     * Every step doubles the about 15 correct digits of the start value.
+     */
+    static BigDecimal sqrt(final BigDecimal x, final MathContext wc) {
+        /* the shift has to be even to halve it for the root */
+        var shift = 2 * (wc.getPrecision() + 1) - (x.precision() - x.scale());
+        if (0 != (shift & 1)) {
+            shift++;
+        }
+        final var n = x.movePointRight(shift).toBigInteger();
+        final var d = n.doubleValue();
+        if (Double.MAX_VALUE < d || 1d > d) {
+            return x.sqrt(wc);
+        }
+        var root = new BigDecimal(Math.sqrt(d)).toBigInteger();
+        for (var digits = 15; digits < wc.getPrecision() + 2; digits *= 2) {
+            root = root.add(n.divide(root)).shiftRight(1);
+        }
+        return new BigDecimal(root, shift / 2).round(wc);
+    }
+
+    /**
+     * Compute e to the power of a fixed point number. It is split into <code>k * ln(10) + r</code>, so the result is
+     * <code>exp(r)</code> shifted by <code>k</code> decimal digits.
+     *
+     * @param t    the exponent multiplied by <code>2^bits</code>
+     * @param bits the fraction bits of the exponent
+     * @param mc   the precision of the result
+     */
+    private static BigDecimal exp(final BigInteger t, final int bits, final MathContext mc) {
+        final var k = Math.round(toDouble(t, bits) / Math.log(10));
+        if (MAX_DECIMAL_EXPONENT < Math.abs(k)) {
+            throw new ArithmeticException("Overflow");
+        }
+        /* the error of ln(10) is multiplied by k */
+        final var wb = bits + bitLength(k);
+        final var r = t.shiftLeft(wb - bits).subtract(constants(wb).ln10(wb).multiply(BigInteger.valueOf(k)));
+        return toDecimal(expFixed(r, wb), wb, mc).scaleByPowerOfTen((int) k).round(mc);
+    }
+
+    /**
+     * Compute e to the power of a fixed point number less than 2 in magnitude. The argument is halved until the
+     * Taylor series converges quickly, the sum is squared as often. Every squaring doubles the relative error, which
+     * is covered by as many additional bits.
+     *
+     * @param r    the exponent multiplied by <code>2^bits</code>
+     * @param bits the fraction bits of the exponent and the result
+     * @return the power multiplied by <code>2^bits</code>
+     */
+    private static BigInteger expFixed(final BigInteger r, final int bits) {
+        final var squarings = (int) Math.sqrt(bits);
+        final var wb = bits + squarings + 8;
+        /* r / 2^squarings with wb fraction bits */
+        final var x = r.shiftLeft(8);
+        var sum = BigInteger.ONE.shiftLeft(wb).add(x);
+        var term = x;
+        for (var i = 2; ; i++) {
+            term = term.multiply(x).shiftRight(wb).divide(BigInteger.valueOf(i));
+            if (0 == term.signum()) {
+                break;
+            }
+            sum = sum.add(term);
+        }
+        for (var i = 0; i < squarings; i++) {
+            sum = sum.multiply(sum).shiftRight(wb);
+        }
+        return sum.shiftRight(wb - bits);
+    }
+
+    /**
+     * Compute the natural logarithm of a positive number as a fixed point number. The unscaled value of
+     * <code>x = u * 10^-scale</code> is written as <code>u = m * 2^b</code> with <code>m</code> in [0.5, 1), so
+     * <code>ln(x) = ln(m) + b * ln(2) - scale * ln(10)</code>. Halley's method finds <code>ln(m)</code> starting with
+     * the <code>double</code> logarithm, every step triples the about 50 correct bits of the start value.
+     *
+     * @param x    a positive number
+     * @param bits the fraction bits of the result
+     * @return the logarithm multiplied by <code>2^bits</code>
+     */
+    private static BigInteger lnFixed(final BigDecimal x, final int bits) {
+        final var u = x.unscaledValue();
+        final var b = u.bitLength();
+        /* the errors of ln(2) and ln(10) are multiplied by b and the scale */
+        final var wb = Math.max(64, bits + bitLength((long) b + Math.abs((long) x.scale())) + 4);
+        final var m = b > wb ? u.shiftRight(b - wb) : u.shiftLeft(wb - b);
+        var z = toFixed(Math.log(toDouble(m, wb)), wb);
+        for (var correct = 48; correct < wb; correct *= 3) {
+            final var e = expFixed(z, wb);
+            z = z.add(m.subtract(e).shiftLeft(wb + 1).divide(m.add(e)));
+        }
+        final var c = constants(wb);
+        z = z.add(c.ln2(wb).multiply(BigInteger.valueOf(b))).subtract(c.ln10(wb).multiply(BigInteger.valueOf(x.scale())));
+        return z.shiftRight(wb - bits);
+    }
+
+    /**
+     * Get the constants to at least the given number of fraction bits, computing them if needed
+     */
+    private static Constants constants(final int bits) {
+        var c = constants;
+        if (c.bits < bits) {
+            c = new Constants(Math.max(bits, 2 * c.bits));
+            constants = c;
+        }
+        return c;
+    }
+
+    /**
+     * Compute <code>atanh(1 / n) = 1/n + 1/(3 n^3) + 1/(5 n^5) + ...</code> as a fixed point number
+     */
+    private static BigInteger atanhInverse(final int n, final int bits) {
+        final var n2 = BigInteger.valueOf((long) n * n);
+        var power = BigInteger.ONE.shiftLeft(bits).divide(BigInteger.valueOf(n));
+        var sum = power;
+        for (var i = 3; 0 != power.signum(); i += 2) {
+            power = power.divide(n2);
+            sum = sum.add(power.divide(BigInteger.valueOf(i)));
+        }
+        return sum;
+    }
+
+    /**
+     * Convert a fixed point number to a {@link BigDecimal} with a few more digits than the precision, which are
+     * obtained by multiplying with a power of ten and dropping the fraction bits
+     */
+    private static BigDecimal toDecimal(final BigInteger value, final int bits, final MathContext mc) {
+        final var digits = mc.getPrecision() + 3 - (int) Math.floor((value.bitLength() - bits) / BITS_PER_DIGIT);
+        final var scaled = 0 <= digits ? value.multiply(BigInteger.TEN.pow(digits)) : value.divide(BigInteger.TEN.pow(-digits));
+        return new BigDecimal(scaled.shiftRight(bits), digits).round(mc);
+    }
+
+    private static BigInteger toFixed(final double value, final int bits) {
+        final var scaled = BigInteger.valueOf((long) Math.scalb(value, 52));
+        return 52 <= bits ? scaled.shiftLeft(bits - 52) : scaled.shiftRight(52 - bits);
+    }
+
+    private static double toDouble(final BigInteger value, final int bits) {
+        return 60 < bits ? Math.scalb(value.shiftRight(bits - 60).doubleValue(), -60) : Math.scalb(value.doubleValue(), -bits);
+    }
+
+    /**
+     * Get the number of fraction bits for a precision, including the guard bits
+     */
+    private static int bits(final int precision) {
+        return (int) Math.ceil(precision * BITS_PER_DIGIT) + GUARD_BITS;
+    }
+
+    private static int bitLength(final long n) {
+        return 64 - Long.numberOfLeadingZeros(Math.abs(n));
+    }
+
+    /**
+     * Get the value of an integer as int
+     *
+     * @return the value or {@link Integer#MIN_VALUE} if it is not an integer or too large for
+     * {@link BigDecimal#pow(int, MathContext)}
+     */
+    private static int toInt(final BigDecimal value) {
+        if (0 < value.scale() && 0 < value.stripTrailingZeros().scale()) {
+            return Integer.MIN_VALUE;
+        }
+        if (10 < value.precision() - value.scale()) {
+            return Integer.MIN_VALUE;
+        }
+        final var n = value.longValue();
+        return 999_999_999L < Math.abs(n) ? Integer.MIN_VALUE : (int) n;
+    }
+
+    private static int digits(final int n) {
+        return String.valueOf(Math.abs(n)).length();
+    }
+
+    /**
+     * The logarithms of 2 and 10 as fixed point numbers, <code>ln(2) = 2 * atanh(1/3)</code> and <code>ln(10) = 3 *
+     * ln(2) + ln(1.25)</code> with <code>ln(1.25) = 2 * atanh(1/9)</code>
+     */
+    private static final class Constants {
+
+        private final int bits;
+
+        private final BigInteger ln2;
+
+        private final BigInteger ln10;
+
+        Constants(final int bits) {
+            this.bits = bits;
+            /* the series are summed with 16 additional bits to cover the truncated terms */
+            final var ln2 = atanhInverse(3, bits + 17);
+            this.ln2 = ln2.shiftRight(16);
+            this.ln10 = ln2.multiply(BigInteger.valueOf(3)).add(atanhInverse(9, bits + 17)).shiftRight(16);
+        }
+
+        BigInteger ln2(final int bits) {
+            return ln2.shiftRight(this.bits - bits);
+        }
+
+        BigInteger ln10(final int bits) {
+            return ln10.shiftRight(this.bits - bits);
+        }
+    }
+}
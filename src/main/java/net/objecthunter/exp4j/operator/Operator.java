@@ -16,6 +16,9 @@
 package net.objecthunter.exp4j.operator;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
 
 /**
  * Class representing operators that can be used in an expression
@@ -83,6 +86,87 @@ public abstract class Operator {
         this.precedence = precedence;
     }
 
+    /**
+     * Create a unary operator which computes its value in <code>double</code> arithmetic. The batch evaluation calls
+     * the operator directly, the {@link BigDecimal} evaluation converts the operand and the result.
+     *
+     * @param symbol     the symbol of the operator
+     * @param precedence the precedence value of the operator
+     * @param operator   the implementation of the operator
+     * @return the operator
+     */
+    public static Operator ofDouble(final String symbol, final int precedence, final DoubleUnaryOperator operator) {
+        if (null == operator) {
+            throw new IllegalArgumentException("The implementation of the operator '" + symbol + "' can not be null");
+        }
+        return new Operator(symbol, 1, false, precedence) {
+            @Override
+            public BigDecimal apply(final BigDecimal... args) {
+                return apply1(args[0]);
+            }
+
+            @Override
+            public BigDecimal apply1(final BigDecimal arg) {
+                return toBigDecimal(symbol, operator.applyAsDouble(arg.doubleValue()));
+            }
+
+            @Override
+            public BigDecimal apply1(final MathContext mc, final BigDecimal arg) {
+                return apply1(arg).round(mc);
+            }
+
+            @Override
+            public double applyAsDouble(final double arg) {
+                return operator.applyAsDouble(arg);
+            }
+        };
+    }
+
+    /**
+     * Create a binary operator which computes its value in <code>double</code> arithmetic. The batch evaluation calls
+     * the operator directly, the {@link BigDecimal} evaluation converts the operands and the result.
+     *
+     * @param symbol          the symbol of the operator
+     * @param leftAssociative set to true if the operator is left associative, false if it is right associative
+     * @param precedence      the precedence value of the operator
+     * @param operator        the implementation of the operator
+     * @return the operator
+     */
+    public static Operator ofDouble(final String symbol, final boolean leftAssociative, final int precedence,
+                                    final DoubleBinaryOperator operator) {
+        if (null == operator) {
+            throw new IllegalArgumentException("The implementation of the operator '" + symbol + "' can not be null");
+        }
+        return new Operator(symbol, 2, leftAssociative, precedence) {
+            @Override
+            public BigDecimal apply(final BigDecimal... args) {
+                return apply2(args[0], args[1]);
+            }
+
+            @Override
+            public BigDecimal apply2(final BigDecimal left, final BigDecimal right) {
+                return toBigDecimal(symbol, operator.applyAsDouble(left.doubleValue(), right.doubleValue()));
+            }
+
+            @Override
+            public BigDecimal apply2(final MathContext mc, final BigDecimal left, final BigDecimal right) {
+                return apply2(left, right).round(mc);
+            }
+
+            @Override
+            public double applyAsDouble(final double left, final double right) {
+                return operator.applyAsDouble(left, right);
+            }
+        };
+    }
+
+    private static BigDecimal toBigDecimal(final String symbol, final double value) {
+        if (!Double.isFinite(value)) {
+            throw new ArithmeticException("The operator '" + symbol + "' is not defined for its operands");
+        }
+        return BigDecimal.valueOf(value);
+    }
+
     /**
      * Check if a character is an allowed operator char
      *
@@ -124,6 +208,92 @@ public abstract class Operator {
      */
     public abstract BigDecimal apply(BigDecimal... args);
 
+    /**
+     * Apply the operation on the given operands using a given precision and rounding mode. The default
+     * implementation rounds the result of {@link #apply(BigDecimal...)}, operators which can compute with the given
+     * precision directly should override this method.
+     *
+     * @param mc   the precision and rounding mode to use
+     * @param args the operands for the operation
+     * @return the calculated result of the operation
+     */
+    public BigDecimal apply(final MathContext mc, final BigDecimal... args) {
+        return apply(args).round(mc);
+    }
+
+    /**
+     * Apply a unary operation. The default implementation calls {@link #apply(BigDecimal...)}, operators can
+     * override it so evaluating an expression does not allocate an array for the operand.
+     *
+     * @param arg the operand
+     * @return the calculated result of the operation
+     */
+    public BigDecimal apply1(final BigDecimal arg) {
+        return apply(arg);
+    }
+
+    /**
+     * Apply a unary operation using a given precision and rounding mode. The default implementation calls
+     * {@link #apply(MathContext, BigDecimal...)}.
+     *
+     * @param mc  the precision and rounding mode to use
+     * @param arg the operand
+     * @return the calculated result of the operation
+     */
+    public BigDecimal apply1(final MathContext mc, final BigDecimal arg) {
+        return apply(mc, arg);
+    }
+
+    /**
+     * Apply a binary operation. The default implementation calls {@link #apply(BigDecimal...)}, operators can
+     * override it so evaluating an expression does not allocate an array for the operands.
+     *
+     * @param left  the left operand
+     * @param right the right operand
+     * @return the calculated result of the operation
+     */
+    public BigDecimal apply2(final BigDecimal left, final BigDecimal right) {
+        return apply(left, right);
+    }
+
+    /**
+     * Apply a binary operation using a given precision and rounding mode. The default implementation calls
+     * {@link #apply(MathContext, BigDecimal...)}.
+     *
+     * @param mc    the precision and rounding mode to use
+     * @param left  the left operand
+     * @param right the right operand
+     * @return the calculated result of the operation
+     */
+    public BigDecimal apply2(final MathContext mc, final BigDecimal left, final BigDecimal right) {
+        return apply(mc, left, right);
+    }
+
+    /**
+     * Apply a unary operation in <code>double</code> arithmetic, as used by the batch evaluation. The default
+     * implementation converts the operand to a {@link BigDecimal} and calls {@link #apply1(BigDecimal)}, operators
+     * created by {@link #ofDouble(String, int, DoubleUnaryOperator)} do not convert.
+     *
+     * @param arg the operand
+     * @return the calculated result of the operation
+     */
+    public double applyAsDouble(final double arg) {
+        return apply1(BigDecimal.valueOf(arg)).doubleValue();
+    }
+
+    /**
+     * Apply a binary operation in <code>double</code> arithmetic, as used by the batch evaluation. The default
+     * implementation converts the operands to {@link BigDecimal} and calls {@link #apply2(BigDecimal, BigDecimal)},
+     * operators created by {@link #ofDouble(String, boolean, int, DoubleBinaryOperator)} do not convert.
+     *
+     * @param left  the left operand
+     * @param right the right operand
+     * @return the calculated result of the operation
+     */
+    public double applyAsDouble(final double left, final double right) {
+        return apply2(BigDecimal.valueOf(left), BigDecimal.valueOf(right)).doubleValue();
+    }
+
     /**
      * Get the operator symbol
      *
@@ -35,62 +35,161 @@ public abstract class Operators {
     private static final Operator[] BUILT_IN_OPERATORS = new Operator[8];
 
     static {
-        BUILT_IN_OPERATORS[INDEX_ADDITION] = new Operator("+", 2, true, Operator.PRECEDENCE_ADDITION) {
+        BUILT_IN_OPERATORS[INDEX_ADDITION] = new BinaryOperator("+", true, Operator.PRECEDENCE_ADDITION) {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return args[0].add(args[1]);
+            public BigDecimal apply2(final BigDecimal left, final BigDecimal right) {
+                return left.add(right);
+            }
+
+            @Override
+            public BigDecimal apply2(final MathContext mc, final BigDecimal left, final BigDecimal right) {
+                return left.add(right, mc);
             }
         };
-        BUILT_IN_OPERATORS[INDEX_SUBTRACTION] = new Operator("-", 2, true, Operator.PRECEDENCE_ADDITION) {
+        BUILT_IN_OPERATORS[INDEX_SUBTRACTION] = new BinaryOperator("-", true, Operator.PRECEDENCE_ADDITION) {
+            @Override
+            public BigDecimal apply2(final BigDecimal left, final BigDecimal right) {
+                return left.subtract(right);
+            }
+
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return args[0].subtract(args[1]);
+            public BigDecimal apply2(final MathContext mc, final BigDecimal left, final BigDecimal right) {
+                return left.subtract(right, mc);
             }
         };
-        BUILT_IN_OPERATORS[INDEX_UNARY_MINUS] = new Operator("-", 1, false, Operator.PRECEDENCE_UNARY_MINUS) {
+        BUILT_IN_OPERATORS[INDEX_UNARY_MINUS] = new UnaryOperator("-", Operator.PRECEDENCE_UNARY_MINUS) {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return args[0].multiply(BigDecimal.valueOf(-1L));
+            public BigDecimal apply1(final BigDecimal arg) {
+                return arg.multiply(BigDecimal.valueOf(-1L));
+            }
+
+            @Override
+            public BigDecimal apply1(final MathContext mc, final BigDecimal arg) {
+                return arg.negate(mc);
             }
         };
-        BUILT_IN_OPERATORS[INDEX_UNARY_PLUS] = new Operator("+", 1, false, Operator.PRECEDENCE_UNARY_PLUS) {
+        BUILT_IN_OPERATORS[INDEX_UNARY_PLUS] = new UnaryOperator("+", Operator.PRECEDENCE_UNARY_PLUS) {
+            @Override
+            public BigDecimal apply1(final BigDecimal arg) {
+                return arg;
+            }
+
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return args[0];
+            public BigDecimal apply1(final MathContext mc, final BigDecimal arg) {
+                return arg.plus(mc);
             }
         };
-        BUILT_IN_OPERATORS[INDEX_MULTIPLICATION] = new Operator("*", 2, true, Operator.PRECEDENCE_MULTIPLICATION) {
+        BUILT_IN_OPERATORS[INDEX_MULTIPLICATION] = new BinaryOperator("*", true, Operator.PRECEDENCE_MULTIPLICATION) {
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return args[0].multiply(args[1]);
+            public BigDecimal apply2(final BigDecimal left, final BigDecimal right) {
+                return left.multiply(right);
+            }
+
+            @Override
+            public BigDecimal apply2(final MathContext mc, final BigDecimal left, final BigDecimal right) {
+                return left.multiply(right, mc);
             }
         };
-        BUILT_IN_OPERATORS[INDEX_DIVISION] = new Operator("/", 2, true, Operator.PRECEDENCE_DIVISION) {
+        BUILT_IN_OPERATORS[INDEX_DIVISION] = new BinaryOperator("/", true, Operator.PRECEDENCE_DIVISION) {
+            @Override
+            public BigDecimal apply2(final BigDecimal left, final BigDecimal right) {
+                if (0 == right.signum()) {
+                    throw new ArithmeticException("Division by zero!");
+                }
+                return left.divide(right, MC);
+            }
+
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                if (0 == args[1].signum()) {
+            public BigDecimal apply2(final MathContext mc, final BigDecimal left, final BigDecimal right) {
+                if (0 == right.signum()) {
                     throw new ArithmeticException("Division by zero!");
                 }
-                return args[0].divide(args[1], MC);
+                return left.divide(right, mc);
             }
         };
-        BUILT_IN_OPERATORS[INDEX_POWER] = new Operator("^", 2, false, Operator.PRECEDENCE_POWER) {
+        BUILT_IN_OPERATORS[INDEX_POWER] = new BinaryOperator("^", false, Operator.PRECEDENCE_POWER) {
+            @Override
+            public BigDecimal apply2(final BigDecimal left, final BigDecimal right) {
+                return BigDecimalMath.pow(left, right, MC);
+            }
+
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                return BigDecimal.valueOf(Math.pow(args[0].doubleValue(), args[1].doubleValue()));
+            public BigDecimal apply2(final MathContext mc, final BigDecimal left, final BigDecimal right) {
+                return BigDecimalMath.pow(left, right, mc);
             }
         };
-        BUILT_IN_OPERATORS[INDEX_MODULO] = new Operator("%", 2, true, Operator.PRECEDENCE_MODULO) {
+        BUILT_IN_OPERATORS[INDEX_MODULO] = new BinaryOperator("%", true, Operator.PRECEDENCE_MODULO) {
+            @Override
+            public BigDecimal apply2(final BigDecimal left, final BigDecimal right) {
+                if (0 == right.signum()) {
+                    throw new ArithmeticException("Division by zero!");
+                }
+                return left.remainder(right);
+            }
+
             @Override
-            public BigDecimal apply(final BigDecimal... args) {
-                if (0 == args[1].signum()) {
+            public BigDecimal apply2(final MathContext mc, final BigDecimal left, final BigDecimal right) {
+                if (0 == right.signum()) {
                     throw new ArithmeticException("Division by zero!");
                 }
-                return BigDecimal.valueOf(args[0].doubleValue() % args[1].doubleValue());
+                /* remainder(right, mc) fails if the integer quotient has more digits than the precision */
+                return left.remainder(right).round(mc);
             }
         };
     }
 
+    /**
+     * A builtin operator of one operand, the varargs methods delegate to the arity-specialized ones
+     */
+    private abstract static class UnaryOperator extends Operator {
+
+        UnaryOperator(final String symbol, final int precedence) {
+            super(symbol, 1, false, precedence);
+        }
+
+        @Override
+        public BigDecimal apply(final BigDecimal... args) {
+            return apply1(args[0]);
+        }
+
+        @Override
+        public BigDecimal apply(final MathContext mc, final BigDecimal... args) {
+            return apply1(mc, args[0]);
+        }
+
+        @Override
+        public abstract BigDecimal apply1(BigDecimal arg);
+
+        @Override
+        public abstract BigDecimal apply1(MathContext mc, BigDecimal arg);
+    }
+
+    /**
+     * A builtin operator of two operands, the varargs methods delegate to the arity-specialized ones
+     */
+    private abstract static class BinaryOperator extends Operator {
+
+        BinaryOperator(final String symbol, final boolean leftAssociative, final int precedence) {
+            super(symbol, 2, leftAssociative, precedence);
+        }
+
+        @Override
+        public BigDecimal apply(final BigDecimal... args) {
+            return apply2(args[0], args[1]);
+        }
+
+        @Override
+        public BigDecimal apply(final MathContext mc, final BigDecimal... args) {
+            return apply2(mc, args[0], args[1]);
+        }
+
+        @Override
+        public abstract BigDecimal apply2(BigDecimal left, BigDecimal right);
+
+        @Override
+        public abstract BigDecimal apply2(MathContext mc, BigDecimal left, BigDecimal right);
+    }
+
     public static Operator getBuiltinOperator(final char symbol, final int numArguments) {
         switch (symbol) {
             case '+':
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j.processor;
+
+import net.objecthunter.exp4j.SourceGenerator;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Annotation processor which compiles the formulas of the resources named by {@link Formulas} annotations to Java
+ * classes, so formulas which are fixed when an application is built have no parse cost at startup. The processor is
+ * not registered as a service, to use it add it to the annotation processors of the compiler, e.g.
+ * <code>-processor net.objecthunter.exp4j.processor.FormulaProcessor</code>. The resources are looked up on the
+ * source path, in the class output directory and on the class path, in this order.
+ */
+@SupportedAnnotationTypes("net.objecthunter.exp4j.processor.Formulas")
+public final class FormulaProcessor extends AbstractProcessor {
+
+    private static final Pattern DEFINITION = Pattern.compile("\\s*([^\\s(]+)\\s*\\(([^)]*)\\)\\s*=(.+)");
+
+    private static final StandardLocation[] LOCATIONS = {StandardLocation.SOURCE_PATH, StandardLocation.CLASS_OUTPUT,
+            StandardLocation.CLASS_PATH};
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        for (final var element : roundEnv.getElementsAnnotatedWith(Formulas.class)) {
+            final var pkg = processingEnv.getElementUtils().getPackageOf(element).getQualifiedName().toString();
+            for (final var resource : element.getAnnotation(Formulas.class).value()) {
+                process(element, pkg, resource);
+            }
+        }
+        return true;
+    }
+
+    private void process(final Element element, final String pkg, final String resource) {
+        final var content = read(pkg, resource);
+        if (null == content) {
+            error(element, "The formula resource '" + resource + "' can not be found in package '" + pkg + "'");
+            return;
+        }
+        final var lines = content.split("\\R");
+        for (var i = 0; i < lines.length; i++) {
+            final var line = lines[i].strip();
+            if (line.isEmpty() || '#' == line.charAt(0)) {
+                continue;
+            }
+            final var location = resource + ":" + (i + 1) + ": ";
+            final var m = DEFINITION.matcher(line);
+            if (!m.matches()) {
+                error(element, location + "Expected a definition like 'name(x, y) = formula'");
+                continue;
+            }
+            final var name = m.group(1);
+            final var className = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            if (!SourceVersion.isIdentifier(className) || SourceVersion.isKeyword(className)) {
+                error(element, location + "The name '" + name + "' can not be used as a class name");
+                continue;
+            }
+            final var parameters = Arrays.stream(m.group(2).split(","))
+                    .map(String::strip)
+                    .filter(p -> !p.isEmpty())
+                    .collect(Collectors.toList());
+            final var qualifiedName = pkg.isEmpty() ? className : pkg + "." + className;
+            final String source;
+            try {
+                source = SourceGenerator.generate(qualifiedName, name, parameters, m.group(3).strip());
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                error(element, location + e.getMessage());
+                continue;
+            }
+            try (Writer w = processingEnv.getFiler().createSourceFile(qualifiedName, element).openWriter()) {
+                w.write(source);
+            } catch (IOException e) {
+                error(element, location + "Unable to write '" + qualifiedName + "': " + e.getMessage());
+            }
+        }
+    }
+
+    private String read(final String pkg, final String resource) {
+        for (final var location : LOCATIONS) {
+            try {
+                final FileObject file = processingEnv.getFiler().getResource(location, pkg, resource);
+                return file.getCharContent(true).toString();
+            } catch (IOException | IllegalArgumentException e) {
+                /* not available in this location */
+            }
+        }
+        return null;
+    }
+
+    private void error(final Element element, final String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j.processor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Names the resource files of formulas which are compiled to Java classes by the {@link FormulaProcessor}. The
+ * resources are resolved relative to the package of the annotated element, and every line of a resource defines one
+ * formula in the form <code>name(x, y) = formula</code>. Empty lines and lines starting with <code>#</code> are
+ * ignored. The formula <code>hypot(x, y) = sqrt(x^2 + y^2)</code> is compiled to the class <code>Hypot</code> in
+ * the same package, see {@link net.objecthunter.exp4j.SourceGenerator} for its members.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target({ElementType.TYPE, ElementType.PACKAGE})
+public @interface Formulas {
+
+    /**
+     * Get the names of the resources
+     *
+     * @return the resource names, relative to the package of the annotated element
+     */
+    String[] value();
+}
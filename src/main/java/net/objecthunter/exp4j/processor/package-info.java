@@ -0,0 +1,2 @@
+@javax.annotation.ParametersAreNonnullByDefault
+package net.objecthunter.exp4j.processor;
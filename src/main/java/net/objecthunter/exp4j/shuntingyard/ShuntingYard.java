@@ -17,14 +17,17 @@ package net.objecthunter.exp4j.shuntingyard;
 
 import net.objecthunter.exp4j.function.Function;
 import net.objecthunter.exp4j.operator.Operator;
+import net.objecthunter.exp4j.tokenizer.Diagnostic;
+import net.objecthunter.exp4j.tokenizer.FunctionToken;
 import net.objecthunter.exp4j.tokenizer.OperatorToken;
+import net.objecthunter.exp4j.tokenizer.SymbolTable;
 import net.objecthunter.exp4j.tokenizer.Token;
 import net.objecthunter.exp4j.tokenizer.Tokenizer;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
 
 /**
  * Shunting yard implementation to convert infix to reverse polish notation
@@ -43,67 +46,271 @@ public class ShuntingYard {
      */
     public static Token[] convertToRPN(final String expression, final Map<String, Function> userFunctions,
                                        final Map<String, Operator> userOperators, final Set<String> variableNames, final boolean implicitMultiplication) {
-        final var stack = new Stack<Token>();
-        final var output = new ArrayList<Token>();
+        return convert(new Tokenizer(expression, userFunctions, userOperators, variableNames, implicitMultiplication));
+    }
+
+    /**
+     * Convert an expression from infix to reverse polish notation using a prebuilt table of function and variable
+     * names
+     *
+     * @param expression             the expression to convert
+     * @param symbols                the functions and variables available in the expression
+     * @param userOperators          the custom operators used
+     * @param implicitMultiplication set to false to turn off implicit multiplication
+     * @return a {@link net.objecthunter.exp4j.tokenizer.Token} array containing the result
+     */
+    public static Token[] convertToRPN(final String expression, final SymbolTable symbols,
+                                       final Map<String, Operator> userOperators, final boolean implicitMultiplication) {
+        return convert(new Tokenizer(expression, symbols, userOperators, implicitMultiplication));
+    }
+
+    private static Token[] convert(final Tokenizer tokenizer) {
+        final var stack = new Spans(16, false);
+        final var output = new Spans(16, false);
+        while (tokenizer.hasNext()) {
+            process(tokenizer.nextToken(), 0, 0, stack, output, null);
+        }
+        return finish(stack, output, null);
+    }
+
+    /**
+     * Convert an already tokenized expression from infix to reverse polish notation
+     *
+     * @param tokens the tokens of the expression in infix order
+     * @return a {@link net.objecthunter.exp4j.tokenizer.Token} array containing the result
+     */
+    public static Token[] convertToRPN(final List<Token> tokens) {
+        final var stack = new Spans(16, false);
+        final var output = new Spans(Math.max(16, tokens.size()), false);
+        for (final var token : tokens) {
+            process(token, 0, 0, stack, output, null);
+        }
+        return finish(stack, output, null);
+    }
+
+    /**
+     * Convert an expression from infix to reverse polish notation without throwing exceptions for malformed input.
+     * Every problem found is added to the given list together with the span of characters it refers to, the
+     * returned tokens can only be evaluated if no problem has been added.
+     *
+     * @param expression             the expression to convert
+     * @param userFunctions          the custom functions used
+     * @param userOperators          the custom operators used
+     * @param variableNames          the variable names used in the expression
+     * @param implicitMultiplication set to false to turn off implicit multiplication
+     * @param diagnostics            the list the problems found are added to
+     * @return a {@link net.objecthunter.exp4j.tokenizer.Token} array containing the result
+     */
+    public static Token[] convertToRPN(final String expression, final Map<String, Function> userFunctions,
+                                       final Map<String, Operator> userOperators, final Set<String> variableNames,
+                                       final boolean implicitMultiplication, final List<Diagnostic> diagnostics) {
+        final var stack = new Spans(16, true);
+        final var output = new Spans(16, true);
 
-        final var tokenizer = new Tokenizer(expression, userFunctions, userOperators, variableNames, implicitMultiplication);
+        final var tokenizer = new Tokenizer(expression, userFunctions, userOperators, variableNames, implicitMultiplication,
+                0, null, diagnostics);
         while (tokenizer.hasNext()) {
             final var token = tokenizer.nextToken();
+            /* the tokenizer has already reported the characters it could not parse */
+            if (null != token) {
+                process(token, tokenizer.getTokenStart(), tokenizer.getPosition(), stack, output, diagnostics);
+            }
+        }
+        final var rpn = finish(stack, output, diagnostics);
+        checkOperands(expression, output, diagnostics);
+        return rpn;
+    }
+
+    /**
+     * Count the operands the same way {@link net.objecthunter.exp4j.Expression#validate()} does, but report the
+     * operator or function which is missing operands.
+     */
+    private static void checkOperands(final String expression, final Spans output, final List<Diagnostic> diagnostics) {
+        var count = 0;
+        for (var i = 0; i < output.size; i++) {
+            final var token = output.tokens[i];
             switch (token.getType()) {
                 case Token.TOKEN_NUMBER:
                 case Token.TOKEN_VARIABLE:
-                    output.add(token);
+                    count++;
                     break;
                 case Token.TOKEN_FUNCTION:
-                    stack.add(token);
-                    break;
-                case Token.TOKEN_SEPARATOR:
-                    while (!stack.empty() && Token.TOKEN_PARENTHESES_OPEN != stack.peek().getType()) {
-                        output.add(stack.pop());
+                    final var func = ((FunctionToken) token).getFunction();
+                    final var argsNum = func.getNumArguments();
+                    if (argsNum > count) {
+                        diagnostics.add(new Diagnostic(Diagnostic.MISSING_OPERANDS, output.starts[i], output.ends[i],
+                                "Not enough arguments for '" + func.getName() + "' at [" + output.starts[i] + "]"));
+                        return;
                     }
-                    if (stack.empty() || Token.TOKEN_PARENTHESES_OPEN != stack.peek().getType()) {
-                        throw new IllegalArgumentException("Misplaced function separator ',' or mismatched parentheses");
+                    if (1 < argsNum) {
+                        count -= argsNum - 1;
+                    } else if (0 == argsNum) {
+                        count++;
                     }
                     break;
                 case Token.TOKEN_OPERATOR:
-                    while (!stack.empty() && Token.TOKEN_OPERATOR == stack.peek().getType()) {
-                        final var o1 = (OperatorToken) token;
-                        final var o2 = (OperatorToken) stack.peek();
-                        if (1 == o1.getOperator().getNumOperands() && 2 == o2.getOperator().getNumOperands()) {
-                            break;
-                        } else if ((o1.getOperator().isLeftAssociative() && o1.getOperator().getPrecedence() <= o2.getOperator().getPrecedence())
-                                || (o1.getOperator().getPrecedence() < o2.getOperator().getPrecedence())) {
-                            output.add(stack.pop());
-                        } else {
-                            break;
-                        }
+                    final var op = ((OperatorToken) token).getOperator();
+                    if (op.getNumOperands() > count) {
+                        diagnostics.add(new Diagnostic(Diagnostic.MISSING_OPERANDS, output.starts[i], output.ends[i],
+                                "Not enough operands for '" + op.getSymbol() + "' at [" + output.starts[i] + "]"));
+                        return;
+                    }
+                    if (2 == op.getNumOperands()) {
+                        count--;
                     }
-                    stack.push(token);
                     break;
-                case Token.TOKEN_PARENTHESES_OPEN:
-                    stack.push(token);
+                default:
                     break;
-                case Token.TOKEN_PARENTHESES_CLOSE:
-                    while (Token.TOKEN_PARENTHESES_OPEN != stack.peek().getType()) {
-                        output.add(stack.pop());
+            }
+        }
+        if (0 == count) {
+            diagnostics.add(new Diagnostic(Diagnostic.MISSING_OPERANDS, 0, expression.length(),
+                    "The expression does not contain any operands"));
+        } else if (1 < count) {
+            diagnostics.add(new Diagnostic(Diagnostic.TOO_MANY_OPERANDS, 0, expression.length(),
+                    "Too many operands"));
+        }
+    }
+
+    /**
+     * Growable token stack which can keep track of the characters each token has been parsed from
+     */
+    private static final class Spans {
+
+        private Token[] tokens;
+
+        /* the spans of the tokens, null if they are not tracked */
+        private int[] starts;
+
+        private int[] ends;
+
+        private int size;
+
+        private Spans(final int capacity, final boolean positions) {
+            tokens = new Token[capacity];
+            if (positions) {
+                starts = new int[capacity];
+                ends = new int[capacity];
+            }
+        }
+
+        private void push(final Token token, final int start, final int end) {
+            if (size == tokens.length) {
+                final var capacity = size * 2;
+                tokens = Arrays.copyOf(tokens, capacity);
+                if (null != starts) {
+                    starts = Arrays.copyOf(starts, capacity);
+                    ends = Arrays.copyOf(ends, capacity);
+                }
+            }
+            tokens[size] = token;
+            if (null != starts) {
+                starts[size] = start;
+                ends[size] = end;
+            }
+            size++;
+        }
+
+        private Token peek() {
+            return tokens[size - 1];
+        }
+
+        private int peekType() {
+            return tokens[size - 1].getType();
+        }
+
+        private void moveTop(final Spans target) {
+            size--;
+            target.push(tokens[size], null == starts ? 0 : starts[size], null == ends ? 0 : ends[size]);
+            tokens[size] = null;
+        }
+    }
+
+    /**
+     * Process a single token. Malformed input is added to the diagnostics if there are any, otherwise an
+     * {@link IllegalArgumentException} is thrown.
+     *
+     * @param start       the index of the first character of the token
+     * @param end         the index after the last character of the token
+     * @param diagnostics the list the problems found are added to, null to throw instead
+     */
+    private static void process(final Token token, final int start, final int end, final Spans stack,
+                                final Spans output, final List<Diagnostic> diagnostics) {
+        switch (token.getType()) {
+            case Token.TOKEN_NUMBER:
+            case Token.TOKEN_VARIABLE:
+                output.push(token, start, end);
+                break;
+            case Token.TOKEN_FUNCTION:
+            case Token.TOKEN_PARENTHESES_OPEN:
+                stack.push(token, start, end);
+                break;
+            case Token.TOKEN_SEPARATOR:
+                while (0 < stack.size && Token.TOKEN_PARENTHESES_OPEN != stack.peekType()) {
+                    stack.moveTop(output);
+                }
+                if (0 == stack.size) {
+                    if (null == diagnostics) {
+                        throw new IllegalArgumentException("Misplaced function separator ',' or mismatched parentheses");
+                    }
+                    diagnostics.add(new Diagnostic(Diagnostic.MISPLACED_SEPARATOR, start, end,
+                            "Misplaced function separator ',' at [" + start + "]"));
+                }
+                break;
+            case Token.TOKEN_OPERATOR:
+                final var o1 = ((OperatorToken) token).getOperator();
+                while (0 < stack.size && Token.TOKEN_OPERATOR == stack.peekType()) {
+                    final var o2 = ((OperatorToken) stack.peek()).getOperator();
+                    if (1 == o1.getNumOperands() && 2 == o2.getNumOperands()) {
+                        break;
+                    } else if ((o1.isLeftAssociative() && o1.getPrecedence() <= o2.getPrecedence())
+                            || (o1.getPrecedence() < o2.getPrecedence())) {
+                        stack.moveTop(output);
+                    } else {
+                        break;
                     }
-                    stack.pop();
-                    if (!stack.isEmpty() && Token.TOKEN_FUNCTION == stack.peek().getType()) {
-                        output.add(stack.pop());
+                }
+                stack.push(token, start, end);
+                break;
+            case Token.TOKEN_PARENTHESES_CLOSE:
+                while (0 < stack.size && Token.TOKEN_PARENTHESES_OPEN != stack.peekType()) {
+                    stack.moveTop(output);
+                }
+                if (0 == stack.size) {
+                    if (null == diagnostics) {
+                        throw new IllegalArgumentException("Mismatched parentheses detected. Please check the expression");
                     }
+                    diagnostics.add(new Diagnostic(Diagnostic.MISMATCHED_PARENTHESES, start, end,
+                            "Closing parenthesis without opening parenthesis at [" + start + "]"));
                     break;
-                default:
-                    throw new IllegalArgumentException("Unknown Token type encountered. This should not happen");
-            }
+                }
+                stack.tokens[--stack.size] = null;
+                if (0 < stack.size && Token.TOKEN_FUNCTION == stack.peekType()) {
+                    stack.moveTop(output);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown Token type encountered. This should not happen");
         }
-        while (!stack.empty()) {
-            final var t = stack.pop();
-            if (Token.TOKEN_PARENTHESES_CLOSE == t.getType() || Token.TOKEN_PARENTHESES_OPEN == t.getType()) {
-                throw new IllegalArgumentException("Mismatched parentheses detected. Please check the expression");
+    }
+
+    /**
+     * Move the operators and functions left on the stack to the output, reporting unclosed parentheses like
+     * {@link #process(Token, int, int, Spans, Spans, List)} does
+     */
+    private static Token[] finish(final Spans stack, final Spans output, final List<Diagnostic> diagnostics) {
+        while (0 < stack.size) {
+            if (Token.TOKEN_PARENTHESES_OPEN == stack.peekType()) {
+                if (null == diagnostics) {
+                    throw new IllegalArgumentException("Mismatched parentheses detected. Please check the expression");
+                }
+                final var start = stack.starts[--stack.size];
+                diagnostics.add(new Diagnostic(Diagnostic.MISMATCHED_PARENTHESES, start, stack.ends[stack.size],
+                        "Opening parenthesis without closing parenthesis at [" + start + "]"));
             } else {
-                output.add(t);
+                stack.moveTop(output);
             }
         }
-        return output.toArray(new Token[0]);
+        return Arrays.copyOf(output.tokens, output.size);
     }
 }
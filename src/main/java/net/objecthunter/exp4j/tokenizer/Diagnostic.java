@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j.tokenizer;
+
+/**
+ * Describes a problem found in an expression when it is compiled in diagnostics mode. Instead of throwing an
+ * exception the problem is reported with a code and the span of characters it refers to.
+ */
+public final class Diagnostic {
+
+    public static final int EMPTY_EXPRESSION = 1;
+    public static final int UNEXPECTED_CHARACTER = 2;
+    public static final int UNKNOWN_NAME = 3;
+    public static final int UNKNOWN_OPERATOR = 4;
+    public static final int INVALID_NUMBER = 5;
+    public static final int MISMATCHED_PARENTHESES = 6;
+    public static final int MISPLACED_SEPARATOR = 7;
+    public static final int MISSING_OPERANDS = 8;
+    public static final int TOO_MANY_OPERANDS = 9;
+    public static final int NAME_CLASH = 10;
+    public static final int MISSING_OPERATOR = 11;
+    public static final int INVALID_BINDING = 12;
+
+    private final int code;
+
+    private final int start;
+
+    private final int end;
+
+    private final String message;
+
+    /**
+     * Create a new instance
+     *
+     * @param code    the code of the problem
+     * @param start   the position of the first character the problem refers to
+     * @param end     the position behind the last character the problem refers to
+     * @param message a human readable description of the problem
+     */
+    public Diagnostic(final int code, final int start, final int end, final String message) {
+        this.code = code;
+        this.start = start;
+        this.end = end;
+        this.message = message;
+    }
+
+    /**
+     * Get the code of the problem
+     *
+     * @return one of the constants defined in this class
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Get the position of the first character the problem refers to
+     *
+     * @return the start of the span
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Get the position behind the last character the problem refers to
+     *
+     * @return the end of the span
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * Get a human readable description of the problem
+     *
+     * @return the message
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + start + ", " + end + ") " + message;
+    }
+}
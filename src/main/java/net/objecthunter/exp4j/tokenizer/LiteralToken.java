@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j.tokenizer;
+
+/**
+ * Represents a number which has been moved out of the expression into the literal pool of an expression instance,
+ * so expressions differing only in their numbers can share their tokens
+ */
+public final class LiteralToken extends Token {
+
+    private final int index;
+
+    /**
+     * Create a new instance
+     *
+     * @param index the index of the number in the literal pool
+     */
+    public LiteralToken(final int index) {
+        super(TOKEN_LITERAL);
+        this.index = index;
+    }
+
+    /**
+     * Get the index of the number in the literal pool
+     *
+     * @return the index
+     */
+    public int getIndex() {
+        return index;
+    }
+}
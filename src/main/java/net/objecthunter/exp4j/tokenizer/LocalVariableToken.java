@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j.tokenizer;
+
+/**
+ * represents a local variable bound in a multi statement expression. Locals are addressed by a slot number instead of
+ * their name. A token of type {@link #TOKEN_STORE_LOCAL} pops the value on top of the stack into the slot, a token of
+ * type {@link #TOKEN_LOCAL} pushes the value of the slot.
+ */
+public class LocalVariableToken extends Token {
+
+    private final String name;
+
+    private final int slot;
+
+    /**
+     * Create a new instance
+     *
+     * @param name  the name of the local variable
+     * @param slot  the slot holding the value of the local variable
+     * @param store true to store a value in the slot, false to load it
+     */
+    public LocalVariableToken(final String name, final int slot, final boolean store) {
+        super(store ? TOKEN_STORE_LOCAL : TOKEN_LOCAL);
+        this.name = name;
+        this.slot = slot;
+    }
+
+    /**
+     * Get the name of the local variable
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the slot holding the value of the local variable
+     *
+     * @return the slot number
+     */
+    public int getSlot() {
+        return slot;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j.tokenizer;
+
+import net.objecthunter.exp4j.function.Function;
+import net.objecthunter.exp4j.function.Functions;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable table mapping every function and variable name usable in an expression to the token it is converted to.
+ * The table is built once and can be shared by any number of tokenizers, also concurrently.
+ */
+public final class SymbolTable {
+
+    private final Map<String, Token> symbols;
+
+    private final int maxNameLength;
+
+    /**
+     * Create a new symbol table containing the builtin functions, the custom functions and the variables
+     *
+     * @param userFunctions the custom functions, overriding builtin functions with the same name
+     * @param variableNames the variable names
+     */
+    public SymbolTable(final Map<String, Function> userFunctions, final Set<String> variableNames) {
+        final var table = new HashMap<String, Token>(64 + userFunctions.size() + variableNames.size());
+        var max = 0;
+        for (final var f : Functions.getBuiltinFunctions()) {
+            /* only names which the builtin lookup resolves are usable in expressions */
+            if (f == Functions.getBuiltinFunction(f.getName())) {
+                table.put(f.getName(), new FunctionToken(f));
+                max = Math.max(max, f.getName().length());
+            }
+        }
+        for (final var f : userFunctions.values()) {
+            table.put(f.getName(), new FunctionToken(f));
+            max = Math.max(max, f.getName().length());
+        }
+        for (final var name : variableNames) {
+            table.put(name, new VariableToken(name));
+            max = Math.max(max, name.length());
+        }
+        this.symbols = table;
+        this.maxNameLength = max;
+    }
+
+    /**
+     * Look up the token for a name
+     *
+     * @param name the name of a function or variable
+     * @return the shared token or null if the name is unknown
+     */
+    public Token get(final String name) {
+        return symbols.get(name);
+    }
+
+    /**
+     * Get the length of the longest name in the table
+     *
+     * @return the maximum name length
+     */
+    public int getMaxNameLength() {
+        return maxNameLength;
+    }
+}
@@ -27,6 +27,9 @@ public abstract class Token {
     public static final short TOKEN_PARENTHESES_CLOSE = 5;
     public static final short TOKEN_VARIABLE = 6;
     public static final short TOKEN_SEPARATOR = 7;
+    public static final short TOKEN_LOCAL = 8;
+    public static final short TOKEN_STORE_LOCAL = 9;
+    public static final short TOKEN_LITERAL = 10;
 
     private final int type;
 
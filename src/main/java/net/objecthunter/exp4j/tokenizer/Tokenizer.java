@@ -21,11 +21,20 @@ import net.objecthunter.exp4j.operator.Operator;
 import net.objecthunter.exp4j.operator.Operators;
 
 import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public class Tokenizer {
 
+    private static final Token OPEN_PARENTHESES = new OpenParenthesesToken();
+
+    private static final Token CLOSE_PARENTHESES = new CloseParenthesesToken();
+
+    private static final Token ARGUMENT_SEPARATOR = new ArgumentSeparatorToken();
+
     private final char[] expression;
 
     private final int expressionLength;
@@ -38,8 +47,23 @@ public class Tokenizer {
 
     private final boolean implicitMultiplication;
 
+    private final int maxNameLength;
+
+    private final SymbolTable symbols;
+
+    /* tokens carry no position, so a single instance per distinct symbol is shared by all occurrences */
+    private final Map<String, Token> nameTokens = new HashMap<>();
+
+    private final Map<String, Token> numberTokens = new HashMap<>();
+
+    private final Map<Operator, Token> operatorTokens = new IdentityHashMap<>();
+
+    private final List<Diagnostic> diagnostics;
+
     private int pos = 0;
 
+    private int tokenStart = 0;
+
     private Token lastToken;
 
 
@@ -51,6 +75,9 @@ public class Tokenizer {
         this.userOperators = userOperators;
         this.variableNames = variableNames;
         this.implicitMultiplication = implicitMultiplication;
+        this.maxNameLength = maxNameLength(userFunctions, variableNames);
+        this.symbols = null;
+        this.diagnostics = null;
     }
 
     public Tokenizer(final String expression, final Map<String, Function> userFunctions,
@@ -61,6 +88,117 @@ public class Tokenizer {
         this.userOperators = userOperators;
         this.variableNames = variableNames;
         this.implicitMultiplication = true;
+        this.maxNameLength = maxNameLength(userFunctions, variableNames);
+        this.symbols = null;
+        this.diagnostics = null;
+    }
+
+    /**
+     * Create a tokenizer which looks up function and variable names in a prebuilt {@link SymbolTable}
+     *
+     * @param expression             the expression to tokenize
+     * @param symbols                the functions and variables available in the expression
+     * @param userOperators          the custom operators used
+     * @param implicitMultiplication set to false to turn off implicit multiplication
+     */
+    public Tokenizer(final String expression, final SymbolTable symbols, final Map<String, Operator> userOperators,
+                     final boolean implicitMultiplication) {
+        this.expression = expression.trim().toCharArray();
+        this.expressionLength = this.expression.length;
+        this.userFunctions = null;
+        this.userOperators = userOperators;
+        this.variableNames = null;
+        this.implicitMultiplication = implicitMultiplication;
+        this.maxNameLength = symbols.getMaxNameLength();
+        this.symbols = symbols;
+        this.diagnostics = null;
+    }
+
+    /**
+     * Create a tokenizer which resumes tokenizing an expression at a given position. In contrast to the other
+     * constructors leading whitespace is not trimmed, so positions are relative to the expression as passed in.
+     *
+     * @param expression             the expression to tokenize
+     * @param userFunctions          the custom functions used
+     * @param userOperators          the custom operators used
+     * @param variableNames          the variable names used in the expression
+     * @param implicitMultiplication set to false to turn off implicit multiplication
+     * @param position               the position at which tokenizing starts
+     * @param lastToken              the token preceding the given position or null if there is none
+     */
+    public Tokenizer(final String expression, final Map<String, Function> userFunctions,
+                     final Map<String, Operator> userOperators, final Set<String> variableNames, final boolean implicitMultiplication,
+                     final int position, final Token lastToken) {
+        this(expression, userFunctions, userOperators, variableNames, implicitMultiplication, position, lastToken, null);
+    }
+
+    /**
+     * Create a tokenizer which resumes tokenizing an expression at a given position and optionally reports problems
+     * instead of throwing exceptions. If a list of diagnostics is passed, {@link #nextToken()} adds a
+     * {@link Diagnostic} for every problem it finds and either returns a placeholder token or null if the offending
+     * characters have been skipped.
+     *
+     * @param expression             the expression to tokenize
+     * @param userFunctions          the custom functions used
+     * @param userOperators          the custom operators used
+     * @param variableNames          the variable names used in the expression
+     * @param implicitMultiplication set to false to turn off implicit multiplication
+     * @param position               the position at which tokenizing starts
+     * @param lastToken              the token preceding the given position or null if there is none
+     * @param diagnostics            the list problems are added to or null to throw exceptions
+     */
+    public Tokenizer(final String expression, final Map<String, Function> userFunctions,
+                     final Map<String, Operator> userOperators, final Set<String> variableNames, final boolean implicitMultiplication,
+                     final int position, final Token lastToken, final List<Diagnostic> diagnostics) {
+        var len = expression.length();
+        while (0 < len && ' ' >= expression.charAt(len - 1)) {
+            len--;
+        }
+        this.expression = expression.substring(0, len).toCharArray();
+        this.expressionLength = this.expression.length;
+        this.userFunctions = userFunctions;
+        this.userOperators = userOperators;
+        this.variableNames = variableNames;
+        this.implicitMultiplication = implicitMultiplication;
+        this.maxNameLength = maxNameLength(userFunctions, variableNames);
+        this.symbols = null;
+        this.pos = position;
+        this.lastToken = lastToken;
+        this.diagnostics = diagnostics;
+    }
+
+    private static int maxNameLength(final Map<String, Function> userFunctions, final Set<String> variableNames) {
+        var max = Functions.getMaxBuiltinFunctionNameLength();
+        if (null != userFunctions) {
+            for (final var name : userFunctions.keySet()) {
+                max = Math.max(max, name.length());
+            }
+        }
+        if (null != variableNames) {
+            for (final var name : variableNames) {
+                max = Math.max(max, name.length());
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Get the position of the next character to be read
+     *
+     * @return the current position in the expression
+     */
+    public int getPosition() {
+        return pos;
+    }
+
+    /**
+     * Get the position of the first character read by the last call to {@link #nextToken()}, not counting leading
+     * whitespace
+     *
+     * @return the start of the last token in the expression
+     */
+    public int getTokenStart() {
+        return tokenStart;
     }
 
     public boolean hasNext() {
@@ -72,16 +210,24 @@ public class Tokenizer {
         while (Character.isWhitespace(ch)) {
             ch = expression[++pos];
         }
+        tokenStart = pos;
         if (Character.isDigit(ch) || '.' == ch) {
             if (null != lastToken) {
                 if (Token.TOKEN_NUMBER == lastToken.getType()) {
+                    if (null != diagnostics) {
+                        /* skip the number */
+                        final var start = pos;
+                        parseNumberToken(ch);
+                        return report(Diagnostic.MISSING_OPERATOR, start, pos, "Missing operator in front of '"
+                                + new String(expression, start, pos - start) + "' at [" + start + "]");
+                    }
                     throw new IllegalArgumentException("Unable to parse char '" + ch + "' (Code:" + (int) ch + ") at [" + pos + "]");
                 } else if (implicitMultiplication && (Token.TOKEN_OPERATOR != lastToken.getType()
                         && Token.TOKEN_PARENTHESES_OPEN != lastToken.getType()
                         && Token.TOKEN_FUNCTION != lastToken.getType()
                         && Token.TOKEN_SEPARATOR != lastToken.getType())) {
                     // insert an implicit multiplication token
-                    lastToken = new OperatorToken(Operators.getBuiltinOperator('*', 2));
+                    lastToken = operatorToken(Operators.getBuiltinOperator('*', 2));
                     return lastToken;
                 }
             }
@@ -95,7 +241,7 @@ public class Tokenizer {
                             && Token.TOKEN_FUNCTION != lastToken.getType()
                             && Token.TOKEN_SEPARATOR != lastToken.getType())) {
                 // insert an implicit multiplication token
-                lastToken = new OperatorToken(Operators.getBuiltinOperator('*', 2));
+                lastToken = operatorToken(Operators.getBuiltinOperator('*', 2));
                 return lastToken;
             }
             return parseParentheses(true);
@@ -111,18 +257,27 @@ public class Tokenizer {
                             && Token.TOKEN_FUNCTION != lastToken.getType()
                             && Token.TOKEN_SEPARATOR != lastToken.getType())) {
                 // insert an implicit multiplication token
-                lastToken = new OperatorToken(Operators.getBuiltinOperator('*', 2));
+                lastToken = operatorToken(Operators.getBuiltinOperator('*', 2));
                 return lastToken;
             }
             return parseFunctionOrVariable();
 
         }
+        if (null != diagnostics) {
+            return report(Diagnostic.UNEXPECTED_CHARACTER, pos, ++pos, "Unable to parse char '" + ch + "' (Code:"
+                    + (int) ch + ") at [" + (pos - 1) + "]");
+        }
         throw new IllegalArgumentException("Unable to parse char '" + ch + "' (Code:" + (int) ch + ") at [" + pos + "]");
     }
 
+    private Token report(final int code, final int start, final int end, final String message) {
+        diagnostics.add(new Diagnostic(code, start, end, message));
+        return null;
+    }
+
     private Token parseArgumentSeparatorToken() {
         this.pos++;
-        this.lastToken = new ArgumentSeparatorToken();
+        this.lastToken = ARGUMENT_SEPARATOR;
         return lastToken;
     }
 
@@ -132,9 +287,9 @@ public class Tokenizer {
 
     private Token parseParentheses(final boolean open) {
         if (open) {
-            this.lastToken = new OpenParenthesesToken();
+            this.lastToken = OPEN_PARENTHESES;
         } else {
-            this.lastToken = new CloseParenthesesToken();
+            this.lastToken = CLOSE_PARENTHESES;
         }
         this.pos++;
         return lastToken;
@@ -160,28 +315,78 @@ public class Tokenizer {
         testPos = offset + len - 1;
         while (!isEndOfExpression(testPos) &&
                 isVariableOrFunctionCharacter(expression[testPos])) {
-            final var name = new String(expression, offset, len);
-            if (null != variableNames && variableNames.contains(name)) {
-                lastValidLen = len;
-                lastValidToken = new VariableToken(name);
-            } else {
-                final var f = getFunction(name);
-                if (null != f) {
+            /* names longer than the longest known name can not match, keep scanning only for the error message */
+            if (len <= maxNameLength) {
+                final var token = nameToken(new String(expression, offset, len));
+                if (null != token) {
                     lastValidLen = len;
-                    lastValidToken = new FunctionToken(f);
+                    lastValidToken = token;
                 }
             }
             len++;
             testPos = offset + len - 1;
         }
         if (null == lastValidToken) {
-            throw new UnknownFunctionOrVariableException(new String(expression), pos, len);
+            if (null != diagnostics) {
+                /* continue as if the name was a variable */
+                final var name = new String(expression, offset, len - 1);
+                report(Diagnostic.UNKNOWN_NAME, offset, offset + len - 1, "Unknown function or variable '" + name
+                        + "' at pos " + offset);
+                lastValidLen = len - 1;
+                lastValidToken = new VariableToken(name);
+            } else {
+                throw new UnknownFunctionOrVariableException(new String(expression), pos, len);
+            }
         }
         pos += lastValidLen;
         lastToken = lastValidToken;
         return lastToken;
     }
 
+    private Token nameToken(final String name) {
+        if (null != symbols) {
+            return symbols.get(name);
+        }
+        var token = nameTokens.get(name);
+        if (null == token && !nameTokens.containsKey(name)) {
+            if (null != variableNames && variableNames.contains(name)) {
+                token = new VariableToken(name);
+            } else {
+                final var f = getFunction(name);
+                if (null != f) {
+                    token = new FunctionToken(f);
+                }
+            }
+            nameTokens.put(name, token);
+        }
+        return token;
+    }
+
+    private Token operatorToken(final Operator op) {
+        var token = operatorTokens.get(op);
+        if (null == token) {
+            token = new OperatorToken(op);
+            operatorTokens.put(op, token);
+        }
+        return token;
+    }
+
+    private Token numberToken(final int offset, final int len) {
+        final var number = String.valueOf(expression, offset, len);
+        var token = numberTokens.get(number);
+        if (null == token) {
+            if (null != diagnostics && !isValidNumber(number)) {
+                /* continue as if the number was zero */
+                report(Diagnostic.INVALID_NUMBER, offset, offset + len, "Invalid number '" + number + "' at ["
+                        + offset + "]");
+                return new NumberToken(BigDecimal.ZERO);
+            }
+            token = new NumberToken(new BigDecimal(number));
+            numberTokens.put(number, token);
+        }
+        return token;
+    }
+
     private Function getFunction(final String name) {
         Function f = null;
         if (null != this.userFunctions) {
@@ -214,8 +419,16 @@ public class Tokenizer {
             }
         }
 
+        if (null == lastValid && null != diagnostics) {
+            /* continue as if the operator was an addition */
+            report(Diagnostic.UNKNOWN_OPERATOR, offset, offset + len, "Unknown operator '"
+                    + new String(expression, offset, len) + "' at [" + offset + "]");
+            pos += len;
+            lastToken = operatorToken(getOperator("+"));
+            return lastToken;
+        }
         pos += symbol.length();
-        lastToken = new OperatorToken(lastValid);
+        lastToken = operatorToken(lastValid);
         return lastToken;
     }
 
@@ -250,7 +463,7 @@ public class Tokenizer {
         var len = 1;
         this.pos++;
         if (isEndOfExpression(offset + len)) {
-            lastToken = new NumberToken(new BigDecimal(String.valueOf(firstChar)));
+            lastToken = numberToken(offset, 1);
             return lastToken;
         }
         while (!isEndOfExpression(offset + len) &&
@@ -265,10 +478,45 @@ public class Tokenizer {
             len--;
             pos--;
         }
-        lastToken = new NumberToken(expression, offset, len);
+        lastToken = numberToken(offset, len);
         return lastToken;
     }
 
+    private static boolean isValidNumber(final String number) {
+        final var len = number.length();
+        var i = 0;
+        var digits = 0;
+        while (i < len && Character.isDigit(number.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (i < len && '.' == number.charAt(i)) {
+            i++;
+            while (i < len && Character.isDigit(number.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (0 == digits) {
+            return false;
+        }
+        if (i < len && ('e' == number.charAt(i) || 'E' == number.charAt(i))) {
+            i++;
+            if (i < len && ('-' == number.charAt(i) || '+' == number.charAt(i))) {
+                i++;
+            }
+            final var exponentStart = i;
+            while (i < len && Character.isDigit(number.charAt(i))) {
+                i++;
+            }
+            /* BigDecimal rejects exponents which do not fit into an int */
+            if (exponentStart == i || 9 < i - exponentStart) {
+                return false;
+            }
+        }
+        return i == len;
+    }
+
     private static boolean isNumeric(final char ch, final boolean lastCharE) {
         return Character.isDigit(ch) || '.' == ch || 'e' == ch || 'E' == ch ||
                 (lastCharE && ('-' == ch || '+' == ch));
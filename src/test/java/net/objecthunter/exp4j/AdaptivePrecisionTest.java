@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+
+class AdaptivePrecisionTest {
+
+    @Test
+    void testWellConditioned() {
+        final var e = new ExpressionBuilder("0.1 + 0.2")
+                .adaptivePrecision(12)
+                .build();
+        Assertions.assertEquals(new BigDecimal("0.3"), e.evaluate());
+        Assertions.assertEquals(12, e.getAdaptivePrecision());
+    }
+
+    @Test
+    void testCancellationFallsBack() {
+        final var e = new ExpressionBuilder("(x + 1e20) - 1e20")
+                .variables("x")
+                .adaptivePrecision(10)
+                .build()
+                .setVariable("x", new BigDecimal("1.5"));
+        Assertions.assertEquals(0, new BigDecimal("1.5").compareTo(e.evaluate()));
+    }
+
+    @Test
+    void testDivisionByUncertainZeroFallsBack() {
+        final var e = new ExpressionBuilder("1 / (0.3 - 0.1 - 0.2)")
+                .adaptivePrecision(10)
+                .build();
+        Assertions.assertThrows(ArithmeticException.class, e::evaluate);
+    }
+
+    @Test
+    void testUnsupportedFunctionIsEvaluatedExactly() {
+        final var e = new ExpressionBuilder("2^10 + sqrt(x)")
+                .variables("x")
+                .adaptivePrecision(5)
+                .build()
+                .setVariable("x", 2);
+        Assertions.assertEquals(new BigDecimal("1025.4"), e.evaluate());
+        e.setAdaptivePrecision(0);
+        Assertions.assertEquals(0, e.getAdaptivePrecision());
+    }
+
+    @Test
+    void testIntegerExpressionIsRounded() {
+        final var e = new ExpressionBuilder("123456*1000")
+                .adaptivePrecision(3)
+                .build();
+        Assertions.assertEquals(new BigDecimal("123000000"), e.evaluate());
+    }
+
+    @Test
+    void testExactFallbackIsNormalized() {
+        final var viaDouble = new ExpressionBuilder("2*2*1.0")
+                .adaptivePrecision(5)
+                .build();
+        final var exact = new ExpressionBuilder("2^2*1.0")
+                .adaptivePrecision(5)
+                .build();
+        Assertions.assertEquals(new BigDecimal("4"), viaDouble.evaluate());
+        Assertions.assertEquals(viaDouble.evaluate(), exact.evaluate());
+    }
+
+    @Test
+    void testMatchesRoundedBigDecimal() {
+        final var rnd = new Random(11);
+        final var adaptive = new ExpressionBuilder("(a - b) * c / (a + d) + sqrt(abs(b))")
+                .variables("a", "b", "c", "d")
+                .adaptivePrecision(12)
+                .build();
+        final var exact = new ExpressionBuilder("(a - b) * c / (a + d)")
+                .variables("a", "b", "c", "d")
+                .rational(true)
+                .mathContext(MathContext.DECIMAL128)
+                .build();
+        final var mc = new MathContext(12, RoundingMode.HALF_EVEN);
+        for (var i = 0; i < 1000; i++) {
+            final var a = BigDecimal.valueOf(rnd.nextInt(1_000_000), 3);
+            final var b = BigDecimal.valueOf(rnd.nextInt(), 4);
+            final var c = BigDecimal.valueOf(rnd.nextInt(100_000) - 50_000, 2);
+            final var d = BigDecimal.valueOf(rnd.nextInt(1_000) + 1, 1);
+            adaptive.setVariable("a", a).setVariable("b", b).setVariable("c", c).setVariable("d", d);
+            exact.setVariable("a", a).setVariable("b", b).setVariable("c", c).setVariable("d", d);
+            final var expected = exact.evaluate().add(b.abs().sqrt(MathContext.DECIMAL128)).round(mc);
+            Assertions.assertEquals(0, expected.compareTo(adaptive.evaluate()), "a=" + a + " b=" + b + " c=" + c + " d=" + d);
+        }
+    }
+
+    @Test
+    void testInvalidPrecision() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ExpressionBuilder("1").adaptivePrecision(16));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ExpressionBuilder("1").build().setAdaptivePrecision(-1));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Function;
+import net.objecthunter.exp4j.function.Functions;
+import net.objecthunter.exp4j.operator.Operators;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+class ArityApplyTest {
+
+    private static final BigDecimal X = new BigDecimal("0.75");
+
+    private static final BigDecimal Y = new BigDecimal("2.5");
+
+    @Test
+    void testBuiltinFunctions() {
+        for (final var f : Functions.getBuiltinFunctions()) {
+            if (1 == f.getNumArguments()) {
+                Assertions.assertEquals(f.apply(X), f.apply1(X), f.getName());
+                Assertions.assertEquals(f.apply(MathContext.DECIMAL32, X), f.apply1(MathContext.DECIMAL32, X), f.getName());
+            } else {
+                Assertions.assertEquals(f.apply(X, Y), f.apply2(X, Y), f.getName());
+                Assertions.assertEquals(f.apply(MathContext.DECIMAL32, X, Y), f.apply2(MathContext.DECIMAL32, X, Y), f.getName());
+            }
+        }
+    }
+
+    @Test
+    void testBuiltinOperators() {
+        for (final var symbol : new char[]{'+', '-', '*', '/', '^', '%'}) {
+            final var binary = Operators.getBuiltinOperator(symbol, 2);
+            Assertions.assertEquals(binary.apply(X, Y), binary.apply2(X, Y));
+            Assertions.assertEquals(binary.apply(MathContext.DECIMAL32, X, Y), binary.apply2(MathContext.DECIMAL32, X, Y));
+        }
+        for (final var symbol : new char[]{'+', '-'}) {
+            final var unary = Operators.getBuiltinOperator(symbol, 1);
+            Assertions.assertEquals(unary.apply(X), unary.apply1(X));
+            Assertions.assertEquals(unary.apply(MathContext.DECIMAL32, X), unary.apply1(MathContext.DECIMAL32, X));
+        }
+    }
+
+    @Test
+    void testVarargsFunctionsStillWork() {
+        final var sum3 = new Function("sum3", 3) {
+            @Override
+            public BigDecimal apply(final BigDecimal... args) {
+                return args[0].add(args[1]).add(args[2]);
+            }
+        };
+        final var sum4 = new Function("sum4", 4) {
+            @Override
+            public BigDecimal apply(final BigDecimal... args) {
+                return args[0].add(args[1]).add(args[2]).add(args[3]);
+            }
+        };
+        final var e = new ExpressionBuilder("sum3(x, 2, 3) * sum4(1, 2, 3, x)")
+                .variables("x")
+                .functions(sum3, sum4)
+                .build()
+                .setVariable("x", 4);
+        Assertions.assertEquals(90d, e.evaluate().doubleValue(), 0d);
+        Assertions.assertEquals(90d, e.setMathContext(MathContext.DECIMAL64).evaluate().doubleValue(), 0d);
+    }
+
+    @Test
+    void testSpecializedMethodIsCalled() {
+        final var hypot = new Function("hypot", 2) {
+            @Override
+            public BigDecimal apply(final BigDecimal... args) {
+                throw new AssertionError("the varargs method should not be called");
+            }
+
+            @Override
+            public BigDecimal apply2(final BigDecimal arg1, final BigDecimal arg2) {
+                return BigDecimal.valueOf(Math.hypot(arg1.doubleValue(), arg2.doubleValue()));
+            }
+        };
+        final var e = new ExpressionBuilder("hypot(x, 4)")
+                .variables("x")
+                .function(hypot)
+                .build()
+                .setVariable("x", 3);
+        Assertions.assertEquals(5d, e.evaluate().doubleValue(), 0d);
+    }
+
+    @Test
+    void testVarargsFunctionGetsItsOwnArray() {
+        final var kept = new ArrayList<BigDecimal[]>();
+        final var sum4 = new Function("sum4", 4) {
+            @Override
+            public BigDecimal apply(final BigDecimal... args) {
+                kept.add(args);
+                final var sum = args[0].add(args[1]).add(args[2]).add(args[3]);
+                Arrays.fill(args, BigDecimal.ZERO);
+                return sum;
+            }
+        };
+        final var builders = new ExpressionBuilder[]{
+                new ExpressionBuilder("sum4(1, 2, 3, x)"),
+                new ExpressionBuilder("sum4(1, 2, 3, x)").fixedPoint(2),
+                new ExpressionBuilder("sum4(1, 2, 3, x)").rational(true)
+        };
+        for (final var builder : builders) {
+            final var e = builder.variables("x").function(sum4).build().setVariable("x", 4);
+            Assertions.assertEquals(10d, e.evaluate().doubleValue(), 0d);
+            Assertions.assertEquals(10d, e.evaluate().doubleValue(), 0d);
+            Assertions.assertEquals(10d, e.evaluateOrNaN(), 0d);
+        }
+        Assertions.assertEquals(kept.size(), kept.stream().distinct().count());
+    }
+}
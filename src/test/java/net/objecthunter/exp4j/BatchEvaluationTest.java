@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Function;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Random;
+
+class BatchEvaluationTest {
+
+    private static final String[] EXPRESSIONS = {
+            "x * y - 3 / x + y % 2",
+            "sin(x) * cos(y) + tan(x / 4)",
+            "exp(x / 10) - log(abs(y) + 1) + log10(x * x + 1) + log2(y * y + 1)",
+            "pow(abs(x), 0.5) + abs(y) ^ 1.5 - sqrt(abs(x * y))",
+            "sinh(x / 5) + cosh(y / 5) - tanh(x * y)",
+            "-x + floor(y) * ceil(x) + signum(y) + cbrt(x)",
+            "atan(x) + asin(y / 10) + acos(x / 10)",
+            "expm1(y / 10) + log1p(abs(x))",
+            "toradian(x) + todegree(y) + sec(x) - csc(y) + cot(x)",
+    };
+
+    @Test
+    void testMatchesScalarEvaluation() {
+        final var rnd = new Random(42);
+        final var rows = 500;
+        final var x = new double[rows];
+        final var y = new double[rows];
+        for (var i = 0; i < rows; i++) {
+            x[i] = rnd.nextDouble() * 20 - 10;
+            y[i] = rnd.nextDouble() * 20 - 10;
+        }
+        for (final var expression : EXPRESSIONS) {
+            final var e = new ExpressionBuilder(expression)
+                    .variables("x", "y")
+                    .build();
+            final var results = e.evaluateBatch(Map.of("x", x, "y", y));
+            Assertions.assertEquals(rows, results.length);
+            for (var i = 0; i < rows; i++) {
+                final var expected = e.setVariable("x", x[i])
+                        .setVariable("y", y[i])
+                        .evaluate()
+                        .doubleValue();
+                Assertions.assertEquals(expected, results[i], 1e-9 * Math.max(1d, Math.abs(expected)), expression);
+            }
+        }
+    }
+
+    @Test
+    void testFastMath() {
+        final var rnd = new Random(7);
+        final var rows = 10_000;
+        final var x = new double[rows];
+        for (var i = 0; i < rows; i++) {
+            x[i] = rnd.nextDouble() * 10 - 5;
+        }
+        final var expression = "sin(x) + cos(x) * exp(x) - log(x * x + 1) + pow(abs(x), 1.5) + tanh(x)";
+        final var exact = new ExpressionBuilder(expression)
+                .variables("x")
+                .build();
+        final var fast = new ExpressionBuilder(expression)
+                .variables("x")
+                .fastMath(true)
+                .build();
+        Assertions.assertFalse(exact.isFastMath());
+        Assertions.assertTrue(fast.isFastMath());
+        final var expected = exact.evaluateBatch(Map.of("x", x));
+        final var actual = fast.evaluateBatch(Map.of("x", x));
+        for (var i = 0; i < rows; i++) {
+            Assertions.assertEquals(expected[i], actual[i], 1e-13 * Math.max(1d, Math.abs(expected[i])));
+        }
+    }
+
+    @Test
+    void testScalarVariablesAndIeeeSemantics() {
+        final var e = new ExpressionBuilder("x / y + z")
+                .variables("x", "y", "z")
+                .build()
+                .setVariable("z", 1);
+        final var results = e.evaluateBatch(Map.of("x", new double[]{1, 0, -1}, "y", new double[]{0, 0, 2}));
+        Assertions.assertEquals(Double.POSITIVE_INFINITY, results[0]);
+        Assertions.assertTrue(Double.isNaN(results[1]));
+        Assertions.assertEquals(0.5d, results[2], 0d);
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> e.evaluateBatch(Map.of("x", new double[2], "y", new double[3])));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> e.clearVariables().evaluateBatch(Map.of("x", new double[2], "y", new double[2])));
+    }
+
+    @Test
+    void testCustomFunctionAndBindings() {
+        final var inverse = new Function("inverse", 1) {
+            @Override
+            public BigDecimal apply(final BigDecimal... args) {
+                return BigDecimal.ONE.divide(args[0]);
+            }
+        };
+        final var e = new ExpressionBuilder("a = x * 2; inverse(a) + a")
+                .variables("x")
+                .functions(inverse)
+                .letBindings(true)
+                .build();
+        final var results = e.evaluateBatch(Map.of("x", new double[]{0.5, 0, 2}));
+        Assertions.assertEquals(2d, results[0], 0d);
+        Assertions.assertTrue(Double.isNaN(results[1]));
+        Assertions.assertEquals(4.25d, results[2], 0d);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import static net.objecthunter.exp4j.tokenizer.Token.TOKEN_LITERAL;
+
+class BuildPathSettingsTest {
+
+    /**
+     * Get the expressions created by all build paths for a configured builder, including an incremental expression
+     * which has been edited to the expression string
+     */
+    private static List<Expression> paths(final String expression, final UnaryOperator<ExpressionBuilder> settings) {
+        final var edited = settings.apply(new ExpressionBuilder(expression + " + 0"))
+                .buildIncremental()
+                .edit(expression.length(), 4, "");
+        Assertions.assertEquals(expression, edited.getText());
+        final var builder = settings.apply(new ExpressionBuilder(expression));
+        return List.of(builder.build(), builder.buildLazy().getExpression(), builder.buildLazy(true).getExpression(),
+                builder.buildIncremental().getExpression(), edited.getExpression(), builder.diagnose().getExpression());
+    }
+
+    @Test
+    void testRational() {
+        for (final var e : paths("1/3+1/3+1/3", b -> b.rational(true))) {
+            Assertions.assertTrue(e.isRational());
+            Assertions.assertEquals(BigDecimal.ONE, e.evaluate());
+        }
+    }
+
+    @Test
+    void testFixedPoint() {
+        for (final var e : paths("0.125*3", b -> b.fixedPoint(2))) {
+            Assertions.assertEquals(2, e.getFixedPointScale());
+            Assertions.assertEquals(new BigDecimal("0.39"), e.evaluate());
+        }
+        for (final var e : paths("0.125*3", b -> b.fixedPoint(2, RoundingMode.DOWN))) {
+            Assertions.assertEquals(new BigDecimal("0.36"), e.evaluate());
+        }
+    }
+
+    @Test
+    void testAdaptivePrecision() {
+        for (final var e : paths("123456*1000", b -> b.adaptivePrecision(3))) {
+            Assertions.assertEquals(3, e.getAdaptivePrecision());
+            Assertions.assertEquals(new BigDecimal("123000000"), e.evaluate());
+        }
+    }
+
+    @Test
+    void testIntegerVariables() {
+        for (final var e : paths("n * 2 + 1", b -> b.variable("n").integerVariables("n"))) {
+            Assertions.assertTrue(e.isIntegerOnly());
+            Assertions.assertEquals(BigDecimal.valueOf(7), e.setVariable("n", 3).evaluate());
+        }
+    }
+
+    @Test
+    void testFastMath() {
+        for (final var e : paths("sin(x)", b -> b.variable("x").fastMath(true))) {
+            Assertions.assertTrue(e.isFastMath());
+        }
+    }
+
+    @Test
+    void testHoistLiterals() {
+        for (final var e : paths("x * 2.5 + 1", b -> b.variable("x").hoistLiterals(true))) {
+            Assertions.assertEquals(2, e.getLiterals().length);
+            Assertions.assertTrue(List.of(e.getTokens()).stream().anyMatch(t -> TOKEN_LITERAL == t.getType()));
+            Assertions.assertEquals(0, BigDecimal.valueOf(11).compareTo(e.setVariable("x", 4).evaluate()));
+        }
+    }
+
+    @Test
+    void testTieredCompilation() {
+        for (final var e : paths("x * x + 1", b -> b.variable("x").tieredCompilation(2, Runnable::run))) {
+            e.setVariable("x", 3);
+            for (var i = 0; i < 3; i++) {
+                Assertions.assertEquals(BigDecimal.valueOf(10), e.evaluate());
+            }
+            Assertions.assertTrue(e.isCompiled());
+        }
+    }
+
+    @Test
+    void testMathContext() {
+        for (final var e : paths("2/3", b -> b.mathContext(MathContext.DECIMAL32))) {
+            Assertions.assertEquals(MathContext.DECIMAL32, e.getMathContext());
+            Assertions.assertEquals(new BigDecimal("0.6666667"), e.evaluate());
+        }
+    }
+}
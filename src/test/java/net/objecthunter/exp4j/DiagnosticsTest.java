@@ -0,0 +1,156 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.tokenizer.Diagnostic;
+import net.objecthunter.exp4j.tokenizer.Token;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+class DiagnosticsTest {
+
+    @Test
+    void testValidExpression() {
+        final var result = new ExpressionBuilder("2 * sin(x)")
+                .variables("x")
+                .diagnose();
+        Assertions.assertTrue(result.isValid());
+        Assertions.assertTrue(result.getDiagnostics().isEmpty());
+        Assertions.assertEquals(0d, result.getExpression().setVariable("x", 0).evaluate().doubleValue(), 0d);
+    }
+
+    @Test
+    void testCollectsAllProblems() {
+        final var result = new ExpressionBuilder("foo + 2 $ 3 4 + (x")
+                .variables("x")
+                .diagnose();
+        Assertions.assertFalse(result.isValid());
+        Assertions.assertNull(result.getExpression());
+        final var diagnostics = result.getDiagnostics();
+        Assertions.assertEquals(4, diagnostics.size(), diagnostics.toString());
+        assertDiagnostic(diagnostics.get(0), Diagnostic.UNKNOWN_NAME, 0, 3);
+        assertDiagnostic(diagnostics.get(1), Diagnostic.UNKNOWN_OPERATOR, 8, 9);
+        assertDiagnostic(diagnostics.get(2), Diagnostic.MISSING_OPERATOR, 12, 13);
+        assertDiagnostic(diagnostics.get(3), Diagnostic.MISMATCHED_PARENTHESES, 16, 17);
+    }
+
+    @Test
+    void testInvalidNumber() {
+        final var result = new ExpressionBuilder("1.2.3 + 1..2 ? x")
+                .diagnose();
+        Assertions.assertEquals(4, result.getDiagnostics().size(), result.getDiagnostics().toString());
+        assertDiagnostic(result.getDiagnostics().get(0), Diagnostic.INVALID_NUMBER, 0, 5);
+        assertDiagnostic(result.getDiagnostics().get(1), Diagnostic.INVALID_NUMBER, 8, 12);
+        assertDiagnostic(result.getDiagnostics().get(2), Diagnostic.UNEXPECTED_CHARACTER, 13, 14);
+        assertDiagnostic(result.getDiagnostics().get(3), Diagnostic.UNKNOWN_NAME, 15, 16);
+    }
+
+    @Test
+    void testMissingOperands() {
+        final var result = new ExpressionBuilder("pow(2) * 3")
+                .diagnose();
+        Assertions.assertEquals(1, result.getDiagnostics().size(), result.getDiagnostics().toString());
+        assertDiagnostic(result.getDiagnostics().get(0), Diagnostic.MISSING_OPERANDS, 0, 3);
+    }
+
+    @Test
+    void testMisplacedSeparatorAndClosingParenthesis() {
+        final var result = new ExpressionBuilder("1, 2)")
+                .diagnose();
+        Assertions.assertEquals(Diagnostic.MISPLACED_SEPARATOR, result.getDiagnostics().get(0).getCode());
+        Assertions.assertEquals(Diagnostic.MISMATCHED_PARENTHESES, result.getDiagnostics().get(1).getCode());
+    }
+
+    @Test
+    void testEmptyExpressionAndNameClash() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ExpressionBuilder("  "));
+        Assertions.assertEquals(Diagnostic.NAME_CLASH,
+                new ExpressionBuilder("sin + 1").variables("sin").diagnose().getDiagnostics().get(0).getCode());
+    }
+
+    @Test
+    void testExpressionIsConfiguredLikeBuild() {
+        final var rational = new ExpressionBuilder("1/3+1/3+1/3")
+                .rational(true)
+                .diagnose()
+                .getExpression();
+        Assertions.assertTrue(rational.isRational());
+        Assertions.assertTrue(rational.isVerified());
+        Assertions.assertEquals(0, BigDecimal.ONE.compareTo(rational.evaluate()));
+
+        final var env = ExpressionEnvironment.builder()
+                .define("f(x)", "x * 3")
+                .build();
+        final var inlined = new ExpressionBuilder("f(2) + 1", env)
+                .diagnose()
+                .getExpression();
+        Assertions.assertEquals(7d, inlined.evaluate().doubleValue(), 0d);
+        for (final var t : inlined.getTokens()) {
+            Assertions.assertNotEquals(Token.TOKEN_FUNCTION, t.getType());
+        }
+    }
+
+    @Test
+    void testNeverThrowsAndAgreesWithBuild() {
+        final var chars = "xy12.e+-*/^%(),$ sincos";
+        final var rnd = new Random(7);
+        for (var run = 0; run < 10_000; run++) {
+            final var sb = new StringBuilder();
+            final var len = 1 + rnd.nextInt(12);
+            for (var i = 0; i < len; i++) {
+                sb.append(chars.charAt(rnd.nextInt(chars.length())));
+            }
+            final var expression = sb.toString();
+            if (expression.trim().isEmpty()) {
+                continue;
+            }
+            assertAgreesWithBuild(expression);
+        }
+    }
+
+    @Test
+    void testAgreesWithBuildOnEdgeCases() {
+        for (final var expression : new String[]{"pow(2,,3)", "pow(2,3,)", "pow(,2,3)", "1e", "1e+", "2e-x", "(,)",
+                "pow(2,3,4)", "sin(,x)", "((x)", "x))", "2,3", "-(-x)"}) {
+            assertAgreesWithBuild(expression);
+        }
+    }
+
+    private static void assertAgreesWithBuild(final String expression) {
+        final var result = new ExpressionBuilder(expression)
+                .variables("x", "y")
+                .diagnose();
+        var valid = true;
+        try {
+            final var e = new ExpressionBuilder(expression)
+                    .variables("x", "y")
+                    .build();
+            valid = e.validate(false).isValid();
+        } catch (final RuntimeException e) {
+            valid = false;
+        }
+        Assertions.assertEquals(valid, result.isValid(), "'" + expression + "' " + result.getDiagnostics());
+    }
+
+    private static void assertDiagnostic(final Diagnostic diagnostic, final int code, final int start, final int end) {
+        Assertions.assertEquals(code, diagnostic.getCode(), diagnostic.toString());
+        Assertions.assertEquals(start, diagnostic.getStart(), diagnostic.toString());
+        Assertions.assertEquals(end, diagnostic.getEnd(), diagnostic.toString());
+    }
+}
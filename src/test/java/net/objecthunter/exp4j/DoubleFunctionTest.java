@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Function;
+import net.objecthunter.exp4j.operator.Operator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Map;
+
+class DoubleFunctionTest {
+
+    private static final Function ERF = Function.ofDouble("erf", x -> {
+        /* Abramowitz and Stegun 7.1.26 */
+        final var t = 1 / (1 + 0.3275911 * Math.abs(x));
+        final var y = 1 - t * (0.254829592 + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027 + t * 1.061405429))))
+                * Math.exp(-x * x);
+        return Math.copySign(y, x);
+    });
+
+    private static final Function HYPOT = Function.ofDouble2("hypot", Math::hypot);
+
+    private static final Operator AVERAGE = Operator.ofDouble("~", true, Operator.PRECEDENCE_ADDITION,
+            (a, b) -> (a + b) / 2);
+
+    private static final Operator SQUARE_ROOT = Operator.ofDouble("√", Operator.PRECEDENCE_UNARY_MINUS, Math::sqrt);
+
+    @Test
+    void testBigDecimalEvaluation() {
+        final var e = new ExpressionBuilder("hypot(x, 4) ~ √x")
+                .variables("x")
+                .functions(ERF, HYPOT)
+                .operator(AVERAGE, SQUARE_ROOT)
+                .build()
+                .setVariable("x", 9);
+        Assertions.assertEquals(Math.hypot(9, 4) + 3, 2 * e.evaluate().doubleValue(), 1e-15);
+        Assertions.assertEquals(Math.hypot(9, 4) + 3, 2 * e.setMathContext(MathContext.DECIMAL64).evaluate().doubleValue(), 1e-14);
+        Assertions.assertEquals(0.8427007d, ERF.apply1(BigDecimal.ONE).doubleValue(), 1e-6);
+    }
+
+    @Test
+    void testBatchEvaluation() {
+        final var e = new ExpressionBuilder("erf(x) + hypot(x, y) ~ √y")
+                .variables("x", "y")
+                .functions(ERF, HYPOT)
+                .operator(AVERAGE, SQUARE_ROOT)
+                .build();
+        final var x = new double[]{-1, 0, 0.5, 3};
+        final var y = new double[]{4, 9, 16, 25};
+        final var results = e.evaluateBatch(Map.of("x", x, "y", y));
+        for (var i = 0; i < x.length; i++) {
+            final var expected = e.setVariable("x", x[i]).setVariable("y", y[i]).evaluate().doubleValue();
+            Assertions.assertEquals(expected, results[i], 1e-12);
+        }
+    }
+
+    @Test
+    void testUndefinedResult() {
+        final var e = new ExpressionBuilder("√x")
+                .variables("x")
+                .operator(SQUARE_ROOT)
+                .build()
+                .setVariable("x", -1);
+        Assertions.assertThrows(ArithmeticException.class, e::evaluate);
+        Assertions.assertTrue(Double.isNaN(e.evaluateOrNaN()));
+        final var status = new int[2];
+        final var results = e.evaluateBatch(Map.of("x", new double[]{4, -1}), status);
+        Assertions.assertEquals(2d, results[0], 0d);
+        Assertions.assertTrue(Double.isNaN(results[1]));
+        Assertions.assertEquals(EvaluationStatus.INVALID_ARGUMENT, status[1]);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Function.ofDouble("f", null));
+    }
+}
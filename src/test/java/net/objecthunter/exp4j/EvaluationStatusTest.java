@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Function;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Map;
+
+class EvaluationStatusTest {
+
+    private static final Function RECIPROCAL = new Function("reciprocal", 1) {
+        @Override
+        public BigDecimal apply(final BigDecimal... args) {
+            return BigDecimal.ONE.divide(args[0]);
+        }
+    };
+
+    @Test
+    void testEvaluateOrNaN() {
+        final var e = new ExpressionBuilder("x / y + cot(z) + sqrt(y) ^ 0.5")
+                .variables("x", "y", "z")
+                .build()
+                .setVariable("x", 1)
+                .setVariable("y", 4)
+                .setVariable("z", 1);
+        Assertions.assertEquals(e.evaluate().doubleValue(), e.evaluateOrNaN(), 0d);
+        Assertions.assertTrue(Double.isNaN(e.setVariable("y", 0).evaluateOrNaN()));
+        Assertions.assertTrue(Double.isNaN(e.setVariable("y", -4).evaluateOrNaN()));
+        Assertions.assertTrue(Double.isNaN(e.setVariable("y", 4).setVariable("z", 0).evaluateOrNaN()));
+        Assertions.assertTrue(Double.isNaN(e.clearVariables().evaluateOrNaN()));
+    }
+
+    @Test
+    void testEvaluateOrNaNMatchesEvaluate() {
+        final var e = new ExpressionBuilder("2 ^ x + log(x) * sin(x) - x % 3 + pow(x, 2) + reciprocal(x)")
+                .variables("x")
+                .functions(RECIPROCAL)
+                .build();
+        for (final var x : new double[]{0.5, 1, 2.5, 8, 100}) {
+            e.setVariable("x", x);
+            Assertions.assertEquals(e.evaluate().doubleValue(), e.evaluateOrNaN(), 0d);
+        }
+        e.setMathContext(MathContext.DECIMAL64);
+        Assertions.assertEquals(e.evaluate().doubleValue(), e.evaluateOrNaN(), 0d);
+        Assertions.assertTrue(Double.isNaN(e.setVariable("x", 0).evaluateOrNaN()));
+        Assertions.assertTrue(Double.isNaN(e.setVariable("x", -2).evaluateOrNaN()));
+    }
+
+    @Test
+    void testEvaluateOrNaNInEvaluationModes() {
+        final var expressions = new Expression[]{
+                new ExpressionBuilder("x / y + x % y + x ^ z + cot(z)").variables("x", "y", "z").fixedPoint(4).build(),
+                new ExpressionBuilder("x / y + x % y + x ^ z + cot(z)").variables("x", "y", "z").rational(true).build(),
+                new ExpressionBuilder("x / y + x % y + x ^ z + cot(z)").variables("x", "y", "z").adaptivePrecision(6).build()
+        };
+        for (final var e : expressions) {
+            e.setVariable("x", 2).setVariable("y", 3).setVariable("z", 1);
+            Assertions.assertEquals(e.evaluate().doubleValue(), e.evaluateOrNaN(), 0d);
+            Assertions.assertTrue(Double.isNaN(e.setVariable("y", 0).evaluateOrNaN()));
+            Assertions.assertTrue(Double.isNaN(e.setVariable("y", 3).setVariable("z", 0).evaluateOrNaN()));
+            Assertions.assertTrue(Double.isNaN(e.setVariable("x", 0).setVariable("z", -1).evaluateOrNaN()));
+            Assertions.assertTrue(Double.isNaN(e.setVariable("x", -2).setVariable("z", 0.5).evaluateOrNaN()));
+            Assertions.assertTrue(Double.isNaN(e.clearVariables().evaluateOrNaN()));
+        }
+    }
+
+    @Test
+    void testBatchStatus() {
+        final var e = new ExpressionBuilder("x / y + log(x) + reciprocal(y - 1)")
+                .variables("x", "y")
+                .functions(RECIPROCAL)
+                .build();
+        final var status = new int[5];
+        final var results = e.evaluateBatch(Map.of(
+                "x", new double[]{1, 1, -1, 0, 1},
+                "y", new double[]{2, 0, 2, 2, 1}), status);
+        Assertions.assertEquals(1.5d, results[0], 0d);
+        Assertions.assertEquals(EvaluationStatus.OK, status[0]);
+        Assertions.assertEquals(EvaluationStatus.DIVISION_BY_ZERO, status[1]);
+        Assertions.assertEquals(EvaluationStatus.INVALID_ARGUMENT, status[2]);
+        Assertions.assertEquals(EvaluationStatus.OVERFLOW, status[3]);
+        Assertions.assertEquals(EvaluationStatus.FUNCTION_ERROR, status[4]);
+        for (var i = 1; i < results.length; i++) {
+            Assertions.assertTrue(Double.isNaN(results[i]));
+        }
+    }
+
+    @Test
+    void testBatchMissingVariable() {
+        final var e = new ExpressionBuilder("x + z")
+                .variables("x", "z")
+                .build();
+        final var status = new int[2];
+        final var results = e.evaluateBatch(Map.of("x", new double[]{1, 2}), status);
+        Assertions.assertArrayEquals(new int[]{EvaluationStatus.MISSING_VARIABLE, EvaluationStatus.MISSING_VARIABLE}, status);
+        Assertions.assertTrue(Double.isNaN(results[0]));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> e.evaluateBatch(Map.of("x", new double[]{1, 2}), new int[3]));
+    }
+}
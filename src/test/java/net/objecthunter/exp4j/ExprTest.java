@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Function;
+import net.objecthunter.exp4j.function.Functions;
+import net.objecthunter.exp4j.operator.Operator;
+import net.objecthunter.exp4j.tokenizer.Token;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static net.objecthunter.exp4j.Expr.*;
+
+class ExprTest {
+
+    @Test
+    void testMatchesParsedExpression() {
+        final var sin = Functions.getBuiltinFunction("sin");
+        final var tree = add(var("x"), call(sin, num(2)))
+                .build()
+                .setVariable("x", 3);
+        final var parsed = new ExpressionBuilder("x + sin(2)")
+                .variables("x")
+                .build()
+                .setVariable("x", 3);
+        Assertions.assertEquals(parsed.evaluate(), tree.evaluate());
+        Assertions.assertTrue(tree.validate().isValid());
+    }
+
+    @Test
+    void testOperatorPrecedenceIsStructural() {
+        final var e = multiply(subtract(num(5), num(2)), negate(num(4))).build();
+        Assertions.assertEquals(-12d, e.evaluate().doubleValue(), 0d);
+    }
+
+    @Test
+    void testUserFunctionAndOperator() {
+        final var avg = new Function("avg", 2) {
+            @Override
+            public BigDecimal apply(final BigDecimal... args) {
+                return args[0].add(args[1]).divide(BigDecimal.valueOf(2));
+            }
+        };
+        final var factorial = new Operator("!", 1, true, Operator.PRECEDENCE_POWER + 1) {
+            @Override
+            public BigDecimal apply(final BigDecimal... args) {
+                var result = BigDecimal.ONE;
+                for (var i = 2; i <= args[0].intValue(); i++) {
+                    result = result.multiply(BigDecimal.valueOf(i));
+                }
+                return result;
+            }
+        };
+        final var e = call(avg, op(factorial, num(4)), var("y"))
+                .build()
+                .setVariable("y", 6);
+        Assertions.assertEquals(15d, e.evaluate().doubleValue(), 0d);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> e.setVariable("avg", 1));
+    }
+
+    @Test
+    void testVariableNames() {
+        final var e = divide(var("a"), pow(var("b"), num(2))).build();
+        Assertions.assertEquals(2, e.getVariableNames().size());
+        Assertions.assertFalse(e.validate().isValid());
+    }
+
+    @Test
+    void testInvalidArity() {
+        final var pow = Functions.getBuiltinFunction("pow");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> call(pow, num(1)));
+    }
+
+    @Test
+    void testVariableClashesWithFunction() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> add(var("sin"), num(1)).build());
+    }
+
+    @Test
+    void testDeepTree() {
+        var tree = var("x");
+        for (var i = 0; i < 100_000; i++) {
+            tree = add(tree, num(1));
+        }
+        final var e = tree.build().setVariable("x", 1);
+        Assertions.assertEquals(100_001d, e.evaluate().doubleValue(), 0d);
+    }
+
+    @Test
+    void testInlineFunctionsAreExpanded() {
+        final var env = ExpressionEnvironment.builder()
+                .define("scale(x)", "x * b + k")
+                .constant("k", 0.5)
+                .variables("b")
+                .build();
+        final var e = add(var("a"), call(env.getFunctions().get("scale"), num(3)))
+                .build()
+                .setVariable("a", 1)
+                .setVariable("b", 4);
+        Assertions.assertEquals(13.5d, e.evaluate().doubleValue(), 0d);
+        Assertions.assertTrue(e.validate().isValid());
+        for (final var t : e.getTokens()) {
+            Assertions.assertFalse(Token.TOKEN_FUNCTION == t.getType());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Function;
+import net.objecthunter.exp4j.operator.Operator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+class ExpressionEnvironmentTest {
+
+    private static final Function TWICE = new Function("twice", 1) {
+        @Override
+        public BigDecimal apply(final BigDecimal... args) {
+            return args[0].multiply(BigDecimal.valueOf(2));
+        }
+    };
+
+    private static final Operator FACTORIAL = new Operator("!", 1, true, Operator.PRECEDENCE_POWER + 1) {
+        @Override
+        public BigDecimal apply(final BigDecimal... args) {
+            var result = BigDecimal.ONE;
+            for (var i = 2; i <= args[0].intValue(); i++) {
+                result = result.multiply(BigDecimal.valueOf(i));
+            }
+            return result;
+        }
+    };
+
+    private static final ExpressionEnvironment ENV = ExpressionEnvironment.builder()
+            .function(TWICE)
+            .operator(FACTORIAL)
+            .variables("x", "y")
+            .constant("g", 9.81)
+            .build();
+
+    @Test
+    void testBuildInEnvironment() {
+        final var e = new ExpressionBuilder("twice(x) + 3! * y - g + pi", ENV)
+                .build()
+                .setVariable("x", 1)
+                .setVariable("y", 2);
+        final var expected = new ExpressionBuilder("twice(x) + 3! * y - g + pi")
+                .function(TWICE)
+                .operator(FACTORIAL)
+                .variables("x", "y", "g")
+                .build()
+                .setVariable("x", 1)
+                .setVariable("y", 2)
+                .setVariable("g", 9.81);
+        Assertions.assertEquals(expected.evaluate(), e.evaluate());
+    }
+
+    @Test
+    void testBuilderChangesDoNotAffectEnvironment() {
+        final var e = new ExpressionBuilder("twice(x) + z", ENV)
+                .variable("z")
+                .build()
+                .setVariable("x", 1)
+                .setVariable("z", 1);
+        Assertions.assertEquals(3d, e.evaluate().doubleValue(), 0d);
+        Assertions.assertEquals(2d, e.setVariable("z", 0).evaluate().doubleValue(), 0d);
+        Assertions.assertFalse(ENV.getVariableNames().contains("z"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ExpressionBuilder("twice(z)", ENV).build());
+    }
+
+    @Test
+    void testConstantsCanBeOverridden() {
+        final var e = new ExpressionBuilder("2 * g", ENV).build();
+        Assertions.assertEquals(19.62d, e.evaluate().doubleValue(), 1e-12);
+        Assertions.assertEquals(2d, e.setVariable("g", 1).evaluate().doubleValue(), 0d);
+        Assertions.assertEquals(19.62d, new ExpressionBuilder("2 * g", ENV).build().evaluate().doubleValue(), 1e-12);
+        Assertions.assertEquals(19.62d, new ExpressionBuilder("2 * g", ENV).buildLazy().getExpression()
+                .evaluate().doubleValue(), 1e-12);
+    }
+
+    @Test
+    void testNameClash() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ExpressionEnvironment.builder()
+                .function(TWICE)
+                .variables("twice")
+                .build());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ExpressionEnvironment.builder()
+                .constant("sin", 1)
+                .build());
+    }
+
+    @Test
+    void testSharedByThreads() throws Exception {
+        final var executor = Executors.newFixedThreadPool(4);
+        try {
+            final var tasks = new ArrayList<Callable<Double>>();
+            for (var i = 0; i < 64; i++) {
+                final var x = i;
+                tasks.add(() -> new ExpressionBuilder("twice(x) + 1", ENV)
+                        .build()
+                        .setVariable("x", x)
+                        .evaluate()
+                        .doubleValue());
+            }
+            final var results = executor.invokeAll(tasks);
+            for (var i = 0; i < results.size(); i++) {
+                Assertions.assertEquals(2d * i + 1d, results.get(i).get(), 0d);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+class FixedPointTest {
+
+    @Test
+    void testMoneyMath() {
+        final var e = new ExpressionBuilder("price * quantity * (1 + tax) - discount")
+                .variables("price", "quantity", "tax", "discount")
+                .fixedPoint(2)
+                .build()
+                .setVariable("price", new BigDecimal("19.99"))
+                .setVariable("quantity", 3)
+                .setVariable("tax", new BigDecimal("0.19"))
+                .setVariable("discount", new BigDecimal("5.00"));
+        Assertions.assertEquals(new BigDecimal("66.36"), e.evaluate());
+        Assertions.assertEquals(2, e.getFixedPointScale());
+    }
+
+    @Test
+    void testRoundsEveryOperation() {
+        final var e = new ExpressionBuilder("1.005 * 3")
+                .fixedPoint(2)
+                .build();
+        /* 1.005 is rounded to 1.01 before it is multiplied */
+        Assertions.assertEquals(new BigDecimal("3.03"), e.evaluate());
+        Assertions.assertEquals(new BigDecimal("3.00"), e.setFixedPoint(2, RoundingMode.HALF_EVEN).evaluate());
+        Assertions.assertEquals(new BigDecimal("3.015"), e.clearFixedPoint().evaluate());
+        Assertions.assertEquals(-1, e.getFixedPointScale());
+    }
+
+    @Test
+    void testMultiplicationRounding() {
+        for (final var rounding : RoundingMode.values()) {
+            if (RoundingMode.UNNECESSARY == rounding) {
+                continue;
+            }
+            final var e = new ExpressionBuilder("x * y")
+                    .variables("x", "y")
+                    .fixedPoint(2, rounding)
+                    .build();
+            for (final var x : new String[]{"1.25", "-1.25", "0.35", "-0.35"}) {
+                final var expected = new BigDecimal(x).multiply(new BigDecimal("0.50")).setScale(2, rounding);
+                e.setVariable("x", new BigDecimal(x)).setVariable("y", new BigDecimal("0.5"));
+                Assertions.assertEquals(expected, e.evaluate(), x + " * 0.5 rounding " + rounding);
+            }
+        }
+    }
+
+    @Test
+    void testOverflowFallsBackToBigDecimal() {
+        final var e = new ExpressionBuilder("x * x + x - x * x")
+                .variables("x")
+                .fixedPoint(6)
+                .build()
+                .setVariable("x", new BigDecimal("10000000"));
+        Assertions.assertEquals(new BigDecimal("10000000.000000"), e.evaluate());
+        e.setVariable("x", new BigDecimal("1e30"));
+        Assertions.assertEquals(new BigDecimal("1e30").setScale(6), e.evaluate());
+        final var negate = new ExpressionBuilder("-x")
+                .variables("x")
+                .fixedPoint(0)
+                .build()
+                .setVariable("x", BigDecimal.valueOf(Long.MIN_VALUE));
+        Assertions.assertEquals(BigDecimal.valueOf(Long.MIN_VALUE).negate(), negate.evaluate());
+    }
+
+    @Test
+    void testFunctionsAndDivision() {
+        final var e = new ExpressionBuilder("sqrt(x) / 3 + 2^3")
+                .variables("x")
+                .fixedPoint(4)
+                .build()
+                .setVariable("x", 16);
+        Assertions.assertEquals(new BigDecimal("9.3333"), e.evaluate());
+    }
+
+    @Test
+    void testLetBindings() {
+        final var e = new ExpressionBuilder("net = gross / 1.19; net * 0.19")
+                .variables("gross")
+                .letBindings(true)
+                .fixedPoint(2)
+                .build()
+                .setVariable("gross", new BigDecimal("119.00"));
+        Assertions.assertEquals(new BigDecimal("19.00"), e.evaluate());
+    }
+
+    @Test
+    void testMatchesBigDecimalForSums() {
+        final var rnd = new Random(7);
+        final var e = new ExpressionBuilder("a + b - c * d")
+                .variables("a", "b", "c", "d")
+                .fixedPoint(6)
+                .build();
+        for (var i = 0; i < 1000; i++) {
+            final var a = BigDecimal.valueOf(rnd.nextInt(), 6);
+            final var b = BigDecimal.valueOf(rnd.nextInt(), 3);
+            final var c = BigDecimal.valueOf(rnd.nextInt(1_000_000), 2);
+            final var d = BigDecimal.valueOf(rnd.nextInt(1_000_000), 4);
+            e.setVariable("a", a).setVariable("b", b).setVariable("c", c).setVariable("d", d);
+            Assertions.assertEquals(a.add(b).subtract(c.multiply(d).setScale(6, RoundingMode.HALF_UP)), e.evaluate());
+        }
+    }
+
+    @Test
+    void testInvalidScale() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ExpressionBuilder("1").fixedPoint(19));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ExpressionBuilder("1").build().setFixedPoint(-1));
+    }
+}
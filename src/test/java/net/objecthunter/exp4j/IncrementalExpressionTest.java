@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+class IncrementalExpressionTest {
+
+    private static final String[] SNIPPETS = {"x", "y", "xy", "1", "2.5", "e", "3e", "+", "-", "*", "/", "^", "(", ")",
+            " ", "sin(", "log", ",", "pow(x,", "2x"};
+
+    @Test
+    void testAppend() {
+        var inc = new ExpressionBuilder("2 * x")
+                .variables("x")
+                .buildIncremental();
+        inc.getExpression().setVariable("x", 3);
+        inc = inc.edit(5, 0, " + 1");
+        Assertions.assertEquals("2 * x + 1", inc.getText());
+        Assertions.assertEquals(2, inc.getReusedTokens());
+        Assertions.assertEquals(7d, inc.getExpression().evaluate().doubleValue(), 0d);
+    }
+
+    @Test
+    void testEditInTheMiddle() {
+        var inc = new ExpressionBuilder("sin(x) + 2 * y - cos(x)")
+                .variables("x", "y")
+                .buildIncremental();
+        inc = inc.edit(13, 1, "(y + 1)");
+        Assertions.assertEquals("sin(x) + 2 * (y + 1) - cos(x)", inc.getText());
+        Assertions.assertTrue(inc.getReusedTokens() >= 9);
+        inc.getExpression()
+                .setVariable("x", 0)
+                .setVariable("y", 1);
+        Assertions.assertEquals(3d, inc.getExpression().evaluate().doubleValue(), 0d);
+        Assertions.assertTrue(inc.validate().isValid());
+    }
+
+    @Test
+    void testExtendName() {
+        var inc = new ExpressionBuilder("x + s")
+                .variables("x", "s")
+                .buildIncremental();
+        inc = inc.edit(5, 0, "in(x)");
+        inc.getExpression().setVariable("x", 0);
+        Assertions.assertEquals(0d, inc.getExpression().evaluate().doubleValue(), 0d);
+    }
+
+    @Test
+    void testInvalidEdit() {
+        final var inc = new ExpressionBuilder("x + 1")
+                .variables("x")
+                .buildIncremental();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> inc.edit(4, 1, "foo"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> inc.edit(4, 2, ""));
+    }
+
+    @Test
+    void testRandomEditsMatchFullParse() {
+        final var rnd = new Random(42);
+        for (var run = 0; run < 200; run++) {
+            var text = "x*2 + sin(y) - 3";
+            var inc = new ExpressionBuilder(text)
+                    .variables("x", "y")
+                    .buildIncremental();
+            for (var step = 0; step < 20; step++) {
+                final var offset = rnd.nextInt(text.length() + 1);
+                final var removed = rnd.nextInt(Math.min(3, text.length() - offset) + 1);
+                final var inserted = SNIPPETS[rnd.nextInt(SNIPPETS.length)];
+                final var edited = text.substring(0, offset) + inserted + text.substring(offset + removed);
+                if (edited.trim().isEmpty()) {
+                    continue;
+                }
+                final var expected = outcome(() -> new ExpressionBuilder(edited)
+                        .variables("x", "y")
+                        .build());
+                IncrementalExpression next;
+                try {
+                    next = inc.edit(offset, removed, inserted);
+                } catch (final RuntimeException e) {
+                    Assertions.assertTrue(expected.startsWith("error"), "'" + edited + "' should parse, got " + e);
+                    continue;
+                }
+                final var result = next;
+                Assertions.assertEquals(expected, outcome(result::getExpression), "edit of '" + text + "' to '" + edited + "'");
+                inc = next;
+                text = edited;
+            }
+        }
+    }
+
+    private static String outcome(final java.util.function.Supplier<Expression> expression) {
+        final Expression e;
+        try {
+            e = expression.get();
+        } catch (final RuntimeException ex) {
+            return "error";
+        }
+        try {
+            return e.setVariable("x", 1.5)
+                    .setVariable("y", 0.25)
+                    .evaluate()
+                    .toString();
+        } catch (final RuntimeException ex) {
+            return "error " + ex.getClass().getName();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.tokenizer.FunctionToken;
+import net.objecthunter.exp4j.tokenizer.Token;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+class InlineFunctionTest {
+
+    private static final ExpressionEnvironment ENV = ExpressionEnvironment.builder()
+            .define("f(x, y)", "x^2 + y")
+            .define("g(x)", "f(x, 1) * f(x + 1, x) + k")
+            .define("two()", "2")
+            .define("scale(x)", "x * b")
+            .constant("k", 0.5)
+            .variables("a", "b")
+            .build();
+
+    @Test
+    void testInlinedCall() {
+        final var e = new ExpressionBuilder("1 + f(a, b)", ENV)
+                .build()
+                .setVariable("a", 3)
+                .setVariable("b", 4);
+        Assertions.assertEquals(14d, e.evaluate().doubleValue(), 0d);
+        Assertions.assertTrue(e.validate().isValid());
+    }
+
+    @Test
+    void testNestedCalls() {
+        final var e = new ExpressionBuilder("g(f(a, two())) - g(b)", ENV)
+                .build()
+                .setVariable("a", 1)
+                .setVariable("b", 2);
+        Assertions.assertEquals(g(f(1, 2)) - g(2), e.evaluate().doubleValue(), 1e-9);
+        Assertions.assertTrue(e.validate().isValid());
+    }
+
+    @Test
+    void testInlinedIntoLetBindings() {
+        final var e = new ExpressionBuilder("s = f(a, 1); t = g(s); s + t", ENV)
+                .letBindings(true)
+                .build()
+                .setVariable("a", 2);
+        Assertions.assertEquals(f(2, 1) + g(f(2, 1)), e.evaluate().doubleValue(), 1e-9);
+    }
+
+    @Test
+    void testInlinedOnAllBuildPaths() {
+        final var builder = new ExpressionBuilder("scale(a) + g(a)", ENV);
+        final var expected = 3 * 4 + g(3);
+        final var vars = Map.of("a", BigDecimal.valueOf(3), "b", BigDecimal.valueOf(4));
+        final var edited = new ExpressionBuilder("scale(a) + a", ENV)
+                .buildIncremental()
+                .edit(11, 1, "g(a)");
+        final var expressions = List.of(builder.build(), builder.buildLazy().getExpression(),
+                builder.buildIncremental().getExpression(), edited.getExpression(), builder.diagnose().getExpression());
+        for (final var e : expressions) {
+            Assertions.assertEquals(expected, e.setVariables(vars).evaluate().doubleValue(), 1e-9);
+            for (final var t : e.getTokens()) {
+                Assertions.assertFalse(Token.TOKEN_FUNCTION == t.getType()
+                        && ((FunctionToken) t).getFunction() instanceof InlineFunction);
+            }
+        }
+    }
+
+    @Test
+    void testDirectCall() {
+        final var g = ENV.getFunctions().get("g");
+        Assertions.assertEquals(g(3), g.apply(BigDecimal.valueOf(3)).doubleValue(), 1e-9);
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> ENV.getFunctions().get("scale").apply(BigDecimal.ONE));
+    }
+
+    @Test
+    void testRecursionIsRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ExpressionEnvironment.builder()
+                .define("h(x)", "h(x - 1)")
+                .build());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ExpressionEnvironment.builder()
+                .define("p(x)", "q(x) + 1")
+                .define("q(x)", "2 * p(x)")
+                .build());
+    }
+
+    @Test
+    void testInvalidDefinitions() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ExpressionEnvironment.builder()
+                .define("f(x, x)", "x"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ExpressionEnvironment.builder()
+                .define("f x", "x"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ExpressionEnvironment.builder()
+                .define("f(sin)", "sin"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ExpressionEnvironment.builder()
+                .define("f(x)", "x + z")
+                .build());
+    }
+
+    private static double f(final double x, final double y) {
+        return x * x + y;
+    }
+
+    private static double g(final double x) {
+        return f(x, 1) * f(x + 1, x) + 0.5;
+    }
+}
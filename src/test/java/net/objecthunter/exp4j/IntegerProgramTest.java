@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+class IntegerProgramTest {
+
+    @Test
+    void testDetection() {
+        Assertions.assertTrue(new ExpressionBuilder("2 * 3 + 7 % 4").build().isIntegerOnly());
+        Assertions.assertTrue(new ExpressionBuilder("-n * (m - 1)").integerVariables("n", "m").build().isIntegerOnly());
+        Assertions.assertFalse(new ExpressionBuilder("n * x").integerVariables("n").variables("x").build().isIntegerOnly());
+        Assertions.assertFalse(new ExpressionBuilder("n / 2").integerVariables("n").build().isIntegerOnly());
+        Assertions.assertFalse(new ExpressionBuilder("n * 1.5").integerVariables("n").build().isIntegerOnly());
+        Assertions.assertFalse(new ExpressionBuilder("abs(n)").integerVariables("n").build().isIntegerOnly());
+        Assertions.assertFalse(new ExpressionBuilder("n * e").integerVariables("n").build().isIntegerOnly());
+    }
+
+    @Test
+    void testExactRemainder() {
+        final var e = new ExpressionBuilder("a % b")
+                .integerVariables("a", "b")
+                .build()
+                .setVariable("a", new BigDecimal("9007199254740993"))
+                .setVariable("b", 10);
+        Assertions.assertEquals(BigDecimal.valueOf(3), e.evaluate());
+        e.setVariable("a", -7).setVariable("b", 3);
+        Assertions.assertEquals(BigDecimal.valueOf(-1), e.evaluate());
+        e.setVariable("b", 0);
+        Assertions.assertThrows(ArithmeticException.class, e::evaluate);
+    }
+
+    @Test
+    void testOverflowFallsBack() {
+        final var e = new ExpressionBuilder("a * b + 1")
+                .integerVariables("a", "b")
+                .build()
+                .setVariable("a", BigDecimal.valueOf(Long.MAX_VALUE))
+                .setVariable("b", 2);
+        Assertions.assertEquals(new BigDecimal(Long.MAX_VALUE).multiply(BigDecimal.valueOf(2)).add(BigDecimal.ONE),
+                e.evaluate());
+        final var sum = new ExpressionBuilder("a + a - -a")
+                .integerVariables("a")
+                .build()
+                .setVariable("a", BigDecimal.valueOf(Long.MIN_VALUE));
+        Assertions.assertEquals(BigDecimal.valueOf(Long.MIN_VALUE).multiply(BigDecimal.valueOf(3)), sum.evaluate());
+    }
+
+    @Test
+    void testNonIntegerValueFallsBack() {
+        final var e = new ExpressionBuilder("n * 2")
+                .integerVariables("n")
+                .build()
+                .setVariable("n", 1.25);
+        Assertions.assertEquals(0, new BigDecimal("2.5").compareTo(e.evaluate()));
+        e.setVariable("n", new BigDecimal("4.000"));
+        Assertions.assertEquals(new BigDecimal("8.000"), e.evaluate());
+    }
+
+    @Test
+    void testScaleIsKept() {
+        Assertions.assertFalse(new ExpressionBuilder("1.0 + 2.0").build().isIntegerOnly());
+        Assertions.assertEquals(new BigDecimal("3.0"), new ExpressionBuilder("1.0 + 2.0").build().evaluate());
+        Assertions.assertEquals(new BigDecimal("3.0"), new ExpressionBuilder("3 * 1.0").build().evaluate());
+        final var e = new ExpressionBuilder("n + 1")
+                .integerVariables("n")
+                .build()
+                .setVariable("n", new BigDecimal("3.00"));
+        Assertions.assertEquals(new BigDecimal("4.00"), e.evaluate());
+    }
+
+    @Test
+    void testLetBindingsAndLiterals() {
+        final var e = new ExpressionBuilder("s = n * n; s * 3 + s % 5")
+                .integerVariables("n")
+                .letBindings(true)
+                .hoistLiterals(true)
+                .build()
+                .setVariable("n", 4);
+        Assertions.assertTrue(e.isIntegerOnly());
+        Assertions.assertEquals(BigDecimal.valueOf(49), e.evaluate());
+    }
+
+    @Test
+    void testMathContextUsesBigDecimal() {
+        final var e = new ExpressionBuilder("12345 * 10")
+                .mathContext(new MathContext(3))
+                .build();
+        Assertions.assertEquals(new BigDecimal("1.23E+5"), e.evaluate());
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Formatter;
+
+/**
+ * Stress benchmark for machine generated expressions with up to a million tokens. The build times are only printed,
+ * a quadratic parser shows up as a growing time per char.
+ */
+class LargeExpressionTest {
+
+    private static final int[] SIZES = {10_000, 100_000, 1_000_000};
+
+    @Test
+    void testParseScalesLinearly() {
+        /* warm up the tokenizer and the shunting yard */
+        build(generate(SIZES[1]));
+
+        final var sb = new StringBuilder();
+        final var fmt = new Formatter(sb);
+        fmt.format("+------------+------------+--------------+%n");
+        fmt.format("| %-10s | %-10s | %-12s |%n", "Operands", "Build [ms]", "ns per char");
+        fmt.format("+------------+------------+--------------+%n");
+        for (final var size : SIZES) {
+            final var expression = generate(size);
+            final var start = System.nanoTime();
+            final var e = build(expression);
+            final var elapsed = System.nanoTime() - start;
+            Assertions.assertEquals(expectedResult(size), e.evaluate().doubleValue(), 0d);
+            fmt.format("| %10d | %10d | %12.2f |%n", size, elapsed / 1_000_000, (double) elapsed / expression.length());
+        }
+        fmt.format("+------------+------------+--------------+%n");
+        System.out.print(sb);
+    }
+
+    @Test
+    void testDeeplyNestedExpression() {
+        final var depth = 100_000;
+        final var sb = new StringBuilder(depth * 6);
+        for (var i = 0; i < depth; i++) {
+            sb.append("(x+");
+        }
+        sb.append('1');
+        for (var i = 0; i < depth; i++) {
+            sb.append(')');
+        }
+        final var e = new ExpressionBuilder(sb.toString())
+                .variables("x")
+                .build()
+                .setVariable("x", 1);
+        Assertions.assertEquals(depth + 1d, e.evaluate().doubleValue(), 0d);
+    }
+
+    private static Expression build(final String expression) {
+        return new ExpressionBuilder(expression)
+                .variables("x", "y")
+                .build()
+                .setVariable("x", 1)
+                .setVariable("y", 2.5);
+    }
+
+    /**
+     * Generates x + (y-1.5) * x + (y-1.5) * ... where every operand evaluates to 1
+     */
+    private static String generate(final int operands) {
+        final var sb = new StringBuilder(operands * 8);
+        for (var i = 0; i < operands; i++) {
+            if (0 < i) {
+                sb.append(0 == i % 3 ? " + " : " * ");
+            }
+            sb.append(0 == i % 2 ? "x" : "(y-1.5)");
+        }
+        return sb.toString();
+    }
+
+    private static double expectedResult(final int operands) {
+        return (operands + 2) / 3;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Function;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+class LazyExpressionTest {
+
+    @Test
+    void testNotCompiledBeforeFirstUse() {
+        final var lazy = new ExpressionBuilder("2 * x + 1")
+                .variable("x")
+                .buildLazy();
+        Assertions.assertFalse(lazy.isCompiled());
+        Assertions.assertEquals(7d, lazy.evaluate(Map.of("x", BigDecimal.valueOf(3))).doubleValue(), 0d);
+        Assertions.assertTrue(lazy.isCompiled());
+    }
+
+    @Test
+    void testInvalidExpressionFailsOnFirstUse() {
+        final var lazy = new ExpressionBuilder("2 * foo(x)")
+                .variable("x")
+                .buildLazy();
+        Assertions.assertThrows(IllegalArgumentException.class, lazy::getExpression);
+        Assertions.assertFalse(lazy.isCompiled());
+    }
+
+    @Test
+    void testBuilderChangesDoNotAffectHandle() {
+        final var builder = new ExpressionBuilder("twice(x)")
+                .variable("x")
+                .function(new Function("twice") {
+                    @Override
+                    public BigDecimal apply(final BigDecimal... args) {
+                        return args[0].add(args[0]);
+                    }
+                });
+        final var lazy = builder.buildLazy();
+        builder.variable("y");
+        Assertions.assertEquals(8d, lazy.evaluate(Map.of("x", BigDecimal.valueOf(4))).doubleValue(), 0d);
+        Assertions.assertEquals(1, lazy.getExpression().getVariableNames().size());
+    }
+
+    @Test
+    void testExpressionsHaveSeparateVariables() {
+        final var lazy = new ExpressionBuilder("x^2")
+                .variable("x")
+                .buildLazy();
+        final var first = lazy.getExpression().setVariable("x", 2);
+        final var second = lazy.getExpression().setVariable("x", 3);
+        Assertions.assertEquals(4d, first.evaluate().doubleValue(), 0d);
+        Assertions.assertEquals(9d, second.evaluate().doubleValue(), 0d);
+    }
+
+    @Test
+    void testDiscardableHandleRecompiles() {
+        final var lazy = new ExpressionBuilder("sin(x) + cos(x)")
+                .variable("x")
+                .buildLazy(true);
+        Assertions.assertTrue(lazy.isDiscardable());
+        Assertions.assertEquals(1d, lazy.evaluate(Map.of("x", BigDecimal.ZERO)).doubleValue(), 0d);
+        final var tokens = lazy.getExpression().getTokens();
+        Assertions.assertTrue(lazy.isCompiled());
+
+        lazy.discard();
+        Assertions.assertFalse(lazy.isCompiled());
+        Assertions.assertEquals(1d, lazy.evaluate(Map.of("x", BigDecimal.ZERO)).doubleValue(), 0d);
+        Assertions.assertTrue(lazy.isCompiled());
+        Assertions.assertNotSame(tokens, lazy.getExpression().getTokens());
+        Assertions.assertEquals(tokens.length, lazy.getExpression().getTokens().length);
+    }
+
+    @Test
+    void testConcurrentFirstUse() throws Exception {
+        final var lazy = new ExpressionBuilder("x * (x + 1)")
+                .variable("x")
+                .buildLazy();
+        final var exec = Executors.newFixedThreadPool(8);
+        try {
+            final var results = new Future<?>[64];
+            for (var i = 0; i < results.length; i++) {
+                final var x = BigDecimal.valueOf(i);
+                results[i] = exec.submit(() -> lazy.evaluate(Map.of("x", x)));
+            }
+            for (var i = 0; i < results.length; i++) {
+                Assertions.assertEquals(i * (i + 1d), ((BigDecimal) results[i].get()).doubleValue(), 0d);
+            }
+        } finally {
+            exec.shutdown();
+            exec.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+}
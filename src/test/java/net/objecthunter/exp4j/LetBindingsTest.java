@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Function;
+import net.objecthunter.exp4j.tokenizer.Diagnostic;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class LetBindingsTest {
+
+    @Test
+    void testBindings() {
+        final var e = new ExpressionBuilder("a = x*y + z; b = sqrt(a); a*b + log(b)")
+                .variables("x", "y", "z")
+                .letBindings(true)
+                .build()
+                .setVariable("x", 2)
+                .setVariable("y", 3)
+                .setVariable("z", 10);
+        final var a = 2 * 3 + 10;
+        final var b = Math.sqrt(a);
+        Assertions.assertEquals(a * b + Math.log(b), e.evaluate().doubleValue(), 1e-12);
+        Assertions.assertTrue(e.validate().isValid());
+        Assertions.assertEquals(3, e.getVariableNames().size());
+    }
+
+    @Test
+    void testBindingIsComputedOnce() {
+        final var calls = new AtomicInteger();
+        final var counted = new Function("counted", 1) {
+            @Override
+            public BigDecimal apply(final BigDecimal... args) {
+                calls.incrementAndGet();
+                return args[0];
+            }
+        };
+        final var e = new ExpressionBuilder("a = counted(x); a + a * a;")
+                .function(counted)
+                .variables("x")
+                .letBindings(true)
+                .build()
+                .setVariable("x", 3);
+        Assertions.assertEquals(12d, e.evaluate().doubleValue(), 0d);
+        Assertions.assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testRebinding() {
+        final var e = new ExpressionBuilder("a = 1; b = a + 1; a = b * 10; a + b")
+                .letBindings(true)
+                .build();
+        Assertions.assertEquals(22d, e.evaluate().doubleValue(), 0d);
+    }
+
+    @Test
+    void testSemicolonInsideParentheses() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ExpressionBuilder("a = (1; 2); a")
+                .letBindings(true)
+                .build());
+    }
+
+    @Test
+    void testInvalidBindings() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ExpressionBuilder("1 + 2; 3")
+                .letBindings(true)
+                .build());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ExpressionBuilder("x = 1; x")
+                .variables("x")
+                .letBindings(true)
+                .build());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ExpressionBuilder("sin = 1; sin")
+                .letBindings(true)
+                .build());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ExpressionBuilder("a = 1; b")
+                .letBindings(true)
+                .build());
+    }
+
+    @Test
+    void testDisabledByDefault() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ExpressionBuilder("a = 1; a")
+                .build());
+    }
+
+    @Test
+    void testLazyAndDiagnose() {
+        final var builder = new ExpressionBuilder("h = x / 2; h + 1")
+                .variables("x")
+                .letBindings(true);
+        Assertions.assertEquals(3d, builder.build().setVariable("x", 4).evaluate().doubleValue(), 0d);
+        Assertions.assertEquals(3d, builder.buildLazy().evaluate(Map.of("x", BigDecimal.valueOf(4))).doubleValue(), 0d);
+
+        final var result = builder.diagnose();
+        Assertions.assertTrue(result.isValid(), result.getDiagnostics().toString());
+        Assertions.assertEquals(3d, result.getExpression().setVariable("x", 4).evaluate().doubleValue(), 0d);
+
+        Assertions.assertThrows(IllegalArgumentException.class, builder::buildIncremental);
+    }
+
+    @Test
+    void testDiagnosticsHaveSpansInWholeExpression() {
+        final var result = new ExpressionBuilder("h = x $ 2; 1 = 2; h + y")
+                .variables("x")
+                .letBindings(true)
+                .diagnose();
+        final var diagnostics = result.getDiagnostics();
+        Assertions.assertEquals(3, diagnostics.size(), diagnostics.toString());
+        Assertions.assertEquals(Diagnostic.UNKNOWN_OPERATOR, diagnostics.get(0).getCode());
+        Assertions.assertEquals(6, diagnostics.get(0).getStart());
+        Assertions.assertEquals(Diagnostic.INVALID_BINDING, diagnostics.get(1).getCode());
+        Assertions.assertEquals(10, diagnostics.get(1).getStart());
+        Assertions.assertEquals(Diagnostic.UNKNOWN_NAME, diagnostics.get(2).getCode());
+        Assertions.assertEquals(22, diagnostics.get(2).getStart());
+    }
+}
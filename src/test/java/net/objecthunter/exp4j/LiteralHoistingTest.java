@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+class LiteralHoistingTest {
+
+    @Test
+    void testSameShapeSharesProgram() {
+        final var interner = new ProgramInterner();
+        final var a = interner.intern(hoisted("x*1.05 + 3").setVariable("x", 100));
+        final var b = interner.intern(hoisted("2 + x*1.07").setVariable("x", 100));
+        final var c = interner.intern(hoisted("(x * 1.10) + 0.5").setVariable("x", 100));
+        Assertions.assertEquals(1, interner.size());
+        Assertions.assertSame(a.getTokens(), b.getTokens());
+        Assertions.assertSame(a.getTokens(), c.getTokens());
+        Assertions.assertEquals(0, new BigDecimal("108").compareTo(a.evaluate()));
+        Assertions.assertEquals(0, new BigDecimal("109").compareTo(b.evaluate()));
+        Assertions.assertEquals(0, new BigDecimal("110.5").compareTo(c.evaluate()));
+    }
+
+    @Test
+    void testDifferentShapes() {
+        final var interner = new ProgramInterner();
+        interner.intern(hoisted("x*1.05 + 3"));
+        interner.intern(hoisted("x*1.05 - 3"));
+        interner.intern(hoisted("x + 3"));
+        Assertions.assertEquals(3, interner.size());
+    }
+
+    @Test
+    void testWithLiterals() {
+        final var e = hoisted("x * 2 + 1").setVariable("x", 3);
+        final var literals = e.getLiterals();
+        Assertions.assertEquals(2, literals.length);
+        Assertions.assertEquals(7d, e.evaluate().doubleValue(), 0d);
+        final var other = e.withLiterals(BigDecimal.TEN, BigDecimal.TEN);
+        Assertions.assertEquals(e.getLiterals().length, other.getLiterals().length);
+        Assertions.assertEquals(40d, other.evaluate().doubleValue(), 0d);
+        Assertions.assertEquals(7d, e.evaluate().doubleValue(), 0d);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> e.withLiterals(BigDecimal.ONE));
+    }
+
+    @Test
+    void testNotHoistedByDefault() {
+        final var e = new ExpressionBuilder("x * 2")
+                .variables("x")
+                .build();
+        Assertions.assertEquals(0, e.getLiterals().length);
+        Assertions.assertTrue(e.validate(false).isValid());
+        Assertions.assertTrue(hoisted("x * 2").validate(false).isValid());
+    }
+
+    private static Expression hoisted(final String expression) {
+        return new ExpressionBuilder(expression)
+                .variables("x")
+                .hoistLiterals(true)
+                .build();
+    }
+}
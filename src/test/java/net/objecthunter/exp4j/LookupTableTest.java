@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Function;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+class LookupTableTest {
+
+    @Test
+    void testToleranceIsMet() {
+        final var e = new ExpressionBuilder("exp(-x * x / 2) * sin(3 * x)")
+                .variables("x")
+                .build();
+        for (final var interpolation : new int[]{LookupTable.LINEAR, LookupTable.CUBIC}) {
+            for (final var tolerance : new double[]{1e-4, 1e-7}) {
+                final var table = LookupTable.tabulate(e, "x", -4, 4, tolerance, interpolation);
+                for (var i = 0; i <= 10_000; i++) {
+                    final var x = -4 + i * 8d / 10_000;
+                    final var expected = Math.exp(-x * x / 2) * Math.sin(3 * x);
+                    Assertions.assertEquals(expected, table.valueAt(x), 2 * tolerance);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testCubicNeedsFewerPoints() {
+        final var linear = LookupTable.tabulate(Math::log, 1, 100, 1e-8, LookupTable.LINEAR);
+        final var cubic = LookupTable.tabulate(Math::log, 1, 100, 1e-8, LookupTable.CUBIC);
+        Assertions.assertTrue(cubic.getSize() * 10 < linear.getSize(), cubic.getSize() + " vs. " + linear.getSize());
+        Assertions.assertEquals(0d, cubic.valueAt(1), 0d);
+        Assertions.assertEquals(Math.log(100), cubic.valueAt(100), 1e-15);
+    }
+
+    @Test
+    void testTabulatedFunction() {
+        final var curve = new Function("curve", 1) {
+            @Override
+            public BigDecimal apply(final BigDecimal... args) {
+                final var x = args[0].doubleValue();
+                return BigDecimal.valueOf(1 / (1 + Math.exp(-x)));
+            }
+        };
+        final var table = LookupTable.tabulate(curve, -10, 10, 1e-7, LookupTable.CUBIC);
+        final var e = new ExpressionBuilder("2 * curve(x) - 1")
+                .variables("x")
+                .functions(table.asFunction("curve"))
+                .build()
+                .setVariable("x", 0.5);
+        Assertions.assertEquals(Math.tanh(0.25), e.evaluate().doubleValue(), 1e-6);
+    }
+
+    @Test
+    void testInvalidArguments() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> LookupTable.tabulate(Math::sin, 1, 0, 1e-3, LookupTable.LINEAR));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> LookupTable.tabulate(Math::sin, 0, 1, 0, LookupTable.LINEAR));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> LookupTable.tabulate(Math::sin, 0, 1, 1e-3, 2));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> LookupTable.tabulate(x -> 1 / x, -1, 1, 1e-3, LookupTable.LINEAR));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> LookupTable.tabulate(Math::sin, 0, 1, 1e-3, LookupTable.LINEAR).valueAt(1.5));
+    }
+}
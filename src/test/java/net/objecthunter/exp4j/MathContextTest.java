@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Function;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+class MathContextTest {
+
+    @Test
+    void testDefaultPrecision() {
+        final var result = new ExpressionBuilder("1 / 3")
+                .build()
+                .evaluate();
+        Assertions.assertEquals(34, result.precision());
+        Assertions.assertNull(new ExpressionBuilder("1").build().getMathContext());
+    }
+
+    @Test
+    void testBuilderPrecision() {
+        final var result = new ExpressionBuilder("1 / 3")
+                .mathContext(MathContext.DECIMAL64)
+                .build()
+                .evaluate();
+        Assertions.assertEquals(new BigDecimal("0.3333333333333333"), result);
+    }
+
+    @Test
+    void testRoundingAppliesToAllOperators() {
+        final var mc = new MathContext(3, RoundingMode.DOWN);
+        Assertions.assertEquals(new BigDecimal("1.23E+3"), new ExpressionBuilder("1234 + 1")
+                .mathContext(mc).build().evaluate());
+        Assertions.assertEquals(new BigDecimal("-9.99"), new ExpressionBuilder("-9.999")
+                .mathContext(mc).build().evaluate());
+        Assertions.assertEquals(new BigDecimal("1.51"), new ExpressionBuilder("1.23 * 1.234")
+                .mathContext(mc).build().evaluate());
+        Assertions.assertEquals(new BigDecimal("1.41"), new ExpressionBuilder("sqrt(2)")
+                .mathContext(mc).build().evaluate());
+    }
+
+    @Test
+    void testRemainderOfLargeDividend() {
+        Assertions.assertEquals(BigDecimal.ONE, new ExpressionBuilder("123456789 % 2")
+                .mathContext(MathContext.DECIMAL32).build().evaluate());
+        Assertions.assertEquals(new BigDecimal("5.679E+7"), new ExpressionBuilder("123456789123 % 100000000")
+                .mathContext(new MathContext(4)).build().evaluate());
+    }
+
+    @Test
+    void testCustomFunctionResultIsRounded() {
+        final var third = new Function("third", 1) {
+            @Override
+            public BigDecimal apply(final BigDecimal... args) {
+                return args[0].divide(BigDecimal.valueOf(3), MathContext.DECIMAL128);
+            }
+        };
+        final var e = new ExpressionBuilder("third(1)")
+                .function(third)
+                .mathContext(MathContext.DECIMAL32)
+                .build();
+        Assertions.assertEquals(new BigDecimal("0.3333333"), e.evaluate());
+        Assertions.assertEquals(34, e.setMathContext(null).evaluate().precision());
+    }
+
+    @Test
+    void testEnvironmentPrecision() {
+        final var env = ExpressionEnvironment.builder()
+                .variables("x")
+                .mathContext(MathContext.DECIMAL32)
+                .build();
+        final var e = new ExpressionBuilder("x / 3", env)
+                .build()
+                .setVariable("x", 2);
+        Assertions.assertEquals(new BigDecimal("0.6666667"), e.evaluate());
+        Assertions.assertEquals(MathContext.DECIMAL32, new ExpressionBuilder("x", env).buildLazy().getExpression()
+                .getMathContext());
+    }
+}
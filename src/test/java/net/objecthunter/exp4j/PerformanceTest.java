@@ -15,11 +15,13 @@
  */
 package net.objecthunter.exp4j;
 
+import net.objecthunter.exp4j.operator.Operators;
 import org.junit.Test;
 
 import java.math.BigDecimal;
 import java.util.Formatter;
 import java.util.Random;
+import java.util.function.UnaryOperator;
 
 public class PerformanceTest {
 
@@ -49,6 +51,45 @@ public class PerformanceTest {
         sb.setLength(0);
     }
 
+    @Test
+    public void testPowerBenches() {
+        final var power = Operators.getBuiltinOperator('^', 2);
+        final var sb = new StringBuilder();
+        final var fmt = new Formatter(sb);
+        fmt.format("+------------+------------------------+------------------------+%n");
+        fmt.format("| %-10s | %-22s | %-22s |%n", "Exponent", "double round-trip [ns]", "BigDecimal [ns]");
+        fmt.format("+------------+------------------------+------------------------+%n");
+        final var rnd = new Random();
+        final var bases = new BigDecimal[1024];
+        for (var i = 0; i < bases.length; i++) {
+            bases[i] = BigDecimal.valueOf(rnd.nextDouble() * 100);
+        }
+        /* integer and half exponents have shortcuts, the others are computed as exp(exponent * ln(base)) */
+        final var exponents = new String[]{"2", "3", "10", "-1", "0.5", "0.37", "-0.7", "cos(0.3)"};
+        for (final var exponent : exponents) {
+            final var e = exponent.startsWith("cos") ? BigDecimal.valueOf(Math.cos(0.3)) : new BigDecimal(exponent);
+            final var roundTrip = benchPower(bases, b -> BigDecimal.valueOf(Math.pow(b.doubleValue(), e.doubleValue())));
+            final var exact = benchPower(bases, b -> power.apply(b, e));
+            fmt.format("| %10s | %22.1f | %22.1f |%n", exponent, roundTrip, exact);
+        }
+        fmt.format("+------------+------------------------+------------------------+%n");
+        System.out.print(sb);
+    }
+
+    private static double benchPower(final BigDecimal[] bases, final UnaryOperator<BigDecimal> power) {
+        final var iterations = 200_000;
+        var best = Long.MAX_VALUE;
+        var sink = 0;
+        for (var run = 0; run < 5; run++) {
+            final var start = System.nanoTime();
+            for (var i = 0; i < iterations; i++) {
+                sink += power.apply(bases[i & (bases.length - 1)]).signum();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return sink == Integer.MIN_VALUE ? 0 : (double) best / iterations;
+    }
+
     private int benchDouble() {
         final var expression = new ExpressionBuilder(EXPRESSION)
                 .variables("x", "y")
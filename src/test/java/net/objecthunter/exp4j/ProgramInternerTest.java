@@ -0,0 +1,128 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Function;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.Executor;
+
+class ProgramInternerTest {
+
+    @Test
+    void testEquivalentFormulas() {
+        final var forms = new String[]{
+                "2*x + sin(y)",
+                "  ((2 * x)) + sin( y ) ",
+                "sin[y] + {x*2}",
+                "x*2+sin(y)"
+        };
+        final var interner = new ProgramInterner();
+        final var expected = build(forms[0]).getCanonicalForm();
+        for (final var form : forms) {
+            final var e = build(form);
+            Assertions.assertEquals(expected, e.getCanonicalForm(), form);
+            Assertions.assertEquals(build(forms[0]).getStructuralHash(), e.getStructuralHash(), form);
+            final var interned = interner.intern(e)
+                    .setVariable("x", 1.5)
+                    .setVariable("y", 0);
+            Assertions.assertEquals(3d, interned.evaluate().doubleValue(), 0d);
+        }
+        Assertions.assertEquals(1, interner.size());
+    }
+
+    @Test
+    void testDifferentFormulas() {
+        final var interner = new ProgramInterner();
+        interner.intern(build("x - y"));
+        interner.intern(build("y - x"));
+        interner.intern(build("x / y"));
+        interner.intern(build("2 * x + sin(y)"));
+        interner.intern(build("2.0 * x + sin(y)"));
+        interner.intern(build("2 * (x + sin(y))"));
+        Assertions.assertEquals(6, interner.size());
+    }
+
+    @Test
+    void testNestedCommutativeOperands() {
+        Assertions.assertEquals(build("(x + 1) * (y + 2)").getCanonicalForm(),
+                build("(2 + y) * (1 + x)").getCanonicalForm());
+        Assertions.assertNotEquals(build("(x + 1) * (y + 2)").getCanonicalForm(),
+                build("(x + 2) * (y + 1)").getCanonicalForm());
+    }
+
+    @Test
+    void testFunctionsAreComparedByIdentity() {
+        final var f1 = twice();
+        final var f2 = twice();
+        final var interner = new ProgramInterner();
+        interner.intern(new ExpressionBuilder("twice(1)").function(f1).build());
+        interner.intern(new ExpressionBuilder("twice(1)").function(f1).build());
+        interner.intern(new ExpressionBuilder("twice(1)").function(f2).build());
+        Assertions.assertEquals(2, interner.size());
+    }
+
+    @Test
+    void testKeepsVariables() {
+        final var interner = new ProgramInterner();
+        interner.intern(build("x + y"));
+        final var e = interner.intern(build("y + x").setVariable("x", 1).setVariable("y", 2));
+        Assertions.assertEquals(3d, e.evaluate().doubleValue(), 0d);
+    }
+
+    @Test
+    void testSharesDerivedPrograms() {
+        final var interner = new ProgramInterner();
+        final Executor executor = Runnable::run;
+        final var first = interner.intern(new ExpressionBuilder("x / 3 + y").variables("x", "y")
+                .tieredCompilation(2, executor).build());
+        final var second = interner.intern(new ExpressionBuilder("y + x / 3").variables("x", "y")
+                .tieredCompilation(2, executor).build());
+        first.setVariable("x", 1).setVariable("y", 2);
+        for (var i = 0; i < 3; i++) {
+            first.evaluate();
+        }
+        Assertions.assertTrue(first.isCompiled());
+        Assertions.assertTrue(second.isCompiled());
+
+        final var fixed2 = interner.intern(new ExpressionBuilder("x / 3 + y").variables("x", "y")
+                .fixedPoint(2).build());
+        final var fixed4 = interner.intern(new ExpressionBuilder("y + x / 3").variables("x", "y")
+                .fixedPoint(4).build());
+        Assertions.assertEquals(new BigDecimal("2.33"), fixed2.setVariable("x", 1).setVariable("y", 2).evaluate());
+        Assertions.assertEquals(new BigDecimal("2.3333"), fixed4.setVariable("x", 1).setVariable("y", 2).evaluate());
+        Assertions.assertTrue(interner.intern(new ExpressionBuilder("x / 3 + y").variables("x", "y")
+                .rational(true).build()).isRational());
+        Assertions.assertEquals(1, interner.size());
+    }
+
+    private static Expression build(final String expression) {
+        return new ExpressionBuilder(expression)
+                .variables("x", "y")
+                .build();
+    }
+
+    private static Function twice() {
+        return new Function("twice", 1) {
+            @Override
+            public BigDecimal apply(final BigDecimal... args) {
+                return args[0].multiply(BigDecimal.valueOf(2));
+            }
+        };
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.operator.Operators;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Random;
+
+class RationalTest {
+
+    @Test
+    void testThirdsSumToOne() {
+        final var e = new ExpressionBuilder("1/3 + 1/3 + 1/3")
+                .rational(true)
+                .build();
+        Assertions.assertTrue(e.isRational());
+        Assertions.assertEquals(BigDecimal.ONE, e.evaluate());
+        Assertions.assertNotEquals(0, BigDecimal.ONE.compareTo(e.setRational(false).evaluate()));
+    }
+
+    @Test
+    void testAllocationFormula() {
+        final var e = new ExpressionBuilder("total * share / (share + rest)")
+                .variables("total", "share", "rest")
+                .rational(true)
+                .build()
+                .setVariable("total", 900)
+                .setVariable("share", new BigDecimal("0.7"))
+                .setVariable("rest", new BigDecimal("1.4"));
+        Assertions.assertEquals(BigDecimal.valueOf(300), e.evaluate());
+    }
+
+    @Test
+    void testResultIsRoundedOnce() {
+        final var e = new ExpressionBuilder("2 / 3")
+                .rational(true)
+                .mathContext(MathContext.DECIMAL32)
+                .build();
+        Assertions.assertEquals(new BigDecimal("0.6666667"), e.evaluate());
+        Assertions.assertEquals(new BigDecimal("0.25"), new ExpressionBuilder("(1/2)^2").rational(true).build().evaluate());
+        Assertions.assertEquals(new BigDecimal("8"), new ExpressionBuilder("(1/2)^-3").rational(true).build().evaluate());
+    }
+
+    @Test
+    void testOverflowSwitchesToBigInteger() {
+        final var e = new ExpressionBuilder("x / 7 * 7 + y / 11 - y / 11")
+                .variables("x", "y")
+                .rational(true)
+                .build()
+                .setVariable("x", BigDecimal.valueOf(Long.MAX_VALUE))
+                .setVariable("y", new BigDecimal("123456789012345678901234567890.5"));
+        Assertions.assertEquals(BigDecimal.valueOf(Long.MAX_VALUE), e.evaluate());
+        final var min = new ExpressionBuilder("-x / -1")
+                .variables("x")
+                .rational(true)
+                .build()
+                .setVariable("x", BigDecimal.valueOf(Long.MIN_VALUE));
+        Assertions.assertEquals(BigDecimal.valueOf(Long.MIN_VALUE), min.evaluate());
+    }
+
+    @Test
+    void testMatchesBigDecimal() {
+        final var rnd = new Random(3);
+        final var e = new ExpressionBuilder("(a + b) * c / d - a / c")
+                .variables("a", "b", "c", "d")
+                .rational(true)
+                .build();
+        for (var i = 0; i < 500; i++) {
+            final var a = BigDecimal.valueOf(rnd.nextInt(), rnd.nextInt(8));
+            final var b = BigDecimal.valueOf(rnd.nextLong(), rnd.nextInt(8));
+            final var c = BigDecimal.valueOf(rnd.nextInt(1000) + 1, 2);
+            final var d = BigDecimal.valueOf(rnd.nextInt(1000) + 1, 3);
+            e.setVariable("a", a).setVariable("b", b).setVariable("c", c).setVariable("d", d);
+            final var expected = a.add(b).multiply(c).multiply(c)
+                    .subtract(a.multiply(d))
+                    .divide(c.multiply(d), Operators.MC);
+            Assertions.assertEquals(expected, e.evaluate(), "a=" + a + " b=" + b + " c=" + c + " d=" + d);
+        }
+    }
+
+    @Test
+    void testFunctionsAndLetBindings() {
+        final var e = new ExpressionBuilder("h = x / 2; sqrt(h * h) + h")
+                .variables("x")
+                .letBindings(true)
+                .rational(true)
+                .build()
+                .setVariable("x", 9);
+        Assertions.assertEquals(0, BigDecimal.valueOf(9).compareTo(e.evaluate()));
+    }
+
+    @Test
+    void testDivisionByZero() {
+        final var e = new ExpressionBuilder("1 / (x - x)")
+                .variables("x")
+                .rational(true)
+                .build()
+                .setVariable("x", 2);
+        Assertions.assertThrows(ArithmeticException.class, e::evaluate);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Map;
+
+class SpecializingNodeTest {
+
+    @Test
+    void testIntegralArithmeticSpecializesToLong() {
+        final var e = new ExpressionBuilder("x * y + x - 3")
+                .variables("x", "y")
+                .build();
+        final var program = ClosureProgram.compile(e.getTokens());
+        Assertions.assertTrue(program.toString().contains("[uninitialized]"));
+        for (var i = -50; i < 50; i++) {
+            e.setVariable("x", num(i)).setVariable("y", num(7 * i));
+            Assertions.assertEquals(e.evaluate(), evaluate(program, i, 7 * i, null));
+        }
+        Assertions.assertFalse(program.toString().contains("[generic]"), program.toString());
+        Assertions.assertFalse(program.toString().contains("[uninitialized]"), program.toString());
+    }
+
+    @Test
+    void testFractionDespecializes() {
+        final var e = new ExpressionBuilder("x + y")
+                .variables("x", "y")
+                .build();
+        final var program = ClosureProgram.compile(e.getTokens());
+        Assertions.assertEquals(BigDecimal.valueOf(3), evaluate(program, 1, 2, null));
+        Assertions.assertTrue(program.toString().contains("+[specialized]"));
+        Assertions.assertEquals(new BigDecimal("3.5"), evaluate(program, 1.5, 2, null));
+        Assertions.assertTrue(program.toString().contains("+[generic]"));
+
+        /* a generic node stays generic */
+        Assertions.assertEquals(BigDecimal.valueOf(3), evaluate(program, 1, 2, null));
+        Assertions.assertTrue(program.toString().contains("+[generic]"));
+    }
+
+    @Test
+    void testOverflowDespecializes() {
+        final var e = new ExpressionBuilder("x * y - x")
+                .variables("x", "y")
+                .build();
+        final var program = ClosureProgram.compile(e.getTokens());
+        evaluate(program, 3, 4, null);
+        final var x = BigDecimal.valueOf(Long.MAX_VALUE / 10);
+        final var y = BigDecimal.valueOf(1000);
+        final var result = program.evaluate(Map.of("x", x, "y", y), new BigDecimal[0], null);
+        Assertions.assertEquals(x.multiply(y).subtract(x), result);
+        Assertions.assertTrue(program.toString().contains("*[generic]"));
+        /* the overflowed product is not a small integer either */
+        Assertions.assertTrue(program.toString().contains("-[generic]"));
+    }
+
+    @Test
+    void testLongOverflowBoundaries() {
+        final var e = new ExpressionBuilder("x + y - (x - y) * y")
+                .variables("x", "y")
+                .build();
+        final long[] values = {0, 1, -1, Long.MAX_VALUE / 2, Long.MIN_VALUE / 2, 999_999_999_999_999_999L,
+                -999_999_999_999_999_999L, 3_037_000_499L, -3_037_000_500L};
+        for (final var a : values) {
+            for (final var b : values) {
+                final var program = ClosureProgram.compile(e.getTokens());
+                e.setVariable("x", new BigDecimal(a)).setVariable("y", new BigDecimal(b));
+                final var vars = Map.of("x", BigDecimal.valueOf(a), "y", BigDecimal.valueOf(b));
+                Assertions.assertEquals(e.evaluate(), program.evaluate(vars, new BigDecimal[0], null), a + ", " + b);
+            }
+        }
+    }
+
+    @Test
+    void testSquareSpecializes() {
+        final var e = new ExpressionBuilder("x ^ 2")
+                .variables("x")
+                .build();
+        final var program = ClosureProgram.compile(e.getTokens());
+        for (final var x : new String[]{"3", "-1.25", "0.1", "123456789.987654321", "1e-30"}) {
+            e.setVariable("x", new BigDecimal(x));
+            Assertions.assertEquals(e.evaluate(), program.evaluate(Map.of("x", new BigDecimal(x)), new BigDecimal[0], null));
+        }
+        Assertions.assertTrue(program.toString().contains("^[specialized]"), program.toString());
+    }
+
+    @Test
+    void testVariableExponentDespecializes() {
+        final var e = new ExpressionBuilder("x ^ y")
+                .variables("x", "y")
+                .build();
+        final var program = ClosureProgram.compile(e.getTokens());
+        Assertions.assertEquals(BigDecimal.valueOf(9), evaluate(program, 3, 2, null));
+        Assertions.assertTrue(program.toString().contains("^[specialized]"));
+        e.setVariable("x", num(3)).setVariable("y", num(0.5));
+        Assertions.assertEquals(e.evaluate(), evaluate(program, 3, 0.5, null));
+        Assertions.assertTrue(program.toString().contains("^[generic]"));
+    }
+
+    @Test
+    void testMathContextIsApplied() {
+        final var mc = new MathContext(5);
+        final var e = new ExpressionBuilder("x * y + x ^ 2")
+                .variables("x", "y")
+                .build()
+                .setVariable("x", num(123_456))
+                .setVariable("y", num(789));
+        final var program = ClosureProgram.compile(e.getTokens());
+        Assertions.assertEquals(e.setMathContext(mc).evaluate(), evaluate(program, 123_456, 789, mc));
+        Assertions.assertTrue(program.toString().contains("*[specialized]"));
+    }
+
+    @Test
+    void testOtherOperatorsAreNotSpecialized() {
+        final var e = new ExpressionBuilder("x / 2 + x % 3")
+                .variables("x")
+                .build();
+        Assertions.assertEquals("((x / 2) +[uninitialized] (x % 3))", ClosureProgram.compile(e.getTokens()).toString());
+    }
+
+    private static BigDecimal evaluate(final ClosureProgram program, final double x, final double y,
+                                       final MathContext mc) {
+        return program.evaluate(Map.of("x", num(x), "y", num(y)), new BigDecimal[0], mc);
+    }
+
+    /* integral values without a fractional scale, like the values of parsed integer literals */
+    private static BigDecimal num(final double value) {
+        return value == Math.rint(value) ? BigDecimal.valueOf((long) value) : BigDecimal.valueOf(value);
+    }
+}
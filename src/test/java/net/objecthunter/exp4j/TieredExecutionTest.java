@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Function;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+class TieredExecutionTest {
+
+    private static final Function SUM3 = new Function("sum3", 3) {
+        @Override
+        public BigDecimal apply(final BigDecimal... args) {
+            return args[0].add(args[1]).add(args[2]);
+        }
+    };
+
+    @Test
+    void testPromotionAfterThreshold() {
+        final var e = new ExpressionBuilder("a = x ^ 2; b = sqrt(a) + y; -a / b + sum3(a, b, 1) % 7 + pow(x, 2)")
+                .variables("x", "y")
+                .functions(SUM3)
+                .letBindings(true)
+                .tieredCompilation(10, Runnable::run)
+                .build();
+        final var interpreted = new ExpressionBuilder("a = x ^ 2; b = sqrt(a) + y; -a / b + sum3(a, b, 1) % 7 + pow(x, 2)")
+                .variables("x", "y")
+                .functions(SUM3)
+                .letBindings(true)
+                .build();
+        for (var i = 0; i < 20; i++) {
+            e.setVariable("x", i + 0.5).setVariable("y", 3);
+            interpreted.setVariable("x", i + 0.5).setVariable("y", 3);
+            Assertions.assertEquals(i >= 10, e.isCompiled(), "evaluation " + i);
+            Assertions.assertEquals(interpreted.evaluate(), e.evaluate());
+        }
+        Assertions.assertFalse(interpreted.isCompiled());
+        e.setMathContext(MathContext.DECIMAL32);
+        interpreted.setMathContext(MathContext.DECIMAL32);
+        Assertions.assertEquals(interpreted.evaluate(), e.evaluate());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> e.clearVariables().evaluate());
+    }
+
+    @Test
+    void testBackgroundCompilation() throws Exception {
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            final var e = new ExpressionBuilder("sin(x) * cos(x) + x")
+                    .variables("x")
+                    .build()
+                    .setTieredCompilation(100, executor)
+                    .setVariable("x", 1);
+            final var copy = new Expression(e);
+            final var expected = e.evaluate();
+            for (var i = 0; i < 100; i++) {
+                Assertions.assertEquals(expected, copy.evaluate());
+            }
+            executor.shutdown();
+            Assertions.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            Assertions.assertTrue(e.isCompiled());
+            Assertions.assertTrue(copy.isCompiled());
+            Assertions.assertEquals(expected, e.evaluate());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testDeepExpressionsStayInterpreted() {
+        final var sb = new StringBuilder();
+        for (var i = 0; i < 5000; i++) {
+            sb.append("(x+");
+        }
+        sb.append('1');
+        for (var i = 0; i < 5000; i++) {
+            sb.append(')');
+        }
+        final var e = new ExpressionBuilder(sb.toString())
+                .variables("x")
+                .tieredCompilation(1, Runnable::run)
+                .build()
+                .setVariable("x", 1);
+        for (var i = 0; i < 3; i++) {
+            Assertions.assertEquals(5001d, e.evaluate().doubleValue(), 0d);
+        }
+        Assertions.assertFalse(e.isCompiled());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> e.setTieredCompilation(-1));
+    }
+}
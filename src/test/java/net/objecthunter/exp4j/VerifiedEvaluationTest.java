@@ -0,0 +1,68 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j;
+
+import net.objecthunter.exp4j.function.Functions;
+import net.objecthunter.exp4j.operator.Operators;
+import net.objecthunter.exp4j.tokenizer.FunctionToken;
+import net.objecthunter.exp4j.tokenizer.NumberToken;
+import net.objecthunter.exp4j.tokenizer.OperatorToken;
+import net.objecthunter.exp4j.tokenizer.Token;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.MathContext;
+
+class VerifiedEvaluationTest {
+
+    @Test
+    void testBuiltExpressionsAreVerified() {
+        final var e = new ExpressionBuilder("a = x * 2; pow(a, 2) - -x + a")
+                .variables("x")
+                .letBindings(true)
+                .build()
+                .setVariable("x", 3);
+        Assertions.assertTrue(e.isVerified());
+        Assertions.assertEquals(45d, e.evaluate().doubleValue(), 0d);
+        Assertions.assertEquals(45d, new Expression(e).setMathContext(MathContext.DECIMAL32).evaluate().doubleValue(), 0d);
+        Assertions.assertTrue(Expr.add(Expr.num(1), Expr.num(2)).build().isVerified());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> e.clearVariables().evaluate());
+    }
+
+    @Test
+    void testMaxStackDepth() {
+        final var plus = new OperatorToken(Operators.getBuiltinOperator('+', 2));
+        final var one = new NumberToken(1d);
+        Assertions.assertEquals(1, Expression.maxStackDepth(new Token[]{one}));
+        Assertions.assertEquals(3, Expression.maxStackDepth(new Token[]{one, one, one, plus, plus}));
+        Assertions.assertEquals(2, Expression.maxStackDepth(new Token[]{one, one, plus, one, plus}));
+        Assertions.assertEquals(0, Expression.maxStackDepth(new Token[0]));
+        Assertions.assertEquals(0, Expression.maxStackDepth(new Token[]{one, plus}));
+        Assertions.assertEquals(0, Expression.maxStackDepth(new Token[]{one, one}));
+        Assertions.assertEquals(0, Expression.maxStackDepth(
+                new Token[]{one, new FunctionToken(Functions.getBuiltinFunction("pow"))}));
+    }
+
+    @Test
+    void testUnverifiedTokensAreChecked() {
+        final var tokens = new Token[]{new NumberToken(1d), new OperatorToken(Operators.getBuiltinOperator('+', 2))};
+        final var e = new Expression(tokens);
+        Assertions.assertFalse(e.isVerified());
+        Assertions.assertThrows(IllegalArgumentException.class, e::evaluate);
+        Assertions.assertFalse(e.verify().isVerified());
+        Assertions.assertThrows(IllegalArgumentException.class, e::evaluate);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j.function;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Formatter;
+import java.util.Random;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Compares the approximations of {@link FastMath} to the {@link Math} functions and reports the largest error in
+ * units in the last place
+ */
+class FastMathTest {
+
+    private static final int SAMPLES = 1_000_000;
+
+    private final StringBuilder report = new StringBuilder();
+
+    @Test
+    void testMaximumUlpError() {
+        final var fmt = new Formatter(report);
+        fmt.format("+------------+-----------------------+-----------+-----------+%n");
+        fmt.format("| %-10s | %-21s | %-9s | %-9s |%n", "Function", "Domain", "Max ulp", "Bound");
+        fmt.format("+------------+-----------------------+-----------+-----------+%n");
+        check("exp", FastMath::exp, Math::exp, -700, 700, 1);
+        check("exp", FastMath::exp, Math::exp, -1, 1, 1);
+        check("log", FastMath::log, Math::log, 0, 10, 1);
+        check("log", FastMath::log, Math::log, 0, 1e300, 1);
+        check("log10", FastMath::log10, Math::log10, 1e-300, 1e300, 2);
+        check("log2", FastMath::log2, x -> Math.log(x) / Math.log(2d), 1e-300, 1e300, 2);
+        check("sin", FastMath::sin, Math::sin, -1000, 1000, 1);
+        check("sin", FastMath::sin, Math::sin, -0x1p20, 0x1p20, 2);
+        check("cos", FastMath::cos, Math::cos, -1000, 1000, 1);
+        check("cos", FastMath::cos, Math::cos, -0x1p20, 0x1p20, 2);
+        check("tan", FastMath::tan, Math::tan, -0x1p20, 0x1p20, 4);
+        check("sinh", FastMath::sinh, Math::sinh, -700, 700, 2);
+        check("sinh", FastMath::sinh, Math::sinh, -2, 2, 2);
+        check("cosh", FastMath::cosh, Math::cosh, -700, 700, 2);
+        check("tanh", FastMath::tanh, Math::tanh, -5, 5, 4);
+        check("pow(x,2.5)", x -> FastMath.pow(x, 2.5), x -> Math.pow(x, 2.5), 0, 100, 1 + 3 * 2.5 * Math.log(100));
+        check("pow(2,x)", x -> FastMath.pow(2, x), x -> Math.pow(2, x), -100, 100, 1 + 3 * 100 * Math.log(2));
+        fmt.format("+------------+-----------------------+-----------+-----------+%n");
+        System.out.print(report);
+    }
+
+    @Test
+    void testSpecialValues() {
+        Assertions.assertEquals(Double.POSITIVE_INFINITY, FastMath.exp(1000));
+        Assertions.assertEquals(0d, FastMath.exp(-1000));
+        Assertions.assertTrue(Double.isNaN(FastMath.exp(Double.NaN)));
+        Assertions.assertEquals(Double.NEGATIVE_INFINITY, FastMath.log(0));
+        Assertions.assertEquals(Double.POSITIVE_INFINITY, FastMath.log(Double.POSITIVE_INFINITY));
+        Assertions.assertTrue(Double.isNaN(FastMath.log(-1)));
+        Assertions.assertEquals(Math.log(Double.MIN_VALUE), FastMath.log(Double.MIN_VALUE), Math.ulp(Math.log(Double.MIN_VALUE)));
+        Assertions.assertEquals(-8d, FastMath.pow(-2, 3), 4 * Math.ulp(8d));
+        Assertions.assertEquals(4d, FastMath.pow(-2, 2), 4 * Math.ulp(4d));
+        Assertions.assertTrue(Double.isNaN(FastMath.pow(-2, 0.5)));
+        Assertions.assertEquals(1d, FastMath.pow(0, 0));
+        Assertions.assertEquals(0d, FastMath.pow(0, 2));
+        Assertions.assertEquals(Math.sin(1e10), FastMath.sin(1e10));
+        Assertions.assertEquals(1d, FastMath.tanh(100));
+        Assertions.assertEquals(-1d, FastMath.tanh(-100));
+        Assertions.assertEquals(Math.sinh(710), FastMath.sinh(710), Math.ulp(Math.sinh(710)) * 2);
+    }
+
+    private void check(final String name, final DoubleUnaryOperator fast, final DoubleUnaryOperator exact,
+                       final double from, final double to, final double bound) {
+        final var rnd = new Random(name.hashCode());
+        var max = 0d;
+        var worst = 0d;
+        for (var i = 0; i < SAMPLES; i++) {
+            final var x = from + (to - from) * rnd.nextDouble();
+            final var expected = exact.applyAsDouble(x);
+            final var ulps = Math.abs(fast.applyAsDouble(x) - expected) / Math.ulp(expected);
+            if (ulps > max) {
+                max = ulps;
+                worst = x;
+            }
+        }
+        new Formatter(report).format("| %-10s | [%9.3g, %9.3g] | %9.3f | %9.1f |%n", name, from, to, max, bound);
+        Assertions.assertTrue(max <= bound, name + " has an error of " + max + " ulp at " + worst);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j.operator;
+
+import net.objecthunter.exp4j.function.Functions;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Random;
+
+class BigDecimalMathTest {
+
+    private static final Operator POWER = Operators.getBuiltinOperator('^', 2);
+
+    private static final Operator MODULO = Operators.getBuiltinOperator('%', 2);
+
+    @Test
+    void testIntegerExponentsAreExact() {
+        Assertions.assertEquals(new BigDecimal("1.21"), POWER.apply(new BigDecimal("1.1"), BigDecimal.valueOf(2)));
+        Assertions.assertEquals(0, new BigDecimal("1E+30").compareTo(POWER.apply(BigDecimal.TEN, BigDecimal.valueOf(30))));
+        Assertions.assertEquals(0, new BigDecimal("0.125").compareTo(POWER.apply(BigDecimal.valueOf(2), BigDecimal.valueOf(-3))));
+        Assertions.assertEquals(0, BigDecimal.valueOf(32).compareTo(POWER.apply(BigDecimal.valueOf(2), new BigDecimal("5.0"))));
+        Assertions.assertThrows(ArithmeticException.class, () -> POWER.apply(BigDecimal.ZERO, BigDecimal.valueOf(-1)));
+    }
+
+    @Test
+    void testHalfExponents() {
+        final var mc = new MathContext(30);
+        Assertions.assertEquals(new BigDecimal("2").sqrt(mc), POWER.apply(mc, BigDecimal.valueOf(2), new BigDecimal("0.5")));
+        Assertions.assertEquals(0, BigDecimal.valueOf(27).compareTo(POWER.apply(mc, BigDecimal.valueOf(9), new BigDecimal("1.5"))));
+    }
+
+    @Test
+    void testNonIntegerExponents() {
+        final var mc = new MathContext(40);
+        /* 2^0.1 to 40 digits */
+        Assertions.assertEquals(new BigDecimal("1.071773462536293164213006325023342022906"),
+                POWER.apply(mc, BigDecimal.valueOf(2), new BigDecimal("0.1")));
+        Assertions.assertEquals(new BigDecimal("2.718281828459045235360287471352662497757"),
+                BigDecimalMath.exp(BigDecimal.ONE, mc));
+        Assertions.assertEquals(new BigDecimal("2.302585092994045684017991454684364207601"),
+                BigDecimalMath.ln(BigDecimal.TEN, mc));
+        Assertions.assertThrows(ArithmeticException.class, () -> POWER.apply(BigDecimal.valueOf(-2), new BigDecimal("0.3")));
+    }
+
+    @Test
+    void testExtremeArguments() {
+        final var mc = new MathContext(34);
+        Assertions.assertEquals(0, new BigDecimal("1E-111").compareTo(POWER.apply(mc, new BigDecimal("1E-300"), new BigDecimal("0.37"))));
+        Assertions.assertEquals(0, new BigDecimal("1E-210").compareTo(POWER.apply(mc, new BigDecimal("1E+300"), new BigDecimal("-0.7"))));
+        Assertions.assertEquals(new BigDecimal("1.000000000029999999998950000000059"),
+                POWER.apply(mc, new BigDecimal("1.0000000001"), new BigDecimal("0.3")));
+        Assertions.assertEquals(new BigDecimal("9.999999999999999999995000000000000E-22"),
+                BigDecimalMath.ln(new BigDecimal("1.000000000000000000001"), mc));
+    }
+
+    @Test
+    void testPowFunctionMatchesOperator() {
+        final var pow = Functions.getBuiltinFunction("pow");
+        final var mc = new MathContext(20);
+        for (final var exponent : new String[]{"2", "-1", "0.5", "0.37", "-0.7"}) {
+            final var e = new BigDecimal(exponent);
+            Assertions.assertEquals(POWER.apply(new BigDecimal("3.7"), e), pow.apply(new BigDecimal("3.7"), e));
+            Assertions.assertEquals(POWER.apply(mc, new BigDecimal("3.7"), e), pow.apply(mc, new BigDecimal("3.7"), e));
+        }
+    }
+
+    @Test
+    void testMatchesMathPow() {
+        final var rnd = new Random(17);
+        for (var i = 0; i < 1000; i++) {
+            final var base = rnd.nextDouble() * 100;
+            final var exponent = rnd.nextDouble() * 20 - 10;
+            final var expected = Math.pow(base, exponent);
+            final var actual = POWER.apply(new BigDecimal(base), new BigDecimal(exponent)).doubleValue();
+            Assertions.assertEquals(expected, actual, 4 * Math.ulp(expected), base + "^" + exponent);
+        }
+    }
+
+    @Test
+    void testRemainderIsExact() {
+        Assertions.assertEquals(new BigDecimal("0.3343"), MODULO.apply(new BigDecimal("24.3343"), BigDecimal.valueOf(3)));
+        Assertions.assertEquals(new BigDecimal("-1"), MODULO.apply(BigDecimal.valueOf(-7), BigDecimal.valueOf(3)));
+        Assertions.assertEquals(new BigDecimal("3"), MODULO.apply(new BigDecimal("9007199254740993"), BigDecimal.TEN));
+        Assertions.assertThrows(ArithmeticException.class, () -> MODULO.apply(BigDecimal.ONE, BigDecimal.ZERO));
+    }
+}
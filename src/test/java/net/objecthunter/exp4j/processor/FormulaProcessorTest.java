@@ -0,0 +1,136 @@
+/*
+ * Copyright 2014 Frank Asseg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.objecthunter.exp4j.processor;
+
+import net.objecthunter.exp4j.ExpressionBuilder;
+import net.objecthunter.exp4j.SourceGenerator;
+import net.objecthunter.exp4j.function.Function;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+class FormulaProcessorTest {
+
+    private static final String FORMULAS = String.join("\n",
+            "# geometry",
+            "hypot(x, y) = sqrt(x^2 + y^2)",
+            "area(r) = pi * r^2",
+            "",
+            "poly(x) = a = x + 1; b = a * a; b - a / 3 + -x % 2",
+            "scaled(new, f) = 2new * -f + log(abs(new) + 1) / 1.5e2");
+
+    @Test
+    void testGeneratedClassesMatchInterpreter(@TempDir final Path dir) throws Exception {
+        final var errors = compile(dir, FORMULAS);
+        Assertions.assertTrue(errors.isEmpty(), errors.toString());
+
+        try (var loader = new URLClassLoader(new URL[]{dir.resolve("out").toUri().toURL()},
+                getClass().getClassLoader())) {
+            assertMatches(loader, "Hypot", "sqrt(x^2 + y^2)", List.of("x", "y"), "3", "4.5");
+            assertMatches(loader, "Area", "pi * r^2", List.of("r"), "1.75");
+            assertMatches(loader, "Poly", "a = x + 1; b = a * a; b - a / 3 + -x % 2", List.of("x"), "7");
+            assertMatches(loader, "Scaled", "2new * -f + log(abs(new) + 1) / 1.5e2", List.of("new", "f"),
+                    "-2.5", "0.125");
+        }
+    }
+
+    @Test
+    void testInvalidFormulaIsReported(@TempDir final Path dir) throws Exception {
+        final var errors = compile(dir, "ok(x) = x + 1\n\nbroken(x) = x + y\n");
+        Assertions.assertEquals(1, errors.size());
+        Assertions.assertTrue(errors.get(0).contains("formulas.txt:3:"), errors.get(0));
+    }
+
+    @Test
+    void testMissingResourceIsReported(@TempDir final Path dir) throws Exception {
+        final var errors = compile(dir, null);
+        Assertions.assertEquals(1, errors.size());
+        Assertions.assertTrue(errors.get(0).contains("formulas.txt"), errors.get(0));
+    }
+
+    @Test
+    void testInvalidDefinitions() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> SourceGenerator.generate("a.B", "b", List.of("x"), "x + q(x)"));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> SourceGenerator.generate("a.1B", "b", List.of("x"), "x"));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> SourceGenerator.generate("a.B", "b", List.of("x", "x"), "x"));
+    }
+
+    private static void assertMatches(final ClassLoader loader, final String simpleName, final String formula,
+                                      final List<String> parameters, final String... values) throws Exception {
+        final var generated = loader.loadClass("com.acme." + simpleName);
+        final var function = (Function) generated.getField("INSTANCE").get(null);
+        Assertions.assertEquals(parameters.size(), function.getNumArguments());
+
+        final var e = new ExpressionBuilder(formula)
+                .variables(Set.copyOf(parameters))
+                .letBindings(true)
+                .build();
+        final var args = new BigDecimal[values.length];
+        final var types = new Class<?>[values.length];
+        for (var i = 0; i < values.length; i++) {
+            args[i] = new BigDecimal(values[i]);
+            types[i] = BigDecimal.class;
+            e.setVariable(parameters.get(i), args[i]);
+        }
+        final var expected = e.evaluate();
+        Assertions.assertEquals(expected, function.apply(args), simpleName);
+        Assertions.assertEquals(expected, generated.getMethod("evaluate", types).invoke(null, (Object[]) args),
+                simpleName);
+    }
+
+    /* compiles a class annotated with the formula resource and returns the error messages */
+    private static List<String> compile(final Path dir, final String formulas) throws IOException {
+        final var pkg = Files.createDirectories(dir.resolve("src/com/acme"));
+        final var out = Files.createDirectories(dir.resolve("out"));
+        Files.writeString(pkg.resolve("Catalog.java"),
+                "package com.acme;\n@net.objecthunter.exp4j.processor.Formulas(\"formulas.txt\")\nclass Catalog {}\n");
+        if (null != formulas) {
+            Files.writeString(pkg.resolve("formulas.txt"), formulas, StandardCharsets.UTF_8);
+        }
+        final var compiler = ToolProvider.getSystemJavaCompiler();
+        final var diagnostics = new DiagnosticCollector<JavaFileObject>();
+        try (var fm = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            final var options = List.of("-processor", FormulaProcessor.class.getName(),
+                    "-sourcepath", dir.resolve("src").toString(),
+                    "-classpath", System.getProperty("java.class.path"),
+                    "-d", out.toString());
+            compiler.getTask(null, fm, diagnostics, options, null,
+                    fm.getJavaFileObjects(pkg.resolve("Catalog.java").toFile())).call();
+        }
+        return diagnostics.getDiagnostics().stream()
+                .filter(d -> Diagnostic.Kind.ERROR == d.getKind())
+                .map(d -> d.getMessage(null))
+                .collect(Collectors.toList());
+    }
+}